@@ -5,15 +5,19 @@ import org.molgenis.data.annotation.entity.impl.gavin.GavinEntry;
 import org.molgenis.data.annotation.makervcf.structs.GavinCalibrations;
 import org.molgenis.data.vcf.datastructures.Sample;
 import org.molgenis.data.vcf.datastructures.Trio;
+import org.molgenis.vcf.ParallelBlockCompressedInputStream;
+import org.molgenis.vcf.TabixIndex;
+import org.molgenis.vcf.TabixVcfReader;
 import org.molgenis.vcf.VcfReader;
+import org.molgenis.vcf.VcfRecord;
+import org.molgenis.vcf.meta.VcfMeta;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Scanner;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -29,6 +33,8 @@ public class GavinUtils
 	private static final String CADD_THRESHOLD_KEY = "##CADD_THRESHOLD";
 	private static final String MAF_THRESHOLD_KEY = "##MAF_THRESHOLD";
 	private static final String CALIBRATIONS_HEADER_PREFIX = "#Gene";
+	private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+	private static final int BGZF_HEADER_LENGTH = 18;
 
 	private GavinUtils()
 	{
@@ -94,7 +100,7 @@ public class GavinUtils
 
 		if (file.getName().endsWith(".gz"))
 		{
-			reader = new VcfReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), UTF_8));
+			reader = new VcfReader(createGzipInputStream(new FileInputStream(file)));
 		}
 		else if (file.getName().endsWith(".zip"))
 		{
@@ -102,18 +108,190 @@ public class GavinUtils
 			{
 				Enumeration<? extends ZipEntry> e = zipFile.entries();
 				ZipEntry entry = e.nextElement();
-				reader = new VcfReader(
-						new InputStreamReader(new GZIPInputStream(zipFile.getInputStream(entry)), UTF_8));
+				reader = new VcfReader(createGzipInputStream(zipFile.getInputStream(entry)));
 			}
 		}
 		else
 		{
-			reader = new VcfReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+			reader = new VcfReader(FileChannel.open(file.toPath(), StandardOpenOption.READ));
 		}
 
 		return reader;
 	}
 
+	/**
+	 * Returns a reader that starts at the first record of the chromosome if the file is bgzip compressed and has a
+	 * tabix index, otherwise a reader that starts at the first record of the file. Like getVcfReader(File) records
+	 * are backed by the raw line bytes and compressed blocks are inflated on multiple threads.
+	 */
+	public static VcfReader getVcfReader(File file, String chromosome) throws IOException
+	{
+		File indexFile = TabixVcfReader.getIndexFile(file);
+		if (!file.getName().endsWith(".gz") || !indexFile.exists())
+		{
+			return getVcfReader(file);
+		}
+
+		List<TabixIndex.Chunk> chunks = TabixIndex.read(indexFile).getChunks(chromosome, 1, Integer.MAX_VALUE);
+		if (chunks.isEmpty())
+		{
+			return getVcfReader(file);
+		}
+		VcfMeta vcfMeta = getVcfMeta(file);
+
+		// a virtual offset consists of the file offset of a block and the offset within the inflated block
+		long virtualOffset = chunks.get(0).getBegin();
+		FileInputStream fileInputStream = new FileInputStream(file);
+		try
+		{
+			fileInputStream.getChannel().position(virtualOffset >>> 16);
+			InputStream inputStream = new ParallelBlockCompressedInputStream(
+					new BufferedInputStream(fileInputStream, GZIP_BUFFER_SIZE));
+			skipFully(inputStream, virtualOffset & 0xFFFF);
+			return new VcfReader(inputStream, vcfMeta);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			fileInputStream.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns a reader that starts at the given byte offset of an uncompressed file, see
+	 * countRecordsPerChromosome(File, Map)
+	 */
+	public static VcfReader getVcfReader(File file, long offset) throws IOException
+	{
+		if (isCompressed(file))
+		{
+			throw new IllegalArgumentException("Cannot read compressed file " + file + " from a byte offset");
+		}
+		return new VcfReader(FileChannel.open(file.toPath(), StandardOpenOption.READ), getVcfMeta(file), offset);
+	}
+
+	/**
+	 * @return whether a reader can start at the first record of a chromosome without reading the records before it,
+	 * which is the case for uncompressed files and bgzip compressed files with a tabix index
+	 */
+	public static boolean canSeekChromosomes(File file)
+	{
+		return !isCompressed(file) || (file.getName().endsWith(".gz") && TabixVcfReader.getIndexFile(file).exists());
+	}
+
+	private static boolean isCompressed(File file)
+	{
+		return file.getName().endsWith(".gz") || file.getName().endsWith(".zip");
+	}
+
+	private static VcfMeta getVcfMeta(File file) throws IOException
+	{
+		try (VcfReader reader = file.getName().endsWith(".gz") ? new VcfReader(
+				new GZIPInputStream(new FileInputStream(file), GZIP_BUFFER_SIZE)) : getVcfReader(file))
+		{
+			return reader.getVcfMeta();
+		}
+	}
+
+	private static void skipFully(InputStream inputStream, long nrBytes) throws IOException
+	{
+		long nrBytesSkipped = 0;
+		while (nrBytesSkipped < nrBytes)
+		{
+			if (inputStream.read() == -1)
+			{
+				throw new EOFException("Unexpected end of stream while skipping " + nrBytes + " bytes");
+			}
+			++nrBytesSkipped;
+		}
+	}
+
+	/**
+	 * Returns the number of records per chromosome, in the order in which the chromosomes occur in the file.
+	 * Only the CHROM column of each record is decoded.
+	 */
+	public static LinkedHashMap<String, Long> countRecordsPerChromosome(File file) throws IOException
+	{
+		return countRecordsPerChromosome(file, new HashMap<>());
+	}
+
+	/**
+	 * Like countRecordsPerChromosome(File), if the file is not compressed the byte offset of the first record of
+	 * each chromosome is put in chromosomeToOffset, to be used with getVcfReader(File, long)
+	 */
+	public static LinkedHashMap<String, Long> countRecordsPerChromosome(File file, Map<String, Long> chromosomeToOffset)
+			throws IOException
+	{
+		boolean storeOffsets = !isCompressed(file);
+		LinkedHashMap<String, Long> chromosomeToCount = new LinkedHashMap<>();
+		try (VcfReader reader = getVcfReader(file))
+		{
+			String previousChromosome = null;
+			long count = 0;
+			Iterator<VcfRecord> iterator = reader.iterator();
+			long offset = storeOffsets ? reader.getPosition() : -1;
+			while (iterator.hasNext())
+			{
+				String chromosome = iterator.next().getChromosome();
+				if (!chromosome.equals(previousChromosome))
+				{
+					if (previousChromosome != null)
+					{
+						chromosomeToCount.put(previousChromosome, count);
+					}
+					if (chromosomeToCount.containsKey(chromosome))
+					{
+						throw new RuntimeException("Chromosome " + chromosome
+								+ " was interrupted by other chromosomes. Please sort your VCF file.");
+					}
+					if (storeOffsets)
+					{
+						chromosomeToOffset.put(chromosome, offset);
+					}
+					previousChromosome = chromosome;
+					count = 0;
+				}
+				++count;
+				if (storeOffsets)
+				{
+					offset = reader.getPosition();
+				}
+			}
+			if (previousChromosome != null)
+			{
+				chromosomeToCount.put(previousChromosome, count);
+			}
+		}
+		return chromosomeToCount;
+	}
+
+	/**
+	 * BGZF input is inflated on multiple threads, other gzip input falls back to a single-threaded GZIPInputStream
+	 */
+	private static InputStream createGzipInputStream(InputStream inputStream) throws IOException
+	{
+		BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, GZIP_BUFFER_SIZE);
+		byte[] header = new byte[BGZF_HEADER_LENGTH];
+		bufferedInputStream.mark(header.length);
+		int nrBytesRead = 0;
+		while (nrBytesRead < header.length)
+		{
+			int nrBytes = bufferedInputStream.read(header, nrBytesRead, header.length - nrBytesRead);
+			if (nrBytes == -1)
+			{
+				break;
+			}
+			nrBytesRead += nrBytes;
+		}
+		bufferedInputStream.reset();
+
+		if (ParallelBlockCompressedInputStream.isBlockCompressed(header))
+		{
+			return new ParallelBlockCompressedInputStream(bufferedInputStream);
+		}
+		return new GZIPInputStream(bufferedInputStream, GZIP_BUFFER_SIZE);
+	}
+
 	public static Map<String, Trio> getPedigree(Scanner inputVcfFileScanner)
 	{
 		HashMap<String, Trio> result = new HashMap<>();
@@ -1,5 +1,7 @@
 package org.molgenis.calibratecadd.support;
 
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.HashMap;
@@ -10,14 +12,14 @@ public class LoadCADDWebserviceOutput
 {
 
 	/**
-	 * "chr_pos_ref_alt" to CADD PHRED score
+	 * back trimmed variant key to CADD PHRED score
 	 * @param caddFile
 	 * @return
 	 * @throws FileNotFoundException
 	 */
-	public static Map<String, Double> load(File caddFile) throws Exception
+	public static Map<VariantKey, Double> load(File caddFile) throws Exception
 	{
-		HashMap<String, Double> caddScores;
+		HashMap<VariantKey, Double> caddScores;
 		try (Scanner cadd = new Scanner(caddFile))
 		{
 
@@ -36,7 +38,8 @@ public class LoadCADDWebserviceOutput
 				{
 					throw new Exception("Expected 6 columns in CADD webservice output file, found " + split.length);
 				}
-				caddScores.put(split[0] + "_" + split[1] + "_" + split[2] + "_" + split[3], Double.parseDouble(split[5]));
+				caddScores.put(VariantKey.createBackTrimmed(split[0], Integer.parseInt(split[1]), split[2], split[3]),
+						Double.parseDouble(split[5]));
 			}
 		}
 		return caddScores;
@@ -6,12 +6,7 @@ import org.molgenis.data.annotation.entity.impl.gavin.GavinEntry.Category;
 import org.molgenis.data.annotation.makervcf.structs.GavinCalibrations;
 
 import javax.annotation.Nullable;
-import java.util.Map;
 
-import static org.molgenis.data.annotation.core.entity.impl.gavin.Judgment.Classification.Benign;
-import static org.molgenis.data.annotation.core.entity.impl.gavin.Judgment.Classification.Pathogenic;
-import static org.molgenis.data.annotation.core.entity.impl.gavin.Judgment.Method.calibrated;
-import static org.molgenis.data.annotation.core.entity.impl.gavin.Judgment.Method.genomewide;
 import static org.molgenis.data.annotation.core.entity.impl.snpeff.Impact.*;
 import static org.molgenis.data.annotation.entity.impl.gavin.GavinEntry.Category.*;
 
@@ -24,6 +19,11 @@ public class GavinAlgorithm
 	// better to have a few more false positives than to miss a true positive
 	public static final int extraSensitivityFactor = 5;
 
+	/**
+	 * thresholds of the calibrations last passed to {@link #classifyVariant}
+	 */
+	private GavinThresholdTable thresholdTable;
+
 	/**
 	 * @param impact
 	 * @param caddScaled
@@ -35,166 +35,246 @@ public class GavinAlgorithm
 	public Judgment classifyVariant(Impact impact, Double caddScaled, Double exacMAF, String gene,
 			GavinCalibrations gavinCalibrations)
 	{
-		Double pathoMAFThreshold;
-		Double meanPathogenicCADDScore;
-		Double meanPopulationCADDScore;
-		Double spec95thPerCADDThreshold;
-		Double sens95thPerCADDThreshold;
-		Category category;
-		Map<String, GavinEntry> geneToEntry = gavinCalibrations.getGavinEntries();
-
-		//get data from map, for reuse in GAVIN-related tools other than the annotator
-		if (!geneToEntry.containsKey(gene))
+		GavinThresholdTable thresholds = getThresholdTable(gavinCalibrations);
+		double cadd = caddScaled != null ? caddScaled : Double.NaN;
+		double maf = exacMAF != null ? exacMAF : Double.NaN;
+		return toJudgment(classify(impact, cadd, maf, gene, thresholds), impact, cadd, maf, gene, thresholds);
+	}
+
+	/**
+	 * @param impact
+	 * @param caddScaled
+	 * @param exacMAF
+	 * @param gene
+	 * @return
+	 */
+	public Judgment genomewideClassifyVariant(@Nullable Impact impact, Double caddScaled, Double exacMAF, String gene,
+			GavinCalibrations gavinCalibrations)
+	{
+		GavinThresholdTable thresholds = getThresholdTable(gavinCalibrations);
+		double cadd = caddScaled != null ? caddScaled : Double.NaN;
+		double maf = exacMAF != null ? exacMAF : Double.NaN;
+		return toJudgment(genomewideClassify(impact, cadd, maf, thresholds), impact, cadd, maf, gene, thresholds);
+	}
+
+	private GavinThresholdTable getThresholdTable(GavinCalibrations gavinCalibrations)
+	{
+		GavinThresholdTable thresholds = thresholdTable;
+		if (thresholds == null || thresholds.getGavinCalibrations() != gavinCalibrations)
 		{
-			//if we have no data for this gene, immediately fall back to the genomewide method
-			return genomewideClassifyVariant(impact, caddScaled, exacMAF, gene, gavinCalibrations);
+			thresholds = GavinThresholdTable.create(gavinCalibrations);
+			thresholdTable = thresholds;
 		}
-		else
+		return thresholds;
+	}
+
+	/**
+	 * Classifies a variant without creating any objects, use {@link #toJudgment} to get the reason of the verdict.
+	 *
+	 * @param impact     impact of the variant on the gene, may be null
+	 * @param caddScaled CADD phred score or NaN if unknown
+	 * @param exacMAF    ExAC allele frequency or NaN if unknown
+	 * @param gene       gene
+	 * @param thresholds thresholds created from the GAVIN calibrations
+	 */
+	public GavinVerdict classify(@Nullable Impact impact, double caddScaled, double exacMAF, String gene,
+			GavinThresholdTable thresholds)
+	{
+		int geneIndex = thresholds.getGeneIndex(gene);
+		if (geneIndex == -1)
 		{
-			pathoMAFThreshold = geneToEntry.get(gene).getPathoMAFThreshold() != null ?
-					geneToEntry.get(gene).getPathoMAFThreshold() * extraSensitivityFactor * 2 : null;
-			meanPathogenicCADDScore = geneToEntry.get(gene).getMeanPathogenicCADDScore() != null ?
-					geneToEntry.get(gene).getMeanPathogenicCADDScore() - extraSensitivityFactor : null;
-			meanPopulationCADDScore = geneToEntry.get(gene).getMeanPopulationCADDScore() != null ?
-					geneToEntry.get(gene).getMeanPopulationCADDScore() - extraSensitivityFactor : null;
-			spec95thPerCADDThreshold = geneToEntry.get(gene).getSpec95thPerCADDThreshold() != null ?
-					geneToEntry.get(gene).getSpec95thPerCADDThreshold() - extraSensitivityFactor : null;
-			sens95thPerCADDThreshold = geneToEntry.get(gene).getSens95thPerCADDThreshold() != null ?
-					geneToEntry.get(gene).getSens95thPerCADDThreshold() - extraSensitivityFactor : null;
-			category = geneToEntry.get(gene).getCategory();
+			//if we have no data for this gene, immediately fall back to the genomewide method
+			return genomewideClassify(impact, caddScaled, exacMAF, thresholds);
 		}
+		Category category = thresholds.getCategory(geneIndex);
 
-		// CADD score based classification, calibrated
-		if (caddScaled != null)
+		// CADD score based classification, calibrated, a NaN score or threshold never compares
+		switch (category)
 		{
-			switch (category)
-			{
-				case C1:
-				case C2:
-					if (caddScaled > meanPathogenicCADDScore)
-					{
-						return new Judgment(Pathogenic, calibrated, gene,
-								"Variant CADD score of " + caddScaled + " is greater than " + meanPathogenicCADDScore
-										+ " in a gene for which CADD scores are informative.", null, null);
-					}
-					else if (caddScaled < meanPopulationCADDScore)
-					{
-						return new Judgment(Benign, calibrated, gene,
-								"Variant CADD score of " + caddScaled + " is less than " + meanPopulationCADDScore
-										+ " in a gene for which CADD scores are informative.", null, null);
-					}
-					//else: this rule does not classify apparently, just continue onto the next rules
-					break;
-				case C3:
-				case C4:
-				case C5:
-					if (caddScaled > spec95thPerCADDThreshold)
-					{
-						return new Judgment(Pathogenic, calibrated, gene,
-								"Variant CADD score of " + caddScaled + " is greater than " + spec95thPerCADDThreshold
-										+ " for this gene.", null, null);
-					}
-					else if (caddScaled < sens95thPerCADDThreshold)
-					{
-						return new Judgment(Benign, calibrated, gene,
-								"Variant CADD score of " + caddScaled + " is less than " + sens95thPerCADDThreshold
-										+ " for this gene.", null, null);
-					}
-					//else: this rule does not classify apparently, just continue onto the next rules
-					break;
-			}
+			case C1:
+			case C2:
+				if (caddScaled > thresholds.getMeanPathogenicCADDScore(geneIndex))
+				{
+					return GavinVerdict.CADD_GREATER_THAN_MEAN_PATHOGENIC;
+				}
+				else if (caddScaled < thresholds.getMeanPopulationCADDScore(geneIndex))
+				{
+					return GavinVerdict.CADD_LESS_THAN_MEAN_POPULATION;
+				}
+				//else: this rule does not classify apparently, just continue onto the next rules
+				break;
+			case C3:
+			case C4:
+			case C5:
+				if (caddScaled > thresholds.getSpec95thPerCADDThreshold(geneIndex))
+				{
+					return GavinVerdict.CADD_GREATER_THAN_SPEC95TH;
+				}
+				else if (caddScaled < thresholds.getSens95thPerCADDThreshold(geneIndex))
+				{
+					return GavinVerdict.CADD_LESS_THAN_SENS95TH;
+				}
+				//else: this rule does not classify apparently, just continue onto the next rules
+				break;
 		}
 
 		// MAF-based classification, calibrated
-		if (pathoMAFThreshold != null && exacMAF > pathoMAFThreshold)
+		if (exacMAF > thresholds.getPathoMAFThreshold(geneIndex))
 		{
-			return new Judgment(Benign, calibrated, gene,
-					"Variant MAF of " + exacMAF + " is greater than " + pathoMAFThreshold + ".", null, null);
+			return GavinVerdict.MAF_GREATER_THAN_PATHOGENIC;
 		}
 
-		String mafReason = "the variant MAF of " + exacMAF + " is less than a MAF of " + pathoMAFThreshold + ".";
-
 		// Impact based classification, calibrated
 		if (impact != null)
 		{
 			if (category == I1 && impact == HIGH)
 			{
-				return new Judgment(Pathogenic, calibrated, gene,
-						"Variant is of high impact, while there are no known high impact variants in the population. Also, "
-								+ mafReason, null, null);
+				return GavinVerdict.HIGH_IMPACT;
 			}
 			else if (category == I2 && (impact == MODERATE || impact == HIGH))
 			{
-
-				return new Judgment(Pathogenic, calibrated, gene,
-						"Variant is of high/moderate impact, while there are no known high/moderate impact variants in the population. Also, "
-								+ mafReason, null, null);
+				return GavinVerdict.HIGH_MODERATE_IMPACT;
 			}
 			else if (category == I3 && (impact == LOW || impact == MODERATE || impact == HIGH))
 			{
-				return new Judgment(Pathogenic, calibrated, gene,
-						"Variant is of high/moderate/low impact, while there are no known high/moderate/low impact variants in the population. Also, "
-								+ mafReason, null, null);
+				return GavinVerdict.HIGH_MODERATE_LOW_IMPACT;
 			}
 			else if (impact == MODIFIER)
 			{
-				return new Judgment(Benign, calibrated, gene,
-						"Variant is of 'modifier' impact, and therefore unlikely to be pathogenic. However, "
-								+ mafReason, null, null);
+				return GavinVerdict.MODIFIER_IMPACT;
 			}
 		}
 
 		//if everything so far has failed, we can still fall back to the genome-wide method
-		return genomewideClassifyVariant(impact, caddScaled, exacMAF, gene, gavinCalibrations);
+		return genomewideClassify(impact, caddScaled, exacMAF, thresholds);
 	}
 
-	/**
-	 * @param impact
-	 * @param caddScaled
-	 * @param exacMAF
-	 * @param gene
-	 * @return
-	 */
-	public Judgment genomewideClassifyVariant(@Nullable Impact impact, Double caddScaled, Double exacMAF, String gene,
-			GavinCalibrations gavinCalibrations)
+	private GavinVerdict genomewideClassify(@Nullable Impact impact, double caddScaled, double exacMAF,
+			GavinThresholdTable thresholds)
 	{
-		exacMAF = exacMAF != null ? exacMAF : 0;
-		double caddThreshold = gavinCalibrations.getGenomewideCaddThreshold();
-		double mafThreshold = gavinCalibrations.getGenomewideMafThreshold();
-
-		if (exacMAF > mafThreshold)
+		exacMAF = getGenomewideMAF(exacMAF);
+		double caddThreshold = thresholds.getGenomewideCaddThreshold();
+		if (exacMAF > thresholds.getGenomewideMafThreshold())
 		{
-			return new Judgment(Benign, genomewide, gene,
-					"Variant MAF of " + exacMAF + " is not rare enough to generally be considered pathogenic.", null,
-					null);
+			return GavinVerdict.GENOMEWIDE_MAF_NOT_RARE;
 		}
 		if (impact != null && impact == MODIFIER)
 		{
-			return new Judgment(Benign, genomewide, gene,
-					"Variant is of 'modifier' impact, and therefore unlikely to be pathogenic.", null, null);
+			return GavinVerdict.GENOMEWIDE_MODIFIER_IMPACT;
 		}
 		else
 		{
-			if (caddScaled != null && caddScaled > caddThreshold)
+			if (caddScaled > caddThreshold)
 			{
-				return new Judgment(Pathogenic, genomewide, gene, "Variant MAF of " + exacMAF
-						+ " is rare enough to be potentially pathogenic and its CADD score of " + caddScaled
-						+ " is greater than a global threshold of " + caddThreshold + ".", null, null);
+				return GavinVerdict.GENOMEWIDE_CADD_GREATER_THAN_THRESHOLD;
 			}
-			else if (caddScaled != null && caddScaled <= caddThreshold)
+			else if (caddScaled <= caddThreshold)
 			{
-				return new Judgment(Benign, genomewide, gene,
-						"Variant CADD score of " + caddScaled + " is less than a global threshold of "
-								+ caddThreshold + ", although the variant MAF of " + exacMAF
-								+ " is rare enough to be potentially pathogenic.", null, null);
+				return GavinVerdict.GENOMEWIDE_CADD_LESS_THAN_THRESHOLD;
 			}
 			else
 			{
-				return new Judgment(Judgment.Classification.VOUS, Judgment.Method.genomewide, gene,
-						"Unable to classify variant as benign or pathogenic. The combination of " + impact
-								+ " impact, a CADD score of " + caddScaled + " and MAF of " + exacMAF + " in " + gene
-								+ " is inconclusive.", null, null);
+				return GavinVerdict.GENOMEWIDE_INCONCLUSIVE;
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Creates the judgment of a verdict, including its human-readable reason, for the same arguments that were passed
+	 * to {@link #classify}.
+	 */
+	public Judgment toJudgment(GavinVerdict verdict, @Nullable Impact impact, double caddScaled, double exacMAF,
+			String gene, GavinThresholdTable thresholds)
+	{
+		String reason;
+		int geneIndex = thresholds.getGeneIndex(gene);
+		switch (verdict)
+		{
+			case CADD_GREATER_THAN_MEAN_PATHOGENIC:
+				reason = "Variant CADD score of " + caddScaled + " is greater than "
+						+ thresholds.getMeanPathogenicCADDScore(geneIndex)
+						+ " in a gene for which CADD scores are informative.";
+				break;
+			case CADD_LESS_THAN_MEAN_POPULATION:
+				reason = "Variant CADD score of " + caddScaled + " is less than "
+						+ thresholds.getMeanPopulationCADDScore(geneIndex)
+						+ " in a gene for which CADD scores are informative.";
+				break;
+			case CADD_GREATER_THAN_SPEC95TH:
+				reason = "Variant CADD score of " + caddScaled + " is greater than "
+						+ thresholds.getSpec95thPerCADDThreshold(geneIndex) + " for this gene.";
+				break;
+			case CADD_LESS_THAN_SENS95TH:
+				reason = "Variant CADD score of " + caddScaled + " is less than "
+						+ thresholds.getSens95thPerCADDThreshold(geneIndex) + " for this gene.";
+				break;
+			case MAF_GREATER_THAN_PATHOGENIC:
+				reason = "Variant MAF of " + exacMAF + " is greater than " + thresholds.getPathoMAFThreshold(geneIndex)
+						+ ".";
+				break;
+			case HIGH_IMPACT:
+				reason = "Variant is of high impact, while there are no known high impact variants in the population. Also, "
+						+ getMafReason(exacMAF, thresholds.getPathoMAFThreshold(geneIndex));
+				break;
+			case HIGH_MODERATE_IMPACT:
+				reason = "Variant is of high/moderate impact, while there are no known high/moderate impact variants in the population. Also, "
+						+ getMafReason(exacMAF, thresholds.getPathoMAFThreshold(geneIndex));
+				break;
+			case HIGH_MODERATE_LOW_IMPACT:
+				reason = "Variant is of high/moderate/low impact, while there are no known high/moderate/low impact variants in the population. Also, "
+						+ getMafReason(exacMAF, thresholds.getPathoMAFThreshold(geneIndex));
+				break;
+			case MODIFIER_IMPACT:
+				reason = "Variant is of 'modifier' impact, and therefore unlikely to be pathogenic. However, "
+						+ getMafReason(exacMAF, thresholds.getPathoMAFThreshold(geneIndex));
+				break;
+			case GENOMEWIDE_MAF_NOT_RARE:
+				reason = "Variant MAF of " + getGenomewideMAF(exacMAF)
+						+ " is not rare enough to generally be considered pathogenic.";
+				break;
+			case GENOMEWIDE_MODIFIER_IMPACT:
+				reason = "Variant is of 'modifier' impact, and therefore unlikely to be pathogenic.";
+				break;
+			case GENOMEWIDE_CADD_GREATER_THAN_THRESHOLD:
+				reason = "Variant MAF of " + getGenomewideMAF(exacMAF)
+						+ " is rare enough to be potentially pathogenic and its CADD score of " + caddScaled
+						+ " is greater than a global threshold of " + thresholds.getGenomewideCaddThreshold() + ".";
+				break;
+			case GENOMEWIDE_CADD_LESS_THAN_THRESHOLD:
+				reason = "Variant CADD score of " + caddScaled + " is less than a global threshold of "
+						+ thresholds.getGenomewideCaddThreshold() + ", although the variant MAF of "
+						+ getGenomewideMAF(exacMAF) + " is rare enough to be potentially pathogenic.";
+				break;
+			case GENOMEWIDE_INCONCLUSIVE:
+				reason = "Unable to classify variant as benign or pathogenic. The combination of " + impact
+						+ " impact, a CADD score of " + format(caddScaled) + " and MAF of " + getGenomewideMAF(
+						exacMAF) + " in " + gene + " is inconclusive.";
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown GAVIN verdict " + verdict);
+		}
+		return new Judgment(verdict.getClassification(), verdict.getMethod(), gene, reason, null, null);
+	}
+
+	private static String getMafReason(double exacMAF, double pathoMAFThreshold)
+	{
+		return "the variant MAF of " + format(exacMAF) + " is less than a MAF of " + format(pathoMAFThreshold)
+				+ ".";
+	}
+
+	/**
+	 * the genomewide method considers a variant with an unknown MAF to be absent from the population
+	 */
+	private static double getGenomewideMAF(double exacMAF)
+	{
+		return !Double.isNaN(exacMAF) ? exacMAF : 0;
+	}
+
+	/**
+	 * @return the value as text or "null" for NaN, which is how unknown values are passed
+	 */
+	private static String format(double value)
+	{
+		return !Double.isNaN(value) ? Double.toString(value) : "null";
+	}
+}
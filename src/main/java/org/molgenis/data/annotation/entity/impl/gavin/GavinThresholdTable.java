@@ -0,0 +1,161 @@
+package org.molgenis.data.annotation.entity.impl.gavin;
+
+import org.molgenis.data.annotation.entity.impl.gavin.GavinEntry.Category;
+import org.molgenis.data.annotation.makervcf.structs.GavinCalibrations;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.molgenis.data.annotation.entity.impl.gavin.GavinAlgorithm.extraSensitivityFactor;
+
+/**
+ * Per-gene GAVIN thresholds with the extra sensitivity already applied, built once from the calibrations so that
+ * classifying a variant takes a single gene lookup and primitive comparisons only.
+ * <p>
+ * Missing thresholds are stored as NaN, which is neither greater nor less than any score, so a rule with a missing
+ * threshold does not classify.
+ */
+public class GavinThresholdTable
+{
+	private final GavinCalibrations gavinCalibrations;
+	private final Map<String, Integer> geneIndices;
+	private final Category[] categories;
+	private final double[] pathoMAFThresholds;
+	private final double[] meanPathogenicCADDScores;
+	private final double[] meanPopulationCADDScores;
+	private final double[] spec95thPerCADDThresholds;
+	private final double[] sens95thPerCADDThresholds;
+	private final double genomewideCaddThreshold;
+	private final double genomewideMafThreshold;
+
+	private GavinThresholdTable(GavinCalibrations gavinCalibrations, String[] genes, Category[] categories,
+			double[] pathoMAFThresholds, double[] meanPathogenicCADDScores, double[] meanPopulationCADDScores,
+			double[] spec95thPerCADDThresholds, double[] sens95thPerCADDThresholds)
+	{
+		this.gavinCalibrations = gavinCalibrations;
+		int nrGenes = genes.length;
+		this.geneIndices = new HashMap<>(nrGenes * 4 / 3 + 1);
+		this.categories = categories;
+		this.pathoMAFThresholds = pathoMAFThresholds;
+		this.meanPathogenicCADDScores = meanPathogenicCADDScores;
+		this.meanPopulationCADDScores = meanPopulationCADDScores;
+		this.spec95thPerCADDThresholds = spec95thPerCADDThresholds;
+		this.sens95thPerCADDThresholds = sens95thPerCADDThresholds;
+		this.genomewideCaddThreshold = gavinCalibrations.getGenomewideCaddThreshold();
+		this.genomewideMafThreshold = gavinCalibrations.getGenomewideMafThreshold();
+
+		for (int index = 0; index < nrGenes; ++index)
+		{
+			geneIndices.put(genes[index], index);
+			pathoMAFThresholds[index] = pathoMAFThresholds[index] * extraSensitivityFactor * 2;
+			meanPathogenicCADDScores[index] -= extraSensitivityFactor;
+			meanPopulationCADDScores[index] -= extraSensitivityFactor;
+			spec95thPerCADDThresholds[index] -= extraSensitivityFactor;
+			sens95thPerCADDThresholds[index] -= extraSensitivityFactor;
+		}
+	}
+
+	public static GavinThresholdTable create(GavinCalibrations gavinCalibrations)
+	{
+		Map<String, GavinEntry> geneToEntry = gavinCalibrations.getGavinEntries();
+		int nrGenes = geneToEntry.size();
+		String[] genes = new String[nrGenes];
+		Category[] categories = new Category[nrGenes];
+		double[] pathoMAFThresholds = new double[nrGenes];
+		double[] meanPathogenicCADDScores = new double[nrGenes];
+		double[] meanPopulationCADDScores = new double[nrGenes];
+		double[] spec95thPerCADDThresholds = new double[nrGenes];
+		double[] sens95thPerCADDThresholds = new double[nrGenes];
+
+		int index = 0;
+		for (Map.Entry<String, GavinEntry> entry : geneToEntry.entrySet())
+		{
+			GavinEntry gavinEntry = entry.getValue();
+			genes[index] = entry.getKey();
+			categories[index] = gavinEntry.getCategory();
+			pathoMAFThresholds[index] = toDouble(gavinEntry.getPathoMAFThreshold());
+			meanPathogenicCADDScores[index] = toDouble(gavinEntry.getMeanPathogenicCADDScore());
+			meanPopulationCADDScores[index] = toDouble(gavinEntry.getMeanPopulationCADDScore());
+			spec95thPerCADDThresholds[index] = toDouble(gavinEntry.getSpec95thPerCADDThreshold());
+			sens95thPerCADDThresholds[index] = toDouble(gavinEntry.getSens95thPerCADDThreshold());
+			++index;
+		}
+		return new GavinThresholdTable(gavinCalibrations, genes, categories, pathoMAFThresholds,
+				meanPathogenicCADDScores, meanPopulationCADDScores, spec95thPerCADDThresholds,
+				sens95thPerCADDThresholds);
+	}
+
+	/**
+	 * Creates the table from calibrated values that were already decoded, e.g. from a knowledge base bundle. The
+	 * arrays are indexed by gene, contain NaN for missing values and are taken over by the table.
+	 *
+	 * @param gavinCalibrations calibrations that the values were taken from
+	 */
+	public static GavinThresholdTable create(GavinCalibrations gavinCalibrations, String[] genes,
+			Category[] categories, double[] pathoMAFThresholds, double[] meanPathogenicCADDScores,
+			double[] meanPopulationCADDScores, double[] spec95thPerCADDThresholds, double[] sens95thPerCADDThresholds)
+	{
+		return new GavinThresholdTable(gavinCalibrations, genes, categories, pathoMAFThresholds,
+				meanPathogenicCADDScores, meanPopulationCADDScores, spec95thPerCADDThresholds,
+				sens95thPerCADDThresholds);
+	}
+
+	private static double toDouble(Double value)
+	{
+		return value != null ? value : Double.NaN;
+	}
+
+	public GavinCalibrations getGavinCalibrations()
+	{
+		return gavinCalibrations;
+	}
+
+	/**
+	 * @return index of the gene in this table or -1 if the gene was not calibrated
+	 */
+	public int getGeneIndex(String gene)
+	{
+		Integer geneIndex = geneIndices.get(gene);
+		return geneIndex != null ? geneIndex : -1;
+	}
+
+	public Category getCategory(int geneIndex)
+	{
+		return categories[geneIndex];
+	}
+
+	public double getPathoMAFThreshold(int geneIndex)
+	{
+		return pathoMAFThresholds[geneIndex];
+	}
+
+	public double getMeanPathogenicCADDScore(int geneIndex)
+	{
+		return meanPathogenicCADDScores[geneIndex];
+	}
+
+	public double getMeanPopulationCADDScore(int geneIndex)
+	{
+		return meanPopulationCADDScores[geneIndex];
+	}
+
+	public double getSpec95thPerCADDThreshold(int geneIndex)
+	{
+		return spec95thPerCADDThresholds[geneIndex];
+	}
+
+	public double getSens95thPerCADDThreshold(int geneIndex)
+	{
+		return sens95thPerCADDThresholds[geneIndex];
+	}
+
+	public double getGenomewideCaddThreshold()
+	{
+		return genomewideCaddThreshold;
+	}
+
+	public double getGenomewideMafThreshold()
+	{
+		return genomewideMafThreshold;
+	}
+}
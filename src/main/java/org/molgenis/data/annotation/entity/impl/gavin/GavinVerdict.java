@@ -0,0 +1,49 @@
+package org.molgenis.data.annotation.entity.impl.gavin;
+
+import org.molgenis.data.annotation.core.entity.impl.gavin.Judgment.Classification;
+import org.molgenis.data.annotation.core.entity.impl.gavin.Judgment.Method;
+
+import static org.molgenis.data.annotation.core.entity.impl.gavin.Judgment.Classification.*;
+import static org.molgenis.data.annotation.core.entity.impl.gavin.Judgment.Method.calibrated;
+import static org.molgenis.data.annotation.core.entity.impl.gavin.Judgment.Method.genomewide;
+
+/**
+ * GAVIN rule that classified a variant. The human-readable reason of a verdict is only generated when the verdict is
+ * turned into a judgment, see {@link GavinAlgorithm#toJudgment}.
+ */
+public enum GavinVerdict
+{
+	CADD_GREATER_THAN_MEAN_PATHOGENIC(Pathogenic, calibrated),
+	CADD_LESS_THAN_MEAN_POPULATION(Benign, calibrated),
+	CADD_GREATER_THAN_SPEC95TH(Pathogenic, calibrated),
+	CADD_LESS_THAN_SENS95TH(Benign, calibrated),
+	MAF_GREATER_THAN_PATHOGENIC(Benign, calibrated),
+	HIGH_IMPACT(Pathogenic, calibrated),
+	HIGH_MODERATE_IMPACT(Pathogenic, calibrated),
+	HIGH_MODERATE_LOW_IMPACT(Pathogenic, calibrated),
+	MODIFIER_IMPACT(Benign, calibrated),
+	GENOMEWIDE_MAF_NOT_RARE(Benign, genomewide),
+	GENOMEWIDE_MODIFIER_IMPACT(Benign, genomewide),
+	GENOMEWIDE_CADD_GREATER_THAN_THRESHOLD(Pathogenic, genomewide),
+	GENOMEWIDE_CADD_LESS_THAN_THRESHOLD(Benign, genomewide),
+	GENOMEWIDE_INCONCLUSIVE(VOUS, genomewide);
+
+	private final Classification classification;
+	private final Method method;
+
+	GavinVerdict(Classification classification, Method method)
+	{
+		this.classification = classification;
+		this.method = method;
+	}
+
+	public Classification getClassification()
+	{
+		return classification;
+	}
+
+	public Method getMethod()
+	{
+		return method;
+	}
+}
@@ -0,0 +1,122 @@
+package org.molgenis.data.annotation.entity.impl.gavin;
+
+import org.molgenis.data.annotation.core.entity.impl.snpeff.Impact;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least recently used cache of GAVIN verdicts keyed on the inputs that decide them: gene, impact, CADD score
+ * and MAF. Cohort VCFs contain the same combinations over and over, e.g. common variants or variants without a MAF.
+ * <p>
+ * Not thread safe, each thread needs its own cache.
+ */
+public class GavinVerdictCache
+{
+	private final GavinAlgorithm gavin;
+	private final GavinThresholdTable thresholds;
+	private final Map<Key, GavinVerdict> verdicts;
+	/**
+	 * reused to look up the verdicts, only copied into the cache on a miss
+	 */
+	private final Key probe;
+
+	private long nrHits;
+	private long nrMisses;
+
+	public GavinVerdictCache(GavinAlgorithm gavin, GavinThresholdTable thresholds, int maxSize)
+	{
+		if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1");
+		this.gavin = gavin;
+		this.thresholds = thresholds;
+		this.verdicts = new LinkedHashMap<Key, GavinVerdict>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, GavinVerdict> eldest)
+			{
+				return size() > maxSize;
+			}
+		};
+		this.probe = new Key();
+	}
+
+	/**
+	 * @see GavinAlgorithm#classify
+	 */
+	public GavinVerdict classify(@Nullable Impact impact, double caddScaled, double exacMAF, String gene)
+	{
+		probe.set(gene, impact, caddScaled, exacMAF);
+		GavinVerdict verdict = verdicts.get(probe);
+		if (verdict != null)
+		{
+			++nrHits;
+			return verdict;
+		}
+		++nrMisses;
+		verdict = gavin.classify(impact, caddScaled, exacMAF, gene, thresholds);
+		verdicts.put(probe.copy(), verdict);
+		return verdict;
+	}
+
+	public long getNrHits()
+	{
+		return nrHits;
+	}
+
+	public long getNrMisses()
+	{
+		return nrMisses;
+	}
+
+	public int size()
+	{
+		return verdicts.size();
+	}
+
+	private static class Key
+	{
+		private String gene;
+		private Impact impact;
+		private long caddScaledBits;
+		private long exacMAFBits;
+
+		void set(String gene, Impact impact, double caddScaled, double exacMAF)
+		{
+			this.gene = gene;
+			this.impact = impact;
+			this.caddScaledBits = Double.doubleToLongBits(caddScaled);
+			this.exacMAFBits = Double.doubleToLongBits(exacMAF);
+		}
+
+		Key copy()
+		{
+			Key key = new Key();
+			key.gene = gene;
+			key.impact = impact;
+			key.caddScaledBits = caddScaledBits;
+			key.exacMAFBits = exacMAFBits;
+			return key;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Key key = (Key) o;
+			return caddScaledBits == key.caddScaledBits && exacMAFBits == key.exacMAFBits && impact == key.impact
+					&& gene.equals(key.gene);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = gene.hashCode();
+			result = 31 * result + (impact != null ? impact.hashCode() : 0);
+			result = 31 * result + Long.hashCode(caddScaledBits);
+			result = 31 * result + Long.hashCode(exacMAFBits);
+			return result;
+		}
+	}
+}
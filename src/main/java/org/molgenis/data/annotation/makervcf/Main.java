@@ -3,7 +3,13 @@ package org.molgenis.data.annotation.makervcf;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import org.apache.commons.lang.StringUtils;
+import org.molgenis.data.annotation.makervcf.bundle.KnowledgeBaseBundleWriter;
+import org.molgenis.data.annotation.makervcf.util.CaddScoreStore;
+import org.molgenis.data.annotation.makervcf.util.CaddScoreStoreWriter;
 import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores.Mode;
+import org.molgenis.data.annotation.makervcf.util.PrescoredCaddScoreLookup;
+import org.molgenis.data.annotation.makervcf.util.VariantLookup;
+import org.molgenis.vcf.TabixVcfReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +52,15 @@ public class Main
 	public static final String SPLIT_RLV_FIELD = "separate_fields";
 	public static final String KEEP_ALL_VARIANTS = "keep_all_variants";
 	public static final String INCLUDE_SAMPLES = "include_samples";
+	public static final String LOOKUP = "lookup";
+	public static final String BUNDLE = "bundle";
+	public static final String COMPILE_BUNDLE = "compile_bundle";
+	public static final String COMPILE_CADD = "compile_cadd";
+	public static final String THREADS = "threads";
+	public static final String PIPELINED = "pipelined";
+	public static final String VERDICT_CACHE = "verdict_cache";
+	public static final String CLASSIFICATION_THREADS = "classification_threads";
+	public static final String GENE_THREADS = "gene_threads";
 
 	public static void main(String[] args) throws Exception
 	{
@@ -64,15 +79,21 @@ public class Main
 		parser.acceptsAll(asList("p", REPPATHO), "VCF file containing reported pathogenic/likely pathogenic variants").withRequiredArg().ofType(File.class);
 		parser.acceptsAll(asList("d", CGD), "CGD file").withRequiredArg().ofType(File.class);
 		parser.acceptsAll(asList("f", FDR), "Gene-specific FDR file").withRequiredArg().ofType(File.class);
-		parser.acceptsAll(asList("c", CADD), "Input/output CADD missing annotations")
+		parser.acceptsAll(asList("c", CADD),
+				"Input/output CADD missing annotations (output is bgzipped if the name ends with .gz), or for mode "
+						+ Mode.PRESCORED.toString()
+						+ " a tabix indexed prescored CADD file or directory with these files")
 			  .withRequiredArg()
 			  .ofType(File.class);
 		parser.acceptsAll(asList("l", LAB), "VCF file with custom lab specific variant classifications")
 			  .withOptionalArg()
 			  .ofType(File.class);
 		parser.acceptsAll(asList("m", MODE),
-				"Create or use CADD file for missing annotations, either " + Mode.ANALYSIS.toString() + " or "
-						+ Mode.CREATEFILEFORCADD.toString()).withRequiredArg().ofType(String.class);
+				"Create or use CADD file for missing annotations, either " + Mode.ANALYSIS.toString() + ", "
+						+ Mode.CREATEFILEFORCADD.toString() + " or " + Mode.PRESCORED.toString()
+						+ " (use local prescored CADD files, no webservice needed)")
+			  .withRequiredArg()
+			  .ofType(String.class);
 		parser.acceptsAll(asList("v", VERBOSE),
 				"Verbally express what is happening underneath the programmatic hood.");
 		parser.acceptsAll(asList("r", REPLACE),
@@ -85,6 +106,46 @@ public class Main
 		parser.acceptsAll(asList("k", KEEP_ALL_VARIANTS), "Do not filter the non relevant variants, return all variants from the input");
 		parser.acceptsAll(asList("s", INCLUDE_SAMPLES), "Include samples is output");
 		parser.acceptsAll(asList("q", SPLIT_RLV_FIELD), "Create separate INFO fields for every part of the RLV information");
+		parser.acceptsAll(asList("u", LOOKUP),
+				"Lookup of reported pathogenic and lab variants and of CADD scores (-c), either "
+						+ VariantLookup.Mode.MEMORY.toString()
+						+ " (default), " + VariantLookup.Mode.TABIX.toString()
+						+ " (query regions using the .tbi index next to the bgzipped VCF) or "
+						+ VariantLookup.Mode.STREAMING.toString()
+						+ " (merge-join with the position sorted VCF and CADD file in constant memory)")
+			  .withRequiredArg()
+			  .ofType(String.class);
+		parser.acceptsAll(asList("b", BUNDLE),
+				"Compiled knowledge base bundle, used instead of the GAVIN (-g), CGD (-d) and FDR (-f) files")
+			  .withRequiredArg()
+			  .ofType(File.class);
+		parser.acceptsAll(asList("t", THREADS),
+				"Number of threads, each processing consecutive chromosomes of the input (default 1)")
+			  .withRequiredArg()
+			  .ofType(Integer.class);
+		parser.accepts(PIPELINED,
+				"Run parsing and classification, genotype matching, gene-based processing and writing of the output each on their own thread");
+		parser.accepts(VERDICT_CACHE,
+				"Cache the GAVIN classifications of up to this many distinct combinations of gene, impact, CADD score and MAF per thread (default 0, no cache)")
+			  .withRequiredArg()
+			  .ofType(Integer.class);
+		parser.accepts(CLASSIFICATION_THREADS,
+				"Number of threads that classify batches of records, per thread of -t (default 1), requires lookup mode "
+						+ VariantLookup.Mode.MEMORY.toString())
+			  .withRequiredArg()
+			  .ofType(Integer.class);
+		parser.accepts(GENE_THREADS,
+				"Number of threads that run compound heterozygous, trio, phasing and FDR processing on batches of genes, per thread of -t (default 1)")
+			  .withRequiredArg()
+			  .ofType(Integer.class);
+		parser.accepts(COMPILE_BUNDLE,
+				"Supporting tool. Compile the GAVIN (-g), CGD (-d) and FDR (-f) files into a knowledge base bundle for use with -b")
+			  .withRequiredArg()
+			  .ofType(File.class);
+		parser.accepts(COMPILE_CADD,
+				"Supporting tool. Convert the CADD webservice output (-c) into a binary CADD score store for use with -c")
+			  .withRequiredArg()
+			  .ofType(File.class);
 
 		return parser;
 	}
@@ -137,9 +198,11 @@ public class Main
 
 		System.out.println(appTitle);
 
-		if ((options.has(RESTORE) && options.has(INPUT) && options.has(OUTPUT)) || (options.has(INPUT)
-				&& options.has(OUTPUT) && options.has(GAVIN) && options.has(REPPATHO) && options.has(CGD)
-				&& options.has(FDR) && options.has(CADD) && options.has(MODE)))
+		boolean hasKnowledgeFiles = options.has(GAVIN) && options.has(CGD) && options.has(FDR);
+		if ((options.has(RESTORE) && options.has(INPUT) && options.has(OUTPUT)) || (options.has(COMPILE_BUNDLE)
+				&& hasKnowledgeFiles) || (options.has(COMPILE_CADD) && options.has(CADD)) || (options.has(INPUT)
+				&& options.has(OUTPUT) && (hasKnowledgeFiles || options.has(BUNDLE)) && options.has(REPPATHO)
+				&& options.has(CADD) && options.has(MODE)))
 		{
 			System.out.println("Arguments OK.");
 		}
@@ -165,6 +228,41 @@ public class Main
 			return;
 		}
 
+		/*************
+		 "Compile bundle mode" where we write the GAVIN, CGD and FDR files to a knowledge base bundle
+		 */
+		if (options.has(COMPILE_BUNDLE))
+		{
+			File compileBundleFile = (File) options.valueOf(COMPILE_BUNDLE);
+			if (compileBundleFile.exists() && !options.has(REPLACE))
+			{
+				System.out.println(
+						"Knowledge base bundle already exists, please either enter a different name or use the '-r' option to overwrite the bundle.");
+				return;
+			}
+			KnowledgeBaseBundleWriter.compile((File) options.valueOf(GAVIN), (File) options.valueOf(CGD),
+					(File) options.valueOf(FDR), compileBundleFile);
+			System.out.println("Knowledge base bundle written to " + compileBundleFile.getAbsolutePath());
+			return;
+		}
+
+		/*************
+		 "Compile CADD mode" where we convert the CADD webservice output to a CADD score store
+		 */
+		if (options.has(COMPILE_CADD))
+		{
+			File compileCaddFile = (File) options.valueOf(COMPILE_CADD);
+			if (compileCaddFile.exists() && !options.has(REPLACE))
+			{
+				System.out.println(
+						"CADD score store already exists, please either enter a different name or use the '-r' option to overwrite the store.");
+				return;
+			}
+			CaddScoreStoreWriter.convert((File) options.valueOf(CADD), compileCaddFile);
+			System.out.println("CADD score store written to " + compileCaddFile.getAbsolutePath());
+			return;
+		}
+
 		/*************
 		 Regular mode
 		 */
@@ -206,16 +304,37 @@ public class Main
 		/*
 		  Check all kinds of files you need
 		 */
-		File gavinFile = (File) options.valueOf(GAVIN);
-		if (!gavinFile.exists())
+		File bundleFile = null;
+		File gavinFile = null;
+		File cgdFile = null;
+		File fdrFile = null;
+		if (options.has(BUNDLE))
 		{
-			System.out.println("GAVIN calibration file not found at " + gavinFile);
-			return;
+			bundleFile = (File) options.valueOf(BUNDLE);
+			if (!bundleFile.exists())
+			{
+				System.out.println("Knowledge base bundle not found at " + bundleFile);
+				return;
+			}
+			else if (bundleFile.isDirectory())
+			{
+				System.out.println("Knowledge base bundle location is a directory, not a file!");
+				return;
+			}
 		}
-		else if (gavinFile.isDirectory())
+		else
 		{
-			System.out.println("GAVIN calibration file location is a directory, not a file!");
-			return;
+			gavinFile = (File) options.valueOf(GAVIN);
+			if (!gavinFile.exists())
+			{
+				System.out.println("GAVIN calibration file not found at " + gavinFile);
+				return;
+			}
+			else if (gavinFile.isDirectory())
+			{
+				System.out.println("GAVIN calibration file location is a directory, not a file!");
+				return;
+			}
 		}
 
 		File repPathoFile = (File) options.valueOf(REPPATHO);
@@ -230,28 +349,31 @@ public class Main
 			return;
 		}
 
-		File cgdFile = (File) options.valueOf(CGD);
-		if (!cgdFile.exists())
-		{
-			System.out.println("CGD file not found at " + cgdFile);
-			return;
-		}
-		else if (cgdFile.isDirectory())
+		if (bundleFile == null)
 		{
-			System.out.println("CGD file location is a directory, not a file!");
-			return;
-		}
+			cgdFile = (File) options.valueOf(CGD);
+			if (!cgdFile.exists())
+			{
+				System.out.println("CGD file not found at " + cgdFile);
+				return;
+			}
+			else if (cgdFile.isDirectory())
+			{
+				System.out.println("CGD file location is a directory, not a file!");
+				return;
+			}
 
-		File fdrFile = (File) options.valueOf(FDR);
-		if (!fdrFile.exists())
-		{
-			System.out.println("FDR file not found at " + fdrFile);
-			return;
-		}
-		else if (fdrFile.isDirectory())
-		{
-			System.out.println("FDR file location is a directory, not a file!");
-			return;
+			fdrFile = (File) options.valueOf(FDR);
+			if (!fdrFile.exists())
+			{
+				System.out.println("FDR file not found at " + fdrFile);
+				return;
+			}
+			else if (fdrFile.isDirectory())
+			{
+				System.out.println("FDR file location is a directory, not a file!");
+				return;
+			}
 		}
 
 		/*
@@ -300,14 +422,23 @@ public class Main
 			}
 			else
 			{
-				if (!caddFile.getName().endsWith(".tsv"))
+				if (!caddFile.getName().endsWith(".tsv") && !CaddScoreStore.isStore(caddFile))
 				{
 					System.out.println(
-							"CADD intermediate file location extension expected to end in *.tsv, do not supply a gzipped file");
+							"CADD intermediate file location extension expected to end in *.tsv or be a CADD score store, do not supply a gzipped file");
 					return;
 				}
 			}
 		}
+		else if (mode == Mode.PRESCORED)
+		{
+			if (PrescoredCaddScoreLookup.getPrescoredFiles(caddFile).isEmpty())
+			{
+				System.out.println(
+						"No bgzipped prescored CADD files with a tabix index (.tbi) found at " + caddFile.getAbsolutePath());
+				return;
+			}
+		}
 		else if (mode == Mode.CREATEFILEFORCADD && caddFile.exists())
 			{
 				if (options.has(REPLACE))
@@ -323,6 +454,98 @@ public class Main
 				}
 		}
 
+		/*
+		  Check lookup mode in combination with tabix indices
+		 */
+		VariantLookup.Mode lookupMode = VariantLookup.Mode.MEMORY;
+		if (options.has(LOOKUP))
+		{
+			String lookupModeString = (String) options.valueOf(LOOKUP);
+			if (!isValidEnum(VariantLookup.Mode.class, lookupModeString))
+			{
+				System.out.println(
+						"Lookup must be one of the following: " + Arrays.toString(VariantLookup.Mode.values()));
+				return;
+			}
+			lookupMode = VariantLookup.Mode.valueOf(lookupModeString);
+		}
+		if (lookupMode == VariantLookup.Mode.TABIX)
+		{
+			if (!TabixVcfReader.getIndexFile(repPathoFile).exists())
+			{
+				System.out.println("Tabix index for VCF file (containing reported LP/P variants) not found at "
+						+ TabixVcfReader.getIndexFile(repPathoFile));
+				return;
+			}
+			if (labVariants != null && !TabixVcfReader.getIndexFile(labVariants).exists())
+			{
+				System.out.println("Tabix index for VCF file with lab specific variant classifications not found at "
+						+ TabixVcfReader.getIndexFile(labVariants));
+				return;
+			}
+		}
+
+		/*
+		  Check number of threads
+		 */
+		int threads = 1;
+		if (options.has(THREADS))
+		{
+			threads = (Integer) options.valueOf(THREADS);
+			if (threads < 1)
+			{
+				System.out.println("Number of threads must be at least 1");
+				return;
+			}
+		}
+
+		/*
+		  Check number of classification threads
+		 */
+		int classificationThreads = 1;
+		if (options.has(CLASSIFICATION_THREADS))
+		{
+			classificationThreads = (Integer) options.valueOf(CLASSIFICATION_THREADS);
+			if (classificationThreads < 1)
+			{
+				System.out.println("Number of classification threads must be at least 1");
+				return;
+			}
+			if (classificationThreads > 1 && lookupMode != VariantLookup.Mode.MEMORY)
+			{
+				System.out.println("Classifying on multiple threads requires lookup mode " + VariantLookup.Mode.MEMORY);
+				return;
+			}
+		}
+
+		/*
+		  Check number of gene threads
+		 */
+		int geneThreads = 1;
+		if (options.has(GENE_THREADS))
+		{
+			geneThreads = (Integer) options.valueOf(GENE_THREADS);
+			if (geneThreads < 1)
+			{
+				System.out.println("Number of gene threads must be at least 1");
+				return;
+			}
+		}
+
+		/*
+		  Check size of the GAVIN verdict cache
+		 */
+		int verdictCacheSize = 0;
+		if (options.has(VERDICT_CACHE))
+		{
+			verdictCacheSize = (Integer) options.valueOf(VERDICT_CACHE);
+			if (verdictCacheSize < 0)
+			{
+				System.out.println("Size of the GAVIN verdict cache must not be negative");
+				return;
+			}
+		}
+
 		/*
 		  Verbose
 		 */
@@ -349,13 +572,39 @@ public class Main
 			includeSamples = true;
 		}
 
+		boolean pipelined = false;
+		if (options.has(PIPELINED))
+		{
+			pipelined = true;
+		}
+
 		/*
 		  Everything OK, start pipeline
 		 */
 		LOG.info("Starting..");
-		Pipeline pipeline = new Pipeline( version,  cmdString,  splitRlvField,  keepAllVariants,
-		 mode,  inputVcfFile,  gavinFile,  repPathoFile,  cgdFile,
-			 caddFile,  fdrFile,  outputVCFFile,  labVariants, includeSamples);
+		Pipeline pipeline = new Pipeline(PipelineSettings.builder()
+														 .setVersion(version)
+														 .setCmdString(cmdString)
+														 .setSplitRlvField(splitRlvField)
+														 .setKeepAllVariants(keepAllVariants)
+														 .setMode(mode)
+														 .setInputVcfFile(inputVcfFile)
+														 .setGavinFile(gavinFile)
+														 .setClinvarFile(repPathoFile)
+														 .setCgdFile(cgdFile)
+														 .setCaddFile(caddFile)
+														 .setFdrFile(fdrFile)
+														 .setOutputVcfFile(outputVCFFile)
+														 .setLabVariants(labVariants)
+														 .setIncludeSamples(includeSamples)
+														 .setLookupMode(lookupMode)
+														 .setBundleFile(bundleFile)
+														 .setThreads(threads)
+														 .setPipelined(pipelined)
+														 .setVerdictCacheSize(verdictCacheSize)
+														 .setClassificationThreads(classificationThreads)
+														 .setGeneThreads(geneThreads)
+														 .build());
 		pipeline.start();
 		LOG.info("..done!");
 	}
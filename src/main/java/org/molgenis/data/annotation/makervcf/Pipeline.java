@@ -1,101 +1,384 @@
 package org.molgenis.data.annotation.makervcf;
 
+import org.molgenis.calibratecadd.support.GavinUtils;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinThresholdTable;
+import org.molgenis.data.annotation.makervcf.bundle.KnowledgeBaseBundle;
+import org.molgenis.data.annotation.makervcf.genestream.core.CompositeGeneStream;
 import org.molgenis.data.annotation.makervcf.genestream.core.ConvertBackToPositionalStream;
 import org.molgenis.data.annotation.makervcf.genestream.core.ConvertToGeneStream;
+import org.molgenis.data.annotation.makervcf.genestream.core.PerGenePlugin;
 import org.molgenis.data.annotation.makervcf.genestream.impl.*;
 import org.molgenis.data.annotation.makervcf.positionalstream.*;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
 import org.molgenis.data.annotation.makervcf.structs.TrioData;
+import org.molgenis.data.annotation.makervcf.util.BatchQueueIterator;
 import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores;
+import org.molgenis.data.annotation.makervcf.util.LabVariants;
+import org.molgenis.data.annotation.makervcf.util.ReportedPathogenic;
+import org.molgenis.data.annotation.makervcf.util.VariantLookup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by joeri on 7/18/16.
  */
 public class Pipeline
 {
-	private final String version;
-	private final String cmdString;
-	private final boolean splitRlvField;
-	private final boolean keepAllVariants;
-	private final HandleMissingCaddScores.Mode mode;
-
-	private final File inputVcfFile;
-	private final File gavinFile;
-	private final File clinvarFile;
-	private final File cgdFile;
-	private final File caddFile;
-	private final File FDRfile;
-	private final File outputVcfFile;
-	private final File labVariants;
-	private final boolean includeSamples;
+	private static final Logger LOG = LoggerFactory.getLogger(Pipeline.class);
+
+	private final PipelineSettings settings;
 
 	public Pipeline(String version, String cmdString, boolean splitRlvField, boolean keepAllVariants,
 			HandleMissingCaddScores.Mode mode, File inputVcfFile, File gavinFile, File clinvarFile, File cgdFile,
 			File caddFile, File FDRfile, File outputVcfFile, File labVariants, boolean includeSamples)
 	{
-		this.version = version;
-		this.cmdString = cmdString;
-		this.splitRlvField = splitRlvField;
-		this.keepAllVariants = keepAllVariants;
-		this.mode = mode;
-		this.inputVcfFile = inputVcfFile;
-		this.gavinFile = gavinFile;
-		this.clinvarFile = clinvarFile;
-		this.cgdFile = cgdFile;
-		this.caddFile = caddFile;
-		this.FDRfile = FDRfile;
-		this.outputVcfFile = outputVcfFile;
-		this.labVariants = labVariants;
-		this.includeSamples = includeSamples;
+		this(PipelineSettings.builder()
+							 .setVersion(version)
+							 .setCmdString(cmdString)
+							 .setSplitRlvField(splitRlvField)
+							 .setKeepAllVariants(keepAllVariants)
+							 .setMode(mode)
+							 .setInputVcfFile(inputVcfFile)
+							 .setGavinFile(gavinFile)
+							 .setClinvarFile(clinvarFile)
+							 .setCgdFile(cgdFile)
+							 .setCaddFile(caddFile)
+							 .setFdrFile(FDRfile)
+							 .setOutputVcfFile(outputVcfFile)
+							 .setLabVariants(labVariants)
+							 .setIncludeSamples(includeSamples)
+							 .build());
+	}
+
+	public Pipeline(PipelineSettings settings)
+	{
+		this.settings = settings;
 	}
 
 	public void start() throws Exception
 	{
 		//get trios and parents if applicable
-		TrioData td = TrioFilter.getTrioData(inputVcfFile);
+		TrioData td = TrioFilter.getTrioData(settings.inputVcfFile());
+
+		//if available: use the compiled knowledge base bundle instead of parsing the GAVIN, CGD and FDR files
+		File bundleFile = settings.bundleFile();
+		KnowledgeBaseBundle bundle = bundleFile != null ? KnowledgeBaseBundle.open(bundleFile) : null;
+		GavinThresholdTable gavinThresholds = bundle != null ? bundle.getGavinThresholdTable() :
+				GavinThresholdTable.create(GavinUtils.getGeneToEntry(settings.gavinFile()));
+
+		if (settings.threads() > 1)
+		{
+			if (GavinUtils.canSeekChromosomes(settings.inputVcfFile()))
+			{
+				startSharded(td, bundle, gavinThresholds);
+				return;
+			}
+			LOG.warn("[Pipeline] Input VCF file is compressed without tabix index, processing it in a single pass "
+					+ "instead of in shards");
+		}
+
+		//initial discovery of any suspected/likely pathogenic variant, lookups are closed once output is written
+		VariantLookup.Mode lookupMode = settings.lookupMode();
+		File labVariants = settings.labVariants();
+		try (ReportedPathogenic repPatho = new ReportedPathogenic(settings.clinvarFile(), lookupMode);
+				LabVariants lab = labVariants != null ? new LabVariants(labVariants, lookupMode) : null;
+				HandleMissingCaddScores hmcs = new HandleMissingCaddScores(settings.mode(), settings.caddFile(),
+						lookupMode);
+				DiscoverRelevantVariants discover = new DiscoverRelevantVariants(settings.inputVcfFile(),
+						gavinThresholds, repPatho, lab, hmcs, createDiscoverSettings(null, null)))
+		{
+			List<Closeable> stages = new ArrayList<>();
+			try
+			{
+				Iterator<GavinRecord> rv10 = process(discover.findRelevantVariants(), td, bundle, stages);
+
+				//write Entities output VCF file
+				new WriteToRVCF().writeRVCF(rv10, settings.outputVcfFile(), settings.inputVcfFile(),
+						settings.version(), settings.cmdString(), true, settings.splitRlvField(),
+						settings.includeSamples());
+			}
+			finally
+			{
+				closeAll(stages);
+			}
+		}
+	}
 
-		//initial discovery of any suspected/likely pathogenic variant
-		DiscoverRelevantVariants discover = new DiscoverRelevantVariants(inputVcfFile, gavinFile, clinvarFile, caddFile,
-				labVariants, mode, keepAllVariants);
-		Iterator<GavinRecord> rv1 = discover.findRelevantVariants();
+	/**
+	 * Runs the whole chain on consecutive chromosomes of the input on multiple threads, each shard writes to a
+	 * temporary RVCF (and CADD) file which are concatenated in input order.
+	 */
+	private void startSharded(TrioData td, KnowledgeBaseBundle bundle, GavinThresholdTable gavinThresholds)
+			throws Exception
+	{
+		int threads = settings.threads();
+		//uncompressed input: each shard starts reading at the byte offset of its first chromosome
+		Map<String, Long> chromosomeToOffset = new HashMap<>();
+		List<List<String>> shards = createShards(
+				GavinUtils.countRecordsPerChromosome(settings.inputVcfFile(), chromosomeToOffset), threads);
+		LOG.info("[Pipeline] Processing {} shards on {} threads", shards.size(), threads);
+
+		//lookups in memory are read-only and shared by all shards, the other lookups keep a cursor per shard
+		HandleMissingCaddScores.Mode mode = settings.mode();
+		VariantLookup.Mode lookupMode = settings.lookupMode();
+		File clinvarFile = settings.clinvarFile();
+		File labVariants = settings.labVariants();
+		File caddFile = settings.caddFile();
+		boolean createFileForCadd = mode == HandleMissingCaddScores.Mode.CREATEFILEFORCADD;
+		ReportedPathogenic sharedRepPatho =
+				lookupMode == VariantLookup.Mode.MEMORY ? new ReportedPathogenic(clinvarFile, lookupMode) : null;
+		LabVariants sharedLab = labVariants != null && lookupMode == VariantLookup.Mode.MEMORY ? new LabVariants(
+				labVariants, lookupMode) : null;
+		HandleMissingCaddScores sharedHmcs =
+				mode == HandleMissingCaddScores.Mode.ANALYSIS && lookupMode != VariantLookup.Mode.STREAMING
+				? new HandleMissingCaddScores(mode, caddFile, lookupMode) : null;
+
+		List<File> shardRvcfFiles = new ArrayList<>();
+		List<File> shardCaddFiles = new ArrayList<>();
+		List<Future<?>> futures = new ArrayList<>();
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		try
+		{
+			for (List<String> chromosomes : shards)
+			{
+				File shardRvcfFile = File.createTempFile("gavin-plus-shard", ".vcf");
+				shardRvcfFiles.add(shardRvcfFile);
+				File shardCaddFile = createFileForCadd ? File.createTempFile("gavin-plus-shard", ".tsv") : null;
+				shardCaddFiles.add(shardCaddFile);
+
+				futures.add(executorService.submit(() ->
+				{
+					ReportedPathogenic repPatho =
+							sharedRepPatho != null ? sharedRepPatho : new ReportedPathogenic(clinvarFile, lookupMode);
+					LabVariants lab = labVariants == null ? null : sharedLab != null ? sharedLab : new LabVariants(
+							labVariants, lookupMode);
+					HandleMissingCaddScores hmcs = sharedHmcs != null ? sharedHmcs : new HandleMissingCaddScores(mode,
+							createFileForCadd ? shardCaddFile : caddFile, lookupMode);
+
+					//the lookups of this shard are closed after discovery, which is closed after the stages
+					try (Closeable shardRepPatho = repPatho != sharedRepPatho ? repPatho : null;
+							Closeable shardLab = lab != sharedLab ? lab : null;
+							Closeable shardHmcs = hmcs != sharedHmcs ? hmcs : null;
+							DiscoverRelevantVariants discover = new DiscoverRelevantVariants(settings.inputVcfFile(),
+									gavinThresholds, repPatho, lab, hmcs,
+									createDiscoverSettings(chromosomes, chromosomeToOffset.get(chromosomes.get(0)))))
+					{
+						List<Closeable> stages = new ArrayList<>();
+						try
+						{
+							Iterator<GavinRecord> rv10 = process(discover.findRelevantVariants(), td, bundle, stages);
+							new WriteToRVCF().writeRVCF(rv10, shardRvcfFile, settings.inputVcfFile(),
+									settings.version(), settings.cmdString(), true, settings.splitRlvField(),
+									settings.includeSamples());
+						}
+						finally
+						{
+							closeAll(stages);
+						}
+					}
+					return null;
+				}));
+			}
+
+			//write shards as soon as they and all shards before them are done
+			Iterator<Future<?>> futureIterator = futures.iterator();
+			Iterator<File> shardRvcfFileIterator = shardRvcfFiles.iterator();
+			Iterator<File> doneShardRvcfFiles = new Iterator<File>()
+			{
+				@Override
+				public boolean hasNext()
+				{
+					return shardRvcfFileIterator.hasNext();
+				}
+
+				@Override
+				public File next()
+				{
+					awaitShard(futureIterator.next());
+					return shardRvcfFileIterator.next();
+				}
+			};
+			new WriteToRVCF().concatRVCF(doneShardRvcfFiles, settings.outputVcfFile(), settings.inputVcfFile(),
+					settings.version(), settings.cmdString(), settings.splitRlvField(), settings.includeSamples());
+
+			if (createFileForCadd)
+			{
+				try (OutputStream outputStream = HandleMissingCaddScores.createOutputStream(caddFile))
+				{
+					for (File shardCaddFile : shardCaddFiles)
+					{
+						Files.copy(shardCaddFile.toPath(), outputStream);
+					}
+				}
+			}
+		}
+		finally
+		{
+			executorService.shutdownNow();
+			try (Closeable repPatho = sharedRepPatho; Closeable lab = sharedLab; Closeable hmcs = sharedHmcs)
+			{
+				// closes the lookups shared by the shards
+			}
+			shardRvcfFiles.forEach(File::delete);
+			shardCaddFiles.stream().filter(Objects::nonNull).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * @param chromosomes chromosomes of the shard or null for all chromosomes
+	 */
+	private DiscoverRelevantVariantsSettings createDiscoverSettings(List<String> chromosomes, Long offset)
+	{
+		return DiscoverRelevantVariantsSettings.builder()
+											   .setChromosomes(chromosomes)
+											   .setOffset(offset)
+											   .setKeepAllVariants(settings.keepAllVariants())
+											   .setVerdictCacheSize(settings.verdictCacheSize())
+											   .setClassificationThreads(settings.classificationThreads())
+											   .build();
+	}
+
+	private static void awaitShard(Future<?> future)
+	{
+		try
+		{
+			future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Groups consecutive chromosomes in shards of roughly equal numbers of records, so that many small contigs do not
+	 * each require a pass over the input.
+	 */
+	static List<List<String>> createShards(LinkedHashMap<String, Long> chromosomeToCount, int nrShards)
+	{
+		long nrRecords = 0;
+		for (long count : chromosomeToCount.values())
+		{
+			nrRecords += count;
+		}
+		long nrRecordsPerShard = Math.max(1, (nrRecords + nrShards - 1) / nrShards);
+
+		List<List<String>> shards = new ArrayList<>();
+		List<String> shard = new ArrayList<>();
+		long nrShardRecords = 0;
+		for (Map.Entry<String, Long> entry : chromosomeToCount.entrySet())
+		{
+			shard.add(entry.getKey());
+			nrShardRecords += entry.getValue();
+			if (nrShardRecords >= nrRecordsPerShard)
+			{
+				shards.add(shard);
+				shard = new ArrayList<>();
+				nrShardRecords = 0;
+			}
+		}
+		if (!shard.isEmpty())
+		{
+			shards.add(shard);
+		}
+		return shards;
+	}
+
+	/**
+	 * @param stages collects the stages that need to be closed when the returned iterator is not fully read
+	 */
+	private Iterator<GavinRecord> process(Iterator<GavinRecord> rv1, TrioData td, KnowledgeBaseBundle bundle,
+			List<Closeable> stages) throws Exception
+	{
+		//if pipelined: parse and classify on their own thread
+		rv1 = stage(rv1, "discover", stages);
 
 		//MAF filter to control false positives / non relevant variants in ClinVar
-		Iterator<GavinRecord> rv2 = new MAFFilter(rv1, keepAllVariants).go();
+		Iterator<GavinRecord> rv2 = new MAFFilter(rv1, settings.keepAllVariants()).go();
 
 		//match sample genotype with known disease inheritance mode
-		Iterator<GavinRecord> rv3 = new MatchVariantsToGenotypeAndInheritance(rv2, cgdFile, td.getParents()).go();
+		MatchVariantsToGenotypeAndInheritance matchVariants = bundle != null ?
+				new MatchVariantsToGenotypeAndInheritance(rv2, bundle.getCgd(), td.getParents()) :
+				new MatchVariantsToGenotypeAndInheritance(rv2, settings.cgdFile(), td.getParents());
+		//if pipelined: filter and match genotypes on their own thread
+		Iterator<GavinRecord> rv3 = stage(matchVariants.go(), "genotype", stages);
 
 		//swap over stream from strict position-based to gene-based so we can do a number of things
 		ConvertToGeneStream gs = new ConvertToGeneStream(rv3);
 		Iterator<GavinRecord> gsi = gs.go();
 
+		//run the per gene steps over each gene window in order, buffering the windows only once
+		//if requested: process the gene windows on multiple threads, the output keeps the order of the windows
+		List<PerGenePlugin> perGenePlugins = new ArrayList<>();
+
 		//convert heterozygous/carrier Status variants to compound heterozygous if they fall within the same gene
-		Iterator<GavinRecord> rv4 = new AssignCompoundHet(gsi).go();
+		perGenePlugins.add(new AssignCompoundHet());
 
 		//if available: use any parental information to filter out variants/Status
-		TrioFilter tf = new TrioFilter(rv4, td);
-		Iterator<GavinRecord> rv5 = tf.go();
+		perGenePlugins.add(new TrioFilter(td));
 
 		//if available: use any phasing information to filter out compounds
-		Iterator<GavinRecord> rv6 = new PhasingCompoundCheck(rv5).go();
+		perGenePlugins.add(new PhasingCompoundCheck());
 
 		// TODO JvdV
 		//if available: use any SV data to give weight to carrier/heterozygous variants that may be complemented by a deleterious structural event
 
 		//add gene-specific FDR based on 1000G and this pipeline
-		Iterator<GavinRecord> rv8 = new AddGeneFDR(rv6, FDRfile).go();
+		perGenePlugins.add(bundle != null ?
+				new AddGeneFDR(bundle.getAffectedFractions(), bundle.getCarrierFractions()) :
+				new AddGeneFDR(settings.fdrFile()));
+		CompositeGeneStream geneStream = new CompositeGeneStream(gsi, perGenePlugins, settings.geneThreads());
+		stages.add(geneStream);
+		Iterator<GavinRecord> rv8 = geneStream.go();
 
 		//fix order in which variants are written out (was re-ordered by compoundhet check to gene-based)
 		Iterator<GavinRecord> rv9 = new ConvertBackToPositionalStream(rv8, gs.getPositionalOrder()).go();
 
 		//cleanup stream by ditching variants without samples due to filtering
-		Iterator<GavinRecord> rv10 = new CleanupVariantsWithoutSamples(rv9, keepAllVariants).go();
+		//if pipelined: run the gene stream on its own thread, ConvertToGeneStream and ConvertBackToPositionalStream
+		//share the positional order so they must stay on the same thread
+		return stage(new CleanupVariantsWithoutSamples(rv9, settings.keepAllVariants()).go(), "genestream", stages);
+	}
 
-		//write Entities output VCF file
-		new WriteToRVCF().writeRVCF(rv10, outputVcfFile, inputVcfFile, version, cmdString, true, splitRlvField, includeSamples);
+	/**
+	 * Closes the stages, last stage first
+	 */
+	private static void closeAll(List<Closeable> stages) throws IOException
+	{
+		for (int i = stages.size() - 1; i >= 0; i--)
+		{
+			stages.get(i).close();
+		}
+	}
 
+	/**
+	 * If pipelined, the stages before the returned iterator run on their own thread, connected to the stages after
+	 * it by a bounded queue of record batches.
+	 */
+	private Iterator<GavinRecord> stage(Iterator<GavinRecord> gavinRecords, String name, List<Closeable> stages)
+	{
+		if (!settings.pipelined())
+		{
+			return gavinRecords;
+		}
+		BatchQueueIterator<GavinRecord> batchQueueIterator = new BatchQueueIterator<>(gavinRecords, name);
+		stages.add(batchQueueIterator);
+		return batchQueueIterator;
 	}
 }
@@ -0,0 +1,159 @@
+package org.molgenis.data.annotation.makervcf;
+
+import com.google.auto.value.AutoValue;
+import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores;
+import org.molgenis.data.annotation.makervcf.util.VariantLookup;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * Input, output and options of a {@link Pipeline} run
+ */
+@AutoValue
+public abstract class PipelineSettings
+{
+	public abstract String version();
+
+	public abstract String cmdString();
+
+	public abstract boolean splitRlvField();
+
+	public abstract boolean keepAllVariants();
+
+	public abstract HandleMissingCaddScores.Mode mode();
+
+	public abstract File inputVcfFile();
+
+	@Nullable
+	public abstract File gavinFile();
+
+	public abstract File clinvarFile();
+
+	@Nullable
+	public abstract File cgdFile();
+
+	public abstract File caddFile();
+
+	@Nullable
+	public abstract File fdrFile();
+
+	public abstract File outputVcfFile();
+
+	/**
+	 * @return lab specific variant classifications or null if there are none
+	 */
+	@Nullable
+	public abstract File labVariants();
+
+	public abstract boolean includeSamples();
+
+	public abstract VariantLookup.Mode lookupMode();
+
+	/**
+	 * @return compiled knowledge base bundle used instead of the GAVIN, CGD and FDR files, or null
+	 */
+	@Nullable
+	public abstract File bundleFile();
+
+	/**
+	 * @return number of threads that process consecutive chromosomes of the input
+	 */
+	public abstract int threads();
+
+	/**
+	 * @return whether the stages of each shard run on their own threads
+	 */
+	public abstract boolean pipelined();
+
+	/**
+	 * @return maximum number of cached GAVIN verdicts per thread, or 0 to classify every variant
+	 */
+	public abstract int verdictCacheSize();
+
+	/**
+	 * @return number of threads that classify the records of each shard
+	 */
+	public abstract int classificationThreads();
+
+	/**
+	 * @return number of threads that process the gene windows of each shard
+	 */
+	public abstract int geneThreads();
+
+	public static Builder builder()
+	{
+		return new AutoValue_PipelineSettings.Builder().setSplitRlvField(false)
+													   .setKeepAllVariants(false)
+													   .setIncludeSamples(false)
+													   .setLookupMode(VariantLookup.Mode.MEMORY)
+													   .setThreads(1)
+													   .setPipelined(false)
+													   .setVerdictCacheSize(0)
+													   .setClassificationThreads(1)
+													   .setGeneThreads(1);
+	}
+
+	@AutoValue.Builder
+	public abstract static class Builder
+	{
+		public abstract Builder setVersion(String version);
+
+		public abstract Builder setCmdString(String cmdString);
+
+		public abstract Builder setSplitRlvField(boolean splitRlvField);
+
+		public abstract Builder setKeepAllVariants(boolean keepAllVariants);
+
+		public abstract Builder setMode(HandleMissingCaddScores.Mode mode);
+
+		public abstract Builder setInputVcfFile(File inputVcfFile);
+
+		public abstract Builder setGavinFile(File gavinFile);
+
+		public abstract Builder setClinvarFile(File clinvarFile);
+
+		public abstract Builder setCgdFile(File cgdFile);
+
+		public abstract Builder setCaddFile(File caddFile);
+
+		public abstract Builder setFdrFile(File fdrFile);
+
+		public abstract Builder setOutputVcfFile(File outputVcfFile);
+
+		public abstract Builder setLabVariants(File labVariants);
+
+		public abstract Builder setIncludeSamples(boolean includeSamples);
+
+		public abstract Builder setLookupMode(VariantLookup.Mode lookupMode);
+
+		public abstract Builder setBundleFile(File bundleFile);
+
+		public abstract Builder setThreads(int threads);
+
+		public abstract Builder setPipelined(boolean pipelined);
+
+		public abstract Builder setVerdictCacheSize(int verdictCacheSize);
+
+		public abstract Builder setClassificationThreads(int classificationThreads);
+
+		public abstract Builder setGeneThreads(int geneThreads);
+
+		abstract PipelineSettings autoBuild();
+
+		public PipelineSettings build()
+		{
+			PipelineSettings settings = autoBuild();
+			if (settings.threads() < 1 || settings.classificationThreads() < 1 || settings.geneThreads() < 1)
+			{
+				throw new IllegalArgumentException("Number of threads must be at least 1");
+			}
+			if (settings.classificationThreads() > 1 && settings.lookupMode() != VariantLookup.Mode.MEMORY)
+			{
+				throw new IllegalArgumentException(
+						"Classifying on multiple threads requires lookup mode " + VariantLookup.Mode.MEMORY);
+			}
+			return settings;
+		}
+	}
+}
@@ -45,6 +45,13 @@ class VcfRecordMapper
 	public VcfRecord map(GavinRecord gavinRecord)
 	{
 		List<String> tokens = createTokens(gavinRecord);
+		AnnotatedVcfRecord annotatedVcfRecord = gavinRecord.getAnnotatedVcfRecord();
+		if (vcfRecordMapperSettings.includeSamples() && annotatedVcfRecord.getNrSamples() > 0)
+		{
+			// sample columns are not changed, they are written from the input record without decoding them
+			tokens.add(createFormatToken(annotatedVcfRecord));
+			return new VcfRecord(vcfMeta, tokens.toArray(new String[0]), annotatedVcfRecord);
+		}
 		return new VcfRecord(vcfMeta, tokens.toArray(new String[0]));
 	}
 
@@ -73,18 +80,6 @@ class VcfRecordMapper
 		tokens.add(!filterStatus.isEmpty() ? filterStatus.stream().collect(joining(";")) : MISSING_VALUE);
 
 		tokens.add(createInfoToken(gavinRecord, vcfRecordMapperSettings.splitRlvField()));
-
-		if (vcfRecordMapperSettings.includeSamples())
-		{
-
-			AnnotatedVcfRecord annotatedVcfRecord = gavinRecord.getAnnotatedVcfRecord();
-			Iterable<VcfSample> vcfSamples = annotatedVcfRecord.getSamples();
-			if (vcfSamples.iterator().hasNext())
-			{
-				tokens.add(createFormatToken(annotatedVcfRecord));
-				tokens.addAll(Arrays.asList(annotatedVcfRecord.getSampleTokens()));
-			}
-		}
 		return tokens;
 	}
 
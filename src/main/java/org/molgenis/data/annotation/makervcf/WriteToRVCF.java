@@ -4,6 +4,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.molgenis.calibratecadd.support.GavinUtils;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
 import org.molgenis.vcf.VcfReader;
+import org.molgenis.vcf.VcfRecord;
 import org.molgenis.vcf.VcfWriter;
 import org.molgenis.vcf.VcfWriterFactory;
 import org.molgenis.vcf.meta.VcfMeta;
@@ -25,9 +26,7 @@ class WriteToRVCF
 	void writeRVCF(Iterator<GavinRecord> gavinRecords, File writeTo, File inputVcfFile, String version,
 			String cmdString, boolean writeToDisk, boolean splitRlvField, boolean includeSamples) throws Exception
 	{
-		VcfMeta vcfMeta = createRvcfMeta(inputVcfFile, splitRlvField, includeSamples);
-		vcfMeta.add("GavinVersion", StringUtils.wrap(version, "\""));
-		vcfMeta.add("GavinCmd", StringUtils.wrap(cmdString, "\""));
+		VcfMeta vcfMeta = createRvcfMeta(inputVcfFile, version, cmdString, splitRlvField, includeSamples);
 		LOG.debug("[WriteToRVCF] Writing header");
 
 		try (VcfWriter vcfWriter = new VcfWriterFactory().create(writeTo, vcfMeta))
@@ -46,6 +45,42 @@ class WriteToRVCF
 		}
 	}
 
+	/**
+	 * Concatenates the records of RVCF files, written by {@link #writeRVCF} for consecutive parts of the input, into
+	 * one RVCF file. The RVCF files are requested one by one so they can still be in the making.
+	 */
+	void concatRVCF(Iterator<File> rvcfFiles, File writeTo, File inputVcfFile, String version, String cmdString,
+			boolean splitRlvField, boolean includeSamples) throws Exception
+	{
+		VcfMeta vcfMeta = createRvcfMeta(inputVcfFile, version, cmdString, splitRlvField, includeSamples);
+		LOG.debug("[WriteToRVCF] Writing header");
+
+		try (VcfWriter vcfWriter = new VcfWriterFactory().create(writeTo, vcfMeta))
+		{
+			while (rvcfFiles.hasNext())
+			{
+				File rvcfFile = rvcfFiles.next();
+				LOG.debug("[WriteToRVCF] Concatenating {}", rvcfFile);
+				try (VcfReader vcfReader = GavinUtils.getVcfReader(rvcfFile))
+				{
+					for (VcfRecord vcfRecord : vcfReader)
+					{
+						vcfWriter.write(vcfRecord);
+					}
+				}
+			}
+		}
+	}
+
+	private VcfMeta createRvcfMeta(File inputVcfFile, String version, String cmdString, boolean isSeparateFields,
+			boolean includeSamples) throws IOException
+	{
+		VcfMeta vcfMeta = createRvcfMeta(inputVcfFile, isSeparateFields, includeSamples);
+		vcfMeta.add("GavinVersion", StringUtils.wrap(version, "\""));
+		vcfMeta.add("GavinCmd", StringUtils.wrap(cmdString, "\""));
+		return vcfMeta;
+	}
+
 	private VcfMeta createRvcfMeta(File inputVcfFile, boolean isSeparateFields, boolean includeSamples) throws IOException
 	{
 		VcfMeta vcfMeta;
@@ -0,0 +1,278 @@
+package org.molgenis.data.annotation.makervcf.bundle;
+
+import org.molgenis.cgd.CGDEntry;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinEntry;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinEntry.Category;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinThresholdTable;
+import org.molgenis.data.annotation.makervcf.structs.GavinCalibrations;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.molgenis.data.annotation.makervcf.bundle.KnowledgeBaseBundleFormat.*;
+
+/**
+ * Memory-mapped knowledge base bundle compiled by {@link KnowledgeBaseBundleWriter}.
+ * <p>
+ * Opening a bundle does not parse anything, the returned maps find genes with a binary search in the mapped tables
+ * and decode entries on first access.
+ */
+public class KnowledgeBaseBundle
+{
+	private final ByteBuffer buffer;
+	private final double genomewideCaddThreshold;
+	private final double genomewideMafThreshold;
+	private final Table[] tables;
+	private final int stringPoolOffset;
+
+	private KnowledgeBaseBundle(ByteBuffer buffer) throws IOException
+	{
+		this.buffer = buffer;
+
+		byte[] magic = new byte[MAGIC.length];
+		buffer.get(magic);
+		if (!Arrays.equals(magic, MAGIC))
+		{
+			throw new IOException("Not a knowledge base bundle");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION)
+		{
+			throw new IOException(
+					"Unsupported knowledge base bundle version " + version + ", expected version " + VERSION);
+		}
+		this.genomewideCaddThreshold = buffer.getDouble();
+		this.genomewideMafThreshold = buffer.getDouble();
+		this.tables = new Table[NR_TABLES];
+		for (int i = 0; i < NR_TABLES; ++i)
+		{
+			tables[i] = new Table(toInt(buffer.getLong()), buffer.getInt(), buffer.getInt());
+		}
+		this.stringPoolOffset = toInt(buffer.getLong());
+	}
+
+	public static KnowledgeBaseBundle open(File bundleFile) throws IOException
+	{
+		try (FileChannel fileChannel = FileChannel.open(bundleFile.toPath(), StandardOpenOption.READ))
+		{
+			// the mapping stays valid after the channel is closed
+			return new KnowledgeBaseBundle(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size()));
+		}
+	}
+
+	public GavinCalibrations getGavinCalibrations()
+	{
+		Table table = tables[TABLE_GAVIN];
+		return GavinCalibrations.create(genomewideCaddThreshold, genomewideMafThreshold,
+				new TableMap<>(table, record -> new GavinEntry(getString(record, STRING_REF_SIZE))));
+	}
+
+	/**
+	 * @return thresholds of all genes read from their fixed-width fields, without parsing the calibration lines
+	 */
+	public GavinThresholdTable getGavinThresholdTable()
+	{
+		Table table = tables[TABLE_GAVIN];
+		int nrGenes = table.nrRecords;
+		String[] genes = new String[nrGenes];
+		Category[] categories = new Category[nrGenes];
+		double[][] thresholds = new double[NR_GAVIN_THRESHOLDS][nrGenes];
+		for (int i = 0; i < nrGenes; ++i)
+		{
+			int record = table.getRecord(i);
+			genes[i] = getString(record, 0);
+			int thresholdOffset = record + 2 * STRING_REF_SIZE;
+			for (int j = 0; j < NR_GAVIN_THRESHOLDS; ++j)
+			{
+				thresholds[j][i] = buffer.getDouble(thresholdOffset + j * Double.BYTES);
+			}
+			categories[i] = Category.values()[buffer.get(thresholdOffset + NR_GAVIN_THRESHOLDS * Double.BYTES)];
+		}
+		return GavinThresholdTable.create(getGavinCalibrations(), genes, categories, thresholds[0], thresholds[1],
+				thresholds[2], thresholds[3], thresholds[4]);
+	}
+
+	/**
+	 * @return genes to CGD entries, genes are case insensitive
+	 */
+	public Map<String, CGDEntry> getCgd()
+	{
+		Table table = tables[TABLE_CGD];
+		return new TableMap<CGDEntry>(table, this::getCgdEntry)
+		{
+			@Override
+			protected String normalize(String gene)
+			{
+				return normalizeCgdGene(gene);
+			}
+		};
+	}
+
+	public Map<String, Double> getAffectedFractions()
+	{
+		return new TableMap<>(tables[TABLE_FDR], record -> buffer.getDouble(record + STRING_REF_SIZE));
+	}
+
+	public Map<String, Double> getCarrierFractions()
+	{
+		return new TableMap<>(tables[TABLE_FDR],
+				record -> buffer.getDouble(record + STRING_REF_SIZE + Double.BYTES));
+	}
+
+	private CGDEntry getCgdEntry(int record)
+	{
+		String[] columns = new String[NR_CGD_COLUMNS];
+		for (int i = 0; i < NR_CGD_COLUMNS; ++i)
+		{
+			columns[i] = getString(record, STRING_REF_SIZE + i * STRING_REF_SIZE);
+		}
+		CGDEntry cgdEntry = new CGDEntry(columns[0], columns[1], columns[2], columns[3], columns[4], columns[5],
+				columns[6], columns[7], columns[8], columns[9], columns[10], columns[11]);
+		int inheritance = buffer.get(record + STRING_REF_SIZE + NR_CGD_COLUMNS * STRING_REF_SIZE);
+		cgdEntry.setGeneralizedInheritance(CGDEntry.generalizedInheritance.values()[inheritance]);
+		return cgdEntry;
+	}
+
+	private String getString(int record, int fieldOffset)
+	{
+		byte[] bytes = getStringBytes(record, fieldOffset);
+		return new String(bytes, UTF_8);
+	}
+
+	private byte[] getStringBytes(int record, int fieldOffset)
+	{
+		int offset = buffer.getInt(record + fieldOffset);
+		byte[] bytes = new byte[buffer.getInt(record + fieldOffset + Integer.BYTES)];
+		ByteBuffer stringBuffer = buffer.duplicate();
+		stringBuffer.position(stringPoolOffset + offset);
+		stringBuffer.get(bytes);
+		return bytes;
+	}
+
+	private static int toInt(long offset) throws IOException
+	{
+		if (offset > Integer.MAX_VALUE)
+		{
+			throw new IOException("Knowledge base bundle larger than 2 GB");
+		}
+		return (int) offset;
+	}
+
+	private static class Table
+	{
+		private final int offset;
+		private final int nrRecords;
+		private final int recordSize;
+
+		Table(int offset, int nrRecords, int recordSize)
+		{
+			this.offset = offset;
+			this.nrRecords = nrRecords;
+			this.recordSize = recordSize;
+		}
+
+		int getRecord(int index)
+		{
+			return offset + index * recordSize;
+		}
+	}
+
+	/**
+	 * Read-only map view of a table, values are decoded on first access and cached
+	 */
+	private class TableMap<V> extends AbstractMap<String, V>
+	{
+		private final Table table;
+		private final IntFunction<V> decoder;
+		private final Map<String, Optional<V>> cache;
+		private volatile Set<Entry<String, V>> entrySet;
+
+		TableMap(Table table, IntFunction<V> decoder)
+		{
+			this.table = table;
+			this.decoder = decoder;
+			this.cache = new ConcurrentHashMap<>();
+		}
+
+		protected String normalize(String key)
+		{
+			return key;
+		}
+
+		@Override
+		public V get(Object key)
+		{
+			if (!(key instanceof String))
+			{
+				return null;
+			}
+			return cache.computeIfAbsent((String) key, gene ->
+			{
+				int index = binarySearch(normalize(gene).getBytes(UTF_8));
+				return index >= 0 ? Optional.of(decoder.apply(table.getRecord(index))) : Optional.empty();
+			}).orElse(null);
+		}
+
+		@Override
+		public boolean containsKey(Object key)
+		{
+			return get(key) != null;
+		}
+
+		@Override
+		public int size()
+		{
+			return table.nrRecords;
+		}
+
+		@Override
+		public Set<Entry<String, V>> entrySet()
+		{
+			Set<Entry<String, V>> entries = entrySet;
+			if (entries == null)
+			{
+				// threads that race may both decode the table, each of them returns a complete set
+				Map<String, V> keyToValue = new LinkedHashMap<>();
+				for (int i = 0; i < table.nrRecords; ++i)
+				{
+					int record = table.getRecord(i);
+					keyToValue.put(getString(record, 0), decoder.apply(record));
+				}
+				entries = Collections.unmodifiableMap(keyToValue).entrySet();
+				entrySet = entries;
+			}
+			return entries;
+		}
+
+		private int binarySearch(byte[] key)
+		{
+			int low = 0;
+			int high = table.nrRecords - 1;
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+				int compare = compareUnsigned(getStringBytes(table.getRecord(mid), 0), key);
+				if (compare < 0)
+				{
+					low = mid + 1;
+				}
+				else if (compare > 0)
+				{
+					high = mid - 1;
+				}
+				else
+				{
+					return mid;
+				}
+			}
+			return -1;
+		}
+	}
+}
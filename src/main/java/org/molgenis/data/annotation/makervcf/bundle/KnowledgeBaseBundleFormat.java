@@ -0,0 +1,72 @@
+package org.molgenis.data.annotation.makervcf.bundle;
+
+import java.util.Locale;
+
+/**
+ * Layout of the binary knowledge base bundle, see {@link KnowledgeBaseBundleWriter} and {@link KnowledgeBaseBundle}.
+ * <p>
+ * A bundle consists of a header, one table per knowledge base and a pool of UTF-8 strings. Table records have a fixed
+ * width and are sorted on the unsigned UTF-8 bytes of their key, so a record is found with a binary search without
+ * parsing anything else. Strings are referenced from records with an offset in the pool and a length.
+ */
+final class KnowledgeBaseBundleFormat
+{
+	static final byte[] MAGIC = { 'G', 'A', 'V', 'I', 'N', 'K', 'B', 0 };
+	static final int VERSION = 2;
+
+	static final int TABLE_GAVIN = 0;
+	static final int TABLE_CGD = 1;
+	static final int TABLE_FDR = 2;
+	static final int NR_TABLES = 3;
+
+	/**
+	 * magic, version, genome-wide CADD and MAF thresholds, per table offset, nr of records and record size, string
+	 * pool offset and length
+	 */
+	static final int HEADER_SIZE = MAGIC.length + Integer.BYTES + 2 * Double.BYTES + NR_TABLES * (Long.BYTES
+			+ 2 * Integer.BYTES) + 2 * Long.BYTES;
+
+	static final int STRING_REF_SIZE = 2 * Integer.BYTES;
+
+	/**
+	 * gene, calibrations line, pathogenic MAF threshold, mean pathogenic CADD score, mean population CADD score,
+	 * specificity and sensitivity 95th percentile CADD thresholds (NaN if missing), category
+	 */
+	static final int NR_GAVIN_THRESHOLDS = 5;
+	static final int GAVIN_RECORD_SIZE = 2 * STRING_REF_SIZE + NR_GAVIN_THRESHOLDS * Double.BYTES + 1;
+	/**
+	 * normalized gene, 12 CGD columns, generalized inheritance
+	 */
+	static final int NR_CGD_COLUMNS = 12;
+	static final int CGD_RECORD_SIZE = STRING_REF_SIZE + NR_CGD_COLUMNS * STRING_REF_SIZE + 1;
+	/**
+	 * gene, affected fraction, carrier fraction
+	 */
+	static final int FDR_RECORD_SIZE = STRING_REF_SIZE + 2 * Double.BYTES;
+
+	private KnowledgeBaseBundleFormat()
+	{
+	}
+
+	/**
+	 * CGD genes are looked up case insensitive
+	 */
+	static String normalizeCgdGene(String gene)
+	{
+		return gene.toUpperCase(Locale.ROOT);
+	}
+
+	static int compareUnsigned(byte[] bytes, byte[] otherBytes)
+	{
+		int length = Math.min(bytes.length, otherBytes.length);
+		for (int i = 0; i < length; ++i)
+		{
+			int compare = (bytes[i] & 0xff) - (otherBytes[i] & 0xff);
+			if (compare != 0)
+			{
+				return compare;
+			}
+		}
+		return bytes.length - otherBytes.length;
+	}
+}
@@ -0,0 +1,178 @@
+package org.molgenis.data.annotation.makervcf.bundle;
+
+import org.molgenis.calibratecadd.support.GavinUtils;
+import org.molgenis.cgd.CGDEntry;
+import org.molgenis.cgd.LoadCGD;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinEntry;
+import org.molgenis.data.annotation.makervcf.structs.GavinCalibrations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.molgenis.data.annotation.makervcf.bundle.KnowledgeBaseBundleFormat.*;
+
+/**
+ * Compiles the GAVIN calibrations, CGD and gene FDR files of a data bundle into a single binary knowledge base bundle
+ * that can be memory-mapped by {@link KnowledgeBaseBundle} without parsing.
+ */
+public class KnowledgeBaseBundleWriter
+{
+	private static final Logger LOG = LoggerFactory.getLogger(KnowledgeBaseBundleWriter.class);
+
+	private final ByteArrayOutputStream stringPool;
+
+	private KnowledgeBaseBundleWriter()
+	{
+		this.stringPool = new ByteArrayOutputStream();
+	}
+
+	public static void compile(File gavinFile, File cgdFile, File fdrFile, File bundleFile) throws IOException
+	{
+		new KnowledgeBaseBundleWriter().write(gavinFile, cgdFile, fdrFile, bundleFile);
+	}
+
+	private void write(File gavinFile, File cgdFile, File fdrFile, File bundleFile) throws IOException
+	{
+		GavinCalibrations gavinCalibrations = GavinUtils.getGeneToEntry(gavinFile);
+		byte[] gavinTable = createGavinTable(gavinFile, gavinCalibrations.getGavinEntries());
+		byte[] cgdTable = createCgdTable(LoadCGD.loadCGD(cgdFile));
+		byte[] fdrTable = createFdrTable(fdrFile);
+		byte[][] tables = { gavinTable, cgdTable, fdrTable };
+		int[] recordSizes = { GAVIN_RECORD_SIZE, CGD_RECORD_SIZE, FDR_RECORD_SIZE };
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(bundleFile))))
+		{
+			out.write(MAGIC);
+			out.writeInt(VERSION);
+			out.writeDouble(gavinCalibrations.getGenomewideCaddThreshold());
+			out.writeDouble(gavinCalibrations.getGenomewideMafThreshold());
+
+			long offset = HEADER_SIZE;
+			for (int i = 0; i < NR_TABLES; ++i)
+			{
+				out.writeLong(offset);
+				out.writeInt(tables[i].length / recordSizes[i]);
+				out.writeInt(recordSizes[i]);
+				offset += tables[i].length;
+			}
+			out.writeLong(offset);
+			out.writeLong(stringPool.size());
+
+			for (byte[] table : tables)
+			{
+				out.write(table);
+			}
+			stringPool.writeTo(out);
+		}
+		LOG.info("Compiled knowledge base bundle {} with {} GAVIN, {} CGD and {} FDR genes", bundleFile,
+				gavinTable.length / GAVIN_RECORD_SIZE, cgdTable.length / CGD_RECORD_SIZE,
+				fdrTable.length / FDR_RECORD_SIZE);
+	}
+
+	/**
+	 * Stores the thresholds used to classify variants fixed-width and the calibration lines, from which complete
+	 * entries are parsed per gene on first use
+	 */
+	private byte[] createGavinTable(File gavinFile, Map<String, GavinEntry> geneToEntry) throws IOException
+	{
+		SortedMap<byte[], String> geneToLine = new TreeMap<>(KnowledgeBaseBundleFormat::compareUnsigned);
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(gavinFile), UTF_8)))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if (!line.startsWith("#"))
+				{
+					String gene = line.substring(0, line.indexOf('\t'));
+					if (geneToEntry.containsKey(gene))
+					{
+						geneToLine.put(gene.getBytes(UTF_8), line);
+					}
+				}
+			}
+		}
+
+		ByteArrayOutputStream table = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(table);
+		for (Map.Entry<byte[], String> entry : geneToLine.entrySet())
+		{
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue().getBytes(UTF_8));
+			GavinEntry gavinEntry = geneToEntry.get(new String(entry.getKey(), UTF_8));
+			for (Double threshold : new Double[] { gavinEntry.getPathoMAFThreshold(),
+					gavinEntry.getMeanPathogenicCADDScore(), gavinEntry.getMeanPopulationCADDScore(),
+					gavinEntry.getSpec95thPerCADDThreshold(), gavinEntry.getSens95thPerCADDThreshold() })
+			{
+				out.writeDouble(threshold != null ? threshold : Double.NaN);
+			}
+			out.writeByte(gavinEntry.getCategory().ordinal());
+		}
+		return table.toByteArray();
+	}
+
+	private byte[] createCgdTable(Map<String, CGDEntry> cgd) throws IOException
+	{
+		SortedMap<byte[], CGDEntry> geneToEntry = new TreeMap<>(KnowledgeBaseBundleFormat::compareUnsigned);
+		for (Map.Entry<String, CGDEntry> entry : cgd.entrySet())
+		{
+			geneToEntry.put(normalizeCgdGene(entry.getKey()).getBytes(UTF_8), entry.getValue());
+		}
+
+		ByteArrayOutputStream table = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(table);
+		for (Map.Entry<byte[], CGDEntry> entry : geneToEntry.entrySet())
+		{
+			CGDEntry cgdEntry = entry.getValue();
+			writeString(out, entry.getKey());
+			for (String column : new String[] { cgdEntry.getGene(), cgdEntry.getHgnc_id(),
+					cgdEntry.getEntrez_gene_id(), cgdEntry.getCondition(), cgdEntry.getInheritance(),
+					cgdEntry.getAge_group(), cgdEntry.getAllelicConditions(), cgdEntry.getManifestationCategories(),
+					cgdEntry.getInterventionCategories(), cgdEntry.getComments(),
+					cgdEntry.getInterventionOrRationale(), cgdEntry.getReferences() })
+			{
+				writeString(out, column.getBytes(UTF_8));
+			}
+			out.writeByte(cgdEntry.getGeneralizedInheritance().ordinal());
+		}
+		return table.toByteArray();
+	}
+
+	private byte[] createFdrTable(File fdrFile) throws IOException
+	{
+		SortedMap<byte[], double[]> geneToFractions = new TreeMap<>(KnowledgeBaseBundleFormat::compareUnsigned);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fdrFile), UTF_8)))
+		{
+			reader.readLine(); //skip header
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				//"Gene    AffectedAbs     CarrierAbs      AffectedFrac    CarrierFrac"
+				String[] split = line.split("\t", -1);
+				geneToFractions.put(split[0].getBytes(UTF_8),
+						new double[] { Double.parseDouble(split[3]), Double.parseDouble(split[4]) });
+			}
+		}
+
+		ByteArrayOutputStream table = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(table);
+		for (Map.Entry<byte[], double[]> entry : geneToFractions.entrySet())
+		{
+			writeString(out, entry.getKey());
+			out.writeDouble(entry.getValue()[0]);
+			out.writeDouble(entry.getValue()[1]);
+		}
+		return table.toByteArray();
+	}
+
+	private void writeString(DataOutputStream out, byte[] bytes) throws IOException
+	{
+		out.writeInt(stringPool.size());
+		out.writeInt(bytes.length);
+		stringPool.write(bytes);
+	}
+}
@@ -0,0 +1,44 @@
+package org.molgenis.data.annotation.makervcf.genestream.core;
+
+import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Buffers each gene window once and runs a number of plugins over it in order, instead of chaining a gene stream
+ * per plugin that each buffer the same windows again.
+ * <p>
+ * The plugins of a gene run right after each other. This gives the same results as chaining them, as long as
+ * plugins only look at and update the relevance of the gene they are called for.
+ */
+public class CompositeGeneStream extends GeneStream
+{
+	private final List<PerGenePlugin> plugins;
+
+	public CompositeGeneStream(Iterator<GavinRecord> gavinRecordIterator, List<? extends PerGenePlugin> plugins)
+	{
+		this(gavinRecordIterator, plugins, 1);
+	}
+
+	/**
+	 * @param threads number of threads that process gene windows, more than 1 requires plugins that only touch the
+	 *                variants they are called with
+	 */
+	public CompositeGeneStream(Iterator<GavinRecord> gavinRecordIterator, List<? extends PerGenePlugin> plugins,
+			int threads)
+	{
+		super(gavinRecordIterator, threads);
+		this.plugins = new ArrayList<>(plugins);
+	}
+
+	@Override
+	public void perGene(String gene, List<GavinRecord> variantsPerGene) throws Exception
+	{
+		for (PerGenePlugin plugin : plugins)
+		{
+			plugin.perGene(gene, variantsPerGene);
+		}
+	}
+}
@@ -16,15 +16,15 @@ public class ConvertToGeneStream
 {
 	private static final Logger LOG = LoggerFactory.getLogger(ConvertToGeneStream.class);
 	private Iterator<GavinRecord> gavinRecordIterator;
-	private List<Integer> positionalOrder;
+	private PositionalOrder positionalOrder;
 
 	public ConvertToGeneStream(Iterator<GavinRecord> gavinRecordIterator)
 	{
 		this.gavinRecordIterator = gavinRecordIterator;
-		this.positionalOrder = new ArrayList<>();
+		this.positionalOrder = new PositionalOrder();
 	}
 
-	public List<Integer> getPositionalOrder()
+	public PositionalOrder getPositionalOrder()
 	{
 		return positionalOrder;
 	}
@@ -39,23 +39,20 @@ public class ConvertToGeneStream
 			GavinRecord nextResult;
 
 			// result iterators that become active once one or more genes end and output nextResult
-			LinkedHashMap<String, Iterator<GavinRecord>> resultBatches;
+			LinkedHashMap<String, Iterator<BufferedRecord>> resultBatches;
 
 			// variantBuffer with genes and variants that lags behind the input and gets turned into result batches
-			HashMap<String, List<GavinRecord>> variantBuffer = new HashMap<>();
+			// a variant relevant for multiple genes is buffered once and shared by the lists of these genes
+			HashMap<String, List<BufferedRecord>> variantBuffer = new HashMap<>();
 
 			// set of genes seen for variant in previous iteration
 			Set<String> underlyingGenesForPreviousVariant = new HashSet<>();
 
-			// within returning a batch, there may be duplicates (e.g. variants relevant for multiple genes)
-			// we keep track of the positions and make sure they are only outputted once
-			List<String> positionCheck = new ArrayList<>();
-
 			@Override
 			public boolean hasNext()
 			{
 
-				GavinRecord nextFromResultBatches = getNextFromResultBatches(resultBatches, positionCheck);
+				GavinRecord nextFromResultBatches = getNextFromResultBatches(resultBatches);
 				if (nextFromResultBatches != null)
 				{
 					LOG.debug("[ConvertToGeneStream] Flushing next variant: {}"
@@ -73,38 +70,25 @@ public class ConvertToGeneStream
 							LOG.debug("[ConvertToGeneStream] Flush complete, cleanup of genes: {}",
 										resultBatches.keySet());
 
-							// we remove variants from the variantBuffer (by position) that were already written out for another gene before
-							// of course we also delete the variants for the genes that were written out
+							// we delete the variants for the genes that were written out, the variants that were written
+							// out are marked as such and are skipped in the lists of other genes
 							for (String gene : resultBatches.keySet())
 							{
-								ArrayList<String> removeVariantsByPosition = new ArrayList<>(
-										variantBuffer.get(gene).size());
-								for (GavinRecord rv : variantBuffer.get(gene))
-								{
-									removeVariantsByPosition.add(rv.getChrPosRefAlt());
-								}
-								for (Map.Entry<String, List<GavinRecord>> entry : variantBuffer.entrySet())
-								{
-
-									entry.getValue()
-										 .removeIf(rlvToCheck -> removeVariantsByPosition.contains(
-												 rlvToCheck.getChrPosRefAlt()));
-								}
 								variantBuffer.remove(gene);
 							}
-							positionCheck.clear();
 							resultBatches = null;
 						}
 
-						// get variant, store position, and get underlying genes
+						// get variant, assign its positional order, and get underlying genes
 						GavinRecord gavinRecord = gavinRecordIterator.next();
-						int pos = gavinRecord.getPosition();
-						positionalOrder.add(pos);
+						positionalOrder.add(gavinRecord);
 						Set<String> underlyingGenesForCurrentVariant = gavinRecord.getGenes();
 
 						LOG.debug("[ConvertToGeneStream] Assessing next variant: " + gavinRecord.toStringShort());
 
 						// put genes and variants in a map, grouping all variants per gene
+						BufferedRecord bufferedRecord = new BufferedRecord(gavinRecord);
+						boolean buffered = false;
 						for (String gene : underlyingGenesForCurrentVariant)
 						{
 							//variants are only outputted for a certain gene if they are also thought to be relevant for that gene
@@ -114,13 +98,14 @@ public class ConvertToGeneStream
 								{
 									if (rlv.getGene().equals(gene))
 									{
-										List<GavinRecord> variants = variantBuffer.get(gene);
+										List<BufferedRecord> variants = variantBuffer.get(gene);
 										if (variants == null)
 										{
 											variants = new ArrayList<>();
 										}
 										variantBuffer.put(gene, variants);
-										variants.add(gavinRecord);
+										variants.add(bufferedRecord);
+										buffered = true;
 										LOG.debug("[ConvertToGeneStream] Adding variant for matching relevant gene {}", gene);
 										break;
 									}
@@ -128,17 +113,24 @@ public class ConvertToGeneStream
 							}
 							else
 							{
-								List<GavinRecord> variants = variantBuffer.get(gene);
+								List<BufferedRecord> variants = variantBuffer.get(gene);
 								if (variants == null)
 								{
 									variants = new ArrayList<>();
 								}
-								variants.add(gavinRecord);
+								variants.add(bufferedRecord);
 								variantBuffer.put(gene, variants);
+								buffered = true;
 							}
 
 						}
 
+						// variants that are not buffered for any gene are never outputted
+						if (!buffered)
+						{
+							positionalOrder.skip(gavinRecord);
+						}
+
 						// when we stop seeing an underlying gene, we process all variants for that gene
 						//when multiple genes end at once, we have to start multiple batches
 						resultBatches = new LinkedHashMap<>();
@@ -146,13 +138,13 @@ public class ConvertToGeneStream
 						{
 							// include null check, for variants that are annotated to a gene but were not ever relevant for that gene
 							// added check: still variants left for this gene to be outputted
-							if (!underlyingGenesForCurrentVariant.contains(gene) && variantBuffer.get(gene) != null
-									&& !variantBuffer.get(gene).isEmpty())
+							if (!underlyingGenesForCurrentVariant.contains(gene) && hasVariantsLeft(
+									variantBuffer.get(gene)))
 							{
 								LOG.debug("[ConvertToGeneStream] Gene " + gene
 											+ " ended, creating result batch. Putting " + variantBuffer.get(gene).size()
 											+ " variants in output batch");
-								List<GavinRecord> variants = variantBuffer.get(gene);
+								List<BufferedRecord> variants = variantBuffer.get(gene);
 								resultBatches.put(gene, variants.iterator());
 							}
 						}
@@ -164,7 +156,7 @@ public class ConvertToGeneStream
 						// if batch succesfully prepared, start streaming it out
 						if (!resultBatches.isEmpty())
 						{
-							nextResult = getNextFromResultBatches(resultBatches, positionCheck);
+							nextResult = getNextFromResultBatches(resultBatches);
 							LOG.debug("[ConvertToGeneStream] Flushing first variant of result batch: {}",nextResult.toStringShort());
 							return true;
 						}
@@ -177,17 +169,17 @@ public class ConvertToGeneStream
 
 					// remaining variants that are leftover, i.e. not terminated yet by a gene ending
 					resultBatches = new LinkedHashMap<>();
-					for (Map.Entry<String, List<GavinRecord>> variantEntry: variantBuffer.entrySet())
+					for (Map.Entry<String, List<BufferedRecord>> variantEntry: variantBuffer.entrySet())
 					{
-						List<GavinRecord> gavinRecords = variantEntry.getValue();
-						if (!gavinRecords.isEmpty())
+						List<BufferedRecord> bufferedRecords = variantEntry.getValue();
+						if (hasVariantsLeft(bufferedRecords))
 						{
-							resultBatches.put(variantEntry.getKey(), gavinRecords.iterator());
+							resultBatches.put(variantEntry.getKey(), bufferedRecords.iterator());
 						}
 					}
 					if (resultBatches.size() > 0)
 					{
-						nextResult = getNextFromResultBatches(resultBatches, positionCheck);
+						nextResult = getNextFromResultBatches(resultBatches);
 						if (nextResult != null)
 						{
 							LOG.debug("[ConvertToGeneStream] Flushing first of remaining variants: "
@@ -209,34 +201,63 @@ public class ConvertToGeneStream
 
 	/**
 	 * Get next result item from a collection of potentially multiple iterators
-	 * We return every unique variant position only once, and reset these positions after all result batches are done
+	 * We return every variant only once, also when it is in the batches or the variant buffer of multiple genes
 	 *
 	 * @param resultBatches
 	 * @return
 	 */
-	private GavinRecord getNextFromResultBatches(LinkedHashMap<String, Iterator<GavinRecord>> resultBatches,
-			List<String> positionAltsAlreadyReturned)
+	private GavinRecord getNextFromResultBatches(LinkedHashMap<String, Iterator<BufferedRecord>> resultBatches)
 	{
 		if (resultBatches == null)
 		{
 			return null;
 		}
 
-		for (Map.Entry<String, Iterator<GavinRecord>> entry : resultBatches.entrySet())
+		for (Map.Entry<String, Iterator<BufferedRecord>> entry : resultBatches.entrySet())
 		{
-			Iterator<GavinRecord> gavinRecordsIterator = entry.getValue();
-			while (gavinRecordsIterator.hasNext())
+			Iterator<BufferedRecord> bufferedRecordsIterator = entry.getValue();
+			while (bufferedRecordsIterator.hasNext())
 			{
-				GavinRecord next = gavinRecordsIterator.next();
-				if (!positionAltsAlreadyReturned.contains(next.getChrPosRefAlt()))
+				BufferedRecord next = bufferedRecordsIterator.next();
+				if (!next.returned)
 				{
-					LOG.debug("Positions seen {} does not contain {}, so we output it",positionAltsAlreadyReturned,next.getChrPosRefAlt());
-					positionAltsAlreadyReturned.add(next.getChrPosRefAlt());
-					return next;
+					LOG.debug("Variant {} was not returned before, so we output it", next.gavinRecord.getVariantKey());
+					next.returned = true;
+					return next.gavinRecord;
 				}
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Drops the variants that were already returned for another gene, each variant is dropped from a gene once so
+	 * this takes constant time per variant.
+	 *
+	 * @return whether there are variants left to return for the gene
+	 */
+	private static boolean hasVariantsLeft(List<BufferedRecord> bufferedRecords)
+	{
+		if (bufferedRecords == null)
+		{
+			return false;
+		}
+		bufferedRecords.removeIf(bufferedRecord -> bufferedRecord.returned);
+		return !bufferedRecords.isEmpty();
+	}
+
+	/**
+	 * Variant in the variant buffer, shared by the genes it is buffered for
+	 */
+	private static class BufferedRecord
+	{
+		private final GavinRecord gavinRecord;
+		private boolean returned;
+
+		BufferedRecord(GavinRecord gavinRecord)
+		{
+			this.gavinRecord = gavinRecord;
+		}
+	}
+
 }
@@ -6,24 +6,72 @@ import org.molgenis.data.annotation.makervcf.structs.RelevanceUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Created by joeri on 6/29/16.
+ * <p>
+ * Gene windows are processed on the calling thread, or on a pool of threads if requested. In the latter case
+ * perGene() is called concurrently for different gene windows and must only touch the variants it is called with.
+ * The threads are stopped once all variants were returned or processing failed, close the gene stream when stopping
+ * earlier.
  */
-public abstract class GeneStream
+public abstract class GeneStream implements PerGenePlugin, Closeable
 {
 	private static final Logger LOG = LoggerFactory.getLogger(GeneStream.class);
+	/**
+	 * minimal number of variants of the gene windows processed by one task, a task holds more variants if a window
+	 * is larger
+	 */
+	private static final int BATCH_SIZE = 256;
+	/**
+	 * maximum number of tasks per thread that are processed or waiting while the first one is not yet done
+	 */
+	private static final int TASKS_PER_THREAD = 4;
 	private Iterator<GavinRecord> gavinRecordIterator;
 	private boolean isFilterNonRelevant;
+	private final int threads;
+	/**
+	 * processes the gene windows of the iterator if processing on multiple threads, otherwise null
+	 */
+	private ForkJoinPool forkJoinPool;
 
 	public GeneStream(Iterator<GavinRecord> gavinRecordIterator)
 	{
+		this(gavinRecordIterator, 1);
+	}
+
+	/**
+	 * @param threads number of threads that process gene windows
+	 */
+	public GeneStream(Iterator<GavinRecord> gavinRecordIterator, int threads)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
 		this.gavinRecordIterator = gavinRecordIterator;
+		this.threads = threads;
+	}
+
+	/**
+	 * Creates a gene stream without input, to be used as a plugin of a {@link CompositeGeneStream} only
+	 */
+	protected GeneStream()
+	{
+		this(null);
 	}
 
 	public Iterator<GavinRecord> go()
 	{
+		if (threads > 1)
+		{
+			forkJoinPool = new ForkJoinPool(threads);
+		}
 		return new Iterator<GavinRecord>()
 		{
 
@@ -33,102 +81,94 @@ public abstract class GeneStream
 
 			HashMap<String, List<GavinRecord>> variantBufferPerGene = new HashMap<>();
 			List<GavinRecord> variantBuffer = new ArrayList<>();
-			Iterator<GavinRecord> resultBatch;
+			Iterator<GavinRecord> resultBatch = Collections.emptyIterator();
+
+			// gene windows and non relevant variants in order of output, not yet processed
+			Windows windows = new Windows();
+			// if on multiple threads: tasks that process windows, in order of output
+			Deque<ForkJoinTask<List<GavinRecord>>> tasks = new ArrayDeque<>();
 
 			@Override
 			public boolean hasNext()
 			{
-				if (resultBatch != null && resultBatch.hasNext())
+				while (!resultBatch.hasNext())
 				{
-					LOG.debug("[GeneStream] Returning subsequent result of gene stream batch");
-					nextResult = resultBatch.next();
-					return true;
+					boolean hasNextResultBatch;
+					try
+					{
+						hasNextResultBatch = nextResultBatch();
+					}
+					catch (RuntimeException | Error e)
+					{
+						close();
+						throw e;
+					}
+					if (!hasNextResultBatch)
+					{
+						close();
+						return false;
+					}
 				}
-				else
-				{
+				LOG.debug("[GeneStream] Returning next result of gene stream batch");
+				nextResult = resultBatch.next();
+				return true;
+			}
+
+			@Override
+			public GavinRecord next()
+			{
+				return nextResult;
+			}
 
-					while (gavinRecordIterator.hasNext())
+			/**
+			 * @return whether a new result batch was created
+			 */
+			private boolean nextResultBatch()
+			{
+				while (gavinRecordIterator.hasNext())
+				{
+					GavinRecord gavinRecord = gavinRecordIterator.next();
+					if (gavinRecord.isRelevant())
 					{
-						GavinRecord gavinRecord = gavinRecordIterator.next();
-						if (gavinRecord.isRelevant())
-						{
-							// cleanup of result batch after previously flushed results
-							if (resultBatch != null)
-							{
-								LOG.debug("[GeneStream] Cleanup by setting result batch to null");
-								resultBatch = null;
-							}
+						currentGenes = RelevanceUtils.getRelevantGenes(gavinRecord.getRelevance());
+						LOG.debug("[GeneStream] Entering while, looking at a variant in gene " + currentGenes);
 
-							currentGenes = RelevanceUtils.getRelevantGenes(gavinRecord.getRelevance());
-							LOG.debug("[GeneStream] Entering while, looking at a variant in gene " + currentGenes);
+						// if the previously seen genes are fully disjoint from the current genes, the window of the
+						// previous genes is complete
+						if (previousGenes != null && Collections.disjoint(previousGenes, currentGenes))
+						{
+							addWindow();
+						}
 
-							// if the previously seen genes are fully disjoint from the current genes, start processing per gene and flush buffer
-							if (previousGenes != null && Collections.disjoint(previousGenes, currentGenes))
+						// add current variant to gene-specific buffer
+						for (Relevance rlv : gavinRecord.getRelevance())
+						{
+							String gene = rlv.getGene();
+							if (variantBufferPerGene.containsKey(gene))
 							{
-								LOG.debug("[GeneStream] Executing the abstract perGene() function on " + previousGenes);
-
-								// process per gene in abstract function
-								for (String gene : variantBufferPerGene.keySet())
-								{
-									LOG.debug("[GeneStream] Processing gene " + gene + " having " + variantBufferPerGene
-											.get(gene)
-											.size() + " variants");
-									try
-									{
-										perGene(gene, variantBufferPerGene.get(gene));
-									}
-									catch (Exception e)
-									{
-										throw new RuntimeException(e);
-									}
-								}
-								// create shallow copy, so that we can add another variant to buffer after we instantiate the iterator
-								resultBatch = new ArrayList<>(variantBuffer).iterator();
-
-								//reset buffers
-								variantBuffer = new ArrayList<>();
-								variantBufferPerGene = new HashMap<>();
-
+								variantBufferPerGene.get(gene).add(gavinRecord);
 							}
-
-							// add current variant to gene-specific buffer
-							for (Relevance rlv : gavinRecord.getRelevance())
+							else
 							{
-								String gene = rlv.getGene();
-								if (variantBufferPerGene.containsKey(gene))
-								{
-									variantBufferPerGene.get(gene).add(gavinRecord);
-								}
-								else
-								{
-									List<GavinRecord> variants = new ArrayList<>();
-									variants.add(gavinRecord);
-									variantBufferPerGene.put(gene, variants);
-								}
+								List<GavinRecord> variants = new ArrayList<>();
+								variants.add(gavinRecord);
+								variantBufferPerGene.put(gene, variants);
 							}
-							// add variant to global buffer
-							variantBuffer.add(gavinRecord);
-
-							// cycle previous and current genes
-							previousGenes = currentGenes;
+						}
+						// add variant to global buffer
+						variantBuffer.add(gavinRecord);
 
-							// if result batch ready, start streaming it out
-							if (resultBatch != null && resultBatch.hasNext())
-							{
-								LOG.debug("[GeneStream] Returning first result of gene stream batch");
-								nextResult = resultBatch.next();
-								return true;
-							}
-							//else: nothing to return for this gene after perGene(previousGene, variantsForGene)
-							//so we go straight to cleanup in the next iteration
+						// cycle previous and current genes
+						previousGenes = currentGenes;
+					}
+					else if (!isFilterNonRelevant)
+					{
+						windows.variants.add(gavinRecord);
+					}
 
-						}else{
-							if(!isFilterNonRelevant)
-							{
-								nextResult = gavinRecord;
-								return true;
-							}
-						}
+					if (pollWindows(false))
+					{
+						return true;
 					}
 				}
 
@@ -137,39 +177,123 @@ public abstract class GeneStream
 				{
 					LOG.debug("[GeneStream] Buffer has " + variantBuffer.size() + " variants left in "
 							+ variantBufferPerGene.keySet().toString());
-					for (String gene : variantBufferPerGene.keySet())
-					{
-						try
-						{
-							perGene(gene, variantBufferPerGene.get(gene));
-						}
-						catch (Exception e)
-						{
-							throw new RuntimeException(e);
-						}
-					}
-					resultBatch = new ArrayList<>(variantBuffer).iterator();
-					variantBuffer = new ArrayList<>();
-					variantBufferPerGene = new HashMap<>();
-					if (resultBatch.hasNext())
+					addWindow();
+				}
+				return pollWindows(true);
+			}
+
+			private void addWindow()
+			{
+				LOG.debug("[GeneStream] Adding window of genes " + variantBufferPerGene.keySet());
+				windows.variantsPerGene.add(variantBufferPerGene);
+				windows.variants.addAll(variantBuffer);
+
+				//reset buffers
+				variantBuffer = new ArrayList<>();
+				variantBufferPerGene = new HashMap<>();
+			}
+
+			/**
+			 * Processes the windows on this thread, or submits them and takes the result of the first task once it
+			 * is done
+			 *
+			 * @return whether a new result batch was created
+			 */
+			private boolean pollWindows(boolean endOfInput)
+			{
+				if (forkJoinPool == null)
+				{
+					if (windows.variants.isEmpty())
 					{
-						LOG.debug("[GeneStream] Returning first of remaining variants");
-						nextResult = resultBatch.next();
-						return true;
+						return false;
 					}
+					resultBatch = processWindows(windows).iterator();
+					windows = new Windows();
+					return true;
 				}
 
+				if (windows.variants.size() >= BATCH_SIZE || (endOfInput && !windows.variants.isEmpty()))
+				{
+					Windows submittedWindows = windows;
+					tasks.add(forkJoinPool.submit(() -> processWindows(submittedWindows)));
+					windows = new Windows();
+				}
+				if (!tasks.isEmpty() && (endOfInput || tasks.peek().isDone()
+						|| tasks.size() >= threads * TASKS_PER_THREAD))
+				{
+					resultBatch = awaitTask(tasks.poll()).iterator();
+					return true;
+				}
 				return false;
 			}
+		};
+	}
 
-			@Override
-			public GavinRecord next()
+	private List<GavinRecord> processWindows(Windows windows)
+	{
+		for (Map<String, List<GavinRecord>> variantBufferPerGene : windows.variantsPerGene)
+		{
+			// process per gene in abstract function
+			for (String gene : variantBufferPerGene.keySet())
 			{
-				return nextResult;
+				LOG.debug("[GeneStream] Processing gene " + gene + " having " + variantBufferPerGene.get(gene).size()
+						+ " variants");
+				try
+				{
+					perGene(gene, variantBufferPerGene.get(gene));
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
 			}
-		};
+		}
+		return windows.variants;
 	}
 
+	private static List<GavinRecord> awaitTask(ForkJoinTask<List<GavinRecord>> task)
+	{
+		try
+		{
+			return task.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Stops the threads that process gene windows, if any
+	 */
+	@Override
+	public void close()
+	{
+		if (forkJoinPool != null)
+		{
+			forkJoinPool.shutdownNow();
+		}
+	}
+
+	@Override
 	public abstract void perGene(String gene, List<GavinRecord> variantsPerGene) throws Exception;
 
+	/**
+	 * Consecutive gene windows and the variants to output after processing them, including the non relevant variants
+	 * in between
+	 */
+	private static class Windows
+	{
+		private final List<Map<String, List<GavinRecord>>> variantsPerGene = new ArrayList<>();
+		private final List<GavinRecord> variants = new ArrayList<>();
+	}
 }
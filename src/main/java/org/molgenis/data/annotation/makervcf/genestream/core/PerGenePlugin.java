@@ -0,0 +1,13 @@
+package org.molgenis.data.annotation.makervcf.genestream.core;
+
+import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
+
+import java.util.List;
+
+/**
+ * Processes the variants of a gene window, see {@link GeneStream} and {@link CompositeGeneStream}
+ */
+public interface PerGenePlugin
+{
+	void perGene(String gene, List<GavinRecord> variantsPerGene) throws Exception;
+}
@@ -0,0 +1,118 @@
+package org.molgenis.data.annotation.makervcf.genestream.core;
+
+import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
+
+/**
+ * Restores the positional order of records that were re-ordered by gene. Every record gets an ordinal when it is
+ * read from the positional stream, records that come back are put in a ring buffer indexed by ordinal and are
+ * polled as soon as all records before them were polled or skipped. The ring buffer only holds the records between
+ * the oldest record that did not come back yet and the last record that was read.
+ * <p>
+ * Not thread safe, the gene stream and its conversion back to a positional stream must run on the same thread.
+ */
+public class PositionalOrder
+{
+	private static final int INITIAL_CAPACITY = 64;
+	/**
+	 * marks the slot of a record that never comes back, e.g. because it is not relevant for any of its genes
+	 */
+	private static final Object SKIPPED = new Object();
+
+	private Object[] slots = new Object[INITIAL_CAPACITY];
+	/**
+	 * ordinal of the next record to poll
+	 */
+	private long head = 0;
+	/**
+	 * ordinal of the next record to read
+	 */
+	private long tail = 0;
+
+	/**
+	 * Assigns the next ordinal to a record that is read from the positional stream
+	 */
+	public void add(GavinRecord gavinRecord)
+	{
+		if (tail - head == slots.length)
+		{
+			grow();
+		}
+		gavinRecord.setOrdinal(tail++);
+	}
+
+	/**
+	 * Marks a record that was read but that will not come back
+	 */
+	public void skip(GavinRecord gavinRecord)
+	{
+		slots[getSlot(gavinRecord.getOrdinal())] = SKIPPED;
+	}
+
+	/**
+	 * Puts a record that came back in its positional order
+	 */
+	public void put(GavinRecord gavinRecord)
+	{
+		long ordinal = gavinRecord.getOrdinal();
+		if (ordinal < head || ordinal >= tail)
+		{
+			throw new IllegalArgumentException(
+					"Record " + gavinRecord.toStringShort() + " with ordinal " + ordinal + " is not awaited");
+		}
+		slots[getSlot(ordinal)] = gavinRecord;
+	}
+
+	/**
+	 * @return the next record in positional order or null if it did not come back yet
+	 */
+	public GavinRecord poll()
+	{
+		return poll(false);
+	}
+
+	/**
+	 * Polls the next record in positional order, skipping the records that did not come back. Only to be used once
+	 * no more records come back.
+	 *
+	 * @return the next record that came back or null if there are none left
+	 */
+	public GavinRecord pollRemaining()
+	{
+		return poll(true);
+	}
+
+	private GavinRecord poll(boolean skipMissing)
+	{
+		while (head < tail)
+		{
+			int slot = getSlot(head);
+			Object record = slots[slot];
+			if (record == null && !skipMissing)
+			{
+				return null;
+			}
+			slots[slot] = null;
+			++head;
+			if (record != null && record != SKIPPED)
+			{
+				return (GavinRecord) record;
+			}
+		}
+		return null;
+	}
+
+	private int getSlot(long ordinal)
+	{
+		return (int) (ordinal & (slots.length - 1));
+	}
+
+	private void grow()
+	{
+		Object[] newSlots = new Object[slots.length * 2];
+		for (long ordinal = head; ordinal < tail; ++ordinal)
+		{
+			newSlots[(int) (ordinal & (newSlots.length - 1))] = slots[getSlot(ordinal)];
+		}
+		slots = newSlots;
+	}
+}
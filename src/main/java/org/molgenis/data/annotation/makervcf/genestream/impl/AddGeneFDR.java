@@ -1,5 +1,6 @@
 package org.molgenis.data.annotation.makervcf.genestream.impl;
 
+import org.molgenis.data.annotation.makervcf.genestream.core.CompositeGeneStream;
 import org.molgenis.data.annotation.makervcf.genestream.core.GeneStream;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
 import org.molgenis.data.annotation.makervcf.structs.Relevance;
@@ -41,6 +42,30 @@ public class AddGeneFDR extends GeneStream
 		}
 	}
 
+	public AddGeneFDR(Iterator<GavinRecord> relevantVariants, Map<String, Double> affectedFrac,
+			Map<String, Double> carrierFrac)
+	{
+		super(relevantVariants);
+		this.affectedFrac = affectedFrac;
+		this.carrierFrac = carrierFrac;
+	}
+
+	/**
+	 * Creates a plugin for a {@link CompositeGeneStream}
+	 */
+	public AddGeneFDR(File fdrFile) throws FileNotFoundException
+	{
+		this(null, fdrFile);
+	}
+
+	/**
+	 * Creates a plugin for a {@link CompositeGeneStream}
+	 */
+	public AddGeneFDR(Map<String, Double> affectedFrac, Map<String, Double> carrierFrac)
+	{
+		this(null, affectedFrac, carrierFrac);
+	}
+
 	@Override
 	public void perGene(String gene, List<GavinRecord> gavinRecords)
 	{
@@ -1,18 +1,14 @@
 package org.molgenis.data.annotation.makervcf.genestream.impl;
 
-import org.apache.commons.collections.map.MultiKeyMap;
+import org.molgenis.data.annotation.makervcf.genestream.core.CompositeGeneStream;
 import org.molgenis.data.annotation.makervcf.genestream.core.GeneStream;
-import org.molgenis.data.annotation.makervcf.positionalstream.MatchVariantsToGenotypeAndInheritance;
 import org.molgenis.data.annotation.makervcf.positionalstream.MatchVariantsToGenotypeAndInheritance.Status;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
 import org.molgenis.data.annotation.makervcf.structs.Relevance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Created by joeri on 7/13/16.
@@ -27,104 +23,119 @@ public class AssignCompoundHet extends GeneStream
 		super(relevantVariants);
 	}
 
+	/**
+	 * Creates a plugin for a {@link CompositeGeneStream}
+	 */
+	public AssignCompoundHet()
+	{
+		super();
+	}
+
+	/**
+	 * Samples that are heterozygous or carrier for the same allele of a gene in two or more variants are compound
+	 * heterozygous. Samples are tracked as bits in one set of seen and one set of marked samples per allele.
+	 */
 	@Override
 	public void perGene(String gene, List<GavinRecord> variantsPerGene)
 	{
-		MultiKeyMap geneAlleleToSeenSamples = new MultiKeyMap();
-		MultiKeyMap geneAlleleToMarkedSamples = new MultiKeyMap();
+		Map<String, BitSet> alleleToSeenSamples = new HashMap<>();
+		Map<String, BitSet> alleleToMarkedSamples = new HashMap<>();
+		// only used for samples that are not in the VCF header, e.g. when relevances were created by hand
+		Map<String, Integer> otherSampleIndices = new HashMap<>();
 
 		for (GavinRecord gavinRecord : variantsPerGene)
 		{
-			if (gavinRecord.isRelevant())
+			for (Relevance rlv : gavinRecord.getRelevance())
 			{
-				for (Relevance rlv : gavinRecord.getRelevance())
+				if (!rlv.getGene().equals(gene))
 				{
-					if (!rlv.getGene().equals(gene))
+					continue;
+				}
+				BitSet hitSamples = new BitSet();
+				for (Map.Entry<String, Status> entry : rlv.getSampleStatus().entrySet())
+				{
+					if (entry.getValue() == Status.HETEROZYGOUS || entry.getValue() == Status.CARRIER)
 					{
-						continue;
+						LOG.debug("[AssignCompoundHet] Gene {} , sample: {}, Status: {}", rlv.getGene(),
+								entry.getKey(), entry.getValue());
+						hitSamples.set(getSampleIndex(gavinRecord, entry.getKey(), otherSampleIndices));
 					}
-					for (String sample : rlv.getSampleStatus().keySet())
-					{
-						if (rlv.getSampleStatus().get(sample)
-								== MatchVariantsToGenotypeAndInheritance.Status.HETEROZYGOUS
-								|| rlv.getSampleStatus().get(sample)
-								== MatchVariantsToGenotypeAndInheritance.Status.CARRIER)
-						{
-							LOG.debug("[AssignCompoundHet] Gene {} , sample: {}, Status: {}", rlv.getGene(), sample,
-									rlv.getSampleStatus().get(sample));
-							if (geneAlleleToSeenSamples.get(rlv.getGene(), rlv.getAllele()) != null
-									&& ((Set<String>) geneAlleleToSeenSamples.get(rlv.getGene(),
-									rlv.getAllele())).contains(sample))
-							{
-								LOG.debug("[AssignCompoundHet] Marking as potential compound heterozygous: {}", sample);
-
-								if (geneAlleleToMarkedSamples.containsKey(rlv.getGene(), rlv.getAllele()))
-								{
-									((Set<String>) geneAlleleToMarkedSamples.get(rlv.getGene(), rlv.getAllele())).add(
-											sample);
-								}
-								else
-								{
-									Set<String> markedSamples = new HashSet<>();
-									markedSamples.add(sample);
-									geneAlleleToMarkedSamples.put(rlv.getGene(), rlv.getAllele(), markedSamples);
-								}
-							}
-
-							if (geneAlleleToSeenSamples.containsKey(rlv.getGene(), rlv.getAllele()))
-							{
-								((Set<String>) geneAlleleToSeenSamples.get(rlv.getGene(), rlv.getAllele())).add(sample);
-							}
-							else
-							{
-								Set<String> seenSamples = new HashSet<>();
-								seenSamples.add(sample);
-								geneAlleleToSeenSamples.put(rlv.getGene(), rlv.getAllele(), seenSamples);
-							}
-						}
+				}
+				if (hitSamples.isEmpty())
+				{
+					continue;
+				}
 
+				BitSet seenSamples = alleleToSeenSamples.get(rlv.getAllele());
+				if (seenSamples == null)
+				{
+					alleleToSeenSamples.put(rlv.getAllele(), hitSamples);
+					continue;
+				}
+				BitSet markedSamples = (BitSet) seenSamples.clone();
+				markedSamples.and(hitSamples);
+				if (!markedSamples.isEmpty())
+				{
+					LOG.debug("[AssignCompoundHet] Marking as potential compound heterozygous: {}", markedSamples);
+					BitSet allMarkedSamples = alleleToMarkedSamples.get(rlv.getAllele());
+					if (allMarkedSamples != null)
+					{
+						allMarkedSamples.or(markedSamples);
+					}
+					else
+					{
+						alleleToMarkedSamples.put(rlv.getAllele(), markedSamples);
 					}
 				}
+				seenSamples.or(hitSamples);
 			}
 		}
 
+		if (alleleToMarkedSamples.isEmpty())
+		{
+			return;
+		}
+
 		//iterate again and update marked samples
-		for (GavinRecord rv : variantsPerGene)
+		for (GavinRecord gavinRecord : variantsPerGene)
 		{
-			for (Relevance rlv : rv.getRelevance())
+			for (Relevance rlv : gavinRecord.getRelevance())
 			{
 				if (!rlv.getGene().equals(gene))
 				{
 					continue;
 				}
-				if (geneAlleleToMarkedSamples.get(rlv.getGene(), rlv.getAllele()) != null)
+				BitSet markedSamples = alleleToMarkedSamples.get(rlv.getAllele());
+				if (markedSamples == null)
 				{
-					for (String sample : ((Set<String>) geneAlleleToMarkedSamples.get(rlv.getGene(), rlv.getAllele())))
+					continue;
+				}
+				for (Map.Entry<String, Status> entry : rlv.getSampleStatus().entrySet())
+				{
+					if (entry.getValue() != Status.HETEROZYGOUS && entry.getValue() != Status.CARRIER
+							|| !markedSamples.get(getSampleIndex(gavinRecord, entry.getKey(), otherSampleIndices)))
 					{
-						if (rlv.getSampleStatus().containsKey(sample))
-						{
-							if (rlv.getSampleStatus().get(sample) == Status.HETEROZYGOUS)
-							{
-								LOG.debug("[AssignCompoundHet] Reassigning {} from {} to {}", sample,
-										MatchVariantsToGenotypeAndInheritance.Status.HETEROZYGOUS,
-										Status.HOMOZYGOUS_COMPOUNDHET);
-								rlv.getSampleStatus().put(sample, Status.HOMOZYGOUS_COMPOUNDHET);
-							}
-							else if (rlv.getSampleStatus().get(sample)
-									== MatchVariantsToGenotypeAndInheritance.Status.CARRIER)
-							{
-								LOG.debug("[AssignCompoundHet] Reassigning {} from {} to {}", sample,
-										MatchVariantsToGenotypeAndInheritance.Status.CARRIER,
-										Status.AFFECTED_COMPOUNDHET);
-								rlv.getSampleStatus()
-								   .put(sample, MatchVariantsToGenotypeAndInheritance.Status.AFFECTED_COMPOUNDHET);
-							}
-						}
+						continue;
 					}
+					Status compoundStatus = entry.getValue() == Status.HETEROZYGOUS ?
+							Status.HOMOZYGOUS_COMPOUNDHET : Status.AFFECTED_COMPOUNDHET;
+					LOG.debug("[AssignCompoundHet] Reassigning {} from {} to {}", entry.getKey(), entry.getValue(),
+							compoundStatus);
+					entry.setValue(compoundStatus);
 				}
-
 			}
 		}
 	}
 
+	private static int getSampleIndex(GavinRecord gavinRecord, String sample, Map<String, Integer> otherSampleIndices)
+	{
+		int sampleIndex = gavinRecord.getSampleIndex(sample);
+		if (sampleIndex != -1)
+		{
+			return sampleIndex;
+		}
+		// after the samples in the VCF
+		return otherSampleIndices.computeIfAbsent(sample,
+				otherSample -> gavinRecord.getAnnotatedVcfRecord().getNrSamples() + otherSampleIndices.size());
+	}
 }
@@ -1,5 +1,6 @@
 package org.molgenis.data.annotation.makervcf.genestream.impl;
 
+import org.molgenis.data.annotation.makervcf.genestream.core.CompositeGeneStream;
 import org.molgenis.data.annotation.makervcf.genestream.core.GeneStream;
 import org.molgenis.data.annotation.makervcf.positionalstream.MatchVariantsToGenotypeAndInheritance;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
@@ -54,6 +55,14 @@ public class PhasingCompoundCheck extends GeneStream
 		super(relevantVariants);
 	}
 
+	/**
+	 * Creates a plugin for a {@link CompositeGeneStream}
+	 */
+	public PhasingCompoundCheck()
+	{
+		super();
+	}
+
 	@Override
 	public void perGene(String gene, List<GavinRecord> variantsPerGene) throws Exception
 	{
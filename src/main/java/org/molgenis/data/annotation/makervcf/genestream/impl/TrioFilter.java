@@ -2,6 +2,7 @@ package org.molgenis.data.annotation.makervcf.genestream.impl;
 
 import org.apache.commons.lang.StringUtils;
 import org.molgenis.calibratecadd.support.GavinUtils;
+import org.molgenis.data.annotation.makervcf.genestream.core.CompositeGeneStream;
 import org.molgenis.data.annotation.makervcf.genestream.core.GeneStream;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
 import org.molgenis.data.annotation.makervcf.structs.Relevance;
@@ -42,6 +43,14 @@ public class TrioFilter extends GeneStream
 		LOG.debug("[TrioFilter] Parents: {}", parents);
 	}
 
+	/**
+	 * Creates a plugin for a {@link CompositeGeneStream}
+	 */
+	public TrioFilter(TrioData td)
+	{
+		this(null, td);
+	}
+
 	public static TrioData getTrioData(File inputVcfFile) throws Exception
 	{
 		Scanner scanner = GavinUtils.createVcfFileScanner(inputVcfFile);
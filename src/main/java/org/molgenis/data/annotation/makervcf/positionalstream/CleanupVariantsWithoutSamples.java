@@ -82,6 +82,10 @@ public class CleanupVariantsWithoutSamples
 					}
 					return false;
 				}
+				catch (RuntimeException e)
+				{
+					throw e;
+				}
 				catch (Exception e)
 				{
 					throw new RuntimeException(e);
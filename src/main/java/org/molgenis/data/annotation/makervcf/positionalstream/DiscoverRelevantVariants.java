@@ -4,20 +4,27 @@ import org.molgenis.calibratecadd.support.GavinUtils;
 import org.molgenis.data.annotation.core.entity.impl.gavin.Judgment;
 import org.molgenis.data.annotation.core.entity.impl.snpeff.Impact;
 import org.molgenis.data.annotation.entity.impl.gavin.GavinAlgorithm;
-import org.molgenis.data.annotation.makervcf.structs.GavinCalibrations;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinThresholdTable;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinVerdict;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinVerdictCache;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
 import org.molgenis.data.annotation.makervcf.structs.Relevance;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
 import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores;
 import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores.Mode;
 import org.molgenis.data.annotation.makervcf.util.LabVariants;
 import org.molgenis.data.annotation.makervcf.util.ReportedPathogenic;
+import org.molgenis.data.annotation.makervcf.util.VariantLookup;
 import org.molgenis.vcf.VcfReader;
 import org.molgenis.vcf.VcfRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Created by joeri on 6/1/16.
@@ -25,31 +32,112 @@ import java.util.*;
  * Scan through a VCF, apply GAVIN to site-variant-allele-gene combinations, mark variants that are pathogenic or VOUS.
  * Also run past known pathogenic/likely pathogenic variants in ClinVar.
  * Result is a list of 'judged variants' with all meta data stored within.
+ * <p>
+ * Closed once all records were returned, close it when stopping earlier to release the input and classifying threads.
  */
-public class DiscoverRelevantVariants
+public class DiscoverRelevantVariants implements Closeable
 {
 	private static final Logger LOG = LoggerFactory.getLogger(DiscoverRelevantVariants.class);
+	/**
+	 * number of records read before their classification is handed to the fork join pool
+	 */
+	static final int BATCH_SIZE = 256;
 	private VcfReader vcf;
 	private LabVariants lab;
-	private GavinCalibrations gavinCalibrations;
+	private GavinThresholdTable gavinThresholds;
 	private GavinAlgorithm gavin;
+	/**
+	 * GAVIN verdict cache of each classifying thread and all created caches for their statistics, null if verdicts
+	 * are not cached
+	 */
+	private ThreadLocal<GavinVerdictCache> verdictCaches;
+	private Queue<GavinVerdictCache> verdictCacheList;
+	/**
+	 * classifies batches of records if classifying on multiple threads, otherwise null
+	 */
+	private ForkJoinPool forkJoinPool;
 	private HandleMissingCaddScores hmcs;
+	/**
+	 * whether repPatho, lab and hmcs were created by this class and need to be closed when finished
+	 */
+	private boolean closeLookups;
 	private ReportedPathogenic repPatho;
 	private boolean keepAllVariants;
+	private Set<String> chromosomes;
+	private boolean closed;
 
 	public DiscoverRelevantVariants(File vcfFile, File gavinFile, File repPathoFile, File caddFile, File labVariants,
 			Mode mode, boolean keepAllVariants) throws Exception
 	{
-		this.vcf = GavinUtils.getVcfReader(vcfFile);
-		this.repPatho = new ReportedPathogenic(repPathoFile);
-		this.keepAllVariants = keepAllVariants;
-		if (labVariants != null)
+		this(vcfFile, gavinFile, repPathoFile, caddFile, labVariants, mode, keepAllVariants,
+				VariantLookup.Mode.MEMORY);
+	}
+
+	public DiscoverRelevantVariants(File vcfFile, File gavinFile, File repPathoFile, File caddFile, File labVariants,
+			Mode mode, boolean keepAllVariants, VariantLookup.Mode lookupMode) throws Exception
+	{
+		this(vcfFile, GavinThresholdTable.create(GavinUtils.getGeneToEntry(gavinFile)),
+				new ReportedPathogenic(repPathoFile, lookupMode),
+				labVariants != null ? new LabVariants(labVariants, lookupMode) : null,
+				new HandleMissingCaddScores(mode, caddFile, lookupMode),
+				DiscoverRelevantVariantsSettings.builder().setKeepAllVariants(keepAllVariants).build());
+		this.closeLookups = true;
+	}
+
+	/**
+	 * @param lab lab variants, may be null
+	 */
+	public DiscoverRelevantVariants(File vcfFile, GavinThresholdTable gavinThresholds, ReportedPathogenic repPatho,
+			LabVariants lab, HandleMissingCaddScores hmcs, DiscoverRelevantVariantsSettings settings) throws Exception
+	{
+		List<String> chromosomes = settings.chromosomes();
+		if (chromosomes != null)
 		{
-			this.lab = new LabVariants(labVariants);
+			Long offset = settings.offset();
+			this.vcf = offset != null ? GavinUtils.getVcfReader(vcfFile, offset) : GavinUtils.getVcfReader(vcfFile,
+					chromosomes.get(0));
+			this.chromosomes = new HashSet<>(chromosomes);
 		}
+		else
+		{
+			this.vcf = GavinUtils.getVcfReader(vcfFile);
+		}
+		this.repPatho = repPatho;
+		this.keepAllVariants = settings.keepAllVariants();
+		this.lab = lab;
 		this.gavin = new GavinAlgorithm();
-		this.gavinCalibrations = GavinUtils.getGeneToEntry(gavinFile);
-		this.hmcs = new HandleMissingCaddScores(mode, caddFile);
+		this.gavinThresholds = gavinThresholds;
+		int verdictCacheSize = settings.verdictCacheSize();
+		if (verdictCacheSize > 0)
+		{
+			this.verdictCacheList = new ConcurrentLinkedQueue<>();
+			this.verdictCaches = ThreadLocal.withInitial(() ->
+			{
+				GavinVerdictCache verdictCache = new GavinVerdictCache(gavin, gavinThresholds, verdictCacheSize);
+				verdictCacheList.add(verdictCache);
+				return verdictCache;
+			});
+		}
+		int classificationThreads = settings.classificationThreads();
+		this.forkJoinPool = classificationThreads > 1 ? new ForkJoinPool(classificationThreads) : null;
+		this.hmcs = hmcs;
+	}
+
+	/**
+	 * @return number of GAVIN verdicts found in the caches of all threads
+	 */
+	public long getNrVerdictCacheHits()
+	{
+		return verdictCacheList != null ? verdictCacheList.stream().mapToLong(GavinVerdictCache::getNrHits).sum() : 0;
+	}
+
+	/**
+	 * @return number of GAVIN verdicts not found in the caches of all threads
+	 */
+	public long getNrVerdictCacheMisses()
+	{
+		return verdictCacheList != null ?
+				verdictCacheList.stream().mapToLong(GavinVerdictCache::getNrMisses).sum() : 0;
 	}
 
 	public Iterator<GavinRecord> findRelevantVariants()
@@ -68,207 +156,476 @@ public class DiscoverRelevantVariants
 			String chrom;
 			String previousChrom = null;
 
-			String chrPosRefAlt;
-			String previouschrPosRefAlt = null;
+			VariantKey chrPosRefAlt;
+			VariantKey previouschrPosRefAlt = null;
 
 			Set<String> chromosomesSeenBefore = new HashSet<>();
 
+			boolean endOfInput = false;
+			boolean finished = false;
+
+			/**
+			 * if classifying on multiple threads: relevant records of the classified batch in input order and the
+			 * batch that is classified while the records of the current batch are returned
+			 */
+			Iterator<GavinRecord> batchIterator = Collections.emptyIterator();
+			ForkJoinTask<List<GavinRecord>> pendingBatch;
+
 			@Override
 			public boolean hasNext()
 			{
-				while (vcfIterator.hasNext())
+				if (finished)
 				{
-						GavinRecord gavinRecord = new GavinRecord(vcfIterator.next());
-
-						pos = gavinRecord.getPosition();
-						chrom = gavinRecord.getChromosome();
-						chrPosRefAlt = gavinRecord.getChrPosRefAlt();
-
-						// check: no 'before' positions on the same chromosome allowed
-						if (previousPos != -1 && previousChrom != null && pos < previousPos && previousChrom.equals(
-								chrom))
+					return false;
+				}
+				try
+				{
+					if (forkJoinPool != null)
+					{
+						return hasNextBatched();
+					}
+					GavinRecord gavinRecord;
+					while ((gavinRecord = readRecord()) != null)
+					{
+						List<Relevance> relevance = classify(gavinRecord, getCaddScores(gavinRecord));
+						if (keep(gavinRecord, relevance))
 						{
-							throw new RuntimeException(
-									"Site position " + pos + " before " + previousPos + " on the same chromosome ("
-											+ chrom + ") not allowed. Please sort your VCF file.");
+							nextResult = gavinRecord;
+							return true;
 						}
+					}
+					return finish();
+				}
+				catch (RuntimeException | Error e)
+				{
+					finished = true;
+					closeQuietly(e);
+					throw e;
+				}
+			}
 
-						// check: same chrom+pos+ref+alt combinations not allowed
-						if (previouschrPosRefAlt != null && previouschrPosRefAlt.equals(chrPosRefAlt))
+			private boolean hasNextBatched()
+			{
+				while (!batchIterator.hasNext())
+				{
+					ForkJoinTask<List<GavinRecord>> batch = pendingBatch != null ? pendingBatch : submitBatch();
+					if (batch == null)
+					{
+						return finish();
+					}
+					// read and classify the next batch while the records of this batch are returned
+					pendingBatch = submitBatch();
+					batchIterator = awaitBatch(batch).iterator();
+				}
+				nextResult = batchIterator.next();
+				return true;
+			}
+
+			/**
+			 * Reads a batch of records, and their CADD scores, on this thread to keep the order checks and CADD
+			 * lookups sequential, and classifies the records on the fork join pool.
+			 *
+			 * @return relevant records of the batch in input order or null if there are no more records
+			 */
+			private ForkJoinTask<List<GavinRecord>> submitBatch()
+			{
+				List<GavinRecord> gavinRecords = new ArrayList<>(BATCH_SIZE);
+				List<Double[]> caddScores = new ArrayList<>(BATCH_SIZE);
+				GavinRecord gavinRecord;
+				while (gavinRecords.size() < BATCH_SIZE && (gavinRecord = readRecord()) != null)
+				{
+					gavinRecords.add(gavinRecord);
+					caddScores.add(getCaddScores(gavinRecord));
+				}
+				if (gavinRecords.isEmpty())
+				{
+					return null;
+				}
+				return forkJoinPool.submit(() ->
+				{
+					List<List<Relevance>> relevances = new ArrayList<>(
+							Collections.nCopies(gavinRecords.size(), null));
+					new ClassifyTask(gavinRecords, caddScores, relevances, 0, gavinRecords.size()).invoke();
+
+					List<GavinRecord> keptRecords = new ArrayList<>();
+					for (int i = 0; i < gavinRecords.size(); i++)
+					{
+						if (keep(gavinRecords.get(i), relevances.get(i)))
 						{
-							throw new RuntimeException("Chrom-pos-ref-alt combination seen twice: " + chrPosRefAlt
-									+ ". This is not allowed. Please check your VCF file.");
+							keptRecords.add(gavinRecords.get(i));
 						}
+					}
+					return keptRecords;
+				});
+			}
+
+			private List<GavinRecord> awaitBatch(ForkJoinTask<List<GavinRecord>> batch)
+			{
+				try
+				{
+					return batch.get();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof RuntimeException)
+					{
+						throw (RuntimeException) e.getCause();
+					}
+					throw new RuntimeException(e.getCause());
+				}
+			}
 
-						// check: when encountering new chromosome, save previous one seen before
-						// subsequently, we should not encounter this chromosome again (e.g. 1, 2, 3, then 2 again)
-						if (previousChrom != null && !previousChrom.equals(chrom))
+			/**
+			 * @return next record of the requested chromosomes that passed the order checks or null if there are no
+			 * more records
+			 */
+			private GavinRecord readRecord()
+			{
+				while (!endOfInput && vcfIterator.hasNext())
+				{
+					VcfRecord vcfRecord = vcfIterator.next();
+					if (chromosomes != null && !chromosomes.contains(vcfRecord.getChromosome()))
+					{
+						// sorted input: once past the requested chromosomes there is nothing left to discover
+						if (previousChrom != null)
 						{
-							chromosomesSeenBefore.add(previousChrom);
+							endOfInput = true;
+							return null;
 						}
-						if (chromosomesSeenBefore.contains(chrom))
-						{
-							throw new RuntimeException("Chromosome " + chrom
-									+ " was interrupted by other chromosomes. Please sort your VCF file.");
+						continue;
+					}
+
+					GavinRecord gavinRecord = new GavinRecord(vcfRecord);
+
+					pos = gavinRecord.getPosition();
+					chrom = gavinRecord.getChromosome();
+					chrPosRefAlt = gavinRecord.getVariantKey();
+
+					// check: no 'before' positions on the same chromosome allowed
+					if (previousPos != -1 && previousChrom != null && pos < previousPos && previousChrom.equals(
+							chrom))
+					{
+						throw new RuntimeException(
+								"Site position " + pos + " before " + previousPos + " on the same chromosome ("
+										+ chrom + ") not allowed. Please sort your VCF file.");
+					}
+
+					// check: same chrom+pos+ref+alt combinations not allowed
+					if (previouschrPosRefAlt != null && previouschrPosRefAlt.equals(chrPosRefAlt))
+					{
+						throw new RuntimeException("Chrom-pos-ref-alt combination seen twice: " + chrPosRefAlt
+								+ ". This is not allowed. Please check your VCF file.");
+					}
+
+					// check: when encountering new chromosome, save previous one seen before
+					// subsequently, we should not encounter this chromosome again (e.g. 1, 2, 3, then 2 again)
+					if (previousChrom != null && !previousChrom.equals(chrom))
+					{
+						chromosomesSeenBefore.add(previousChrom);
+					}
+					if (chromosomesSeenBefore.contains(chrom))
+					{
+						throw new RuntimeException("Chromosome " + chrom
+								+ " was interrupted by other chromosomes. Please sort your VCF file.");
+
+					}
+
+					// cycle for next iteration
+					previousPos = pos;
+					previousChrom = chrom;
+					previouschrPosRefAlt = chrPosRefAlt;
+
+					return gavinRecord;
+				}
+				endOfInput = true;
+				return null;
+			}
 
-						}
+			@Override
+			public GavinRecord next()
+			{
+				return nextResult;
+			}
 
-						// cycle for next iteration
-						previousPos = pos;
-						previousChrom = chrom;
-						previouschrPosRefAlt = chrPosRefAlt;
+			private boolean finish()
+			{
+				finished = true;
+				if (verdictCacheList != null)
+				{
+					LOG.info("[DiscoverRelevantVariants] GAVIN verdict cache hits: {}, misses: {}",
+							getNrVerdictCacheHits(), getNrVerdictCacheMisses());
+				}
+				try
+				{
+					close();
+				}
+				catch (IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+				return false;
+			}
 
-						List<Relevance> relevance = new ArrayList<>();
+			private void closeQuietly(Throwable cause)
+			{
+				try
+				{
+					close();
+				}
+				catch (IOException | RuntimeException e)
+				{
+					cause.addSuppressed(e);
+				}
+			}
+		};
+	}
 
-						/*
-						  Iterate over alternatives, if applicable multi allelic example: 1:1148100-1148100
-						 */
-						for (int i = 0; i < gavinRecord.getAlts().length; i++)
-						{
-							Double cadd;
-							try
-							{
-								cadd = hmcs.dealWithCaddScores(gavinRecord, i);
-							}
-							catch (Exception e)
-							{
-								throw new RuntimeException(e);
-							}
-
-							//if mitochondrial, we have less tools / data, can't do much, just match to clinvar
-							if (gavinRecord.getChromosome().equals("MT") || gavinRecord.getChromosome().equals("M")
-									|| gavinRecord.getChromosome().equals("mtDNA"))
-							{
-								Judgment judgment = null;
-								Judgment labJudgment;
-								try
-								{
-									labJudgment = lab != null ? lab.classifyVariant(gavinRecord, gavinRecord.getAlt(i),
-											"MT") : null;
-								}
-								catch (Exception e)
-								{
-									throw new RuntimeException(e);
-								}
-								Judgment repPathoJudgment;
-								try
-								{
-									repPathoJudgment = repPatho.classifyVariant(gavinRecord, gavinRecord.getAlt(i), "MT");
-								}
-								catch (Exception e)
-								{
-									throw new RuntimeException(e);
-								}
-
-								if (labJudgment != null
-										&& labJudgment.getClassification() == Judgment.Classification.Pathogenic)
-								{
-									judgment = labJudgment;
-								}
-								else if (repPathoJudgment != null
-										&& repPathoJudgment.getClassification() == Judgment.Classification.Pathogenic)
-								{
-									judgment = repPathoJudgment;
-								}
-
-								if (judgment != null && judgment.getClassification()
-																.equals(Judgment.Classification.Pathogenic))
-								{
-									gavinRecord.setGenes(judgment.getGene());
-									relevance.add(new Relevance(gavinRecord.getAlt(i), repPathoJudgment.getGene(),
-											gavinRecord.getExAcAlleleFrequencies(i),
-											gavinRecord.getGoNlAlleleFrequencies(i), repPathoJudgment.getGene(),
-											repPathoJudgment));
-								}
-							}
-
-							else
-							{
-
-								if (gavinRecord.getGenes().isEmpty())
-								{
-									LOG.debug("[DiscoverRelevantVariants] WARNING: no genes for variant {}",
-											gavinRecord.toStringShort());
-								}
-								for (String gene : gavinRecord.getGenes())
-								{
-									Optional<Impact> impact = gavinRecord.getImpact(i, gene);
-									Optional<String> transcript = gavinRecord.getTranscript(i, gene);
-
-									Judgment judgment = null;
-									Judgment labJudgment;
-									try
-									{
-										labJudgment = lab != null ? lab.classifyVariant(gavinRecord, gavinRecord.getAlt(i),
-												gene) : null;
-									}
-									catch (Exception e)
-									{
-										throw new RuntimeException(e);
-									}
-									Judgment repPathoJudgment;
-									try
-									{
-										repPathoJudgment = repPatho.classifyVariant(gavinRecord,
-												gavinRecord.getAlt(i), gene);
-									}
-									catch (Exception e)
-									{
-										throw new RuntimeException(e);
-									}
-
-									Judgment gavinJudgment = gavin.classifyVariant(impact.orElse(null), cadd,
-											gavinRecord.getExAcAlleleFrequencies(i), gene, gavinCalibrations);
-
-									if (labJudgment != null
-											&& labJudgment.getClassification() == Judgment.Classification.Pathogenic)
-									{
-										judgment = labJudgment;
-									}
-									else if (repPathoJudgment != null && repPathoJudgment.getClassification()
-											== Judgment.Classification.Pathogenic)
-									{
-										judgment = repPathoJudgment;
-									}
-									else if (gavinJudgment != null
-											&& gavinJudgment.getClassification() == Judgment.Classification.Pathogenic)
-									{
-										judgment = gavinJudgment.setSource("GAVIN").setType("Predicted pathogenic");
-									}
-
-									if (judgment != null
-											&& judgment.getClassification() == Judgment.Classification.Pathogenic)
-									{
-										relevance.add(new Relevance(gavinRecord.getAlt(i), transcript.orElse(null),
-												gavinRecord.getExAcAlleleFrequencies(i),
-												gavinRecord.getGoNlAlleleFrequencies(i), gene, judgment));
-									}
-								}
-							}
-						}
+	/**
+	 * Stops the classifying threads and closes the input, and the reported pathogenic, lab variant and CADD lookups
+	 * if they were created by this class
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		if (forkJoinPool != null)
+		{
+			forkJoinPool.shutdownNow();
+		}
+		try (Closeable input = vcf)
+		{
+			if (closeLookups)
+			{
+				try (Closeable repPathoLookup = repPatho; Closeable labLookup = lab; Closeable caddLookup = hmcs)
+				{
+					// closed in reverse order, also if closing one of them fails
+				}
+			}
+		}
+	}
 
-						if (!relevance.isEmpty())
-						{
-							gavinRecord.setRelevances(relevance);
-							nextResult = gavinRecord;
-							LOG.debug("[DiscoverRelevantVariants] Found relevant variant: {}",
-									nextResult.toStringShort());
-							return true;
-						}
-						else if (keepAllVariants)
+	/**
+	 * @return CADD scores of the alts, looked up in input order because the CADD lookup can be a cursor over a sorted
+	 * file or write the variants without a score
+	 */
+	private Double[] getCaddScores(GavinRecord gavinRecord)
+	{
+		Double[] caddScores = new Double[gavinRecord.getAlts().length];
+		for (int i = 0; i < caddScores.length; i++)
+		{
+			try
+			{
+				caddScores[i] = hmcs.dealWithCaddScores(gavinRecord, i);
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+		return caddScores;
+	}
+
+	/**
+	 * @return whether the record is returned, with the relevances set if there are any
+	 */
+	private boolean keep(GavinRecord gavinRecord, List<Relevance> relevance)
+	{
+		if (!relevance.isEmpty())
+		{
+			gavinRecord.setRelevances(relevance);
+			LOG.debug("[DiscoverRelevantVariants] Found relevant variant: {}", gavinRecord.toStringShort());
+			return true;
+		}
+		return keepAllVariants;
+	}
+
+	/**
+	 * Classifies the alts of the record with the lab variants, reported pathogenic variants and GAVIN. Called from
+	 * multiple threads if classifying on multiple threads, so only reads state apart from the GAVIN verdict cache of
+	 * the calling thread. This is only thread-safe if the lookups use {@link VariantLookup.Mode#MEMORY}, because the
+	 * lookups of the other modes keep a read position. Classifying on multiple threads with another lookup mode is
+	 * rejected by {@link org.molgenis.data.annotation.makervcf.Main} and
+	 * {@link org.molgenis.data.annotation.makervcf.PipelineSettings.Builder#build()}.
+	 *
+	 * @return relevances of the pathogenic alt-gene combinations
+	 */
+	private List<Relevance> classify(GavinRecord gavinRecord, Double[] caddScores)
+	{
+		List<Relevance> relevance = new ArrayList<>();
+
+		/*
+		  Iterate over alternatives, if applicable multi allelic example: 1:1148100-1148100
+		 */
+		for (int i = 0; i < gavinRecord.getAlts().length; i++)
+		{
+			double caddScaled = caddScores[i] != null ? caddScores[i] : Double.NaN;
+			double exacMAF = gavinRecord.getExAcAlleleFrequencies(i);
+
+			//if mitochondrial, we have less tools / data, can't do much, just match to clinvar
+			if (gavinRecord.getChromosome().equals("MT") || gavinRecord.getChromosome().equals("M")
+					|| gavinRecord.getChromosome().equals("mtDNA"))
+			{
+				Judgment judgment = null;
+				Judgment labJudgment;
+				try
+				{
+					labJudgment = lab != null ? lab.classifyVariant(gavinRecord, i, "MT") : null;
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+				Judgment repPathoJudgment;
+				try
+				{
+					repPathoJudgment = repPatho.classifyVariant(gavinRecord, i, "MT");
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+
+				if (labJudgment != null
+						&& labJudgment.getClassification() == Judgment.Classification.Pathogenic)
+				{
+					judgment = labJudgment;
+				}
+				else if (repPathoJudgment != null
+						&& repPathoJudgment.getClassification() == Judgment.Classification.Pathogenic)
+				{
+					judgment = repPathoJudgment;
+				}
+
+				if (judgment != null && judgment.getClassification()
+												.equals(Judgment.Classification.Pathogenic))
+				{
+					gavinRecord.setGenes(judgment.getGene());
+					relevance.add(new Relevance(gavinRecord.getAlt(i), repPathoJudgment.getGene(),
+							gavinRecord.getExAcAlleleFrequencies(i),
+							gavinRecord.getGoNlAlleleFrequencies(i), repPathoJudgment.getGene(),
+							repPathoJudgment));
+				}
+			}
+
+			else
+			{
+
+				if (gavinRecord.getGenes().isEmpty())
+				{
+					LOG.debug("[DiscoverRelevantVariants] WARNING: no genes for variant {}",
+							gavinRecord.toStringShort());
+				}
+				for (String gene : gavinRecord.getGenes())
+				{
+					Optional<Impact> impact = gavinRecord.getImpact(i, gene);
+					Optional<String> transcript = gavinRecord.getTranscript(i, gene);
+
+					Judgment judgment = null;
+					Judgment labJudgment;
+					try
+					{
+						labJudgment = lab != null ? lab.classifyVariant(gavinRecord, i, gene) : null;
+					}
+					catch (Exception e)
+					{
+						throw new RuntimeException(e);
+					}
+					Judgment repPathoJudgment;
+					try
+					{
+						repPathoJudgment = repPatho.classifyVariant(gavinRecord, i, gene);
+					}
+					catch (Exception e)
+					{
+						throw new RuntimeException(e);
+					}
+
+					if (labJudgment != null
+							&& labJudgment.getClassification() == Judgment.Classification.Pathogenic)
+					{
+						judgment = labJudgment;
+					}
+					else if (repPathoJudgment != null && repPathoJudgment.getClassification()
+							== Judgment.Classification.Pathogenic)
+					{
+						judgment = repPathoJudgment;
+					}
+					else
+					{
+						// only the reason of a kept GAVIN verdict is worth generating
+						GavinVerdict gavinVerdict = verdictCaches != null ?
+								verdictCaches.get().classify(impact.orElse(null), caddScaled, exacMAF, gene) :
+								gavin.classify(impact.orElse(null), caddScaled, exacMAF, gene, gavinThresholds);
+						if (gavinVerdict.getClassification() == Judgment.Classification.Pathogenic)
 						{
-							nextResult = gavinRecord;
-							return true;
+							judgment = gavin.toJudgment(gavinVerdict, impact.orElse(null), caddScaled, exacMAF, gene,
+									gavinThresholds).setSource("GAVIN").setType("Predicted pathogenic");
 						}
+					}
+
+					if (judgment != null
+							&& judgment.getClassification() == Judgment.Classification.Pathogenic)
+					{
+						relevance.add(new Relevance(gavinRecord.getAlt(i), transcript.orElse(null),
+								gavinRecord.getExAcAlleleFrequencies(i),
+								gavinRecord.getGoNlAlleleFrequencies(i), gene, judgment));
+					}
 				}
-				return false;
 			}
+		}
 
-			@Override
-			public GavinRecord next()
+		return relevance;
+	}
+
+	/**
+	 * Classifies a range of records of a batch, splitting the range over the threads of the fork join pool.
+	 */
+	private class ClassifyTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private static final int MAX_RECORDS_PER_TASK = 16;
+
+		private final List<GavinRecord> gavinRecords;
+		private final List<Double[]> caddScores;
+		private final List<List<Relevance>> relevances;
+		private final int from;
+		private final int to;
+
+		ClassifyTask(List<GavinRecord> gavinRecords, List<Double[]> caddScores, List<List<Relevance>> relevances,
+				int from, int to)
+		{
+			this.gavinRecords = gavinRecords;
+			this.caddScores = caddScores;
+			this.relevances = relevances;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= MAX_RECORDS_PER_TASK)
 			{
-				return nextResult;
+				for (int i = from; i < to; i++)
+				{
+					relevances.set(i, classify(gavinRecords.get(i), caddScores.get(i)));
+				}
 			}
-		};
+			else
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new ClassifyTask(gavinRecords, caddScores, relevances, from, middle),
+						new ClassifyTask(gavinRecords, caddScores, relevances, middle, to));
+			}
+		}
 	}
 }
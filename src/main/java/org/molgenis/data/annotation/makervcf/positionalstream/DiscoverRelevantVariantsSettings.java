@@ -0,0 +1,77 @@
+package org.molgenis.data.annotation.makervcf.positionalstream;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Options of {@link DiscoverRelevantVariants}
+ */
+@AutoValue
+public abstract class DiscoverRelevantVariantsSettings
+{
+	/**
+	 * @return only discover relevant variants on these consecutive chromosomes (in file order), or on all chromosomes
+	 * if null
+	 */
+	@Nullable
+	public abstract List<String> chromosomes();
+
+	/**
+	 * @return byte offset of the first record of the chromosomes in an uncompressed VCF file, or null to look up the
+	 * first record in the tabix index of a compressed VCF file
+	 */
+	@Nullable
+	public abstract Long offset();
+
+	public abstract boolean keepAllVariants();
+
+	/**
+	 * @return maximum number of cached GAVIN verdicts per thread, or 0 to classify every variant
+	 */
+	public abstract int verdictCacheSize();
+
+	/**
+	 * @return number of threads that classify batches of records, if more than 1 the reported pathogenic and lab
+	 * variants are used from multiple threads, which requires lookup mode MEMORY
+	 */
+	public abstract int classificationThreads();
+
+	public static Builder builder()
+	{
+		return new AutoValue_DiscoverRelevantVariantsSettings.Builder().setKeepAllVariants(false)
+																	   .setVerdictCacheSize(0)
+																	   .setClassificationThreads(1);
+	}
+
+	@AutoValue.Builder
+	public abstract static class Builder
+	{
+		public abstract Builder setChromosomes(List<String> chromosomes);
+
+		public abstract Builder setOffset(Long offset);
+
+		public abstract Builder setKeepAllVariants(boolean keepAllVariants);
+
+		public abstract Builder setVerdictCacheSize(int verdictCacheSize);
+
+		public abstract Builder setClassificationThreads(int classificationThreads);
+
+		abstract DiscoverRelevantVariantsSettings autoBuild();
+
+		public DiscoverRelevantVariantsSettings build()
+		{
+			DiscoverRelevantVariantsSettings settings = autoBuild();
+			if (settings.classificationThreads() < 1)
+			{
+				throw new IllegalArgumentException("classificationThreads must be at least 1");
+			}
+			if (settings.verdictCacheSize() < 0)
+			{
+				throw new IllegalArgumentException("verdictCacheSize must not be negative");
+			}
+			return settings;
+		}
+	}
+}
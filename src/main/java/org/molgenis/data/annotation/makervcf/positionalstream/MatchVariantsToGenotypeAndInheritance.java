@@ -1,7 +1,6 @@
 package org.molgenis.data.annotation.makervcf.positionalstream;
 
 import org.apache.commons.collections.map.MultiKeyMap;
-import org.apache.commons.lang.StringUtils;
 import org.molgenis.cgd.CGDEntry;
 import org.molgenis.cgd.LoadCGD;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
@@ -9,6 +8,7 @@ import org.molgenis.data.annotation.makervcf.structs.GenoMatchSamples;
 import org.molgenis.data.annotation.makervcf.structs.Relevance;
 import org.molgenis.data.annotation.makervcf.structs.RelevanceUtils;
 import org.molgenis.data.vcf.datastructures.Sample;
+import org.molgenis.vcf.VcfGenotypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,9 +73,15 @@ public class MatchVariantsToGenotypeAndInheritance
 
 	public MatchVariantsToGenotypeAndInheritance(Iterator<GavinRecord> gavinRecords, File cgdFile, Set<String> parents)
 			throws IOException
+	{
+		this(gavinRecords, LoadCGD.loadCGD(cgdFile), parents);
+	}
+
+	public MatchVariantsToGenotypeAndInheritance(Iterator<GavinRecord> gavinRecords, Map<String, CGDEntry> cgd,
+			Set<String> parents)
 	{
 		this.gavinRecords = gavinRecords;
-		this.cgd = LoadCGD.loadCGD(cgdFile);
+		this.cgd = cgd;
 		this.minDepth = 1;
 		this.parents = parents;
 	}
@@ -167,7 +173,7 @@ public class MatchVariantsToGenotypeAndInheritance
 	}
 
 	/**
-	 *
+	 * Matches the decoded genotypes of the record to the inheritance mode of each relevant gene and alt allele.
 	 */
 	public MultiKeyMap findMatchingSamples(GavinRecord record)
 	{
@@ -178,38 +184,46 @@ public class MatchVariantsToGenotypeAndInheritance
 
 		Set<String> parentsWithReferenceCalls = new HashSet<>();
 
-		Iterator<Sample> samples = record.getSamples().iterator();
-		int sampleIndex = -1;
-		while (samples.hasNext())
+		// the allele index of each alt and the inheritance of each gene are the same for all samples
+		String[] altArray = alts.toArray(new String[alts.size()]);
+		int[] altIndices = new int[altArray.length];
+		for (int i = 0; i < altArray.length; i++)
 		{
-			Sample sample = samples.next();
+			altIndices[i] = record.getAltAlleleIndex(altArray[i]);
+		}
+		String[] geneArray = genes.toArray(new String[genes.size()]);
+		generalizedInheritance[] inheritances = new generalizedInheritance[geneArray.length];
+		for (int i = 0; i < geneArray.length; i++)
+		{
+			CGDEntry ce = cgd.get(geneArray[i]);
+			inheritances[i] = ce != null ? ce.getGeneralizedInheritance() : generalizedInheritance.NOTINCGD;
+		}
 
-			if (!sample.getGenotype().isPresent())
+		VcfGenotypes genotypes = record.getGenotypes();
+		for (int sampleIndex = 0; sampleIndex < genotypes.getNrSamples(); sampleIndex++)
+		{
+			if (!genotypes.hasGenotype(sampleIndex))
 			{
 				continue;
 			}
 
-			String genotype = sample.getGenotype().get();
-			String sampleName = sample.getId();
-
 			// quality filter: we want depth X or more, if available
-			if (sample.getDepth().isPresent())
+			int depth = genotypes.getDepth(sampleIndex);
+			if (depth != VcfGenotypes.MISSING_DEPTH && depth < minDepth)
 			{
-				if (sample.getDepth().get() < minDepth)
-				{
-					continue;
-				}
+				continue;
 			}
 
 			// skip empty genotypes
-			if (genotype.equals("./.") || genotype.equals(".|.") || genotype.equals("."))
+			if (genotypes.isMissing(sampleIndex))
 			{
 				continue;
 			}
 
 			// skip reference genotypes unless parents of a child for de novo detection
-			if (genotype.equals("0/0") || genotype.equals("0|0") || genotype.equals("0"))
+			if (genotypes.isReference(sampleIndex))
 			{
+				String sampleName = record.getSampleName(sampleIndex);
 				if (parents.contains(sampleName))
 				{
 					parentsWithReferenceCalls.add(sampleName);
@@ -217,29 +231,36 @@ public class MatchVariantsToGenotypeAndInheritance
 				continue;
 			}
 
+			// only created for samples that match
+			Sample sample = null;
+			int ploidy = genotypes.getPloidy(sampleIndex);
+
 			//now that everything is okay, we can match to inheritance mode for each alt
-			for (String alt : alts)
+			for (int i = 0; i < altArray.length; i++)
 			{
-				int altIndex = record.getAltAlleleIndex(alt);
+				int altCount = genotypes.countAllele(sampleIndex, altIndices[i]);
 
 				//and each gene
-				for (String gene : genes)
+				for (int j = 0; j < geneArray.length; j++)
 				{
-					HashMap<String, Sample> carriers = new HashMap<>();
-					HashMap<String, Sample> affected = new HashMap<>();
+					GenoMatchSamples match = (GenoMatchSamples) result.get(geneArray[j], altArray[i]);
+					if (match == null)
+					{
+						match = new GenoMatchSamples(new HashMap<>(), new HashMap<>());
+						result.put(geneArray[j], altArray[i], match);
+					}
 
-					CGDEntry ce = cgd.get(gene);
-					generalizedInheritance inheritance =
-							ce != null ? ce.getGeneralizedInheritance() : generalizedInheritance.NOTINCGD;
+					generalizedInheritance inheritance = inheritances[j];
 
 					//all dominant types, so no carriers, and only requirement is that genotype contains 1 alt allele somewhere
 					if (inheritance.equals(generalizedInheritance.DOMINANT_OR_RECESSIVE) || inheritance.equals(
 							generalizedInheritance.DOMINANT))
 					{
 						// 1 or more, so works for hemizygous too
-						if (genotype.contains(altIndex + ""))
+						if (altCount > 0)
 						{
-							affected.put(sampleName, sample);
+							sample = sample != null ? sample : toSample(record, genotypes, sampleIndex);
+							match.affected.put(sample.getId(), sample);
 						}
 					}
 
@@ -251,26 +272,21 @@ public class MatchVariantsToGenotypeAndInheritance
 							|| inheritance.equals(generalizedInheritance.NOTINCGD) || inheritance.equals(
 							generalizedInheritance.BLOODGROUP))
 					{
-						boolean homozygous = genotype.equals(altIndex + "/" + altIndex) || genotype.equals(
-								altIndex + "|" + altIndex);
-						boolean hemizygous = genotype.equals(altIndex + "");
-						boolean heterozygous =
-								genotype.length() == 3 && StringUtils.countMatches(genotype, altIndex + "") == 1;
-
-						// regular homozygous
-						if (homozygous)
-						{
-							affected.put(sampleName, sample);
-						}
-						//for hemizygous, 1 allele is enough of course
-						else if (hemizygous)
+						boolean homozygous = ploidy == 2 && altCount == 2;
+						boolean hemizygous = ploidy == 1 && altCount == 1;
+						boolean heterozygous = ploidy == 2 && altCount == 1;
+
+						// regular homozygous, or hemizygous for which 1 allele is enough of course
+						if (homozygous || hemizygous)
 						{
-							affected.put(sampleName, sample);
+							sample = sample != null ? sample : toSample(record, genotypes, sampleIndex);
+							match.affected.put(sample.getId(), sample);
 						}
 						// heterozygous, ie. carriers when disease is recessive
 						else if (heterozygous)
 						{
-							carriers.put(sampleName, sample);
+							sample = sample != null ? sample : toSample(record, genotypes, sampleIndex);
+							match.carriers.put(sample.getId(), sample);
 						}
 
 					}
@@ -278,25 +294,11 @@ public class MatchVariantsToGenotypeAndInheritance
 					{
 						throw new RuntimeException("inheritance unknown: " + inheritance);
 					}
-
-					//FIXME: set directly above with put instead of via putAll afterwards?
-					if (result.containsKey(gene, alt))
-					{
-						GenoMatchSamples match = (GenoMatchSamples) result.get(gene, alt);
-						match.carriers.putAll(carriers);
-						match.affected.putAll(affected);
-					}
-					else
-					{
-						GenoMatchSamples match = new GenoMatchSamples(carriers, affected);
-						result.put(gene, alt, match);
-					}
 				}
 			}
 		}
 
 		//for relevant combinations, set parents with reference calls (--> this is not related to alternative alleles or gene combinations)
-		// FIXME JvdV: : also this can be set directly, earlier?
 		for (String alt : alts)
 		{
 			for (String gene : genes)
@@ -310,4 +312,11 @@ public class MatchVariantsToGenotypeAndInheritance
 
 		return result;
 	}
+
+	private static Sample toSample(GavinRecord record, VcfGenotypes genotypes, int sampleIndex)
+	{
+		int depth = genotypes.getDepth(sampleIndex);
+		return new Sample(record.getSampleName(sampleIndex), genotypes.getGenotype(sampleIndex),
+				depth != VcfGenotypes.MISSING_DEPTH ? (double) depth : null);
+	}
 }
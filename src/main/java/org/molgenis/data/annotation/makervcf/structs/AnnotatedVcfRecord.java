@@ -7,7 +7,6 @@ import org.molgenis.vcf.VcfRecordUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -30,9 +29,23 @@ public class AnnotatedVcfRecord extends VcfRecord
 	private static final String REPORTEDPATHOGENIC = "REPORTEDPATHOGENIC";
 	public static final String CADD_SCALED = "CADD_SCALED";
 
+	private transient SnpEffAnnotations cachedAnnotations;
+
 	public AnnotatedVcfRecord(VcfRecord record)
 	{
-		super(record.getVcfMeta(), record.getTokens());
+		super(record);
+		if (record instanceof AnnotatedVcfRecord)
+		{
+			// immutable, so it can be shared with the copy
+			this.cachedAnnotations = ((AnnotatedVcfRecord) record).cachedAnnotations;
+		}
+	}
+
+	@Override
+	protected void resetCaches()
+	{
+		super.resetCaches();
+		this.cachedAnnotations = null;
 	}
 
 	double getExAcAlleleFrequencies(int i)
@@ -55,35 +68,42 @@ public class AnnotatedVcfRecord extends VcfRecord
 
 	Set<String> getGenesFromAnn()
 	{
-		Optional<VcfInfo> optionalVcfInfo = VcfRecordUtils.getInformation(ANN, this);
-		return optionalVcfInfo.map(vcfInfo ->
-		{
-			String ann = vcfInfo.getValRaw();
-			Set<String> genes = new HashSet<>();
-			String[] annSplit = ann.split(",", -1);
-			for (String oneAnn : annSplit)
-			{
-				String[] fields = oneAnn.split("\\|", -1);
-				String gene = fields[3];
-				genes.add(gene);
-			}
-			return genes;
-
-		}).orElse(emptySet());
+		SnpEffAnnotations annotations = getAnnotations();
+		return annotations.isPresent() ? annotations.getGenes() : emptySet();
 	}
 
 	Optional<Impact> getImpact(int i, String gene)
 	{
+		SnpEffAnnotations annotations = getAnnotations();
+		if (!annotations.isPresent())
+		{
+			return Optional.empty();
+		}
 		String allele = VcfRecordUtils.getAltsAsStringArray(this)[i];
-		Optional<VcfInfo> optionalVcfInfo = VcfRecordUtils.getInformation(ANN, this);
-		return optionalVcfInfo.map(vcfInfo -> getImpact(vcfInfo.getValRaw(), gene, allele));
+		int annotation = findAnnotation(annotations, gene, allele);
+		if (annotation == -1)
+		{
+			LOG.warn("failed to get impact for gene '{}', allele '{}' in {}", gene, allele, annotations.getAnn());
+			return Optional.empty();
+		}
+		return Optional.of(annotations.getImpact(annotation));
 	}
 
 	Optional<String> getTranscript(int i, String gene)
 	{
+		SnpEffAnnotations annotations = getAnnotations();
+		if (!annotations.isPresent())
+		{
+			return Optional.empty();
+		}
 		String allele = VcfRecordUtils.getAltsAsStringArray(this)[i];
-		Optional<VcfInfo> optionalVcfInfo = VcfRecordUtils.getInformation(ANN, this);
-		return optionalVcfInfo.map(vcfInfo -> getTranscript(vcfInfo.getValRaw(), gene, allele));
+		int annotation = findAnnotation(annotations, gene, allele);
+		if (annotation == -1)
+		{
+			LOG.warn("failed to get impact for gene '{}', allele '{}' in {}", gene, allele, annotations.getAnn());
+			return Optional.empty();
+		}
+		return Optional.of(annotations.getTranscript(annotation));
 	}
 
 	public List<RVCF> getRvcf()
@@ -106,58 +126,28 @@ public class AnnotatedVcfRecord extends VcfRecord
 		return optionalVcfInfo.map(vcfInfo -> (String) vcfInfo.getVal());
 	}
 
-	private static Impact getImpact(String ann, String gene, String allele)
+	/**
+	 * @return SnpEff annotations, parsed on first access
+	 */
+	private SnpEffAnnotations getAnnotations()
 	{
-		//get the right annotation entry that matches both gene and allele
-		String findAnn = getAnn(ann, gene, allele);
-		if (findAnn == null)
+		if (cachedAnnotations == null)
 		{
-			LOG.warn("failed to get impact for gene '{}', allele '{}' in {}", gene, allele, ann);
-			return null;
-		}
-		else
-		{
-			//from the right one, get the impact
-			String[] fields = findAnn.split("\\|", -1);
-			String impact = fields[2];
-			return Impact.valueOf(impact);
+			Optional<VcfInfo> optionalVcfInfo = VcfRecordUtils.getInformation(ANN, this);
+			cachedAnnotations = optionalVcfInfo.map(vcfInfo -> SnpEffAnnotations.parse(vcfInfo.getValRaw()))
+											   .orElse(SnpEffAnnotations.NONE);
 		}
+		return cachedAnnotations;
 	}
 
-	private static String getTranscript(String ann, String gene, String allele)
+	private static int findAnnotation(SnpEffAnnotations annotations, String gene, String allele)
 	{
 		//get the right annotation entry that matches both gene and allele
-		String findAnn = getAnn(ann, gene, allele);
-		if (findAnn == null)
-		{
-			LOG.warn("failed to get impact for gene '{}', allele '{}' in {}", gene, allele, ann);
-			return null;
-		}
-		else
-		{
-			//from the right one, get the impact
-			String[] fields = findAnn.split("\\|", -1);
-			return fields[6];//fields[6] == transcript
-		}
-	}
-
-	private static String getAnn(String ann, String gene, String allele)
-	{
-		String[] annSplit = ann.split(",", -1);
-		for (String oneAnn : annSplit)
+		int annotation = annotations.find(allele, gene);
+		if (annotation == -1)
 		{
-			String[] fields = oneAnn.split("\\|", -1);
-			String geneFromAnn = fields[3];
-			if (gene.equals(geneFromAnn))
-			{
-				String alleleFromAnn = fields[0];
-				if (allele.equals(alleleFromAnn))
-				{
-					return oneAnn;
-				}
-			}
+			LOG.warn("annotation could not be found for {}, allele={}, ann={}", gene, allele, annotations.getAnn());
 		}
-		LOG.warn("annotation could not be found for {}, allele={}, ann={}", gene, allele, ann);
-		return null;
+		return annotation;
 	}
 }
@@ -3,6 +3,7 @@ package org.molgenis.data.annotation.makervcf.structs;
 import org.apache.commons.lang3.StringUtils;
 import org.molgenis.data.annotation.core.entity.impl.snpeff.Impact;
 import org.molgenis.data.vcf.datastructures.Sample;
+import org.molgenis.vcf.VcfGenotypes;
 import org.molgenis.vcf.VcfRecord;
 import org.molgenis.vcf.VcfRecordUtils;
 
@@ -20,10 +21,22 @@ public class GavinRecord
 	private AnnotatedVcfRecord annotatedVcfRecord;
 	private List<Relevance> relevances;
 	/**
-	 * Any associated genes
+	 * Any associated genes, parsed from the SnpEff annotations on first access unless set before
 	 */
 	private Set<String> genes;
+	/**
+	 * Parsed on first access unless set before
+	 */
 	private Double[] caddPhredScores;
+	private VariantKey variantKey;
+	/**
+	 * Back trimmed key of each alt, created on first access
+	 */
+	private VariantKey[] altVariantKeys;
+	/**
+	 * Position of this record in the positional stream, assigned when the stream is converted to a gene stream
+	 */
+	private long ordinal = -1;
 
 	public GavinRecord(VcfRecord record)
 	{
@@ -34,9 +47,6 @@ public class GavinRecord
 	{
 		this.annotatedVcfRecord = new AnnotatedVcfRecord(record);
 		this.relevances = requireNonNull(relevances);
-
-		this.genes = annotatedVcfRecord.getGenesFromAnn();
-		this.caddPhredScores = annotatedVcfRecord.getCaddPhredScores();
 	}
 
 	public AnnotatedVcfRecord getAnnotatedVcfRecord()
@@ -56,21 +66,29 @@ public class GavinRecord
 
 	public Double getCaddPhredScore(int i)
 	{
-		return caddPhredScores[i];
+		return getCaddPhredScores()[i];
 	}
 
 	public Double[] getCaddPhredScores()
 	{
+		if (caddPhredScores == null)
+		{
+			caddPhredScores = annotatedVcfRecord.getCaddPhredScores();
+		}
 		return caddPhredScores;
 	}
 
 	public void setCaddPhredScore(int i, Double phredScore)
 	{
-		this.caddPhredScores[i] = phredScore;
+		getCaddPhredScores()[i] = phredScore;
 	}
 
 	public Set<String> getGenes()
 	{
+		if (genes == null)
+		{
+			genes = annotatedVcfRecord.getGenesFromAnn();
+		}
 		return genes;
 	}
 
@@ -89,6 +107,16 @@ public class GavinRecord
 		return relevances;
 	}
 
+	public long getOrdinal()
+	{
+		return ordinal;
+	}
+
+	public void setOrdinal(long ordinal)
+	{
+		this.ordinal = ordinal;
+	}
+
 	public String toStringShort()
 	{
 		return annotatedVcfRecord.getChromosome() + " " + annotatedVcfRecord.getPosition() + " "
@@ -100,6 +128,27 @@ public class GavinRecord
 		return VcfRecordUtils.toSamples(annotatedVcfRecord);
 	}
 
+	/**
+	 * @return genotypes of all samples, the sample columns are only decoded when this method is called
+	 */
+	public VcfGenotypes getGenotypes()
+	{
+		return annotatedVcfRecord.getGenotypes();
+	}
+
+	public String getSampleName(int sample)
+	{
+		return annotatedVcfRecord.getVcfMeta().getSampleName(sample);
+	}
+
+	/**
+	 * @return index of the sample with the given name or -1 if there is no such sample
+	 */
+	public int getSampleIndex(String sampleName)
+	{
+		return annotatedVcfRecord.getVcfMeta().getSampleIndex(sampleName);
+	}
+
 	public int getAltAlleleIndex(String alt)
 	{
 		return VcfRecordUtils.getAltAlleleIndex(annotatedVcfRecord, alt);
@@ -166,7 +215,37 @@ public class GavinRecord
 
 	public String getChrPosRefAlt()
 	{
-		return VcfRecordUtils.getChrPosRefAlt(annotatedVcfRecord);
+		return getVariantKey().toString();
+	}
+
+	/**
+	 * @return key of this record with the ref and all alts as is
+	 */
+	public VariantKey getVariantKey()
+	{
+		if (variantKey == null)
+		{
+			variantKey = VariantKey.create(getChromosome(), getPosition(), getRef(), StringUtils.join(getAlts(), ','));
+		}
+		return variantKey;
+	}
+
+	/**
+	 * @return back trimmed key of the variant of the given alt, as used to look up the variant in other sources
+	 */
+	public VariantKey getVariantKey(int altIndex)
+	{
+		if (altVariantKeys == null)
+		{
+			altVariantKeys = new VariantKey[getAlts().length];
+		}
+		VariantKey altVariantKey = altVariantKeys[altIndex];
+		if (altVariantKey == null)
+		{
+			altVariantKey = VariantKey.createBackTrimmed(getChromosome(), getPosition(), getRef(), getAlt(altIndex));
+			altVariantKeys[altIndex] = altVariantKey;
+		}
+		return altVariantKey;
 	}
 
 	public int getAltIndex(String allele) throws Exception
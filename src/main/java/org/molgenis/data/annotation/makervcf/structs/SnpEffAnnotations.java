@@ -0,0 +1,195 @@
+package org.molgenis.data.annotation.makervcf.structs;
+
+import org.molgenis.data.annotation.core.entity.impl.snpeff.Impact;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SnpEff ANN annotations of one record, parsed once. Instead of splitting the ANN value into strings, the bounds of the
+ * allele, impact, gene and transcript columns of each annotation are stored and only the requested values are turned
+ * into strings.
+ */
+final class SnpEffAnnotations
+{
+	static final SnpEffAnnotations NONE = new SnpEffAnnotations(null, 0, new int[0]);
+
+	private static final char ANNOTATION_SEPARATOR = ',';
+	private static final char COLUMN_SEPARATOR = '|';
+	private static final Impact[] IMPACTS = Impact.values();
+
+	// ANN columns, see http://snpeff.sourceforge.net/VCFannotationformat_v1.0.pdf
+	private static final int ALLELE_COLUMN = 0;
+	private static final int IMPACT_COLUMN = 2;
+	private static final int GENE_COLUMN = 3;
+	private static final int TRANSCRIPT_COLUMN = 6;
+
+	// per annotation: start and end of the allele, impact, gene and transcript columns, -1 if absent
+	private static final int ALLELE = 0;
+	private static final int IMPACT = 2;
+	private static final int GENE = 4;
+	private static final int TRANSCRIPT = 6;
+	private static final int ANNOTATION_SIZE = 8;
+
+	private final String ann;
+	private final int nrAnnotations;
+	private final int[] bounds;
+
+	private SnpEffAnnotations(String ann, int nrAnnotations, int[] bounds)
+	{
+		this.ann = ann;
+		this.nrAnnotations = nrAnnotations;
+		this.bounds = bounds;
+	}
+
+	static SnpEffAnnotations parse(String ann)
+	{
+		// annotations are separated by commas, so the number of annotations is known before parsing
+		int nrAnnotations = 1;
+		for (int i = 0; i < ann.length(); ++i)
+		{
+			if (ann.charAt(i) == ANNOTATION_SEPARATOR)
+			{
+				++nrAnnotations;
+			}
+		}
+		int[] bounds = new int[nrAnnotations * ANNOTATION_SIZE];
+		Arrays.fill(bounds, -1);
+
+		int annotation = 0;
+		int column = 0;
+		int columnStart = 0;
+		for (int i = 0; i <= ann.length(); ++i)
+		{
+			char c = i < ann.length() ? ann.charAt(i) : ANNOTATION_SEPARATOR;
+			if (c == COLUMN_SEPARATOR || c == ANNOTATION_SEPARATOR)
+			{
+				int field = getField(column);
+				if (field != -1)
+				{
+					bounds[annotation * ANNOTATION_SIZE + field] = columnStart;
+					bounds[annotation * ANNOTATION_SIZE + field + 1] = i;
+				}
+				columnStart = i + 1;
+				if (c == ANNOTATION_SEPARATOR)
+				{
+					++annotation;
+					column = 0;
+				}
+				else
+				{
+					++column;
+				}
+			}
+		}
+		return new SnpEffAnnotations(ann, nrAnnotations, bounds);
+	}
+
+	private static int getField(int column)
+	{
+		switch (column)
+		{
+			case ALLELE_COLUMN:
+				return ALLELE;
+			case IMPACT_COLUMN:
+				return IMPACT;
+			case GENE_COLUMN:
+				return GENE;
+			case TRANSCRIPT_COLUMN:
+				return TRANSCRIPT;
+			default:
+				return -1;
+		}
+	}
+
+	boolean isPresent()
+	{
+		return ann != null;
+	}
+
+	String getAnn()
+	{
+		return ann;
+	}
+
+	Set<String> getGenes()
+	{
+		Set<String> genes = new HashSet<>();
+		for (int annotation = 0; annotation < nrAnnotations; ++annotation)
+		{
+			// annotations of the same gene are usually adjacent, only create a string for a different gene
+			if (annotation == 0 || !regionEquals(annotation, GENE, annotation - 1, GENE))
+			{
+				genes.add(getValue(annotation, GENE));
+			}
+		}
+		return genes;
+	}
+
+	/**
+	 * @return index of the first annotation of the allele and gene or -1 if there is no such annotation
+	 */
+	int find(String allele, String gene)
+	{
+		for (int annotation = 0; annotation < nrAnnotations; ++annotation)
+		{
+			if (regionEquals(annotation, GENE, gene) && regionEquals(annotation, ALLELE, allele))
+			{
+				return annotation;
+			}
+		}
+		return -1;
+	}
+
+	Impact getImpact(int annotation)
+	{
+		for (Impact impact : IMPACTS)
+		{
+			if (regionEquals(annotation, IMPACT, impact.name()))
+			{
+				return impact;
+			}
+		}
+		// throws the same exception as parsing an unknown impact would
+		return Impact.valueOf(getValue(annotation, IMPACT));
+	}
+
+	String getTranscript(int annotation)
+	{
+		return getValue(annotation, TRANSCRIPT);
+	}
+
+	private String getValue(int annotation, int field)
+	{
+		int start = getStart(annotation, field);
+		return ann.substring(start, bounds[annotation * ANNOTATION_SIZE + field + 1]);
+	}
+
+	private boolean regionEquals(int annotation, int field, String value)
+	{
+		int start = getStart(annotation, field);
+		int length = bounds[annotation * ANNOTATION_SIZE + field + 1] - start;
+		return length == value.length() && ann.regionMatches(start, value, 0, length);
+	}
+
+	private boolean regionEquals(int annotation, int field, int otherAnnotation, int otherField)
+	{
+		int start = getStart(annotation, field);
+		int length = bounds[annotation * ANNOTATION_SIZE + field + 1] - start;
+		int otherStart = getStart(otherAnnotation, otherField);
+		int otherLength = bounds[otherAnnotation * ANNOTATION_SIZE + otherField + 1] - otherStart;
+		return length == otherLength && ann.regionMatches(start, ann, otherStart, length);
+	}
+
+	private int getStart(int annotation, int field)
+	{
+		int start = bounds[annotation * ANNOTATION_SIZE + field];
+		if (start == -1)
+		{
+			throw new AnnotatedVcfParseException(
+					String.format("Missing SnpEff ANN column in annotation %d of '%s'", annotation, ann));
+		}
+		return start;
+	}
+}
@@ -0,0 +1,246 @@
+package org.molgenis.data.annotation.makervcf.structs;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Compact key of a variant to use in lookup tables instead of "chr_pos_ref_alt" Strings. The chromosome is stored as a
+ * contig id and the ref and alt alleles are packed in a long (2 bits per base) when they are short and only consist of
+ * A, C, G and T bases.
+ * <p>
+ * Keys for lookups are created with {@link #createBackTrimmed}, so that all lookup tables use the same normalization.
+ */
+public final class VariantKey
+{
+	private static final String SEPARATOR = "_";
+	private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+
+	// packed alleles: ref length, alt length and the ref followed by the alt bases in the lowest bits
+	private static final int MAX_PACKED_BASES = 24;
+	private static final int REF_LENGTH_SHIFT = 53;
+	private static final int ALT_LENGTH_SHIFT = 48;
+	private static final long LENGTH_MASK = 0x1F;
+
+	// contig ids are shared by all keys and assigned in order of first use
+	private static final Map<String, Integer> CONTIG_IDS = new ConcurrentHashMap<>();
+	private static final List<String> CONTIGS = new CopyOnWriteArrayList<>();
+
+	private final int contig;
+	private final int position;
+	private final long packedAlleles;
+	/**
+	 * ref and alt separated by '_' for alleles that cannot be packed, null otherwise
+	 */
+	private final String alleles;
+
+	private VariantKey(int contig, int position, long packedAlleles, String alleles)
+	{
+		this.contig = contig;
+		this.position = position;
+		this.packedAlleles = packedAlleles;
+		this.alleles = alleles;
+	}
+
+	/**
+	 * @return key of the variant with ref and alt as is, e.g. to identify records
+	 */
+	public static VariantKey create(String chromosome, int position, String ref, String alt)
+	{
+		return create(chromosome, position, ref, ref.length(), alt, alt.length());
+	}
+
+	/**
+	 * @return key of the variant with back trimmed ref and alt, see FixVcfAlleleNotation.backTrimRefAlt
+	 */
+	public static VariantKey createBackTrimmed(String chromosome, int position, String ref, String alt)
+	{
+		int trimLength = getBackTrimLength(ref, alt);
+		return create(chromosome, position, ref, ref.length() - trimLength, alt, alt.length() - trimLength);
+	}
+
+	/**
+	 * @return number of bases that FixVcfAlleleNotation.backTrimRefAlt removes from the end of both ref and alt
+	 */
+	public static int getBackTrimLength(String ref, String alt)
+	{
+		int trimLength = 0;
+		// never remove the first reference base and keep at least one alt base
+		while (trimLength < ref.length() - 1 && trimLength < alt.length() - 1
+				&& ref.charAt(ref.length() - 1 - trimLength) == alt.charAt(alt.length() - 1 - trimLength))
+		{
+			trimLength++;
+		}
+		return trimLength;
+	}
+
+	private static VariantKey create(String chromosome, int position, String ref, int refLength, String alt,
+			int altLength)
+	{
+		int contig = getContigId(chromosome);
+		long packedAlleles = pack(ref, refLength, alt, altLength);
+		if (packedAlleles != -1)
+		{
+			return new VariantKey(contig, position, packedAlleles, null);
+		}
+		return new VariantKey(contig, position, 0,
+				ref.substring(0, refLength) + SEPARATOR + alt.substring(0, altLength));
+	}
+
+	/**
+	 * @return packed alleles or -1 if the alleles are too long or contain other bases than A, C, G and T
+	 */
+	private static long pack(String ref, int refLength, String alt, int altLength)
+	{
+		if (refLength + altLength > MAX_PACKED_BASES)
+		{
+			return -1;
+		}
+		long bases = 0;
+		for (int i = 0; i < refLength + altLength; i++)
+		{
+			int base = encode(i < refLength ? ref.charAt(i) : alt.charAt(i - refLength));
+			if (base == -1)
+			{
+				return -1;
+			}
+			bases = bases << 2 | base;
+		}
+		return (long) refLength << REF_LENGTH_SHIFT | (long) altLength << ALT_LENGTH_SHIFT | bases;
+	}
+
+	private static int encode(char base)
+	{
+		switch (base)
+		{
+			case 'A':
+				return 0;
+			case 'C':
+				return 1;
+			case 'G':
+				return 2;
+			case 'T':
+				return 3;
+			default:
+				return -1;
+		}
+	}
+
+	private static int getContigId(String chromosome)
+	{
+		Integer contig = CONTIG_IDS.get(chromosome);
+		if (contig == null)
+		{
+			synchronized (CONTIGS)
+			{
+				contig = CONTIG_IDS.get(chromosome);
+				if (contig == null)
+				{
+					contig = CONTIGS.size();
+					CONTIGS.add(chromosome);
+					CONTIG_IDS.put(chromosome, contig);
+				}
+			}
+		}
+		return contig;
+	}
+
+	public int getContig()
+	{
+		return contig;
+	}
+
+	public String getChromosome()
+	{
+		return CONTIGS.get(contig);
+	}
+
+	public int getPosition()
+	{
+		return position;
+	}
+
+	/**
+	 * @return packed alleles or, for alleles that cannot be packed, a 64-bit hash of the alleles with the highest bit
+	 * set, so that it never equals packed alleles
+	 */
+	public long getAllelesKey()
+	{
+		if (alleles == null)
+		{
+			return packedAlleles;
+		}
+		// FNV-1a
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < alleles.length(); i++)
+		{
+			hash ^= alleles.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash | Long.MIN_VALUE;
+	}
+
+	public String getRef()
+	{
+		if (alleles != null)
+		{
+			return alleles.substring(0, alleles.indexOf(SEPARATOR));
+		}
+		int refLength = (int) (packedAlleles >>> REF_LENGTH_SHIFT & LENGTH_MASK);
+		return unpack(0, refLength);
+	}
+
+	public String getAlt()
+	{
+		if (alleles != null)
+		{
+			return alleles.substring(alleles.indexOf(SEPARATOR) + 1);
+		}
+		int refLength = (int) (packedAlleles >>> REF_LENGTH_SHIFT & LENGTH_MASK);
+		int altLength = (int) (packedAlleles >>> ALT_LENGTH_SHIFT & LENGTH_MASK);
+		return unpack(refLength, altLength);
+	}
+
+	private String unpack(int offset, int length)
+	{
+		int nrBases = (int) (packedAlleles >>> REF_LENGTH_SHIFT & LENGTH_MASK) + (int) (
+				packedAlleles >>> ALT_LENGTH_SHIFT & LENGTH_MASK);
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++)
+		{
+			int shift = 2 * (nrBases - 1 - offset - i);
+			chars[i] = BASES[(int) (packedAlleles >>> shift & 3)];
+		}
+		return new String(chars);
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		VariantKey that = (VariantKey) o;
+		return contig == that.contig && position == that.position && packedAlleles == that.packedAlleles && (
+				alleles != null ? alleles.equals(that.alleles) : that.alleles == null);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int result = contig;
+		result = 31 * result + position;
+		result = 31 * result + Long.hashCode(packedAlleles);
+		result = 31 * result + (alleles != null ? alleles.hashCode() : 0);
+		return result;
+	}
+
+	/**
+	 * @return chr_pos_ref_alt
+	 */
+	@Override
+	public String toString()
+	{
+		return getChromosome() + SEPARATOR + position + SEPARATOR + getRef() + SEPARATOR + getAlt();
+	}
+}
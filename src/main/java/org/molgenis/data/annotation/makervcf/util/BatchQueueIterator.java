@@ -0,0 +1,162 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Drains a source iterator on its own thread into a bounded queue of batches, so that the stages before and after
+ * this iterator run concurrently. The source iterator is only used by the draining thread, the returned elements
+ * must not be recycled by the source. Close it when stopping before the end of the source, to stop the draining
+ * thread that would otherwise wait for a full queue forever.
+ */
+public class BatchQueueIterator<T> implements Iterator<T>, Closeable
+{
+	public static final int DEFAULT_BATCH_SIZE = 256;
+	public static final int DEFAULT_CAPACITY = 16;
+
+	private final BlockingQueue<Batch<T>> queue;
+	private final Thread thread;
+	private Iterator<T> batchIterator = Collections.emptyIterator();
+	private boolean done = false;
+
+	public BatchQueueIterator(Iterator<T> source, String name)
+	{
+		this(source, name, DEFAULT_BATCH_SIZE, DEFAULT_CAPACITY);
+	}
+
+	public BatchQueueIterator(Iterator<T> source, String name, int batchSize, int capacity)
+	{
+		if (source == null) throw new IllegalArgumentException("source is null");
+		if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1");
+		if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+		this.queue = new ArrayBlockingQueue<>(capacity);
+
+		this.thread = new Thread(() -> drain(source, batchSize), "gavin-plus-" + name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void drain(Iterator<T> source, int batchSize)
+	{
+		try
+		{
+			List<T> elements = new ArrayList<>(batchSize);
+			while (source.hasNext())
+			{
+				elements.add(source.next());
+				if (elements.size() == batchSize)
+				{
+					queue.put(new Batch<>(elements, null));
+					elements = new ArrayList<>(batchSize);
+				}
+			}
+			if (!elements.isEmpty())
+			{
+				queue.put(new Batch<>(elements, null));
+			}
+			queue.put(new Batch<>(Collections.emptyList(), null));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (Throwable t)
+		{
+			try
+			{
+				queue.put(new Batch<>(Collections.emptyList(), t));
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		while (!batchIterator.hasNext())
+		{
+			if (done)
+			{
+				return false;
+			}
+			Batch<T> batch;
+			try
+			{
+				batch = queue.take();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			if (batch.throwable != null)
+			{
+				done = true;
+				if (batch.throwable instanceof RuntimeException) throw (RuntimeException) batch.throwable;
+				if (batch.throwable instanceof Error) throw (Error) batch.throwable;
+				throw new RuntimeException(batch.throwable);
+			}
+			if (batch.elements.isEmpty())
+			{
+				done = true;
+				return false;
+			}
+			batchIterator = batch.elements.iterator();
+		}
+		return true;
+	}
+
+	/**
+	 * Stops the draining thread and waits until it stopped, elements that were not returned yet are discarded
+	 */
+	@Override
+	public void close()
+	{
+		done = true;
+		batchIterator = Collections.emptyIterator();
+		thread.interrupt();
+		queue.clear();
+		try
+		{
+			thread.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public T next()
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException();
+		}
+		return batchIterator.next();
+	}
+
+	/**
+	 * Elements drained from the source, an empty batch marks the end of the source
+	 */
+	private static class Batch<T>
+	{
+		private final List<T> elements;
+		private final Throwable throwable;
+
+		Batch(List<T> elements, Throwable throwable)
+		{
+			this.elements = elements;
+			this.throwable = throwable;
+		}
+	}
+}
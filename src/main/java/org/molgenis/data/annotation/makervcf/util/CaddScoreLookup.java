@@ -0,0 +1,43 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Finds the CADD PHRED score of a variant in CADD webservice output, either the TSV file itself or a store converted
+ * from it by {@link CaddScoreStoreWriter}.
+ */
+public interface CaddScoreLookup
+{
+	/**
+	 * @param variantKey back trimmed key, see VariantKey.createBackTrimmed
+	 * @return CADD PHRED score or null if the CADD output does not contain the variant
+	 */
+	@Nullable
+	Double get(VariantKey variantKey) throws IOException;
+
+	static CaddScoreLookup create(File caddFile) throws Exception
+	{
+		return create(caddFile, VariantLookup.Mode.MEMORY);
+	}
+
+	/**
+	 * @param lookupMode {@link VariantLookup.Mode#STREAMING} to merge-join with the CADD output instead of loading it
+	 *                   in memory, ignored for a CADD score store
+	 */
+	static CaddScoreLookup create(File caddFile, VariantLookup.Mode lookupMode) throws Exception
+	{
+		if (CaddScoreStore.isStore(caddFile))
+		{
+			return CaddScoreStore.open(caddFile);
+		}
+		if (lookupMode == VariantLookup.Mode.STREAMING)
+		{
+			return new StreamingCaddScoreLookup(caddFile);
+		}
+		return new InMemoryCaddScoreLookup(caddFile);
+	}
+}
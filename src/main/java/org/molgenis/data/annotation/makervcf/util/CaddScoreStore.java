@@ -0,0 +1,162 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+
+import java.io.*;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Memory-mapped CADD scores converted from CADD webservice output by {@link CaddScoreStoreWriter}, so that the scores
+ * do not have to be loaded on the heap.
+ * <p>
+ * A store consists of a header with the contig names followed by three columns of equal length: position keys (contig
+ * index and position), allele keys (see VariantKey.getAllelesKey) and scores. The columns are sorted on position key
+ * and allele key, so a score is found with a binary search on position key.
+ */
+public class CaddScoreStore implements CaddScoreLookup
+{
+	static final byte[] MAGIC = { 'G', 'A', 'V', 'I', 'N', 'C', 'S', 0 };
+	static final int VERSION = 1;
+
+	private final Map<String, Integer> contigIndices;
+	private final int nrScores;
+	private final LongBuffer positionKeys;
+	private final LongBuffer allelesKeys;
+	private final DoubleBuffer scores;
+
+	private CaddScoreStore(Map<String, Integer> contigIndices, int nrScores, LongBuffer positionKeys,
+			LongBuffer allelesKeys, DoubleBuffer scores)
+	{
+		this.contigIndices = contigIndices;
+		this.nrScores = nrScores;
+		this.positionKeys = positionKeys;
+		this.allelesKeys = allelesKeys;
+		this.scores = scores;
+	}
+
+	public static boolean isStore(File file) throws IOException
+	{
+		if (!file.isFile() || file.length() < MAGIC.length)
+		{
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file)))
+		{
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			return Arrays.equals(magic, MAGIC);
+		}
+	}
+
+	public static CaddScoreStore open(File storeFile) throws IOException
+	{
+		Map<String, Integer> contigIndices = new HashMap<>();
+		long nrScores;
+		long headerSize;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile))))
+		{
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC))
+			{
+				throw new IOException("Not a CADD score store");
+			}
+			int version = in.readInt();
+			if (version != VERSION)
+			{
+				throw new IOException(
+						"Unsupported CADD score store version " + version + ", expected version " + VERSION);
+			}
+			int nrContigs = in.readInt();
+			headerSize = MAGIC.length + 2 * Integer.BYTES + Long.BYTES;
+			for (int i = 0; i < nrContigs; ++i)
+			{
+				byte[] contig = new byte[in.readInt()];
+				in.readFully(contig);
+				contigIndices.put(new String(contig, UTF_8), i);
+				headerSize += Integer.BYTES + contig.length;
+			}
+			nrScores = in.readLong();
+		}
+		if (nrScores > Integer.MAX_VALUE / Long.BYTES)
+		{
+			throw new IOException("CADD score store contains more than " + Integer.MAX_VALUE / Long.BYTES + " scores");
+		}
+
+		try (FileChannel fileChannel = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ))
+		{
+			// the mappings stay valid after the channel is closed
+			long columnSize = nrScores * Long.BYTES;
+			LongBuffer positionKeys = fileChannel.map(FileChannel.MapMode.READ_ONLY, headerSize, columnSize)
+												 .asLongBuffer();
+			LongBuffer allelesKeys = fileChannel.map(FileChannel.MapMode.READ_ONLY, headerSize + columnSize,
+					columnSize).asLongBuffer();
+			DoubleBuffer scores = fileChannel.map(FileChannel.MapMode.READ_ONLY, headerSize + 2 * columnSize,
+					columnSize).asDoubleBuffer();
+			return new CaddScoreStore(contigIndices, (int) nrScores, positionKeys, allelesKeys, scores);
+		}
+	}
+
+	static long createPositionKey(int contigIndex, int position)
+	{
+		return (long) contigIndex << Integer.SIZE | position & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Thread-safe, the columns are only read with absolute gets
+	 */
+	@Override
+	public Double get(VariantKey variantKey)
+	{
+		Integer contigIndex = contigIndices.get(variantKey.getChromosome());
+		if (contigIndex == null)
+		{
+			return null;
+		}
+		long positionKey = createPositionKey(contigIndex, variantKey.getPosition());
+		long allelesKey = variantKey.getAllelesKey();
+		for (int i = findFirst(positionKey); i < nrScores && positionKeys.get(i) == positionKey; ++i)
+		{
+			if (allelesKeys.get(i) == allelesKey)
+			{
+				return scores.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return index of the first score with a position key that is equal to or larger than the given key
+	 */
+	private int findFirst(long positionKey)
+	{
+		int low = 0;
+		int high = nrScores;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (positionKeys.get(mid) < positionKey)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	public int size()
+	{
+		return nrScores;
+	}
+}
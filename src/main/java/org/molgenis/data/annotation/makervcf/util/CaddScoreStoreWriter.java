@@ -0,0 +1,173 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.molgenis.data.annotation.makervcf.util.CaddScoreStore.MAGIC;
+import static org.molgenis.data.annotation.makervcf.util.CaddScoreStore.VERSION;
+
+/**
+ * Converts CADD webservice output (tab separated chromosome, position, id, ref, alt and PHRED score) into a
+ * {@link CaddScoreStore}. Variants are back trimmed like LoadCADDWebserviceOutput does, if a variant occurs more than
+ * once the last score is stored.
+ */
+public class CaddScoreStoreWriter
+{
+	private static final Logger LOG = LoggerFactory.getLogger(CaddScoreStoreWriter.class);
+
+	private final Map<String, Integer> contigIndices = new LinkedHashMap<>();
+	private long[] positionKeys = new long[1 << 16];
+	private long[] allelesKeys = new long[1 << 16];
+	private double[] scores = new double[1 << 16];
+	private int nrScores = 0;
+
+	private CaddScoreStoreWriter()
+	{
+	}
+
+	public static void convert(File caddFile, File storeFile) throws Exception
+	{
+		CaddScoreStoreWriter writer = new CaddScoreStoreWriter();
+		writer.read(caddFile);
+		writer.write(storeFile);
+	}
+
+	private void read(File caddFile) throws Exception
+	{
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(caddFile), UTF_8)))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if (line.startsWith("#"))
+				{
+					continue;
+				}
+				String[] split = line.split("\t", -1);
+				if (split.length != 6)
+				{
+					throw new Exception("Expected 6 columns in CADD webservice output file, found " + split.length);
+				}
+				VariantKey variantKey = VariantKey.createBackTrimmed(split[0], Integer.parseInt(split[1]), split[2],
+						split[3]);
+				add(variantKey, Double.parseDouble(split[5]));
+			}
+		}
+	}
+
+	private void add(VariantKey variantKey, double score)
+	{
+		if (nrScores == positionKeys.length)
+		{
+			positionKeys = Arrays.copyOf(positionKeys, 2 * nrScores);
+			allelesKeys = Arrays.copyOf(allelesKeys, 2 * nrScores);
+			scores = Arrays.copyOf(scores, 2 * nrScores);
+		}
+		Integer contigIndex = contigIndices.get(variantKey.getChromosome());
+		if (contigIndex == null)
+		{
+			contigIndex = contigIndices.size();
+			contigIndices.put(variantKey.getChromosome(), contigIndex);
+		}
+		positionKeys[nrScores] = CaddScoreStore.createPositionKey(contigIndex, variantKey.getPosition());
+		allelesKeys[nrScores] = variantKey.getAllelesKey();
+		scores[nrScores] = score;
+		++nrScores;
+	}
+
+	private void write(File storeFile) throws IOException
+	{
+		int[] order = sort();
+
+		// keep the last score of each variant, the sort is stable
+		int[] unique = new int[order.length];
+		int nrUnique = 0;
+		for (int i = 0; i < order.length; ++i)
+		{
+			if (i + 1 < order.length && compare(order[i], order[i + 1]) == 0)
+			{
+				continue;
+			}
+			unique[nrUnique++] = order[i];
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile))))
+		{
+			out.write(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(contigIndices.size());
+			for (String contig : contigIndices.keySet())
+			{
+				byte[] contigBytes = contig.getBytes(UTF_8);
+				out.writeInt(contigBytes.length);
+				out.write(contigBytes);
+			}
+			out.writeLong(nrUnique);
+			for (int i = 0; i < nrUnique; ++i)
+			{
+				out.writeLong(positionKeys[unique[i]]);
+			}
+			for (int i = 0; i < nrUnique; ++i)
+			{
+				out.writeLong(allelesKeys[unique[i]]);
+			}
+			for (int i = 0; i < nrUnique; ++i)
+			{
+				out.writeDouble(scores[unique[i]]);
+			}
+		}
+		LOG.info("Converted {} CADD scores into store {}", nrUnique, storeFile);
+	}
+
+	/**
+	 * Bottom-up merge sort of the score indices, which is stable and does not box the indices
+	 */
+	private int[] sort()
+	{
+		int[] order = new int[nrScores];
+		for (int i = 0; i < nrScores; ++i)
+		{
+			order[i] = i;
+		}
+		int[] buffer = new int[nrScores];
+		for (int width = 1; width < nrScores; width *= 2)
+		{
+			for (int low = 0; low < nrScores; low += 2 * width)
+			{
+				int mid = Math.min(low + width, nrScores);
+				int high = Math.min(low + 2 * width, nrScores);
+				int left = low;
+				int right = mid;
+				for (int i = low; i < high; ++i)
+				{
+					if (left < mid && (right >= high || compare(order[left], order[right]) <= 0))
+					{
+						buffer[i] = order[left++];
+					}
+					else
+					{
+						buffer[i] = order[right++];
+					}
+				}
+			}
+			int[] sorted = buffer;
+			buffer = order;
+			order = sorted;
+		}
+		return order;
+	}
+
+	private int compare(int index, int otherIndex)
+	{
+		int compare = Long.compare(positionKeys[index], positionKeys[otherIndex]);
+		return compare != 0 ? compare : Long.compare(allelesKeys[index], allelesKeys[otherIndex]);
+	}
+}
@@ -1,43 +1,72 @@
 package org.molgenis.data.annotation.makervcf.util;
 
-import org.molgenis.calibratecadd.support.LoadCADDWebserviceOutput;
+import net.sf.samtools.util.BlockCompressedOutputStream;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
-import org.molgenis.data.vcf.utils.FixVcfAlleleNotation;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.PrintWriter;
-import java.util.Map;
+import java.io.*;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Created by joeri on 6/1/16.
  */
-public class HandleMissingCaddScores
+public class HandleMissingCaddScores implements Closeable
 {
 	private static final Logger LOG = LoggerFactory.getLogger(HandleMissingCaddScores.class);
 
 	public enum Mode
 	{
-		ANALYSIS, CREATEFILEFORCADD
+		ANALYSIS, CREATEFILEFORCADD,
+		/**
+		 * look up missing scores in local tabix indexed prescored CADD files instead of CADD webservice output
+		 */
+		PRESCORED
 	}
 
+	private static final int WRITER_BUFFER_SIZE = 1 << 16;
+
 	private Mode mode;
-	private PrintWriter pw;
-	private Map<String, Double> caddScores;
+	private Writer writer;
+	private CaddScoreLookup caddScores;
+
+	/**
+	 * variants written at the current position in CREATEFILEFORCADD mode, the input is position sorted so a variant
+	 * can only occur again at the same position
+	 */
+	private final Set<VariantKey> writtenKeys = new HashSet<>();
+	private int writtenContig = -1;
+	private int writtenPosition;
 
 	public HandleMissingCaddScores(Mode mode, File caddFile) throws Exception
+	{
+		this(mode, caddFile, VariantLookup.Mode.MEMORY);
+	}
+
+	/**
+	 * @param lookupMode how CADD scores are looked up in ANALYSIS mode, see CaddScoreLookup.create
+	 */
+	public HandleMissingCaddScores(Mode mode, File caddFile, VariantLookup.Mode lookupMode) throws Exception
 	{
 		this.mode = mode;
 
 		//either print missing cadd scores to this file, or read from file to get them, depending on mode
 		if (mode.equals(Mode.CREATEFILEFORCADD))
 		{
-			this.pw = new PrintWriter(caddFile);
+			this.writer = new BufferedWriter(new OutputStreamWriter(createOutputStream(caddFile), UTF_8),
+					WRITER_BUFFER_SIZE);
 		}
 		else if (mode.equals(Mode.ANALYSIS))
 		{
-			this.caddScores = LoadCADDWebserviceOutput.load(caddFile);
+			this.caddScores = CaddScoreLookup.create(caddFile, lookupMode);
+		}
+		else if (mode.equals(Mode.PRESCORED))
+		{
+			this.caddScores = PrescoredCaddScoreLookup.open(caddFile);
 		}
 		else
 		{
@@ -45,45 +74,44 @@ public class HandleMissingCaddScores
 		}
 	}
 
+	/**
+	 * Looks up a missing CADD score in ANALYSIS and PRESCORED mode, or writes the variant to the CADD file in
+	 * CREATEFILEFORCADD mode.
+	 * <p>
+	 * Scores are matched on the back trimmed variant, so the VCF and the CADD output may each use either notation.
+	 * A score found for the alt is only written back to the record if
+	 * {@link VariantKey#getBackTrimLength(String, String)} of its ref and alt is 0.
+	 *
+	 * @return CADD PHRED score of the alt or null if there is none
+	 */
 	public Double dealWithCaddScores(GavinRecord record, int altIndex) throws Exception
 	{
 		if (record.getCaddPhredScore(altIndex) == null)
 		{
 			if (mode.equals(Mode.CREATEFILEFORCADD))
 			{
-				String trimmedRefAlt = FixVcfAlleleNotation.backTrimRefAlt(record.getRef(), record.getAlt(altIndex),
-						"\t");
-				this.pw.println(
-						record.getChromosome() + "\t" + record.getPosition() + "\t" + "." + "\t" + trimmedRefAlt);
-				this.pw.flush();
+				write(record.getVariantKey(altIndex));
 				return null;
 			}
-			else if (mode.equals(Mode.ANALYSIS))
+			else if (mode.equals(Mode.ANALYSIS) || mode.equals(Mode.PRESCORED))
 			{
-				String key = record.getChromosome() + "_" + record.getPosition() + "_" + record.getRef() + "_"
-						+ record.getAlt(altIndex);
-				if (this.caddScores.containsKey(key))
+				// the CADD scores are keyed on back trimmed variants, so trimmed and untrimmed notations both match
+				VariantKey key = record.getVariantKey(altIndex);
+				Double caddScore = this.caddScores.get(key);
+				if (caddScore == null)
 				{
-					record.setCaddPhredScore(altIndex, this.caddScores.get(key));
+					LOG.warn(
+							"[HandleMissingCaddScores] CADD score missing for {} {} {} {} ! (even when using trimmed key '{}')",
+							record.getChromosome(), record.getPosition(), record.getRef(), record.getAlt(altIndex),
+							key);
+					return null;
 				}
-				else
+				// only scores of variants that are already back trimmed are written to the record
+				if (VariantKey.getBackTrimLength(record.getRef(), record.getAlt(altIndex)) > 0)
 				{
-					String trimmedRefAlt = FixVcfAlleleNotation.backTrimRefAlt(record.getRef(), record.getAlt(altIndex),
-							"_");
-					key = record.getChromosome() + "_" + record.getPosition() + "_" + trimmedRefAlt;
-					if (this.caddScores.containsKey(key))
-					{
-						return this.caddScores.get(key);
-					}
-					else
-					{
-						LOG.warn(
-								"[HandleMissingCaddScores] CADD score missing for {} {} {} {} ! (even when using trimmed key '{}')",
-								record.getChromosome(), record.getPosition(), record.getRef(), record.getAlt(altIndex),
-								key);
-						return null;
-					}
+					return caddScore;
 				}
+				record.setCaddPhredScore(altIndex, caddScore);
 			}
 			else
 			{
@@ -94,4 +122,47 @@ public class HandleMissingCaddScores
 		return record.getCaddPhredScore(altIndex);
 
 	}
+
+	/**
+	 * @return output stream to the file, bgzip compressed if the file name ends with .gz
+	 */
+	public static OutputStream createOutputStream(File caddFile) throws IOException
+	{
+		if (caddFile.getName().toLowerCase().endsWith(".gz"))
+		{
+			return new BlockCompressedOutputStream(caddFile);
+		}
+		return new FileOutputStream(caddFile);
+	}
+
+	private void write(VariantKey key) throws IOException
+	{
+		if (key.getContig() != writtenContig || key.getPosition() != writtenPosition)
+		{
+			writtenKeys.clear();
+			writtenContig = key.getContig();
+			writtenPosition = key.getPosition();
+		}
+		if (writtenKeys.add(key))
+		{
+			writer.write(key.getChromosome() + "\t" + key.getPosition() + "\t" + "." + "\t" + key.getRef() + "\t"
+					+ key.getAlt() + "\n");
+		}
+	}
+
+	/**
+	 * Flushes and closes the CADD file in CREATEFILEFORCADD mode or releases the CADD score lookup
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (writer != null)
+		{
+			writer.close();
+		}
+		if (caddScores instanceof Closeable)
+		{
+			((Closeable) caddScores).close();
+		}
+	}
 }
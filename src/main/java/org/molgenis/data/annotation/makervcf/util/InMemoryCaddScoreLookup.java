@@ -0,0 +1,26 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import org.molgenis.calibratecadd.support.LoadCADDWebserviceOutput;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Loads all scores of a CADD webservice output TSV file in memory.
+ */
+public class InMemoryCaddScoreLookup implements CaddScoreLookup
+{
+	private final Map<VariantKey, Double> caddScores;
+
+	public InMemoryCaddScoreLookup(File caddFile) throws Exception
+	{
+		this.caddScores = LoadCADDWebserviceOutput.load(caddFile);
+	}
+
+	@Override
+	public Double get(VariantKey variantKey)
+	{
+		return caddScores.get(variantKey);
+	}
+}
@@ -0,0 +1,49 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import org.molgenis.calibratecadd.support.GavinUtils;
+import org.molgenis.data.annotation.makervcf.structs.AnnotatedVcfRecord;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+import org.molgenis.vcf.VcfReader;
+import org.molgenis.vcf.VcfRecord;
+import org.molgenis.vcf.VcfRecordUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads all records of a VCF in memory, keyed on chromosome, position and back trimmed ref and alt of each alt.
+ */
+public class InMemoryVariantLookup implements VariantLookup
+{
+	private final Map<VariantKey, AnnotatedVcfRecord> posRefAltToRecord;
+
+	public InMemoryVariantLookup(File vcfFile) throws IOException
+	{
+		this.posRefAltToRecord = new HashMap<>();
+		try (VcfReader vcfReader = GavinUtils.getVcfReader(vcfFile))
+		{
+			for (VcfRecord vcfRecord : vcfReader)
+			{
+				AnnotatedVcfRecord record = new AnnotatedVcfRecord(vcfRecord);
+				for (String alt : VcfRecordUtils.getAlts(record))
+				{
+					posRefAltToRecord.put(VariantKey.createBackTrimmed(record.getChromosome(), record.getPosition(),
+							VcfRecordUtils.getRef(record), alt), record);
+				}
+			}
+		}
+	}
+
+	@Override
+	public AnnotatedVcfRecord get(VariantKey variantKey)
+	{
+		return posRefAltToRecord.get(variantKey);
+	}
+
+	public int size()
+	{
+		return posRefAltToRecord.size();
+	}
+}
@@ -1,18 +1,13 @@
 package org.molgenis.data.annotation.makervcf.util;
 
-import org.molgenis.calibratecadd.support.GavinUtils;
 import org.molgenis.data.annotation.core.entity.impl.gavin.Judgment;
 import org.molgenis.data.annotation.makervcf.structs.AnnotatedVcfRecord;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
-import org.molgenis.data.vcf.utils.FixVcfAlleleNotation;
-import org.molgenis.vcf.VcfReader;
-import org.molgenis.vcf.VcfRecord;
-import org.molgenis.vcf.VcfRecordUtils;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
 
+import java.io.Closeable;
 import java.io.File;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.io.IOException;
 import java.util.Optional;
 
 /**
@@ -20,42 +15,40 @@ import java.util.Optional;
  * Custom list of variants and classifications
  *
  */
-public class LabVariants {
+public class LabVariants implements Closeable {
 
-    private Map<String, AnnotatedVcfRecord> posRefAltToLabVariant;
+    private VariantLookup labVariantLookup;
 
     public LabVariants(File labVariantsFile) throws Exception {
-        VcfReader clinvar = GavinUtils.getVcfReader(labVariantsFile);
-        //ClinVar match
-        Iterator<VcfRecord> cvIt = clinvar.iterator();
-        this.posRefAltToLabVariant = new HashMap<>();
-        while (cvIt.hasNext())
+        this(labVariantsFile, VariantLookup.Mode.MEMORY);
+    }
+
+    public LabVariants(File labVariantsFile, VariantLookup.Mode lookupMode) throws Exception {
+        this.labVariantLookup = VariantLookup.create(labVariantsFile, lookupMode);
+        if (labVariantLookup instanceof InMemoryVariantLookup)
         {
-            AnnotatedVcfRecord vcfEntity = new AnnotatedVcfRecord(cvIt.next());
-            for(String alt : VcfRecordUtils.getAlts(vcfEntity))
-            {
-                String trimmedRefAlt = FixVcfAlleleNotation.backTrimRefAlt(VcfRecordUtils.getRef(vcfEntity), alt, "_");
-                String key = vcfEntity.getChromosome() + "_" + vcfEntity.getPosition() + "_" + trimmedRefAlt;
-                posRefAltToLabVariant.put(key, vcfEntity);
-            }
+            System.out.println("Lab variants ("+((InMemoryVariantLookup) labVariantLookup).size()+") loaded");
+        }
+        else
+        {
+            System.out.println("Lab variants (" + lookupMode + ") opened");
         }
-        System.out.println("Lab variants ("+posRefAltToLabVariant.size()+") loaded");
     }
 
 
-    public Judgment classifyVariant(GavinRecord record, String alt, String gene) throws Exception {
-        String trimmedRefAlt = FixVcfAlleleNotation.backTrimRefAlt(record.getRef(), alt, "_");
-        String key = record.getChromosome() + "_" + record.getPosition() + "_" + trimmedRefAlt;
+    public Judgment classifyVariant(GavinRecord record, int altIndex, String gene) throws Exception {
+        VariantKey variantKey = record.getVariantKey(altIndex);
+        AnnotatedVcfRecord labVariant = labVariantLookup.get(variantKey);
 
-        if(posRefAltToLabVariant.containsKey(key)) {
+        if(labVariant != null) {
             // e.g.
             // CLSF=P;
             // CLSF=V;
             // CLSF=LB;
-			Optional<String> clsf = posRefAltToLabVariant.get(key).getClsf();
+			Optional<String> clsf = labVariant.getClsf();
             if(!clsf.isPresent())
             {
-                throw new Exception("No CLSF field for lab variant at " + key);
+                throw new Exception("No CLSF field for lab variant at " + variantKey);
             }
 			//Optional value always present due to check above.
             String labVariantInfo = clsf.get();
@@ -80,4 +73,9 @@ public class LabVariants {
         }
         return null;
     }
+
+    @Override
+    public void close() throws IOException {
+        labVariantLookup.close();
+    }
 }
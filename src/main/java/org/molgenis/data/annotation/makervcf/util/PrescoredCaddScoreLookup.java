@@ -0,0 +1,150 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+import org.molgenis.vcf.BlockCompressedLineReader;
+import org.molgenis.vcf.TabixIndex;
+import org.molgenis.vcf.TabixVcfReader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Looks up CADD scores in locally stored prescored CADD files (e.g. whole_genome_SNVs.tsv.gz and InDels.tsv.gz), which
+ * are bgzip compressed and tabix indexed, so that no round trip via the CADD webservice is needed.
+ * <p>
+ * Every requested position is queried with the tabix index of each file. The scores at the last requested position
+ * are kept, so all alt alleles of a record are served by one query, and the inflated blocks are cached by file
+ * offset, so that a position sorted input inflates each block only once.
+ */
+public class PrescoredCaddScoreLookup implements CaddScoreLookup, Closeable
+{
+	static final int MAX_CACHED_BLOCKS = 256;
+	private static final String PRESCORED_EXTENSION = ".gz";
+
+	private final List<TabixIndex> tabixIndices;
+	private final List<BlockCompressedLineReader> readers;
+
+	/**
+	 * scores of all variants at the last requested position
+	 */
+	private final Map<VariantKey, Double> positionScores;
+	private int positionContig = -1;
+	private int position;
+
+	private PrescoredCaddScoreLookup(List<TabixIndex> tabixIndices, List<BlockCompressedLineReader> readers)
+	{
+		this.tabixIndices = tabixIndices;
+		this.readers = readers;
+		this.positionScores = new HashMap<>();
+	}
+
+	/**
+	 * @param prescored bgzip compressed prescored CADD file or a directory with these files, each file requires a
+	 *                  tabix index (.tbi) next to it
+	 */
+	public static PrescoredCaddScoreLookup open(File prescored) throws IOException
+	{
+		List<File> prescoredFiles = getPrescoredFiles(prescored);
+		if (prescoredFiles.isEmpty())
+		{
+			throw new IOException("No tabix indexed prescored CADD files found at " + prescored);
+		}
+		List<TabixIndex> tabixIndices = new ArrayList<>(prescoredFiles.size());
+		List<BlockCompressedLineReader> readers = new ArrayList<>(prescoredFiles.size());
+		for (File prescoredFile : prescoredFiles)
+		{
+			tabixIndices.add(TabixIndex.read(TabixVcfReader.getIndexFile(prescoredFile)));
+			readers.add(new BlockCompressedLineReader(prescoredFile, MAX_CACHED_BLOCKS));
+		}
+		return new PrescoredCaddScoreLookup(tabixIndices, readers);
+	}
+
+	/**
+	 * @return the prescored file or the prescored files in the directory, in name order, that have a tabix index
+	 */
+	public static List<File> getPrescoredFiles(File prescored)
+	{
+		File[] files = prescored.isDirectory() ? prescored.listFiles() : new File[] { prescored };
+		if (files == null)
+		{
+			return Collections.emptyList();
+		}
+		List<File> prescoredFiles = new ArrayList<>();
+		for (File file : files)
+		{
+			boolean indexed = TabixVcfReader.getIndexFile(file).isFile();
+			if (file.isFile() && file.getName().endsWith(PRESCORED_EXTENSION) && indexed)
+			{
+				prescoredFiles.add(file);
+			}
+		}
+		prescoredFiles.sort(Comparator.comparing(File::getName));
+		return prescoredFiles;
+	}
+
+	@Override
+	public Double get(VariantKey variantKey) throws IOException
+	{
+		if (variantKey.getContig() != positionContig || variantKey.getPosition() != position)
+		{
+			loadPosition(variantKey.getContig(), variantKey.getChromosome(), variantKey.getPosition());
+		}
+		return positionScores.get(variantKey);
+	}
+
+	private void loadPosition(int contig, String chromosome, int position) throws IOException
+	{
+		positionScores.clear();
+		positionContig = contig;
+		this.position = position;
+
+		for (int i = 0; i < tabixIndices.size(); ++i)
+		{
+			BlockCompressedLineReader reader = readers.get(i);
+			for (TabixIndex.Chunk chunk : tabixIndices.get(i).getChunks(chromosome, position, position))
+			{
+				reader.seek(chunk.getBegin());
+				String line;
+				while (Long.compareUnsigned(reader.getFilePointer(), chunk.getEnd()) < 0
+						&& (line = reader.readLine()) != null)
+				{
+					if (line.startsWith("#"))
+					{
+						continue;
+					}
+					String[] tokens = StringUtils.split(line, '\t');
+					if (!tokens[0].equals(chromosome))
+					{
+						continue;
+					}
+					int linePosition = Integer.parseInt(tokens[1]);
+					if (linePosition > position)
+					{
+						break;
+					}
+					if (linePosition == position)
+					{
+						if (tokens.length != 6)
+						{
+							throw new IOException("Expected 6 columns in prescored CADD file, found " + tokens.length);
+						}
+						positionScores.put(VariantKey.createBackTrimmed(chromosome, position, tokens[2], tokens[3]),
+								Double.parseDouble(tokens[5]));
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		for (BlockCompressedLineReader reader : readers)
+		{
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+
+import java.io.*;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Merge-joins the position sorted input with position sorted CADD webservice output by advancing a cursor over the
+ * CADD output in lockstep with the requested variants. Only the scores in a small window before the requested
+ * position are kept in memory, so memory use does not depend on the number of scores.
+ * <p>
+ * Positions must be requested in ascending order per chromosome, as enforced by DiscoverRelevantVariants. When the
+ * chromosome order of the input differs from the CADD output, the CADD output is reopened and scanned from the start
+ * for the requested chromosome. The CADD output must be sorted by position and must not interrupt a chromosome with
+ * other chromosomes, an IOException is thrown when the cursor finds otherwise.
+ */
+public class StreamingCaddScoreLookup implements CaddScoreLookup, Closeable
+{
+	/**
+	 * number of bases before the requested position for which scores are kept, so that records at the same or a
+	 * slightly earlier position still find their scores
+	 */
+	static final int LOOK_BACK = 100;
+
+	private final File caddFile;
+
+	private BufferedReader reader;
+	private VariantKey cursor;
+	private double cursorScore;
+
+	/**
+	 * chromosomes that the cursor moved past in the current scan
+	 */
+	private final Set<String> passedChromosomes;
+	/**
+	 * chromosomes that do not occur in the CADD output
+	 */
+	private final Set<String> absentChromosomes;
+	private String requestedChromosome;
+
+	/**
+	 * scores of the requested chromosome in file order, from LOOK_BACK bases before the last requested position up to
+	 * and including that position
+	 */
+	private final LinkedHashMap<VariantKey, Double> window;
+
+	public StreamingCaddScoreLookup(File caddFile) throws IOException
+	{
+		this.caddFile = caddFile;
+		this.passedChromosomes = new HashSet<>();
+		this.absentChromosomes = new HashSet<>();
+		this.window = new LinkedHashMap<>();
+		open();
+	}
+
+	@Override
+	public Double get(VariantKey variantKey) throws IOException
+	{
+		String chromosome = variantKey.getChromosome();
+		int position = variantKey.getPosition();
+		if (!chromosome.equals(requestedChromosome))
+		{
+			requestedChromosome = chromosome;
+			window.clear();
+			seekChromosome(chromosome);
+		}
+		if (absentChromosomes.contains(chromosome))
+		{
+			return null;
+		}
+		fillWindow(variantKey.getContig(), position);
+		return window.get(variantKey);
+	}
+
+	/**
+	 * Moves the cursor to the first score of the chromosome, reopening the CADD output if the chromosome was passed
+	 * before
+	 */
+	private void seekChromosome(String chromosome) throws IOException
+	{
+		if (absentChromosomes.contains(chromosome))
+		{
+			return;
+		}
+		if (passedChromosomes.contains(chromosome))
+		{
+			open();
+		}
+		while (cursor != null && !cursor.getChromosome().equals(chromosome))
+		{
+			advance();
+		}
+		// the CADD output is always scanned from its start, so reaching its end means that the chromosome does not occur
+		if (cursor == null)
+		{
+			absentChromosomes.add(chromosome);
+		}
+	}
+
+	/**
+	 * Advances the cursor past the requested position, adding the scores up to that position to the window and
+	 * dropping the scores that fell out of the look back
+	 */
+	private void fillWindow(int contig, int position) throws IOException
+	{
+		while (cursor != null && cursor.getContig() == contig && cursor.getPosition() <= position)
+		{
+			// like LoadCADDWebserviceOutput the last score of a variant that occurs more than once wins
+			window.put(cursor, cursorScore);
+			advance();
+		}
+		for (Iterator<VariantKey> it = window.keySet().iterator(); it.hasNext(); )
+		{
+			if (it.next().getPosition() >= position - LOOK_BACK)
+			{
+				break;
+			}
+			it.remove();
+		}
+	}
+
+	private void advance() throws IOException
+	{
+		VariantKey previous = cursor;
+		cursor = null;
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			if (line.startsWith("#"))
+			{
+				continue;
+			}
+			String[] split = line.split("\t", -1);
+			if (split.length != 6)
+			{
+				throw new IOException("Expected 6 columns in CADD webservice output file, found " + split.length);
+			}
+			cursor = VariantKey.createBackTrimmed(split[0], Integer.parseInt(split[1]), split[2], split[3]);
+			cursorScore = Double.parseDouble(split[5]);
+			break;
+		}
+
+		if (previous != null && cursor != null && cursor.getContig() == previous.getContig()
+				&& cursor.getPosition() < previous.getPosition())
+		{
+			throw new IOException(
+					"CADD webservice output file is not sorted by position, found " + cursor + " after " + previous
+							+ ", please sort the file or use lookup mode " + VariantLookup.Mode.MEMORY);
+		}
+		if (previous != null && (cursor == null || cursor.getContig() != previous.getContig()))
+		{
+			passedChromosomes.add(previous.getChromosome());
+		}
+		if (cursor != null && passedChromosomes.contains(cursor.getChromosome()))
+		{
+			throw new IOException("CADD webservice output file is not sorted by chromosome, chromosome "
+					+ cursor.getChromosome() + " was interrupted by other chromosomes, please sort the file or use "
+					+ "lookup mode " + VariantLookup.Mode.MEMORY);
+		}
+	}
+
+	private void open() throws IOException
+	{
+		if (reader != null)
+		{
+			reader.close();
+		}
+		reader = new BufferedReader(new InputStreamReader(new FileInputStream(caddFile), UTF_8));
+		passedChromosomes.clear();
+		cursor = null;
+		advance();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		reader.close();
+	}
+}
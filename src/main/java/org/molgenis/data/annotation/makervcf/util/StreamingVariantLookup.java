@@ -0,0 +1,176 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import org.molgenis.calibratecadd.support.GavinUtils;
+import org.molgenis.data.annotation.makervcf.structs.AnnotatedVcfRecord;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+import org.molgenis.vcf.VcfReader;
+import org.molgenis.vcf.VcfRecord;
+import org.molgenis.vcf.VcfRecordUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merge-joins the position sorted input with a position sorted VCF by advancing a cursor over the VCF in lockstep
+ * with the requested variants. Only the records at the requested position are kept in memory.
+ * <p>
+ * Positions must be requested in ascending order per chromosome, as enforced by DiscoverRelevantVariants. When the
+ * chromosome order of the input differs from the VCF, the VCF is reopened and scanned from the start for the requested
+ * chromosome. The VCF must be sorted by position and must not interrupt a chromosome with other chromosomes, an
+ * IOException is thrown when the cursor finds otherwise.
+ */
+public class StreamingVariantLookup implements VariantLookup
+{
+	private final File vcfFile;
+
+	private VcfReader vcfReader;
+	private Iterator<VcfRecord> vcfIterator;
+	private VcfRecord cursor;
+
+	/**
+	 * chromosomes that the cursor moved past in the current scan
+	 */
+	private final Set<String> passedChromosomes;
+	/**
+	 * chromosomes that do not occur in the VCF
+	 */
+	private final Set<String> absentChromosomes;
+	private String requestedChromosome;
+
+	/**
+	 * records at the last requested position
+	 */
+	private final Map<VariantKey, AnnotatedVcfRecord> refAltToRecord;
+	private int bufferedPosition;
+
+	public StreamingVariantLookup(File vcfFile) throws IOException
+	{
+		this.vcfFile = vcfFile;
+		this.passedChromosomes = new HashSet<>();
+		this.absentChromosomes = new HashSet<>();
+		this.refAltToRecord = new HashMap<>();
+		this.bufferedPosition = -1;
+		open();
+	}
+
+	@Override
+	public AnnotatedVcfRecord get(VariantKey variantKey) throws IOException
+	{
+		String chromosome = variantKey.getChromosome();
+		int position = variantKey.getPosition();
+		if (!chromosome.equals(requestedChromosome))
+		{
+			requestedChromosome = chromosome;
+			refAltToRecord.clear();
+			bufferedPosition = -1;
+			seekChromosome(chromosome);
+		}
+		if (absentChromosomes.contains(chromosome))
+		{
+			return null;
+		}
+		if (position != bufferedPosition)
+		{
+			bufferPosition(chromosome, position);
+		}
+		return refAltToRecord.get(variantKey);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		vcfReader.close();
+	}
+
+	/**
+	 * Moves the cursor to the first record of the chromosome, reopening the VCF if the chromosome was passed before
+	 */
+	private void seekChromosome(String chromosome) throws IOException
+	{
+		if (absentChromosomes.contains(chromosome))
+		{
+			return;
+		}
+		if (passedChromosomes.contains(chromosome))
+		{
+			open();
+		}
+		while (cursor != null && !cursor.getChromosome().equals(chromosome))
+		{
+			advance();
+		}
+		// the VCF is always scanned from its start, so reaching its end means that the chromosome does not occur
+		if (cursor == null)
+		{
+			absentChromosomes.add(chromosome);
+		}
+	}
+
+	/**
+	 * Advances the cursor to the requested position and buffers all records at that position
+	 */
+	private void bufferPosition(String chromosome, int position) throws IOException
+	{
+		refAltToRecord.clear();
+		bufferedPosition = position;
+
+		while (cursor != null && cursor.getChromosome().equals(chromosome) && cursor.getPosition() < position)
+		{
+			advance();
+		}
+		while (cursor != null && cursor.getChromosome().equals(chromosome) && cursor.getPosition() == position)
+		{
+			AnnotatedVcfRecord record = new AnnotatedVcfRecord(cursor);
+			for (String alt : VcfRecordUtils.getAlts(record))
+			{
+				refAltToRecord.put(VariantKey.createBackTrimmed(record.getChromosome(), record.getPosition(),
+						VcfRecordUtils.getRef(record), alt), record);
+			}
+			advance();
+		}
+	}
+
+	private void advance() throws IOException
+	{
+		// read before moving on, the cursor record is recycled by the iterator
+		String chromosome = cursor != null ? cursor.getChromosome() : null;
+		int position = cursor != null ? cursor.getPosition() : -1;
+		cursor = vcfIterator.hasNext() ? vcfIterator.next() : null;
+		if (chromosome != null && (cursor == null || !cursor.getChromosome().equals(chromosome)))
+		{
+			passedChromosomes.add(chromosome);
+		}
+
+		if (cursor != null && cursor.getChromosome().equals(chromosome) && cursor.getPosition() < position)
+		{
+			throw new IOException(
+					"VCF file " + vcfFile.getName() + " is not sorted by position, found " + chromosome + ":"
+							+ cursor.getPosition() + " after " + chromosome + ":" + position
+							+ ", please sort the file or use lookup mode " + Mode.MEMORY);
+		}
+		if (cursor != null && passedChromosomes.contains(cursor.getChromosome()))
+		{
+			throw new IOException("VCF file " + vcfFile.getName() + " is not sorted by chromosome, chromosome "
+					+ cursor.getChromosome() + " was interrupted by other chromosomes, please sort the file or use "
+					+ "lookup mode " + Mode.MEMORY);
+		}
+	}
+
+	private void open() throws IOException
+	{
+		if (vcfReader != null)
+		{
+			vcfReader.close();
+		}
+		vcfReader = GavinUtils.getVcfReader(vcfFile);
+		vcfIterator = vcfReader.iterator();
+		passedChromosomes.clear();
+		cursor = null;
+		advance();
+	}
+}
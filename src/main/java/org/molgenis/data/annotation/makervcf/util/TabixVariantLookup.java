@@ -0,0 +1,68 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import org.molgenis.data.annotation.makervcf.structs.AnnotatedVcfRecord;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+import org.molgenis.vcf.TabixVcfReader;
+import org.molgenis.vcf.VcfRecord;
+import org.molgenis.vcf.VcfRecordUtils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Queries a tabix indexed VCF for the region starting at the requested variant and caches the records of that window.
+ * Because the input is position sorted, consecutive variants are mostly served from the cached window and only the
+ * regions that are actually touched are read.
+ */
+public class TabixVariantLookup implements VariantLookup
+{
+	static final int WINDOW_SIZE = 50000;
+
+	private final TabixVcfReader tabixVcfReader;
+	private final Map<VariantKey, AnnotatedVcfRecord> posRefAltToRecord;
+	private int windowContig = -1;
+	private int windowStart;
+	private int windowEnd;
+
+	public TabixVariantLookup(TabixVcfReader tabixVcfReader)
+	{
+		this.tabixVcfReader = tabixVcfReader;
+		this.posRefAltToRecord = new HashMap<>();
+	}
+
+	@Override
+	public AnnotatedVcfRecord get(VariantKey variantKey) throws IOException
+	{
+		int position = variantKey.getPosition();
+		if (variantKey.getContig() != windowContig || position < windowStart || position > windowEnd)
+		{
+			loadWindow(variantKey.getContig(), variantKey.getChromosome(), position);
+		}
+		return posRefAltToRecord.get(variantKey);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		tabixVcfReader.close();
+	}
+
+	private void loadWindow(int contig, String chromosome, int start) throws IOException
+	{
+		posRefAltToRecord.clear();
+		windowContig = contig;
+		windowStart = start;
+		windowEnd = start + WINDOW_SIZE - 1;
+
+		for (VcfRecord vcfRecord : tabixVcfReader.query(chromosome, windowStart, windowEnd))
+		{
+			AnnotatedVcfRecord record = new AnnotatedVcfRecord(vcfRecord);
+			for (String alt : VcfRecordUtils.getAlts(record))
+			{
+				posRefAltToRecord.put(VariantKey.createBackTrimmed(record.getChromosome(), record.getPosition(),
+						VcfRecordUtils.getRef(record), alt), record);
+			}
+		}
+	}
+}
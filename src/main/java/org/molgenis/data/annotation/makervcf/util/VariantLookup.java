@@ -0,0 +1,68 @@
+package org.molgenis.data.annotation.makervcf.util;
+
+import org.molgenis.data.annotation.makervcf.structs.AnnotatedVcfRecord;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+import org.molgenis.vcf.TabixVcfReader;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Finds the record for a variant in a VCF with known variants, e.g. reported pathogenic or lab variants. Close it to
+ * release the VCF when it is read on request.
+ */
+public interface VariantLookup extends Closeable
+{
+	enum Mode
+	{
+		/**
+		 * load all records in memory
+		 */
+		MEMORY,
+		/**
+		 * query records around the current variant using the tabix index
+		 */
+		TABIX,
+		/**
+		 * merge-join the sorted input with the sorted VCF, only records at the current position are kept in memory
+		 */
+		STREAMING
+	}
+
+	/**
+	 * @param variantKey back trimmed key, see VariantKey.createBackTrimmed
+	 * @return record for the variant or null if the VCF does not contain the variant
+	 */
+	@Nullable
+	AnnotatedVcfRecord get(VariantKey variantKey) throws IOException;
+
+	/**
+	 * Releases the VCF, lookups that do not keep it open have nothing to release
+	 */
+	@Override
+	default void close() throws IOException
+	{
+	}
+
+	static VariantLookup create(File vcfFile, Mode mode) throws IOException
+	{
+		switch (mode)
+		{
+			case MEMORY:
+				return new InMemoryVariantLookup(vcfFile);
+			case TABIX:
+				File indexFile = TabixVcfReader.getIndexFile(vcfFile);
+				if (!indexFile.exists())
+				{
+					throw new IOException("Tabix index not found at " + indexFile);
+				}
+				return new TabixVariantLookup(new TabixVcfReader(vcfFile, indexFile));
+			case STREAMING:
+				return new StreamingVariantLookup(vcfFile);
+			default:
+				throw new IllegalArgumentException("Unknown variant lookup mode " + mode);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package org.molgenis.vcf;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.molgenis.vcf.ParallelBlockCompressedInputStream.BLOCK_HEADER_LENGTH;
+
+/**
+ * Reads lines from a BGZF (blocked GNU zip format) file starting at virtual file offsets, e.g. of tabix index chunks.
+ * <p>
+ * Inflated blocks are kept in a least recently used cache keyed by their file offset, so that the many small queries
+ * of a position sorted input only inflate each block once.
+ */
+public class BlockCompressedLineReader implements Closeable
+{
+	private final FileChannel fileChannel;
+	private final Map<Long, Block> blockCache;
+
+	private long blockOffset;
+	private Block block;
+	private int blockPos;
+	private byte[] lineBuffer;
+
+	public BlockCompressedLineReader(File file, int maxCachedBlocks) throws IOException
+	{
+		if (file == null) throw new IllegalArgumentException("file is null");
+		if (maxCachedBlocks < 1) throw new IllegalArgumentException("maxCachedBlocks must be at least 1");
+		this.fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.blockCache = new LinkedHashMap<Long, Block>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Block> eldest)
+			{
+				return size() > maxCachedBlocks;
+			}
+		};
+		this.lineBuffer = new byte[256];
+	}
+
+	/**
+	 * @param virtualOffset offset of the block in the compressed file in the upper 48 bits and offset in the inflated
+	 *                      block in the lower 16 bits
+	 */
+	public void seek(long virtualOffset) throws IOException
+	{
+		blockOffset = virtualOffset >>> 16;
+		block = getBlock(blockOffset);
+		blockPos = (int) (virtualOffset & 0xFFFF);
+		if (blockPos > (block != null ? block.data.length : 0))
+		{
+			throw new IOException("Invalid virtual file offset " + virtualOffset);
+		}
+	}
+
+	/**
+	 * @return virtual file offset of the next line
+	 */
+	public long getFilePointer()
+	{
+		if (block != null && blockPos == block.data.length)
+		{
+			return (blockOffset + block.compressedLength) << 16;
+		}
+		return blockOffset << 16 | blockPos;
+	}
+
+	/**
+	 * @return next line without line terminator or null if the end of the file has been reached
+	 */
+	public String readLine() throws IOException
+	{
+		int length = 0;
+		while (block != null)
+		{
+			if (blockPos == block.data.length)
+			{
+				blockOffset += block.compressedLength;
+				block = getBlock(blockOffset);
+				blockPos = 0;
+				continue;
+			}
+
+			byte[] data = block.data;
+			int end = blockPos;
+			while (end < data.length && data[end] != '\n')
+			{
+				++end;
+			}
+			int nrBytes = end - blockPos;
+			if (length + nrBytes > lineBuffer.length)
+			{
+				lineBuffer = Arrays.copyOf(lineBuffer, Math.max(2 * lineBuffer.length, length + nrBytes));
+			}
+			System.arraycopy(data, blockPos, lineBuffer, length, nrBytes);
+			length += nrBytes;
+
+			if (end < data.length)
+			{
+				blockPos = end + 1;
+				return toLine(length);
+			}
+			blockPos = end;
+		}
+		return length > 0 ? toLine(length) : null;
+	}
+
+	private String toLine(int length)
+	{
+		if (length > 0 && lineBuffer[length - 1] == '\r')
+		{
+			--length;
+		}
+		return new String(lineBuffer, 0, length, UTF_8);
+	}
+
+	/**
+	 * @return inflated block at the file offset or null if the offset is at the end of the file
+	 */
+	private Block getBlock(long offset) throws IOException
+	{
+		Block cachedBlock = blockCache.get(offset);
+		if (cachedBlock != null)
+		{
+			return cachedBlock;
+		}
+
+		byte[] header = new byte[BLOCK_HEADER_LENGTH];
+		int nrBytesRead = read(header, offset);
+		if (nrBytesRead == 0)
+		{
+			return null;
+		}
+		if (nrBytesRead < header.length || !ParallelBlockCompressedInputStream.isBlockCompressed(header))
+		{
+			throw new IOException("Invalid BGZF block header at file offset " + offset);
+		}
+		byte[] compressedBlock = new byte[ParallelBlockCompressedInputStream.unpackShort(header, 16) + 1];
+		if (read(compressedBlock, offset) < compressedBlock.length)
+		{
+			throw new EOFException("Unexpected end of BGZF block at file offset " + offset);
+		}
+		Block newBlock = new Block(ParallelBlockCompressedInputStream.inflate(compressedBlock),
+				compressedBlock.length);
+		blockCache.put(offset, newBlock);
+		return newBlock;
+	}
+
+	private int read(byte[] bytes, long offset) throws IOException
+	{
+		ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+		while (byteBuffer.hasRemaining())
+		{
+			if (fileChannel.read(byteBuffer, offset + byteBuffer.position()) == -1)
+			{
+				break;
+			}
+		}
+		return byteBuffer.position();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		blockCache.clear();
+		fileChannel.close();
+	}
+
+	private static class Block
+	{
+		private final byte[] data;
+		private final int compressedLength;
+
+		Block(byte[] data, int compressedLength)
+		{
+			this.data = data;
+			this.compressedLength = compressedLength;
+		}
+	}
+}
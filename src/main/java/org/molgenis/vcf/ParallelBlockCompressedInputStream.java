@@ -0,0 +1,303 @@
+package org.molgenis.vcf;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses a BGZF (blocked GNU zip format) stream by inflating independent blocks on a worker pool.
+ * <p>
+ * Compressed blocks are read in order and inflated ahead of the reader, the number of blocks in flight is bounded by
+ * the read-ahead so memory use does not depend on the stream size. Inflated blocks are returned in stream order.
+ * <p>
+ * By default blocks are inflated on a pool with one thread per processor that is shared by all streams, so reading
+ * many streams concurrently (e.g. one per shard) does not multiply the number of inflater threads.
+ */
+public class ParallelBlockCompressedInputStream extends InputStream
+{
+	static final int BLOCK_HEADER_LENGTH = 18;
+	private static final int BLOCK_FOOTER_LENGTH = 8;
+	private static final int GZIP_ID1 = 31;
+	private static final int GZIP_ID2 = 139;
+	private static final int GZIP_CM_DEFLATE = 8;
+	private static final int GZIP_FLG_FEXTRA = 4;
+	private static final int BGZF_XLEN = 6;
+	private static final int BGZF_SI1 = 66;
+	private static final int BGZF_SI2 = 67;
+	private static final int BGZF_SLEN = 2;
+	private static final int NR_PROCESSORS = Runtime.getRuntime().availableProcessors();
+	private static final ExecutorService SHARED_EXECUTOR_SERVICE = createExecutorService(NR_PROCESSORS,
+			"shared-bgzf-inflater");
+
+	private final InputStream inputStream;
+	private final ExecutorService executorService;
+	// whether the executor service is owned by this stream instead of shared with other streams
+	private final boolean ownsExecutorService;
+	private final int readAhead;
+	private final Queue<Future<byte[]>> blocks;
+	private boolean endOfStream;
+	private byte[] block;
+	private int blockPos;
+
+	/**
+	 * Inflates blocks on the pool that is shared by all streams created with this constructor
+	 */
+	public ParallelBlockCompressedInputStream(InputStream inputStream)
+	{
+		this(inputStream, SHARED_EXECUTOR_SERVICE, NR_PROCESSORS, false);
+	}
+
+	/**
+	 * Inflates blocks on a pool of its own with the given number of threads, which is stopped when closing the stream
+	 */
+	public ParallelBlockCompressedInputStream(InputStream inputStream, int nrThreads)
+	{
+		this(inputStream, createExecutorService(nrThreads, "bgzf-inflater"), nrThreads, true);
+	}
+
+	private ParallelBlockCompressedInputStream(InputStream inputStream, ExecutorService executorService,
+			int nrThreads, boolean ownsExecutorService)
+	{
+		if (inputStream == null) throw new IllegalArgumentException("inputStream is null");
+		this.inputStream = inputStream;
+		this.executorService = executorService;
+		this.ownsExecutorService = ownsExecutorService;
+		this.readAhead = nrThreads * 4;
+		this.blocks = new ArrayDeque<>(readAhead);
+		this.block = new byte[0];
+	}
+
+	private static ExecutorService createExecutorService(int nrThreads, String threadName)
+	{
+		if (nrThreads < 1) throw new IllegalArgumentException("nrThreads must be at least 1");
+		return Executors.newFixedThreadPool(nrThreads, runnable ->
+		{
+			Thread thread = new Thread(runnable, threadName);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @return whether the given header bytes are the start of a BGZF block
+	 */
+	public static boolean isBlockCompressed(byte[] header)
+	{
+		return header.length >= BLOCK_HEADER_LENGTH && (header[0] & 0xff) == GZIP_ID1
+				&& (header[1] & 0xff) == GZIP_ID2 && header[2] == GZIP_CM_DEFLATE
+				&& (header[3] & GZIP_FLG_FEXTRA) != 0 && unpackShort(header, 10) == BGZF_XLEN
+				&& header[12] == BGZF_SI1 && header[13] == BGZF_SI2 && unpackShort(header, 14) == BGZF_SLEN;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (!nextBlock())
+		{
+			return -1;
+		}
+		return block[blockPos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)
+		{
+			return 0;
+		}
+		if (!nextBlock())
+		{
+			return -1;
+		}
+		int nrBytes = Math.min(len, block.length - blockPos);
+		System.arraycopy(block, blockPos, b, off, nrBytes);
+		blockPos += nrBytes;
+		return nrBytes;
+	}
+
+	@Override
+	public int available()
+	{
+		return block.length - blockPos;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (ownsExecutorService)
+		{
+			executorService.shutdownNow();
+		}
+		else
+		{
+			// blocks of this stream that are not inflated yet should not keep the shared threads busy
+			blocks.forEach(future -> future.cancel(false));
+		}
+		blocks.clear();
+		inputStream.close();
+	}
+
+	/**
+	 * Makes sure the current block has remaining bytes, waiting for the next inflated block if required
+	 *
+	 * @return false if the end of the stream has been reached
+	 */
+	private boolean nextBlock() throws IOException
+	{
+		while (blockPos == block.length)
+		{
+			submitBlocks();
+			Future<byte[]> future = blocks.poll();
+			if (future == null)
+			{
+				return false;
+			}
+			try
+			{
+				block = future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			}
+			catch (ExecutionException e)
+			{
+				throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+			}
+			blockPos = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads compressed blocks and submits them for inflation until the read-ahead is full
+	 */
+	private void submitBlocks() throws IOException
+	{
+		while (!endOfStream && blocks.size() < readAhead)
+		{
+			byte[] compressedBlock = readCompressedBlock();
+			if (compressedBlock == null)
+			{
+				endOfStream = true;
+			}
+			else
+			{
+				blocks.add(executorService.submit(() -> inflate(compressedBlock)));
+			}
+		}
+	}
+
+	/**
+	 * @return compressed block including header and footer or null if the end of the stream has been reached
+	 */
+	private byte[] readCompressedBlock() throws IOException
+	{
+		byte[] header = new byte[BLOCK_HEADER_LENGTH];
+		int nrBytesRead = readFully(header, 0, header.length);
+		if (nrBytesRead == 0)
+		{
+			return null;
+		}
+		if (nrBytesRead < header.length || !isBlockCompressed(header))
+		{
+			throw new IOException("Invalid BGZF block header");
+		}
+		int blockLength = unpackShort(header, 16) + 1;
+		if (blockLength < BLOCK_HEADER_LENGTH + BLOCK_FOOTER_LENGTH)
+		{
+			throw new IOException("Invalid BGZF block size " + blockLength);
+		}
+		byte[] compressedBlock = new byte[blockLength];
+		System.arraycopy(header, 0, compressedBlock, 0, header.length);
+		int remaining = blockLength - header.length;
+		if (readFully(compressedBlock, header.length, remaining) < remaining)
+		{
+			throw new EOFException("Unexpected end of BGZF block");
+		}
+		return compressedBlock;
+	}
+
+	private int readFully(byte[] b, int off, int len) throws IOException
+	{
+		int total = 0;
+		while (total < len)
+		{
+			int nrBytesRead = inputStream.read(b, off + total, len - total);
+			if (nrBytesRead == -1)
+			{
+				break;
+			}
+			total += nrBytesRead;
+		}
+		return total;
+	}
+
+	static byte[] inflate(byte[] compressedBlock) throws IOException
+	{
+		int footerOffset = compressedBlock.length - BLOCK_FOOTER_LENGTH;
+		int expectedCrc = unpackInt(compressedBlock, footerOffset);
+		int uncompressedLength = unpackInt(compressedBlock, footerOffset + 4);
+
+		byte[] uncompressedBlock = new byte[uncompressedLength];
+		Inflater inflater = new Inflater(true);
+		try
+		{
+			inflater.setInput(compressedBlock, BLOCK_HEADER_LENGTH, footerOffset - BLOCK_HEADER_LENGTH);
+			int nrBytesInflated = 0;
+			while (nrBytesInflated < uncompressedLength && !inflater.finished())
+			{
+				int nrBytes = inflater.inflate(uncompressedBlock, nrBytesInflated,
+						uncompressedLength - nrBytesInflated);
+				if (nrBytes == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+				{
+					break;
+				}
+				nrBytesInflated += nrBytes;
+			}
+			if (nrBytesInflated != uncompressedLength)
+			{
+				throw new IOException(
+						"BGZF block inflated to " + nrBytesInflated + " bytes, expected " + uncompressedLength);
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw new IOException(e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+
+		CRC32 crc32 = new CRC32();
+		crc32.update(uncompressedBlock, 0, uncompressedBlock.length);
+		if ((int) crc32.getValue() != expectedCrc)
+		{
+			throw new IOException("BGZF block CRC32 checksum mismatch");
+		}
+		return uncompressedBlock;
+	}
+
+	static int unpackShort(byte[] buffer, int offset)
+	{
+		return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8);
+	}
+
+	private static int unpackInt(byte[] buffer, int offset)
+	{
+		return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8) | ((buffer[offset + 2] & 0xff) << 16) | (
+				(buffer[offset + 3] & 0xff) << 24);
+	}
+}
@@ -0,0 +1,221 @@
+package org.molgenis.vcf;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Tabix (.tbi) index of a bgzip compressed and position sorted file.
+ * <p>
+ * Translates a genomic region into the chunks of virtual file offsets that need to be read, see the Tabix file format
+ * specification for the binning and linear index scheme.
+ */
+public class TabixIndex
+{
+	private static final byte[] MAGIC = { 'T', 'B', 'I', 1 };
+	private static final int LINEAR_INDEX_SHIFT = 14;
+
+	private final Map<String, Integer> sequenceIndices;
+	private final List<Map<Integer, List<Chunk>>> binIndices;
+	private final List<long[]> linearIndices;
+
+	private TabixIndex(Map<String, Integer> sequenceIndices, List<Map<Integer, List<Chunk>>> binIndices,
+			List<long[]> linearIndices)
+	{
+		this.sequenceIndices = sequenceIndices;
+		this.binIndices = binIndices;
+		this.linearIndices = linearIndices;
+	}
+
+	public static TabixIndex read(File indexFile) throws IOException
+	{
+		byte[] bytes;
+		try (InputStream inputStream = new GZIPInputStream(new FileInputStream(indexFile)))
+		{
+			bytes = ByteStreams.toByteArray(inputStream);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+		byte[] magic = new byte[MAGIC.length];
+		buffer.get(magic);
+		if (!Arrays.equals(magic, MAGIC))
+		{
+			throw new IOException("Invalid tabix index " + indexFile);
+		}
+		int nrSequences = buffer.getInt();
+		// format, col_seq, col_beg, col_end, meta and skip are defined by the VCF preset
+		buffer.position(buffer.position() + 6 * Integer.BYTES);
+		byte[] names = new byte[buffer.getInt()];
+		buffer.get(names);
+
+		Map<String, Integer> sequenceIndices = new HashMap<>();
+		int nameStart = 0;
+		for (int i = 0; i < names.length; ++i)
+		{
+			if (names[i] == 0)
+			{
+				sequenceIndices.put(new String(names, nameStart, i - nameStart, UTF_8), sequenceIndices.size());
+				nameStart = i + 1;
+			}
+		}
+		if (sequenceIndices.size() != nrSequences)
+		{
+			throw new IOException("Expected " + nrSequences + " sequence names in tabix index " + indexFile);
+		}
+
+		List<Map<Integer, List<Chunk>>> binIndices = new ArrayList<>(nrSequences);
+		List<long[]> linearIndices = new ArrayList<>(nrSequences);
+		for (int i = 0; i < nrSequences; ++i)
+		{
+			int nrBins = buffer.getInt();
+			Map<Integer, List<Chunk>> binIndex = new HashMap<>(nrBins * 2);
+			for (int j = 0; j < nrBins; ++j)
+			{
+				int bin = buffer.getInt();
+				int nrChunks = buffer.getInt();
+				List<Chunk> chunks = new ArrayList<>(nrChunks);
+				for (int k = 0; k < nrChunks; ++k)
+				{
+					chunks.add(new Chunk(buffer.getLong(), buffer.getLong()));
+				}
+				binIndex.put(bin, chunks);
+			}
+			binIndices.add(binIndex);
+
+			long[] linearIndex = new long[buffer.getInt()];
+			for (int j = 0; j < linearIndex.length; ++j)
+			{
+				linearIndex[j] = buffer.getLong();
+			}
+			linearIndices.add(linearIndex);
+		}
+		return new TabixIndex(sequenceIndices, binIndices, linearIndices);
+	}
+
+	public boolean containsSequence(String sequenceName)
+	{
+		return sequenceIndices.containsKey(sequenceName);
+	}
+
+	/**
+	 * @param start 1-based start position, inclusive
+	 * @param end   1-based end position, inclusive
+	 * @return sorted non-overlapping chunks that contain all records overlapping the region
+	 */
+	public List<Chunk> getChunks(String sequenceName, int start, int end)
+	{
+		Integer sequenceIndex = sequenceIndices.get(sequenceName);
+		if (sequenceIndex == null || end < start)
+		{
+			return Collections.emptyList();
+		}
+		int begin = Math.max(start - 1, 0);
+
+		long[] linearIndex = linearIndices.get(sequenceIndex);
+		long minOffset = 0;
+		if (linearIndex.length > 0)
+		{
+			minOffset = linearIndex[Math.min(begin >> LINEAR_INDEX_SHIFT, linearIndex.length - 1)];
+		}
+
+		Map<Integer, List<Chunk>> binIndex = binIndices.get(sequenceIndex);
+		List<Chunk> chunks = new ArrayList<>();
+		for (int bin : reg2bins(begin, end))
+		{
+			List<Chunk> binChunks = binIndex.get(bin);
+			if (binChunks != null)
+			{
+				for (Chunk chunk : binChunks)
+				{
+					if (Long.compareUnsigned(chunk.getEnd(), minOffset) > 0)
+					{
+						chunks.add(chunk);
+					}
+				}
+			}
+		}
+		return merge(chunks);
+	}
+
+	private static List<Chunk> merge(List<Chunk> chunks)
+	{
+		if (chunks.size() < 2)
+		{
+			return chunks;
+		}
+		chunks.sort((chunk, otherChunk) -> Long.compareUnsigned(chunk.getBegin(), otherChunk.getBegin()));
+
+		List<Chunk> mergedChunks = new ArrayList<>();
+		Chunk current = chunks.get(0);
+		for (int i = 1; i < chunks.size(); ++i)
+		{
+			Chunk chunk = chunks.get(i);
+			if (Long.compareUnsigned(chunk.getBegin(), current.getEnd()) <= 0)
+			{
+				if (Long.compareUnsigned(chunk.getEnd(), current.getEnd()) > 0)
+				{
+					current = new Chunk(current.getBegin(), chunk.getEnd());
+				}
+			}
+			else
+			{
+				mergedChunks.add(current);
+				current = chunk;
+			}
+		}
+		mergedChunks.add(current);
+		return mergedChunks;
+	}
+
+	/**
+	 * @param begin 0-based begin, inclusive
+	 * @param end   0-based end, exclusive
+	 * @return bins that may contain records overlapping the region
+	 */
+	private static List<Integer> reg2bins(int begin, int end)
+	{
+		List<Integer> bins = new ArrayList<>();
+		--end;
+		bins.add(0);
+		for (int k = 1 + (begin >> 26); k <= 1 + (end >> 26); ++k) bins.add(k);
+		for (int k = 9 + (begin >> 23); k <= 9 + (end >> 23); ++k) bins.add(k);
+		for (int k = 73 + (begin >> 20); k <= 73 + (end >> 20); ++k) bins.add(k);
+		for (int k = 585 + (begin >> 17); k <= 585 + (end >> 17); ++k) bins.add(k);
+		for (int k = 4681 + (begin >> 14); k <= 4681 + (end >> 14); ++k) bins.add(k);
+		return bins;
+	}
+
+	/**
+	 * Range of BGZF virtual file offsets, begin inclusive and end exclusive
+	 */
+	public static class Chunk
+	{
+		private final long begin;
+		private final long end;
+
+		Chunk(long begin, long end)
+		{
+			this.begin = begin;
+			this.end = end;
+		}
+
+		public long getBegin()
+		{
+			return begin;
+		}
+
+		public long getEnd()
+		{
+			return end;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package org.molgenis.vcf;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.molgenis.vcf.meta.VcfMeta;
+import org.molgenis.vcf.meta.VcfMetaParser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the records of a region from a bgzip compressed VCF file using its tabix index.
+ * <p>
+ * Unlike {@link VcfReader} the returned records are not recycled.
+ */
+public class TabixVcfReader implements Closeable
+{
+	private static final String INDEX_EXTENSION = ".tbi";
+
+	private final BlockCompressedInputStream blockCompressedInputStream;
+	private final TabixIndex tabixIndex;
+	private final VcfMeta vcfMeta;
+
+	public TabixVcfReader(File vcfFile) throws IOException
+	{
+		this(vcfFile, getIndexFile(vcfFile));
+	}
+
+	public TabixVcfReader(File vcfFile, File indexFile) throws IOException
+	{
+		if (vcfFile == null) throw new IllegalArgumentException("vcfFile is null");
+		if (indexFile == null) throw new IllegalArgumentException("indexFile is null");
+		this.tabixIndex = TabixIndex.read(indexFile);
+		this.blockCompressedInputStream = new BlockCompressedInputStream(vcfFile);
+		this.vcfMeta = new VcfMetaParser(blockCompressedInputStream).parse();
+	}
+
+	public static File getIndexFile(File vcfFile)
+	{
+		return new File(vcfFile.getPath() + INDEX_EXTENSION);
+	}
+
+	public VcfMeta getVcfMeta()
+	{
+		return vcfMeta;
+	}
+
+	/**
+	 * @param start 1-based start position, inclusive
+	 * @param end   1-based end position, inclusive
+	 * @return records of which the reference allele overlaps the region, in file order
+	 */
+	public List<VcfRecord> query(String chromosome, int start, int end) throws IOException
+	{
+		List<VcfRecord> vcfRecords = new ArrayList<>();
+		for (TabixIndex.Chunk chunk : tabixIndex.getChunks(chromosome, start, end))
+		{
+			blockCompressedInputStream.seek(chunk.getBegin());
+			String line;
+			while (Long.compareUnsigned(blockCompressedInputStream.getFilePointer(), chunk.getEnd()) < 0
+					&& (line = blockCompressedInputStream.readLine()) != null)
+			{
+				String[] tokens = StringUtils.split(line, '\t');
+				if (!tokens[VcfMeta.COL_CHROM_IDX].equals(chromosome))
+				{
+					continue;
+				}
+				int position = Integer.parseInt(tokens[VcfMeta.COL_POS_IDX]);
+				if (position > end)
+				{
+					break;
+				}
+				if (position + tokens[VcfMeta.COL_REF_IDX].length() - 1 >= start)
+				{
+					vcfRecords.add(new VcfRecord(vcfMeta, tokens));
+				}
+			}
+		}
+		return vcfRecords;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		blockCompressedInputStream.close();
+	}
+}
@@ -0,0 +1,274 @@
+package org.molgenis.vcf;
+
+import java.util.BitSet;
+
+/**
+ * Genotype (GT) and depth (DP) columns of all samples of a record, decoded once per record. Allele indices of all
+ * samples are packed in one int array, immutable so that records can be shared by threads.
+ */
+public final class VcfGenotypes
+{
+	/**
+	 * Allele index of a missing ('.') allele
+	 */
+	public static final int MISSING_ALLELE = -1;
+	/**
+	 * Depth of a sample without (or with a missing) DP value
+	 */
+	public static final int MISSING_DEPTH = Integer.MIN_VALUE;
+
+	private static final String FIELD_GT = "GT";
+	private static final String FIELD_DP = "DP";
+	private static final char SUBFIELD_SEPARATOR = ':';
+	private static final char GENOTYPE_UNPHASED = '/';
+	private static final char GENOTYPE_PHASED = '|';
+
+	private final int nrSamples;
+	// alleles of sample i are alleles[alleleOffsets[i]] to alleles[alleleOffsets[i + 1]]
+	private final int[] alleles;
+	private final int[] alleleOffsets;
+	private final BitSet phased;
+	private final int[] depths;
+	private final String[] genotypes;
+
+	VcfGenotypes(VcfRecord vcfRecord, String[] sampleColumns)
+	{
+		String[] format = vcfRecord.getFormat();
+		int gtIndex = indexOf(format, FIELD_GT);
+		int dpIndex = indexOf(format, FIELD_DP);
+
+		this.nrSamples = sampleColumns.length;
+		this.alleleOffsets = new int[nrSamples + 1];
+		this.phased = new BitSet(nrSamples);
+		this.depths = new int[nrSamples];
+		this.genotypes = new String[nrSamples];
+
+		int[] sampleAlleles = new int[2 * nrSamples];
+		int nrAlleles = 0;
+		for (int i = 0; i < nrSamples; ++i)
+		{
+			String column = sampleColumns[i];
+			alleleOffsets[i] = nrAlleles;
+			depths[i] = MISSING_DEPTH;
+
+			int subfield = 0;
+			int start = 0;
+			int length = column.length();
+			while (start <= length && (subfield <= gtIndex || subfield <= dpIndex))
+			{
+				int end = column.indexOf(SUBFIELD_SEPARATOR, start);
+				if (end == -1) end = length;
+				// skip empty subfields like VcfRecord.getSamples does
+				if (end > start)
+				{
+					if (subfield == gtIndex && !isMissingValue(column, start, end))
+					{
+						genotypes[i] = column.substring(start, end);
+						int ploidy = countAlleles(column, start, end);
+						if (nrAlleles + ploidy > sampleAlleles.length)
+						{
+							int[] grown = new int[Math.max(2 * sampleAlleles.length, nrAlleles + ploidy)];
+							System.arraycopy(sampleAlleles, 0, grown, 0, nrAlleles);
+							sampleAlleles = grown;
+						}
+						nrAlleles = decodeAlleles(column, start, end, sampleAlleles, nrAlleles);
+						if (isPhased(column, start, end))
+						{
+							phased.set(i);
+						}
+					}
+					else if (subfield == dpIndex && !isMissingValue(column, start, end))
+					{
+						depths[i] = parseDepth(column, start, end);
+					}
+					++subfield;
+				}
+				start = end + 1;
+			}
+		}
+		alleleOffsets[nrSamples] = nrAlleles;
+		this.alleles = sampleAlleles;
+	}
+
+	private static int indexOf(String[] format, String field)
+	{
+		for (int i = 0; i < format.length; ++i)
+		{
+			if (format[i].equals(field))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isMissingValue(String column, int start, int end)
+	{
+		return end - start == 1 && column.charAt(start) == '.';
+	}
+
+	private static int countAlleles(String column, int start, int end)
+	{
+		int ploidy = 1;
+		for (int i = start; i < end; ++i)
+		{
+			char c = column.charAt(i);
+			if (c == GENOTYPE_UNPHASED || c == GENOTYPE_PHASED)
+			{
+				++ploidy;
+			}
+		}
+		return ploidy;
+	}
+
+	private static boolean isPhased(String column, int start, int end)
+	{
+		int separator = column.indexOf(GENOTYPE_PHASED, start);
+		return separator != -1 && separator < end;
+	}
+
+	private static int decodeAlleles(String column, int start, int end, int[] alleles, int nrAlleles)
+	{
+		int alleleStart = start;
+		for (int i = start; i <= end; ++i)
+		{
+			char c = i < end ? column.charAt(i) : GENOTYPE_UNPHASED;
+			if (c == GENOTYPE_UNPHASED || c == GENOTYPE_PHASED)
+			{
+				alleles[nrAlleles++] = decodeAllele(column, alleleStart, i);
+				alleleStart = i + 1;
+			}
+		}
+		return nrAlleles;
+	}
+
+	/**
+	 * @return allele index or MISSING_ALLELE for '.' and values that are not an allele index, indices that do not fit
+	 * an int are returned as Integer.MAX_VALUE which matches no allele of the record
+	 */
+	private static int decodeAllele(String column, int start, int end)
+	{
+		if (start == end)
+		{
+			return MISSING_ALLELE;
+		}
+		int allele = 0;
+		for (int i = start; i < end; ++i)
+		{
+			int digit = column.charAt(i) - '0';
+			if (digit < 0 || digit > 9)
+			{
+				return MISSING_ALLELE;
+			}
+			allele = allele <= (Integer.MAX_VALUE - digit) / 10 ? allele * 10 + digit : Integer.MAX_VALUE;
+		}
+		return allele;
+	}
+
+	/**
+	 * Parses a depth without creating an intermediate String for the common case of a plain decimal number, other
+	 * values are parsed as double and rounded down, which preserves comparisons with integer thresholds.
+	 */
+	private static int parseDepth(String column, int start, int end)
+	{
+		if (end - start <= 9)
+		{
+			int depth = 0;
+			int i = start;
+			for (; i < end; ++i)
+			{
+				int digit = column.charAt(i) - '0';
+				if (digit < 0 || digit > 9)
+				{
+					break;
+				}
+				depth = depth * 10 + digit;
+			}
+			if (i == end)
+			{
+				return depth;
+			}
+		}
+		double depth = Math.floor(Double.parseDouble(column.substring(start, end)));
+		return depth > MISSING_DEPTH ? (int) depth : MISSING_DEPTH + 1;
+	}
+
+	public int getNrSamples()
+	{
+		return nrSamples;
+	}
+
+	/**
+	 * @return number of alleles of the sample, 0 if the sample has no (or a missing) genotype
+	 */
+	public int getPloidy(int sample)
+	{
+		return alleleOffsets[sample + 1] - alleleOffsets[sample];
+	}
+
+	/**
+	 * @return allele index (0 for the reference allele) or MISSING_ALLELE
+	 */
+	public int getAllele(int sample, int i)
+	{
+		return alleles[alleleOffsets[sample] + i];
+	}
+
+	public boolean hasGenotype(int sample)
+	{
+		return genotypes[sample] != null;
+	}
+
+	/**
+	 * @return genotype as written in the VCF or null if the sample has no (or a missing) genotype
+	 */
+	public String getGenotype(int sample)
+	{
+		return genotypes[sample];
+	}
+
+	public boolean isPhased(int sample)
+	{
+		return phased.get(sample);
+	}
+
+	/**
+	 * @return depth rounded down or MISSING_DEPTH
+	 */
+	public int getDepth(int sample)
+	{
+		return depths[sample];
+	}
+
+	/**
+	 * @return whether all alleles of the genotype are missing, e.g. './.'
+	 */
+	public boolean isMissing(int sample)
+	{
+		return countAllele(sample, MISSING_ALLELE) == getPloidy(sample);
+	}
+
+	/**
+	 * @return whether all alleles of the genotype are the reference allele, e.g. '0/0'
+	 */
+	public boolean isReference(int sample)
+	{
+		return hasGenotype(sample) && countAllele(sample, 0) == getPloidy(sample);
+	}
+
+	/**
+	 * @return number of times the allele occurs in the genotype of the sample
+	 */
+	public int countAllele(int sample, int allele)
+	{
+		int count = 0;
+		for (int i = alleleOffsets[sample]; i < alleleOffsets[sample + 1]; ++i)
+		{
+			if (alleles[i] == allele)
+			{
+				++count;
+			}
+		}
+		return count;
+	}
+}
@@ -3,7 +3,9 @@ package org.molgenis.vcf;
 import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.channels.FileChannel;
 import java.util.Iterator;
 
 import org.molgenis.vcf.meta.VcfMeta;
@@ -20,18 +22,62 @@ import net.sf.samtools.util.BlockCompressedInputStream;
 public class VcfReader implements Iterable<VcfRecord>, Closeable {
 	private final BufferedReader reader;
 	private final BlockCompressedInputStream blockCompressedInputStream;
+	private final VcfRecordTokenizer vcfRecordTokenizer;
 	private VcfMeta vcfMeta;
 	
 	public VcfReader(Reader reader) throws IOException {
 		if(reader == null) throw new IllegalArgumentException("reader is null");
 		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
 		this.blockCompressedInputStream = null;
+		this.vcfRecordTokenizer = null;
 	}
 
 	public VcfReader(BlockCompressedInputStream blockCompressedInputStream) {
 		if(blockCompressedInputStream == null) throw new IllegalArgumentException("blockCompressedInputStream is null");
 		this.blockCompressedInputStream = blockCompressedInputStream;
 		this.reader = null;
+		this.vcfRecordTokenizer = null;
+	}
+
+	/**
+	 * Reads raw bytes instead of chars, records are backed by the line bytes and columns are decoded on demand.
+	 */
+	public VcfReader(InputStream inputStream) {
+		if(inputStream == null) throw new IllegalArgumentException("inputStream is null");
+		this.vcfRecordTokenizer = new VcfRecordTokenizer(inputStream);
+		this.reader = null;
+		this.blockCompressedInputStream = null;
+	}
+
+	/**
+	 * Scans lines directly in memory-mapped regions of the file, records are backed by the line bytes and columns
+	 * are decoded on demand.
+	 */
+	public VcfReader(FileChannel fileChannel) {
+		if(fileChannel == null) throw new IllegalArgumentException("fileChannel is null");
+		this.vcfRecordTokenizer = new VcfRecordTokenizer(fileChannel);
+		this.reader = null;
+		this.blockCompressedInputStream = null;
+	}
+
+	/**
+	 * Reads raw bytes of a stream that is positioned at the start of a data line, the header is not read.
+	 */
+	public VcfReader(InputStream inputStream, VcfMeta vcfMeta) {
+		this(inputStream);
+		if(vcfMeta == null) throw new IllegalArgumentException("vcfMeta is null");
+		this.vcfMeta = vcfMeta;
+	}
+
+	/**
+	 * Scans lines of the file from the given byte offset, which must be the start of a data line, the header is not
+	 * read.
+	 */
+	public VcfReader(FileChannel fileChannel, VcfMeta vcfMeta, long position) {
+		this(fileChannel);
+		if(vcfMeta == null) throw new IllegalArgumentException("vcfMeta is null");
+		this.vcfMeta = vcfMeta;
+		this.vcfRecordTokenizer.seek(position);
 	}
 	
 	@Override
@@ -44,7 +90,10 @@ public class VcfReader implements Iterable<VcfRecord>, Closeable {
 				throw new RuntimeException(e);
 			}
 		}
-		VcfRecordReader vcfRecordReader = reader != null ? new VcfRecordReader(reader, vcfMeta) : new VcfRecordReader(blockCompressedInputStream, vcfMeta);  
+		VcfRecordReader vcfRecordReader;
+		if(reader != null) vcfRecordReader = new VcfRecordReader(reader, vcfMeta);
+		else if(blockCompressedInputStream != null) vcfRecordReader = new VcfRecordReader(blockCompressedInputStream, vcfMeta);
+		else vcfRecordReader = new VcfRecordReader(vcfRecordTokenizer, vcfMeta);
 		return vcfRecordReader.iterator();
 	}
 	
@@ -55,15 +104,27 @@ public class VcfReader implements Iterable<VcfRecord>, Closeable {
 		return vcfMeta;
 	}
 	
+	/**
+	 * @return byte offset in the (uncompressed) input of the line after the last line that was read
+	 * @throws UnsupportedOperationException if reading chars or from a BlockCompressedInputStream
+	 */
+	public long getPosition() {
+		if(vcfRecordTokenizer == null)
+			throw new UnsupportedOperationException("position is only known when reading raw bytes");
+		return vcfRecordTokenizer.getPosition();
+	}
+
 	@Override
 	public void close() throws IOException
 	{
 		if(reader != null) reader.close();
 		else if (blockCompressedInputStream != null) blockCompressedInputStream.close();
+		else if (vcfRecordTokenizer != null) vcfRecordTokenizer.close();
 	}
 
 	private VcfMeta parseVcfMeta() throws IOException {
 		if(reader != null) return new VcfMetaParser(reader).parse();
-		else return new VcfMetaParser(blockCompressedInputStream).parse();
+		else if(blockCompressedInputStream != null) return new VcfMetaParser(blockCompressedInputStream).parse();
+		else return new VcfMetaParser(vcfRecordTokenizer).parse();
 	}
 }
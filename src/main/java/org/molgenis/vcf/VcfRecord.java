@@ -4,18 +4,31 @@ import org.apache.commons.lang3.StringUtils;
 import org.molgenis.genotype.Allele;
 import org.molgenis.vcf.meta.VcfMeta;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.*;
 
+import static java.util.Objects.requireNonNull;
+
 public class VcfRecord
 {
 	static final String MISSING_VALUE = ".";
 
 	private final VcfMeta vcfMeta;
 	private String[] tokens;
+	// raw line bytes when read with a VcfRecordTokenizer, tokens are only created on request
+	private VcfRecordLine line;
+	// record of which the sample columns follow the tokens, they are only decoded to tokens on request
+	private VcfRecord sampleColumnsRecord;
 
+	private transient String[] cachedColumns;
 	private transient List<String> cachedIdentifiers;
 	private transient List<Allele> cachedAlternateAlleles;
+	private transient InfoIndex cachedInfoIndex;
 	private transient String[] cachedSampleDataTypes;
+	private transient VcfGenotypes cachedGenotypes;
 	
 	public VcfRecord(VcfMeta vcfMeta) {
 		this(vcfMeta, null);
@@ -28,23 +41,158 @@ public class VcfRecord
 		this.tokens = tokens;
 	}
 
+	/**
+	 * Creates a record of the given columns up to and including FORMAT followed by the sample columns of another
+	 * record. Writing the record copies the sample columns without decoding them if they were not decoded yet.
+	 */
+	public VcfRecord(VcfMeta vcfMeta, String[] tokens, VcfRecord sampleColumnsRecord)
+	{
+		this(vcfMeta, tokens);
+		this.sampleColumnsRecord = requireNonNull(sampleColumnsRecord);
+	}
+
+	/**
+	 * Creates a copy of the given record that is not affected by recycling of the given record
+	 */
+	protected VcfRecord(VcfRecord vcfRecord)
+	{
+		this(vcfRecord.vcfMeta, vcfRecord.tokens);
+		if (vcfRecord.line != null)
+		{
+			this.line = vcfRecord.line.copy();
+			this.cachedColumns = vcfRecord.cachedColumns != null ? vcfRecord.cachedColumns.clone() : null;
+		}
+		this.sampleColumnsRecord = vcfRecord.sampleColumnsRecord;
+		// the index and genotypes are immutable and refer to the same columns
+		this.cachedInfoIndex = vcfRecord.cachedInfoIndex;
+		this.cachedGenotypes = vcfRecord.cachedGenotypes;
+	}
+
 	public String[] getTokens()
 	{
+		if (sampleColumnsRecord != null)
+		{
+			decodeSampleColumns();
+		}
+		if (tokens == null && line != null)
+		{
+			String[] lineTokens = new String[line.getNrColumns()];
+			for (int i = 0; i < lineTokens.length; ++i)
+			{
+				lineTokens[i] = getToken(i);
+			}
+			tokens = lineTokens;
+		}
 		return tokens;
 	}
 
+	private String getToken(int idx)
+	{
+		if (sampleColumnsRecord != null && idx >= tokens.length)
+		{
+			decodeSampleColumns();
+		}
+		if (tokens != null || line == null)
+		{
+			return tokens[idx];
+		}
+		if (idx > VcfMeta.COL_FORMAT_IDX)
+		{
+			return line.getColumn(idx);
+		}
+		if (cachedColumns == null)
+		{
+			cachedColumns = new String[VcfMeta.COL_FORMAT_IDX + 1];
+		}
+		String column = cachedColumns[idx];
+		if (column == null)
+		{
+			column = line.getColumn(idx);
+			cachedColumns[idx] = column;
+		}
+		return column;
+	}
+
+	private int getNrTokens()
+	{
+		if (sampleColumnsRecord != null)
+		{
+			return tokens.length + sampleColumnsRecord.getNrSamples();
+		}
+		return tokens == null && line != null ? line.getNrColumns() : tokens.length;
+	}
+
+	private void decodeSampleColumns()
+	{
+		String[] sampleTokens = sampleColumnsRecord.getSampleTokens();
+		String[] allTokens = Arrays.copyOf(tokens, tokens.length + sampleTokens.length);
+		System.arraycopy(sampleTokens, 0, allTokens, tokens.length, sampleTokens.length);
+		tokens = allTokens;
+		sampleColumnsRecord = null;
+	}
+
+	/**
+	 * Writes the tab separated columns. Columns of a record read with a {@link VcfRecordTokenizer} that were not
+	 * changed are copied from the line without creating Strings.
+	 */
+	public void write(Writer writer) throws IOException
+	{
+		if (tokens == null && line != null)
+		{
+			line.writeColumns(0, writer);
+			return;
+		}
+		if (tokens != null)
+		{
+			writeTokens(tokens, writer);
+		}
+		if (sampleColumnsRecord != null && sampleColumnsRecord.getNrSamples() > 0)
+		{
+			writer.write('\t');
+			sampleColumnsRecord.writeSampleColumns(writer);
+		}
+	}
+
+	/**
+	 * Writes the tab separated sample columns, see write(Writer). Private so that it only relies on the overridable
+	 * getSampleTokens() when the columns are not stored as a line.
+	 */
+	private void writeSampleColumns(Writer writer) throws IOException
+	{
+		if (tokens == null && line != null)
+		{
+			line.writeColumns(VcfMeta.COL_FORMAT_IDX + 1, writer);
+		}
+		else
+		{
+			writeTokens(getSampleTokens(), writer);
+		}
+	}
+
+	private static void writeTokens(String[] tokens, Writer writer) throws IOException
+	{
+		for (int i = 0; i < tokens.length; ++i)
+		{
+			if (i > 0)
+			{
+				writer.write('\t');
+			}
+			writer.write(tokens[i]);
+		}
+	}
+
 	public String getChromosome() {
-		return tokens[VcfMeta.COL_CHROM_IDX].intern();
+		return getToken(VcfMeta.COL_CHROM_IDX).intern();
 	}
 	
 	public int getPosition() {
-		return Integer.valueOf(tokens[VcfMeta.COL_POS_IDX]);
+		return line != null ? line.getColumnAsInt(VcfMeta.COL_POS_IDX) : Integer.valueOf(tokens[VcfMeta.COL_POS_IDX]);
 	}
 	
 	@SuppressWarnings("RedundantStringConstructorCall")
 	public List<String> getIdentifiers() {
 		if(cachedIdentifiers == null) {
-			String identifiersStr = tokens[VcfMeta.COL_ID_IDX];
+			String identifiersStr = getToken(VcfMeta.COL_ID_IDX);
 			
 			if (identifiersStr == null || identifiersStr.equals(MISSING_VALUE)) {
 				cachedIdentifiers = Collections.emptyList();
@@ -56,7 +204,7 @@ public class VcfRecord
 		return cachedIdentifiers;
 	}
 	public Allele getReferenceAllele() {
-		return Allele.create(tokens[VcfMeta.COL_REF_IDX]);
+		return Allele.create(getToken(VcfMeta.COL_REF_IDX));
 	}
 	
 	/**
@@ -64,7 +212,7 @@ public class VcfRecord
 	 */
 	public List<Allele> getAlternateAlleles() {
 		if(cachedAlternateAlleles == null) {
-			String alternateBasesStr = tokens[VcfMeta.COL_ALT_IDX];
+			String alternateBasesStr = getToken(VcfMeta.COL_ALT_IDX);
 			if(alternateBasesStr == null || alternateBasesStr.length() == 0 || alternateBasesStr.equals(MISSING_VALUE)) {
 				cachedAlternateAlleles = Collections.emptyList();
 			} else {
@@ -81,7 +229,7 @@ public class VcfRecord
 	 * @return quality value or null if quality value is set to the missing value
 	 */
 	public String getQuality() {
-		String quality = tokens[VcfMeta.COL_QUAL_IDX];
+		String quality = getToken(VcfMeta.COL_QUAL_IDX);
 		return quality != null && quality.equals(MISSING_VALUE) ? null : quality;
 	}
 	
@@ -90,13 +238,13 @@ public class VcfRecord
 	 * @return filter Status or null if filter Status is set to the missign value
 	 */
 	public String getFilterStatus() {
-		String filterStatus = tokens[VcfMeta.COL_FILTER_IDX];
+		String filterStatus = getToken(VcfMeta.COL_FILTER_IDX);
 		return filterStatus != null && filterStatus.equals(MISSING_VALUE) ? null : filterStatus;
 	}
 	
 	public Iterable<VcfInfo> getInformation() {
-		//Do new string to prevent the whole token array is saved
-		final String[] infoTokens = StringUtils.split(tokens[VcfMeta.COL_INFO_IDX], ';');
+		final String info = getToken(VcfMeta.COL_INFO_IDX);
+		final InfoIndex infoIndex = getInfoIndex();
 		return () -> new Iterator<VcfInfo>(){
 			private final VcfInfo recycableVcfInfo = new VcfInfo(vcfMeta);
 			private int nrToken = 0;
@@ -104,17 +252,15 @@ public class VcfRecord
 			@Override
 			public boolean hasNext()
 			{
-				return nrToken < infoTokens.length;
+				return nrToken < infoIndex.nrInfo;
 			}
 
 			@Override
 			public VcfInfo next()
 			{
-				String infoToken = infoTokens[nrToken++];
-				int idx = infoToken.indexOf('=');
-				String key = idx != -1 ? infoToken.substring(0, idx) : infoToken;
-				String val = idx != -1 ? infoToken.substring(idx + 1) : null;
-				recycableVcfInfo.reset(key, val);
+				int idx = InfoIndex.ENTRY_SIZE * nrToken++;
+				recycableVcfInfo.reset(info.substring(infoIndex.bounds[idx], infoIndex.bounds[idx + 1]),
+						infoIndex.getValue(info, idx));
 				return recycableVcfInfo;
 			}
 
@@ -125,11 +271,39 @@ public class VcfRecord
 			}};
 	}
 	
+	/**
+	 * Looks up an INFO entry without splitting the INFO column, the column is indexed on first access.
+	 *
+	 * @return first INFO entry with the given key or null if the record has no such entry
+	 */
+	public VcfInfo getInformation(String key) {
+		String info = getToken(VcfMeta.COL_INFO_IDX);
+		InfoIndex infoIndex = getInfoIndex();
+		int keyLength = key.length();
+		for (int idx = 0; idx < InfoIndex.ENTRY_SIZE * infoIndex.nrInfo; idx += InfoIndex.ENTRY_SIZE)
+		{
+			int keyOffset = infoIndex.bounds[idx];
+			if (infoIndex.bounds[idx + 1] - keyOffset == keyLength && info.regionMatches(keyOffset, key, 0,
+					keyLength))
+			{
+				return new VcfInfo(vcfMeta, key, infoIndex.getValue(info, idx));
+			}
+		}
+		return null;
+	}
+
+	private InfoIndex getInfoIndex() {
+		if (cachedInfoIndex == null) {
+			cachedInfoIndex = new InfoIndex(getToken(VcfMeta.COL_INFO_IDX));
+		}
+		return cachedInfoIndex;
+	}
+
 	public String[] getFormat() {
 		if(cachedSampleDataTypes == null) {
 			//Do new string to prevent the whole token array is saved
-			if(tokens.length > 8){
-				cachedSampleDataTypes = StringUtils.split(tokens[VcfMeta.COL_FORMAT_IDX], ':');
+			if(getNrTokens() > 8){
+				cachedSampleDataTypes = StringUtils.split(getToken(VcfMeta.COL_FORMAT_IDX), ':');
 			} else {
 				cachedSampleDataTypes = new String[0];
 			}
@@ -147,7 +321,8 @@ public class VcfRecord
 	}
 	
 	public int getNrSamples() {
-		return tokens.length > VcfMeta.COL_FORMAT_IDX + 1 ? tokens.length - (VcfMeta.COL_FORMAT_IDX + 1) : 0;
+		int nrTokens = getNrTokens();
+		return nrTokens > VcfMeta.COL_FORMAT_IDX + 1 ? nrTokens - (VcfMeta.COL_FORMAT_IDX + 1) : 0;
 	}
 	
 	public Iterable<VcfSample> getSamples() {
@@ -167,7 +342,7 @@ public class VcfRecord
 			@Override
 			public VcfSample next()
 			{
-				recycableVcfSample.reset(StringUtils.split(tokens[VcfMeta.COL_FORMAT_IDX + 1 + nrSample], ':'));
+				recycableVcfSample.reset(StringUtils.split(getToken(VcfMeta.COL_FORMAT_IDX + 1 + nrSample), ':'));
 				++nrSample;
 				return recycableVcfSample;
 			}
@@ -179,10 +354,25 @@ public class VcfRecord
 			}};
 	}
 
+	/**
+	 * @return genotypes and depths of all samples, decoded on first access
+	 */
+	public VcfGenotypes getGenotypes() {
+		if (cachedGenotypes == null) {
+			cachedGenotypes = new VcfGenotypes(this, getSampleTokens());
+		}
+		return cachedGenotypes;
+	}
+
 	public String[] getSampleTokens()
 	{
 		int firstSample = VcfMeta.COL_FORMAT_IDX + 1;
-		return Arrays.copyOfRange(tokens, firstSample, firstSample + getNrSamples());
+		String[] sampleTokens = new String[getNrSamples()];
+		for (int i = 0; i < sampleTokens.length; ++i)
+		{
+			sampleTokens[i] = getToken(firstSample + i);
+		}
+		return sampleTokens;
 	}
 
 	public VcfMeta getVcfMeta()
@@ -192,30 +382,118 @@ public class VcfRecord
 
 	public void reset(String[] tokens) {
 		this.tokens = tokens;
+		this.line = null;
+		this.sampleColumnsRecord = null;
+		this.cachedColumns = null;
+		resetCaches();
+	}
+	
+	void reset(VcfRecordLine line) {
+		this.tokens = null;
+		this.line = line;
+		this.sampleColumnsRecord = null;
+		if (this.cachedColumns != null) Arrays.fill(this.cachedColumns, null);
+		resetCaches();
+	}
+
+	/**
+	 * Clears the values derived from the columns when the record is reset, subclasses that cache derived values
+	 * clear them here as well
+	 */
+	protected void resetCaches() {
 		this.cachedIdentifiers = null;
 		this.cachedAlternateAlleles = null;
 		this.cachedSampleDataTypes = null;
+		this.cachedInfoIndex = null;
+		this.cachedGenotypes = null;
 	}
 	
 	public VcfRecord createClone() {
-		return new VcfRecord(vcfMeta, tokens);
+		return new VcfRecord(this);
+	}
+
+	/**
+	 * Key and value bounds of the entries in an INFO column, immutable so that records can be shared by threads
+	 */
+	private static class InfoIndex
+	{
+		// per entry: key offset, key end, value offset (-1 for flags), value end
+		static final int ENTRY_SIZE = 4;
+
+		final int[] bounds;
+		final int nrInfo;
+
+		InfoIndex(String info)
+		{
+			int[] infoBounds = new int[ENTRY_SIZE * (StringUtils.countMatches(info, ';') + 1)];
+			int nrInfoEntries = 0;
+			int length = info.length();
+			int start = 0;
+			while (start < length)
+			{
+				int end = info.indexOf(';', start);
+				if (end == -1) end = length;
+				// skip empty entries like StringUtils.split does
+				if (end > start)
+				{
+					int idx = ENTRY_SIZE * nrInfoEntries++;
+					int separator = info.indexOf('=', start);
+					infoBounds[idx] = start;
+					if (separator != -1 && separator < end)
+					{
+						infoBounds[idx + 1] = separator;
+						infoBounds[idx + 2] = separator + 1;
+						infoBounds[idx + 3] = end;
+					}
+					else
+					{
+						infoBounds[idx + 1] = end;
+						infoBounds[idx + 2] = -1;
+						infoBounds[idx + 3] = -1;
+					}
+				}
+				start = end + 1;
+			}
+			this.bounds = infoBounds;
+			this.nrInfo = nrInfoEntries;
+		}
+
+		String getValue(String info, int idx)
+		{
+			int valueOffset = bounds[idx + 2];
+			return valueOffset != -1 ? info.substring(valueOffset, bounds[idx + 3]) : null;
+		}
 	}
 	
+	/**
+	 * @return tab separated columns as written by write(Writer), so the sample columns are not split into tokens
+	 */
 	@Override
 	public String toString() {
-		return StringUtils.join(tokens, '\t');
+		StringWriter writer = new StringWriter();
+		writeUnchecked(writer);
+		return writer.toString();
 	}
 
+	/**
+	 * Consistent with equals for records read from a line, created from tokens or combined with the sample columns
+	 * of another record, because all of them are hashed as the written columns.
+	 */
 	@Override
 	public int hashCode()
 	{
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + Arrays.hashCode(tokens);
+		StringHashWriter hashWriter = new StringHashWriter();
+		writeUnchecked(hashWriter);
+		result = prime * result + hashWriter.getHash();
 		result = prime * result + ((vcfMeta == null) ? 0 : vcfMeta.hashCode());
 		return result;
 	}
 
+	/**
+	 * Records are equal if their written columns are equal, regardless of how the columns are stored
+	 */
 	@Override
 	public boolean equals(Object obj)
 	{
@@ -223,12 +501,70 @@ public class VcfRecord
 		if (obj == null) return false;
 		if (getClass() != obj.getClass()) return false;
 		VcfRecord other = (VcfRecord) obj;
-		if (!Arrays.equals(tokens, other.tokens)) return false;
 		if (vcfMeta == null)
 		{
 			if (other.vcfMeta != null) return false;
 		}
 		else if (!vcfMeta.equals(other.vcfMeta)) return false;
-		return true;
+		return toString().equals(other.toString());
+	}
+
+	private void writeUnchecked(Writer writer)
+	{
+		try
+		{
+			write(writer);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Computes the hash code that String.hashCode() returns for the written characters without creating the String
+	 */
+	private static class StringHashWriter extends Writer
+	{
+		private int hash;
+
+		@Override
+		public void write(int c)
+		{
+			hash = 31 * hash + (char) c;
+		}
+
+		@Override
+		public void write(char[] chars, int off, int len)
+		{
+			for (int i = off; i < off + len; ++i)
+			{
+				hash = 31 * hash + chars[i];
+			}
+		}
+
+		@Override
+		public void write(String str, int off, int len)
+		{
+			for (int i = off; i < off + len; ++i)
+			{
+				hash = 31 * hash + str.charAt(i);
+			}
+		}
+
+		int getHash()
+		{
+			return hash;
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+		}
 	}
 }
@@ -0,0 +1,216 @@
+package org.molgenis.vcf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Raw bytes of one VCF data line together with the offsets of its tab-separated columns.
+ * <p>
+ * Columns are only decoded to Strings on request, so columns that are never looked at (typically most of the sample
+ * columns) never become Strings. Instances are recycled by {@link VcfRecordTokenizer}, use copy() to keep one.
+ */
+class VcfRecordLine
+{
+	private static final byte COLUMN_SEPARATOR = '\t';
+	private static final int INITIAL_LINE_CAPACITY = 1024;
+	private static final int INITIAL_COLUMN_CAPACITY = 16;
+
+	private byte[] bytes;
+	private int length;
+	private int[] columnStarts;
+	private int[] columnEnds;
+	private int nrColumns;
+
+	VcfRecordLine()
+	{
+		this(new byte[INITIAL_LINE_CAPACITY], 0, new int[INITIAL_COLUMN_CAPACITY], new int[INITIAL_COLUMN_CAPACITY],
+				0);
+	}
+
+	private VcfRecordLine(byte[] bytes, int length, int[] columnStarts, int[] columnEnds, int nrColumns)
+	{
+		this.bytes = bytes;
+		this.length = length;
+		this.columnStarts = columnStarts;
+		this.columnEnds = columnEnds;
+		this.nrColumns = nrColumns;
+	}
+
+	void clear()
+	{
+		length = 0;
+		nrColumns = 0;
+	}
+
+	/**
+	 * Appends len bytes from the current position of the given buffer and advances its position
+	 */
+	void append(ByteBuffer src, int len)
+	{
+		ensureCapacity(length + len);
+		src.get(bytes, length, len);
+		length += len;
+	}
+
+	/**
+	 * Removes a trailing carriage return, so that '\r\n' line endings are handled like '\n' line endings.
+	 */
+	void trimCarriageReturn()
+	{
+		if (length > 0 && bytes[length - 1] == '\r')
+		{
+			--length;
+		}
+	}
+
+	/**
+	 * Determines the column offsets. Like StringUtils.split(line, '\t') adjacent separators are treated as one
+	 * separator and leading and trailing separators are ignored.
+	 */
+	void tokenize()
+	{
+		nrColumns = 0;
+		int start = -1;
+		for (int i = 0; i < length; ++i)
+		{
+			if (bytes[i] == COLUMN_SEPARATOR)
+			{
+				if (start != -1)
+				{
+					addColumn(start, i);
+					start = -1;
+				}
+			}
+			else if (start == -1)
+			{
+				start = i;
+			}
+		}
+		if (start != -1)
+		{
+			addColumn(start, length);
+		}
+	}
+
+	int getNrColumns()
+	{
+		return nrColumns;
+	}
+
+	String getColumn(int idx)
+	{
+		checkColumnIndex(idx);
+		return new String(bytes, columnStarts[idx], columnEnds[idx] - columnStarts[idx], UTF_8);
+	}
+
+	/**
+	 * Parses a column as int without creating an intermediate String for the common case of a plain decimal number.
+	 */
+	int getColumnAsInt(int idx)
+	{
+		checkColumnIndex(idx);
+		int start = columnStarts[idx];
+		int end = columnEnds[idx];
+		// leave signs, overflows and invalid values to Integer.parseInt
+		if (end - start > 9)
+		{
+			return Integer.parseInt(getColumn(idx));
+		}
+		int value = 0;
+		for (int i = start; i < end; ++i)
+		{
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9)
+			{
+				return Integer.parseInt(getColumn(idx));
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Writes the columns from the given index on, separated by single tabs. ASCII columns are copied without
+	 * creating Strings, other columns are decoded like getColumn().
+	 */
+	void writeColumns(int fromIdx, Writer writer) throws IOException
+	{
+		if (fromIdx >= nrColumns)
+		{
+			return;
+		}
+		// the raw columns and separators are at least as long as the written columns
+		char[] chars = new char[columnEnds[nrColumns - 1] - columnStarts[fromIdx]];
+		int nrChars = 0;
+		for (int idx = fromIdx; idx < nrColumns; ++idx)
+		{
+			if (idx > fromIdx)
+			{
+				chars[nrChars++] = (char) COLUMN_SEPARATOR;
+			}
+			int columnOffset = nrChars;
+			boolean ascii = true;
+			for (int i = columnStarts[idx]; ascii && i < columnEnds[idx]; ++i)
+			{
+				byte b = bytes[i];
+				ascii = b >= 0;
+				chars[nrChars++] = (char) b;
+			}
+			if (!ascii)
+			{
+				writer.write(chars, 0, columnOffset);
+				writer.write(getColumn(idx));
+				nrChars = 0;
+			}
+		}
+		writer.write(chars, 0, nrChars);
+	}
+
+	/**
+	 * @return a copy that is trimmed to size and not affected by recycling of this line
+	 */
+	VcfRecordLine copy()
+	{
+		return new VcfRecordLine(Arrays.copyOf(bytes, length), length, Arrays.copyOf(columnStarts, nrColumns),
+				Arrays.copyOf(columnEnds, nrColumns), nrColumns);
+	}
+
+	@Override
+	public String toString()
+	{
+		return new String(bytes, 0, length, UTF_8);
+	}
+
+	private void addColumn(int start, int end)
+	{
+		if (nrColumns == columnStarts.length)
+		{
+			int newCapacity = columnStarts.length * 2;
+			columnStarts = Arrays.copyOf(columnStarts, newCapacity);
+			columnEnds = Arrays.copyOf(columnEnds, newCapacity);
+		}
+		columnStarts[nrColumns] = start;
+		columnEnds[nrColumns] = end;
+		++nrColumns;
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > bytes.length)
+		{
+			bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+		}
+	}
+
+	private void checkColumnIndex(int idx)
+	{
+		if (idx >= nrColumns)
+		{
+			throw new ArrayIndexOutOfBoundsException(idx);
+		}
+	}
+}
@@ -14,6 +14,7 @@ public class VcfRecordReader implements Iterable<VcfRecord>
 {
 	private final BufferedReader reader;
 	private final BlockCompressedInputStream blockCompressedInputStream;
+	private final VcfRecordTokenizer vcfRecordTokenizer;
 	private final VcfMeta vcfMeta;
 
 	public VcfRecordReader(Reader reader, VcfMeta vcfMeta) {
@@ -22,6 +23,7 @@ public class VcfRecordReader implements Iterable<VcfRecord>
 		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
 		this.vcfMeta = vcfMeta;
 		this.blockCompressedInputStream = null;
+		this.vcfRecordTokenizer = null;
 	}
 	
 	public VcfRecordReader(BlockCompressedInputStream blockCompressedInputStream, VcfMeta vcfMeta) {
@@ -30,11 +32,22 @@ public class VcfRecordReader implements Iterable<VcfRecord>
 		this.blockCompressedInputStream = blockCompressedInputStream;
 		this.vcfMeta = vcfMeta;
 		this.reader = null;
+		this.vcfRecordTokenizer = null;
+	}
+
+	public VcfRecordReader(VcfRecordTokenizer vcfRecordTokenizer, VcfMeta vcfMeta) {
+		if(vcfRecordTokenizer == null) throw new IllegalArgumentException("vcfRecordTokenizer is null");
+		if(vcfMeta == null) throw new IllegalArgumentException("vcfMeta is null");
+		this.vcfRecordTokenizer = vcfRecordTokenizer;
+		this.vcfMeta = vcfMeta;
+		this.reader = null;
+		this.blockCompressedInputStream = null;
 	}
 	
 	@Override
 	public Iterator<VcfRecord> iterator()
-	{			
+	{
+		if(vcfRecordTokenizer != null) return tokenizerIterator();
 		return new Iterator<VcfRecord>() {
 			private final VcfRecord recycableVcfRecord = new VcfRecord(vcfMeta);
 			private String[] tokens;
@@ -66,6 +79,43 @@ public class VcfRecordReader implements Iterable<VcfRecord>
 		};
 	}
 
+	/**
+	 * Iterates over records backed by raw line bytes, columns are decoded on demand
+	 */
+	private Iterator<VcfRecord> tokenizerIterator()
+	{
+		return new Iterator<VcfRecord>() {
+			private final VcfRecord recycableVcfRecord = new VcfRecord(vcfMeta);
+			private final VcfRecordLine recycableVcfRecordLine = new VcfRecordLine();
+			private Boolean hasNextLine;
+
+			@Override
+			public boolean hasNext() {
+				if (hasNextLine == null) {
+					try {
+						hasNextLine = vcfRecordTokenizer.next(recycableVcfRecordLine);
+					}
+					catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				return hasNextLine;
+			}
+
+			@Override
+			public VcfRecord next() {
+				recycableVcfRecord.reset(recycableVcfRecordLine);
+				hasNextLine = null;
+				return recycableVcfRecord;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
 	private String readLine() throws IOException {
 		String line; 
 		if(reader != null) line = reader.readLine();
@@ -0,0 +1,180 @@
+package org.molgenis.vcf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads VCF lines as raw bytes into a reusable buffer, without decoding every byte to a char first.
+ * <p>
+ * Meta lines are returned as Strings with readLine(), data lines are returned as {@link VcfRecordLine} with column
+ * offsets so that columns can be decoded on demand.
+ * <p>
+ * Bytes are either read from an input stream or scanned directly in memory-mapped regions of a file channel, in the
+ * latter case the file is mapped in chunks so that files larger than 2 GB are supported.
+ */
+public class VcfRecordTokenizer implements Closeable
+{
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long MAPPED_CHUNK_SIZE = 1L << 30;
+
+	private final InputStream inputStream;
+	private final FileChannel fileChannel;
+	private final long mappedChunkSize;
+	private ByteBuffer buffer;
+	// offset of the first byte of the buffer in the stream or file
+	private long bufferOffset;
+	private long mappedPosition;
+	private VcfRecordLine metaLine;
+
+	public VcfRecordTokenizer(InputStream inputStream)
+	{
+		if (inputStream == null) throw new IllegalArgumentException("inputStream is null");
+		this.inputStream = inputStream;
+		this.fileChannel = null;
+		this.mappedChunkSize = 0;
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.buffer.limit(0);
+	}
+
+	public VcfRecordTokenizer(FileChannel fileChannel)
+	{
+		this(fileChannel, MAPPED_CHUNK_SIZE);
+	}
+
+	VcfRecordTokenizer(FileChannel fileChannel, long mappedChunkSize)
+	{
+		if (fileChannel == null) throw new IllegalArgumentException("fileChannel is null");
+		if (mappedChunkSize <= 0 || mappedChunkSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("mappedChunkSize must be in range (0, " + Integer.MAX_VALUE + "]");
+		this.fileChannel = fileChannel;
+		this.inputStream = null;
+		this.mappedChunkSize = mappedChunkSize;
+		this.buffer = ByteBuffer.allocate(0);
+	}
+
+	/**
+	 * @return byte offset of the next line in the (uncompressed) stream or file
+	 */
+	public long getPosition()
+	{
+		return bufferOffset + buffer.position();
+	}
+
+	/**
+	 * Continues reading at the given byte offset of the file, which should be the start of a line
+	 *
+	 * @throws UnsupportedOperationException if reading from an input stream
+	 */
+	public void seek(long position)
+	{
+		if (fileChannel == null) throw new UnsupportedOperationException("seek is only supported for file channels");
+		if (position < 0) throw new IllegalArgumentException("position must not be negative");
+		this.buffer = ByteBuffer.allocate(0);
+		this.bufferOffset = position;
+		this.mappedPosition = position;
+	}
+
+	/**
+	 * @return next line without line terminator or null if the end of the stream has been reached
+	 */
+	public String readLine() throws IOException
+	{
+		if (metaLine == null)
+		{
+			metaLine = new VcfRecordLine();
+		}
+		return readLine(metaLine) ? metaLine.toString() : null;
+	}
+
+	/**
+	 * Reads the next line into the given line and determines its column offsets
+	 *
+	 * @return false if the end of the stream has been reached
+	 */
+	boolean next(VcfRecordLine line) throws IOException
+	{
+		if (!readLine(line))
+		{
+			return false;
+		}
+		line.tokenize();
+		return true;
+	}
+
+	private boolean readLine(VcfRecordLine line) throws IOException
+	{
+		line.clear();
+		boolean hasData = false;
+		while (true)
+		{
+			if (!buffer.hasRemaining() && !fill())
+			{
+				// last line without line terminator
+				line.trimCarriageReturn();
+				return hasData;
+			}
+			hasData = true;
+
+			int start = buffer.position();
+			int limit = buffer.limit();
+			int i = start;
+			while (i < limit && buffer.get(i) != '\n')
+			{
+				++i;
+			}
+			line.append(buffer, i - start);
+			if (i < limit)
+			{
+				// skip line terminator
+				buffer.position(i + 1);
+				line.trimCarriageReturn();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Refills the buffer from the input stream or maps the next chunk of the file channel
+	 *
+	 * @return false if the end of the stream has been reached
+	 */
+	private boolean fill() throws IOException
+	{
+		if (inputStream != null)
+		{
+			bufferOffset += buffer.limit();
+			int nrBytesRead = inputStream.read(buffer.array(), 0, buffer.capacity());
+			if (nrBytesRead == -1)
+			{
+				buffer.limit(0);
+				return false;
+			}
+			buffer.position(0);
+			buffer.limit(nrBytesRead);
+			return true;
+		}
+		else
+		{
+			long size = fileChannel.size();
+			if (mappedPosition >= size)
+			{
+				return false;
+			}
+			long chunkSize = Math.min(mappedChunkSize, size - mappedPosition);
+			buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, mappedPosition, chunkSize);
+			bufferOffset = mappedPosition;
+			mappedPosition += chunkSize;
+			return true;
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (inputStream != null) inputStream.close();
+		else fileChannel.close();
+	}
+}
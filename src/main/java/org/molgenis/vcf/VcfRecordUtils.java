@@ -25,14 +25,7 @@ public class VcfRecordUtils
 
 	public static Optional<VcfInfo> getInformation(String key, VcfRecord vcfRecord)
 	{
-		for (VcfInfo vcfInfo : vcfRecord.getInformation())
-		{
-			if (vcfInfo.getKey().equals(key))
-			{
-				return Optional.of(vcfInfo);
-			}
-		}
-		return Optional.empty();
+		return Optional.ofNullable(vcfRecord.getInformation(key));
 	}
 
 	public static String getChrPosRefAlt(VcfRecord vcfRecord)
@@ -166,24 +159,21 @@ public class VcfRecordUtils
 	private static String getInfoStringValue(VcfRecord record, String infoField)
 	{
 		String result = null;
-		Iterable<VcfInfo> infoFields = record.getInformation();
-		for (VcfInfo info : infoFields)
+		VcfInfo info = record.getInformation(infoField);
+		if (info != null)
 		{
-			if (info.getKey().equals(infoField))
+			Object vcfInfoVal = info.getVal();
+			if (vcfInfoVal instanceof List<?>)
 			{
-				Object vcfInfoVal = info.getVal();
-				if (vcfInfoVal instanceof List<?>)
-				{
-					List<?> vcfInfoValTokens = (List<?>) vcfInfoVal;
-					result = vcfInfoValTokens.stream()
-											 .map(vcfInfoValToken ->
-													 vcfInfoValToken != null ? vcfInfoValToken.toString() : ".")
-											 .collect(joining(","));
-				}
-				else
-				{
-					result = vcfInfoVal.toString();
-				}
+				List<?> vcfInfoValTokens = (List<?>) vcfInfoVal;
+				result = vcfInfoValTokens.stream()
+										 .map(vcfInfoValToken ->
+												 vcfInfoValToken != null ? vcfInfoValToken.toString() : ".")
+										 .collect(joining(","));
+			}
+			else
+			{
+				result = vcfInfoVal.toString();
 			}
 		}
 		return result;
@@ -25,6 +25,7 @@ public class VcfMeta
 	private Map<String, VcfMetaSample> vcfMetaSamples;
 	private List<VcfMetaPedigree> vcfMetaPedigrees;
 	private String[] colNames;
+	private Map<String, Integer> sampleIndices;
 
 	public VcfMeta()
 	{
@@ -54,6 +55,13 @@ public class VcfMeta
 	public void setColNames(String[] colNames)
 	{
 		this.colNames = colNames;
+
+		// created here instead of on first access, so that records can be processed on multiple threads
+		this.sampleIndices = new HashMap<>();
+		for (int i = COL_FORMAT_IDX + 1; i < colNames.length; i++)
+		{
+			sampleIndices.put(colNames[i], i - (COL_FORMAT_IDX + 1));
+		}
 	}
 
 	public String[] getColNames()
@@ -66,6 +74,15 @@ public class VcfMeta
 		return colNames[COL_FORMAT_IDX + 1 + nr];
 	}
 
+	/**
+	 * @return index of the sample with the given name or -1 if there is no such sample
+	 */
+	public int getSampleIndex(String sampleName)
+	{
+		Integer sampleIndex = sampleIndices != null ? sampleIndices.get(sampleName) : null;
+		return sampleIndex != null ? sampleIndex : -1;
+	}
+
 	public Iterable<String> getSampleNames()
 	{
 		if (colNames.length <= COL_FORMAT_IDX)
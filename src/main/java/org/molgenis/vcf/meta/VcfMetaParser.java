@@ -7,6 +7,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
+import org.molgenis.vcf.VcfRecordTokenizer;
 
 import net.sf.samtools.util.BlockCompressedInputStream;
 
@@ -22,17 +23,27 @@ public class VcfMetaParser
 	
 	private final BufferedReader reader;
 	private final BlockCompressedInputStream blockCompressedInputStream;
+	private final VcfRecordTokenizer vcfRecordTokenizer;
 
 	public VcfMetaParser(Reader reader) throws IOException {
 		if(reader == null) throw new IllegalArgumentException("reader is null");
 		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
 		this.blockCompressedInputStream = null;
+		this.vcfRecordTokenizer = null;
 	}
 
 	public VcfMetaParser(BlockCompressedInputStream blockCompressedInputStream) {
 		if(blockCompressedInputStream == null) throw new IllegalArgumentException("blockCompressedInputStream is null");
 		this.blockCompressedInputStream = blockCompressedInputStream;
 		this.reader = null;
+		this.vcfRecordTokenizer = null;
+	}
+
+	public VcfMetaParser(VcfRecordTokenizer vcfRecordTokenizer) {
+		if(vcfRecordTokenizer == null) throw new IllegalArgumentException("vcfRecordTokenizer is null");
+		this.vcfRecordTokenizer = vcfRecordTokenizer;
+		this.reader = null;
+		this.blockCompressedInputStream = null;
 	}
 	
 	public VcfMeta parse() throws IOException {
@@ -137,7 +148,8 @@ public class VcfMetaParser
 	private String readLine() throws IOException {
 		String line;
 		if(reader != null) line = reader.readLine();
-		else line = blockCompressedInputStream.readLine();
+		else if(blockCompressedInputStream != null) line = blockCompressedInputStream.readLine();
+		else line = vcfRecordTokenizer.readLine();
 		return line;
 	}
 }
@@ -57,15 +57,7 @@ public class Vcf42Writer implements VcfWriter
 
 	private void writeVcfRecord(VcfRecord vcfRecord) throws IOException
 	{
-		String[] tokens = vcfRecord.getTokens();
-		for (int i = 0; i < tokens.length; ++i)
-		{
-			if (i > 0)
-			{
-				writer.write('\t');
-			}
-			writer.write(tokens[i]);
-		}
+		vcfRecord.write(writer);
 		writer.write('\n');
 	}
 
@@ -1,21 +1,27 @@
 package org.molgenis.data.annotation.makervcf;
 
 import org.apache.commons.io.FileUtils;
+import org.molgenis.data.annotation.core.entity.impl.gavin.Judgment;
 import org.molgenis.data.annotation.makervcf.genestream.core.ConvertToGeneStream;
 import org.molgenis.data.annotation.makervcf.genestream.impl.AssignCompoundHet;
 import org.molgenis.data.annotation.makervcf.positionalstream.DiscoverRelevantVariants;
 import org.molgenis.data.annotation.makervcf.positionalstream.MatchVariantsToGenotypeAndInheritance;
+import org.molgenis.data.annotation.makervcf.positionalstream.MatchVariantsToGenotypeAndInheritance.Status;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
+import org.molgenis.data.annotation.makervcf.structs.Relevance;
 import org.molgenis.data.annotation.makervcf.structs.RelevanceUtils;
 import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores;
+import org.molgenis.vcf.VcfRecord;
+import org.molgenis.vcf.meta.VcfMeta;
 import org.springframework.util.FileCopyUtils;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.io.*;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.*;
 
+import static org.molgenis.data.annotation.makervcf.positionalstream.MatchVariantsToGenotypeAndInheritance.Status.*;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
 public class AssignCompoundHetTest extends Setup
@@ -141,4 +147,61 @@ public class AssignCompoundHetTest extends Setup
 
 		assertTrue(!it.hasNext());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testPerGene()
+	{
+		VcfMeta vcfMeta = new VcfMeta();
+		vcfMeta.setColNames(
+				new String[] { "#CHROM", "POS", "ID", "REF", "ALT", "QUAL", "FILTER", "INFO", "FORMAT", "p01", "p02" });
+
+		// samples x01 and x02 are not in the VCF header
+		Relevance first = createRelevance("C", "geneA", "p01", HETEROZYGOUS, "p02", HOMOZYGOUS, "x01", CARRIER);
+		Relevance otherGene = createRelevance("C", "geneB", "p02", HETEROZYGOUS);
+		Relevance second = createRelevance("C", "geneA", "p01", HETEROZYGOUS, "p02", HETEROZYGOUS, "x01", CARRIER,
+				"x02", HETEROZYGOUS);
+		// p02 and x02 are heterozygous for both alleles, which is not compound heterozygous
+		Relevance otherAllele = createRelevance("G", "geneA", "p02", HETEROZYGOUS, "x02", HETEROZYGOUS);
+
+		List<GavinRecord> variantsPerGene = Arrays.asList(createRecord(vcfMeta, 1, first, otherGene),
+				createRecord(vcfMeta, 2, second), createRecord(vcfMeta, 3, otherAllele));
+		new AssignCompoundHet().perGene("geneA", variantsPerGene);
+
+		assertEquals(first.getSampleStatus(),
+				createSampleStatus("p01", HOMOZYGOUS_COMPOUNDHET, "p02", HOMOZYGOUS, "x01", AFFECTED_COMPOUNDHET));
+		assertEquals(otherGene.getSampleStatus(), createSampleStatus("p02", HETEROZYGOUS));
+		assertEquals(second.getSampleStatus(),
+				createSampleStatus("p01", HOMOZYGOUS_COMPOUNDHET, "p02", HETEROZYGOUS, "x01", AFFECTED_COMPOUNDHET,
+						"x02", HETEROZYGOUS));
+		assertEquals(otherAllele.getSampleStatus(), createSampleStatus("p02", HETEROZYGOUS, "x02", HETEROZYGOUS));
+	}
+
+	private static GavinRecord createRecord(VcfMeta vcfMeta, int position, Relevance... relevances)
+	{
+		VcfRecord vcfRecord = new VcfRecord(vcfMeta,
+				new String[] { "1", String.valueOf(position), ".", "A", "C,G", ".", ".", ".", "GT", "0/1", "0/1" });
+		return new GavinRecord(vcfRecord, Arrays.asList(relevances));
+	}
+
+	private static Relevance createRelevance(String allele, String gene, Object... sampleStatus)
+	{
+		Relevance relevance = new Relevance(allele, "transcript", 0.1, 0.2, gene,
+				new Judgment(Judgment.Classification.Pathogenic, Judgment.Method.calibrated, gene, "reason", "source",
+						"type"));
+		relevance.setSampleStatus(createSampleStatus(sampleStatus));
+		return relevance;
+	}
+
+	/**
+	 * @param sampleStatus sample names alternated with their status
+	 */
+	private static Map<String, Status> createSampleStatus(Object... sampleStatus)
+	{
+		Map<String, Status> sampleToStatus = new LinkedHashMap<>();
+		for (int i = 0; i < sampleStatus.length; i += 2)
+		{
+			sampleToStatus.put((String) sampleStatus[i], (Status) sampleStatus[i + 1]);
+		}
+		return sampleToStatus;
+	}
+}
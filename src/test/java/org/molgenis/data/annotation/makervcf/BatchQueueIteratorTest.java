@@ -0,0 +1,99 @@
+package org.molgenis.data.annotation.makervcf;
+
+import org.molgenis.data.annotation.makervcf.util.BatchQueueIterator;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class BatchQueueIteratorTest
+{
+	@Test
+	public void testOrderAcrossBatches()
+	{
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++)
+		{
+			expected.add(i);
+		}
+
+		List<Integer> actual = new ArrayList<>();
+		new BatchQueueIterator<>(expected.iterator(), "test", 7, 2).forEachRemaining(actual::add);
+		assertEquals(actual, expected);
+	}
+
+	@Test(expectedExceptions = NoSuchElementException.class)
+	public void testEmpty()
+	{
+		Iterator<Integer> it = new BatchQueueIterator<>(new ArrayList<Integer>().iterator(), "test");
+		assertFalse(it.hasNext());
+		assertFalse(it.hasNext());
+		it.next();
+	}
+
+	@Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "source failed")
+	public void testSourceException()
+	{
+		Iterator<Integer> source = new Iterator<Integer>()
+		{
+			int i = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				if (i == 10)
+				{
+					throw new RuntimeException("source failed");
+				}
+				return true;
+			}
+
+			@Override
+			public Integer next()
+			{
+				return i++;
+			}
+		};
+		Iterator<Integer> it = new BatchQueueIterator<>(source, "test", 3, 1);
+		while (it.hasNext())
+		{
+			it.next();
+		}
+	}
+
+	@Test
+	public void testClose()
+	{
+		Thread[] drainThread = new Thread[1];
+		Iterator<Integer> source = new Iterator<Integer>()
+		{
+			int i = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				return true;
+			}
+
+			@Override
+			public Integer next()
+			{
+				drainThread[0] = Thread.currentThread();
+				return i++;
+			}
+		};
+		BatchQueueIterator<Integer> it = new BatchQueueIterator<>(source, "test", 3, 1);
+		assertTrue(it.hasNext());
+		assertEquals(it.next(), Integer.valueOf(0));
+
+		it.close();
+		assertFalse(drainThread[0].isAlive());
+		assertFalse(it.hasNext());
+	}
+}
@@ -0,0 +1,95 @@
+package org.molgenis.data.annotation.makervcf;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+import org.molgenis.data.annotation.makervcf.util.CaddScoreLookup;
+import org.molgenis.data.annotation.makervcf.util.CaddScoreStore;
+import org.molgenis.data.annotation.makervcf.util.CaddScoreStoreWriter;
+import org.molgenis.data.annotation.makervcf.util.InMemoryCaddScoreLookup;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.*;
+
+public class CaddScoreStoreTest
+{
+	private static final String CADD = "## CADD GRCh37-v1.3 (c) University of Washington and Hudson-Alpha Institute for Biotechnology 2013-2015. All rights reserved.\n"
+			+ "#Chrom\tPos\tRef\tAlt\tRawScore\tPHRED\n"
+			+ "2\t100\tA\tG\t1.5\t15.25\n" + "1\t300\tT\tC\t2.1\t21.3\n"
+			+ "1\t200\tA\tG\t0.1\t2.5\n" + "1\t200\tA\tT\t0.2\t3.5\n" + "1\t200\tACT\tAT\t0.3\t4.5\n"
+			+ "1\t250\tAN\tA\t0.4\t5.5\n" + "1\t260\tACGTACGTACGTACGTACGTACGTA\tA\t0.5\t6.5\n"
+			+ "1\t200\tA\tG\t0.6\t7.5\n";
+
+	private File caddFile;
+	private CaddScoreLookup inMemory;
+	private CaddScoreStore store;
+
+	@BeforeClass
+	public void beforeClass() throws Exception
+	{
+		caddFile = new File(FileUtils.getTempDirectory(), "CaddScoreStoreTest.tsv");
+		FileUtils.writeStringToFile(caddFile, CADD, UTF_8);
+		inMemory = new InMemoryCaddScoreLookup(caddFile);
+
+		File storeFile = new File(FileUtils.getTempDirectory(), "CaddScoreStoreTest.gcs");
+		CaddScoreStoreWriter.convert(caddFile, storeFile);
+		store = CaddScoreStore.open(storeFile);
+	}
+
+	@Test
+	public void testSize()
+	{
+		assertEquals(store.size(), 7);
+	}
+
+	@Test
+	public void testGet() throws IOException
+	{
+		assertGet(VariantKey.createBackTrimmed("2", 100, "A", "G"), 15.25);
+		assertGet(VariantKey.createBackTrimmed("1", 300, "T", "C"), 21.3);
+		assertGet(VariantKey.createBackTrimmed("1", 200, "A", "T"), 3.5);
+		assertGet(VariantKey.createBackTrimmed("1", 250, "AN", "A"), 5.5);
+		assertGet(VariantKey.createBackTrimmed("1", 260, "ACGTACGTACGTACGTACGTACGTA", "A"), 6.5);
+	}
+
+	@Test
+	public void testGetLastScoreOfDuplicate() throws IOException
+	{
+		assertGet(VariantKey.createBackTrimmed("1", 200, "A", "G"), 7.5);
+	}
+
+	@Test
+	public void testGetBackTrimmed() throws IOException
+	{
+		assertGet(VariantKey.createBackTrimmed("1", 200, "ACTG", "ATG"), 4.5);
+		assertGet(VariantKey.createBackTrimmed("1", 200, "AC", "A"), 4.5);
+	}
+
+	@Test
+	public void testGetMissing() throws IOException
+	{
+		assertGet(VariantKey.createBackTrimmed("1", 200, "A", "C"), null);
+		assertGet(VariantKey.createBackTrimmed("1", 201, "A", "G"), null);
+		assertGet(VariantKey.createBackTrimmed("2", 300, "T", "C"), null);
+		assertGet(VariantKey.createBackTrimmed("X", 100, "A", "G"), null);
+		assertGet(VariantKey.createBackTrimmed("1", 250, "AN", "T"), null);
+	}
+
+	@Test
+	public void testCreate() throws Exception
+	{
+		assertTrue(CaddScoreStore.isStore(new File(FileUtils.getTempDirectory(), "CaddScoreStoreTest.gcs")));
+		assertFalse(CaddScoreStore.isStore(caddFile));
+		assertTrue(CaddScoreLookup.create(caddFile) instanceof InMemoryCaddScoreLookup);
+	}
+
+	private void assertGet(VariantKey variantKey, Double expected) throws IOException
+	{
+		assertEquals(inMemory.get(variantKey), expected, variantKey.toString());
+		assertEquals(store.get(variantKey), expected, variantKey.toString());
+	}
+}
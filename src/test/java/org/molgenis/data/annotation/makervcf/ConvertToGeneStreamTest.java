@@ -1,16 +1,20 @@
 package org.molgenis.data.annotation.makervcf;
 
 import org.apache.commons.io.FileUtils;
+import org.molgenis.data.annotation.core.entity.impl.gavin.Judgment;
 import org.molgenis.data.annotation.makervcf.genestream.core.ConvertToGeneStream;
 import org.molgenis.data.annotation.makervcf.positionalstream.DiscoverRelevantVariants;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
+import org.molgenis.data.annotation.makervcf.structs.Relevance;
 import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores;
+import org.molgenis.vcf.VcfRecord;
+import org.molgenis.vcf.meta.VcfMeta;
 import org.springframework.util.FileCopyUtils;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.io.*;
-import java.util.Iterator;
+import java.util.*;
 
 import static org.testng.Assert.*;
 
@@ -75,4 +79,46 @@ public class ConvertToGeneStreamTest extends Setup
 		assertEquals(positions.toString(), expected2);
 	}
 
+	@Test
+	public void testSharedRecordsWithSameVariant()
+	{
+		// records of the same variant are distinct records, each is returned once although buffered for two genes
+		GavinRecord first = createRecord(1, null, "geneA", "geneB");
+		GavinRecord duplicate = createRecord(1, null, "geneA", "geneB");
+		GavinRecord relevantForGeneB = createRecord(1, "geneB", "geneA", "geneB");
+		GavinRecord other = createRecord(2, null, "geneC");
+
+		Iterator<GavinRecord> it = new ConvertToGeneStream(
+				Arrays.asList(first, duplicate, relevantForGeneB, other).iterator()).go();
+		List<GavinRecord> observed = new ArrayList<>();
+		while (it.hasNext())
+		{
+			observed.add(it.next());
+		}
+
+		assertEquals(observed.size(), 4);
+		assertSame(observed.get(0), first);
+		assertSame(observed.get(1), duplicate);
+		assertSame(observed.get(2), relevantForGeneB);
+		assertSame(observed.get(3), other);
+	}
+
+	/**
+	 * @param relevantGene gene for which the record is relevant or null if the record is not relevant
+	 */
+	private static GavinRecord createRecord(int position, String relevantGene, String... genes)
+	{
+		VcfRecord vcfRecord = new VcfRecord(new VcfMeta(),
+				new String[] { "1", String.valueOf(position), ".", "A", "C", ".", ".", "." });
+		GavinRecord gavinRecord = new GavinRecord(vcfRecord);
+		gavinRecord.setGenes(new LinkedHashSet<>(Arrays.asList(genes)));
+		if (relevantGene != null)
+		{
+			gavinRecord.setRelevances(Collections.singletonList(new Relevance("C", "transcript", 0.1, 0.2, relevantGene,
+					new Judgment(Judgment.Classification.Pathogenic, Judgment.Method.calibrated, relevantGene,
+							"reason", "source", "type"))));
+		}
+		return gavinRecord;
+	}
+
 }
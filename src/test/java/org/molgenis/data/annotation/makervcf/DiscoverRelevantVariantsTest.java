@@ -4,14 +4,24 @@ import org.apache.commons.io.FileUtils;
 import org.molgenis.data.annotation.core.entity.impl.gavin.Judgment;
 import org.molgenis.data.annotation.makervcf.positionalstream.DiscoverRelevantVariants;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
+import org.molgenis.data.annotation.makervcf.structs.Relevance;
 import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores;
+import org.molgenis.data.annotation.makervcf.util.VariantLookup;
 import org.springframework.util.FileCopyUtils;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static org.testng.Assert.*;
 
 public class DiscoverRelevantVariantsTest extends Setup
@@ -31,33 +41,123 @@ public class DiscoverRelevantVariantsTest extends Setup
 	public void testPredictedPathogenic() throws Exception
 	{
 
-		DiscoverRelevantVariants discover = new DiscoverRelevantVariants(inputVcfFile, gavinFile, repPathoFile, caddFile, null, HandleMissingCaddScores.Mode.ANALYSIS, false);
-		Iterator<GavinRecord> it = discover.findRelevantVariants();
+		try (DiscoverRelevantVariants discover = new DiscoverRelevantVariants(inputVcfFile, gavinFile, repPathoFile,
+				caddFile, null, HandleMissingCaddScores.Mode.ANALYSIS, false))
+		{
+			Iterator<GavinRecord> it = discover.findRelevantVariants();
 
-		assertTrue(it.hasNext());
-		Judgment expected = new Judgment(Judgment.Classification.Pathogenic,Judgment.Method.genomewide,"PARK2","CLINVAR|NM_004562.2(PARK2):c.823C>T (p.Arg275Trp)|PARK2|Pathogenic","GAVIN+RepPatho","Reported pathogenic");
-		assertEquals(it.next().getRelevance().get(0).getJudgment(),expected);
+			assertTrue(it.hasNext());
+			Judgment expected = new Judgment(Judgment.Classification.Pathogenic,Judgment.Method.genomewide,"PARK2","CLINVAR|NM_004562.2(PARK2):c.823C>T (p.Arg275Trp)|PARK2|Pathogenic","GAVIN+RepPatho","Reported pathogenic");
+			assertEquals(it.next().getRelevance().get(0).getJudgment(),expected);
 
-		assertTrue(it.hasNext());
-		assertEquals(it.next().getRelevance().get(0).getJudgment().getReason(),"Variant CADD score of 32.0 is greater than 30.4 for this gene.");
-		assertEquals(it.next().getRelevance().get(0).getJudgment().getClassification(),Judgment.Classification.Pathogenic);
-		assertTrue(it.hasNext());
+			assertTrue(it.hasNext());
+			assertEquals(it.next().getRelevance().get(0).getJudgment().getReason(),"Variant CADD score of 32.0 is greater than 30.4 for this gene.");
+			assertEquals(it.next().getRelevance().get(0).getJudgment().getClassification(),Judgment.Classification.Pathogenic);
+			assertTrue(it.hasNext());
 
-		// multigene, multiallele
-		assertEquals(it.next().getRelevance().get(0).getAllele(), "T");
-		assertEquals(it.next().getRelevance().get(1).getAllele(), "A");
-		assertEquals(it.next().getRelevance().get(0).getGene(), "ALDH5A1");
-		assertEquals(it.next().getRelevance().get(1).getGene(), "TERC");
-		assertEquals(it.next().getRelevance().get(0).getJudgment().getReason(),"Variant CADD score of 32.0 is greater than 30.4 for this gene.");
-		assertEquals(it.next().getRelevance().get(1).getJudgment().getReason(),"Variant is of high/moderate/low impact, while there are no known high/moderate/low impact variants in the population. Also, the variant MAF of 0.0 is less than a MAF of 0.005591579999999973.");
+			// multigene, multiallele
+			assertEquals(it.next().getRelevance().get(0).getAllele(), "T");
+			assertEquals(it.next().getRelevance().get(1).getAllele(), "A");
+			assertEquals(it.next().getRelevance().get(0).getGene(), "ALDH5A1");
+			assertEquals(it.next().getRelevance().get(1).getGene(), "TERC");
+			assertEquals(it.next().getRelevance().get(0).getJudgment().getReason(),"Variant CADD score of 32.0 is greater than 30.4 for this gene.");
+			assertEquals(it.next().getRelevance().get(1).getJudgment().getReason(),"Variant is of high/moderate/low impact, while there are no known high/moderate/low impact variants in the population. Also, the variant MAF of 0.0 is less than a MAF of 0.005591579999999973.");
 
-		// mitochondrial with gene name derived from reported pathogenic annotation
-		assertTrue(it.hasNext());
-		assertEquals(it.next().getChromosome(),"MT");
-		assertEquals(it.next().getRelevance().get(0).getAllele(), "T");
-		assertEquals(it.next().getRelevance().get(0).getGene(), "MT-TP");
-		assertEquals(it.next().getRelevance().get(0).getJudgment().getReason(), "CLINVAR|m.15990C>T|MT-TP|Pathogenic");
-		assertFalse(it.hasNext());
+			// mitochondrial with gene name derived from reported pathogenic annotation
+			assertTrue(it.hasNext());
+			assertEquals(it.next().getChromosome(),"MT");
+			assertEquals(it.next().getRelevance().get(0).getAllele(), "T");
+			assertEquals(it.next().getRelevance().get(0).getGene(), "MT-TP");
+			assertEquals(it.next().getRelevance().get(0).getJudgment().getReason(), "CLINVAR|m.15990C>T|MT-TP|Pathogenic");
+			assertFalse(it.hasNext());
+		}
 	}
 
+	@Test
+	public void testStreamingLookupEqualsMemoryLookup() throws Exception
+	{
+		// the streaming lookup requires a sorted file, the reported pathogenic file of the bundle is not sorted
+		File sortedRepPathoFile = new File(FileUtils.getTempDirectory(), "clinvar.patho.fix.5.5.16.sorted.vcf");
+		sortVcf(repPathoFile, sortedRepPathoFile);
+
+		List<List<Judgment>> expected = getJudgments(sortedRepPathoFile, VariantLookup.Mode.MEMORY);
+		List<List<Judgment>> observed = getJudgments(sortedRepPathoFile, VariantLookup.Mode.STREAMING);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, getJudgments(repPathoFile, VariantLookup.Mode.MEMORY));
+		assertEquals(observed, expected);
+	}
+
+	@Test
+	public void testTabixLookupEqualsMemoryLookup() throws Exception
+	{
+		// records around the edges of the lookup window and a contig that is not in the tabix index
+		File tabixInputVcfFile = new File(
+				DiscoverRelevantVariantsTest.class.getResource("/DiscoverRelevantVariantsTabixTestFile.vcf").toURI());
+		File tabixRepPathoFile = new File(
+				DiscoverRelevantVariantsTest.class.getResource("/clinvar_tabix/clinvar.patho.window.vcf.gz").toURI());
+
+		List<List<Judgment>> expected = getJudgments(tabixInputVcfFile, tabixRepPathoFile, VariantLookup.Mode.MEMORY);
+		List<List<Judgment>> observed = getJudgments(tabixInputVcfFile, tabixRepPathoFile, VariantLookup.Mode.TABIX);
+		assertEquals(observed, expected);
+
+		// window of the first record, a variant served from that window, its last position and the position after it
+		List<String> reasons = expected.stream().map(judgments -> judgments.get(0).getReason()).collect(toList());
+		assertEquals(reasons.subList(0, 5), Arrays.asList(
+				"CLINVAR|NM_001111.4(ADAR):c.1C>A (p.Met1?)|ADAR|Pathogenic",
+				"CLINVAR|NM_001111.4(ADAR):c.201G>T|ADAR|Pathogenic",
+				"CLINVAR|NM_001111.4(ADAR):c.202A>G|ADAR|Likely pathogenic",
+				"CLINVAR|NM_001111.4(ADAR):c.301C>T|ADAR|Pathogenic",
+				"CLINVAR|NM_004562.2(PARK2):c.823C>T (p.Arg275Trp)|PARK2|Pathogenic"));
+		// contig 7 is not in the index, so the variant is classified by GAVIN only
+		assertEquals(reasons.get(reasons.size() - 1), "Variant CADD score of 32.0 is greater than 30.4 for this gene.");
+	}
+
+	@Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = ".*clinvar.patho.fix.5.5.16.vcf.gz is not sorted by .*")
+	public void testStreamingLookupUnsorted() throws Exception
+	{
+		getJudgments(repPathoFile, VariantLookup.Mode.STREAMING);
+	}
+
+	private List<List<Judgment>> getJudgments(File repPathoFile, VariantLookup.Mode lookupMode) throws Exception
+	{
+		return getJudgments(inputVcfFile, repPathoFile, lookupMode);
+	}
+
+	private List<List<Judgment>> getJudgments(File inputVcfFile, File repPathoFile, VariantLookup.Mode lookupMode)
+			throws Exception
+	{
+		List<List<Judgment>> judgments = new ArrayList<>();
+		try (DiscoverRelevantVariants discover = new DiscoverRelevantVariants(inputVcfFile, gavinFile, repPathoFile,
+				caddFile, null, HandleMissingCaddScores.Mode.ANALYSIS, false, lookupMode))
+		{
+			Iterator<GavinRecord> it = discover.findRelevantVariants();
+			while (it.hasNext())
+			{
+				judgments.add(it.next().getRelevance().stream().map(Relevance::getJudgment).collect(toList()));
+			}
+		}
+		return judgments;
+	}
+
+	/**
+	 * Writes the records of a gzipped VCF sorted by chromosome and position
+	 */
+	private static void sortVcf(File vcfFile, File sortedVcfFile) throws IOException
+	{
+		List<String> headerLines = new ArrayList<>();
+		List<String> recordLines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new GZIPInputStream(new FileInputStream(vcfFile)), UTF_8)))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				(line.startsWith("#") ? headerLines : recordLines).add(line);
+			}
+		}
+		recordLines.sort(Comparator.comparing((String line) -> line.split("\t", 3)[0])
+								   .thenComparingInt(line -> Integer.parseInt(line.split("\t", 3)[1])));
+		headerLines.addAll(recordLines);
+		Files.write(sortedVcfFile.toPath(), headerLines, UTF_8);
+	}
 }
@@ -0,0 +1,150 @@
+package org.molgenis.data.annotation.makervcf;
+
+import org.molgenis.data.annotation.core.entity.impl.gavin.Judgment;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinAlgorithm;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinEntry;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinThresholdTable;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinVerdict;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinVerdictCache;
+import org.molgenis.data.annotation.makervcf.structs.GavinCalibrations;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.molgenis.data.annotation.core.entity.impl.snpeff.Impact.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class GavinAlgorithmTest
+{
+	private GavinAlgorithm gavin;
+	private GavinCalibrations gavinCalibrations;
+	private GavinThresholdTable thresholds;
+
+	@BeforeClass
+	public void beforeClass()
+	{
+		Map<String, GavinEntry> gavinEntries = new HashMap<>();
+		putEntry(gavinEntries, "GENE_C1", "C1", "0.001", "20", "30", "", "");
+		putEntry(gavinEntries, "GENE_C3", "C3", "", "", "", "", "30");
+		putEntry(gavinEntries, "GENE_I1", "I1", "", "", "", "", "");
+		gavinCalibrations = GavinCalibrations.create(15, 0.005, gavinEntries);
+		thresholds = GavinThresholdTable.create(gavinCalibrations);
+		gavin = new GavinAlgorithm();
+	}
+
+	@Test
+	public void testThresholds()
+	{
+		int geneIndex = thresholds.getGeneIndex("GENE_C1");
+		assertEquals(thresholds.getMeanPathogenicCADDScore(geneIndex), 25.0);
+		assertEquals(thresholds.getMeanPopulationCADDScore(geneIndex), 15.0);
+		assertEquals(thresholds.getPathoMAFThreshold(geneIndex), 0.01);
+		assertTrue(Double.isNaN(thresholds.getSpec95thPerCADDThreshold(geneIndex)));
+		assertEquals(thresholds.getGeneIndex("UNKNOWN"), -1);
+	}
+
+	@Test
+	public void testClassifyCalibratedCadd()
+	{
+		assertEquals(gavin.classify(MODERATE, 26, 0, "GENE_C1", thresholds),
+				GavinVerdict.CADD_GREATER_THAN_MEAN_PATHOGENIC);
+		assertEquals(gavin.toJudgment(GavinVerdict.CADD_GREATER_THAN_MEAN_PATHOGENIC, MODERATE, 26, 0, "GENE_C1",
+				thresholds).getReason(),
+				"Variant CADD score of 26.0 is greater than 25.0 in a gene for which CADD scores are informative.");
+		assertEquals(gavin.classify(MODERATE, 10, 0, "GENE_C1", thresholds),
+				GavinVerdict.CADD_LESS_THAN_MEAN_POPULATION);
+	}
+
+	@Test
+	public void testClassifyCalibratedMaf()
+	{
+		assertEquals(gavin.classify(MODERATE, 20, 0.02, "GENE_C1", thresholds),
+				GavinVerdict.MAF_GREATER_THAN_PATHOGENIC);
+		assertEquals(gavin.toJudgment(GavinVerdict.MAF_GREATER_THAN_PATHOGENIC, MODERATE, 20, 0.02, "GENE_C1",
+				thresholds).getReason(), "Variant MAF of 0.02 is greater than 0.01.");
+	}
+
+	@Test
+	public void testClassifyMissingThreshold()
+	{
+		// the missing sens95th threshold does not classify, so the genomewide method decides
+		assertEquals(gavin.classify(null, 10, 0, "GENE_C3", thresholds),
+				GavinVerdict.GENOMEWIDE_CADD_LESS_THAN_THRESHOLD);
+	}
+
+	@Test
+	public void testClassifyCalibratedImpact()
+	{
+		assertEquals(gavin.classify(HIGH, Double.NaN, Double.NaN, "GENE_I1", thresholds), GavinVerdict.HIGH_IMPACT);
+		assertEquals(gavin.toJudgment(GavinVerdict.HIGH_IMPACT, HIGH, Double.NaN, Double.NaN, "GENE_I1", thresholds)
+						.getReason(),
+				"Variant is of high impact, while there are no known high impact variants in the population. Also, the variant MAF of null is less than a MAF of null.");
+	}
+
+	@Test
+	public void testClassifyGenomewide()
+	{
+		assertEquals(gavin.classify(MODERATE, Double.NaN, Double.NaN, "UNKNOWN", thresholds),
+				GavinVerdict.GENOMEWIDE_INCONCLUSIVE);
+		Judgment judgment = gavin.toJudgment(GavinVerdict.GENOMEWIDE_INCONCLUSIVE, MODERATE, Double.NaN,
+				Double.NaN, "UNKNOWN", thresholds);
+		assertEquals(judgment.getClassification(), Judgment.Classification.VOUS);
+		assertEquals(judgment.getReason(),
+				"Unable to classify variant as benign or pathogenic. The combination of MODERATE impact, a CADD score of null and MAF of 0.0 in UNKNOWN is inconclusive.");
+		assertEquals(gavin.classify(MODERATE, 20, 0.01, "UNKNOWN", thresholds), GavinVerdict.GENOMEWIDE_MAF_NOT_RARE);
+	}
+
+	@Test
+	public void testClassifyVariant()
+	{
+		assertEquals(gavin.classifyVariant(MODERATE, 26.0, 0.0, "GENE_C1", gavinCalibrations),
+				gavin.toJudgment(GavinVerdict.CADD_GREATER_THAN_MEAN_PATHOGENIC, MODERATE, 26, 0, "GENE_C1",
+						thresholds));
+		assertEquals(gavin.classifyVariant(LOW, null, null, "UNKNOWN", gavinCalibrations),
+				gavin.toJudgment(GavinVerdict.GENOMEWIDE_INCONCLUSIVE, LOW, Double.NaN, Double.NaN, "UNKNOWN",
+						thresholds));
+	}
+
+	@Test
+	public void testVerdictCache()
+	{
+		GavinVerdictCache verdictCache = new GavinVerdictCache(gavin, thresholds, 2);
+		assertEquals(verdictCache.classify(MODERATE, 26, 0, "GENE_C1"), GavinVerdict.CADD_GREATER_THAN_MEAN_PATHOGENIC);
+		assertEquals(verdictCache.classify(MODERATE, 26, 0, "GENE_C1"), GavinVerdict.CADD_GREATER_THAN_MEAN_PATHOGENIC);
+		assertEquals(verdictCache.classify(HIGH, Double.NaN, Double.NaN, "GENE_I1"), GavinVerdict.HIGH_IMPACT);
+		assertEquals(verdictCache.classify(HIGH, Double.NaN, Double.NaN, "GENE_I1"), GavinVerdict.HIGH_IMPACT);
+		assertEquals(verdictCache.getNrHits(), 2);
+		assertEquals(verdictCache.getNrMisses(), 2);
+
+		// evicts the least recently used verdict of GENE_C1
+		assertEquals(verdictCache.classify(MODERATE, 10, 0, "GENE_C1"), GavinVerdict.CADD_LESS_THAN_MEAN_POPULATION);
+		assertEquals(verdictCache.size(), 2);
+		assertEquals(verdictCache.classify(MODERATE, 26, 0, "GENE_C1"), GavinVerdict.CADD_GREATER_THAN_MEAN_PATHOGENIC);
+		assertEquals(verdictCache.getNrHits(), 2);
+		assertEquals(verdictCache.getNrMisses(), 4);
+	}
+
+	private static void putEntry(Map<String, GavinEntry> gavinEntries, String gene, String category, String pathoMAF,
+			String meanPopulationCADD, String meanPathogenicCADD, String sens95thPerCADD, String spec95thPerCADD)
+	{
+		String[] columns = new String[30];
+		for (int i = 0; i < columns.length; i++)
+		{
+			columns[i] = "";
+		}
+		columns[0] = gene;
+		columns[1] = category;
+		columns[2] = "1";
+		columns[3] = "100";
+		columns[4] = "200";
+		columns[9] = pathoMAF;
+		columns[24] = meanPopulationCADD;
+		columns[25] = meanPathogenicCADD;
+		columns[28] = sens95thPerCADD;
+		columns[29] = spec95thPerCADD;
+		gavinEntries.put(gene, new GavinEntry(String.join("\t", columns)));
+	}
+}
@@ -0,0 +1,81 @@
+package org.molgenis.data.annotation.makervcf;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.calibratecadd.support.GavinUtils;
+import org.molgenis.vcf.VcfReader;
+import org.molgenis.vcf.VcfRecord;
+import org.springframework.util.FileCopyUtils;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+public class GavinUtilsTest
+{
+	@Test
+	public void testGetVcfReaderOffset() throws IOException
+	{
+		InputStream inputVcf = GavinUtilsTest.class.getResourceAsStream("/DiscoverRelevantVariantsTestFile.vcf");
+		File vcfFile = new File(FileUtils.getTempDirectory(), "GavinUtilsTest.vcf");
+		FileCopyUtils.copy(inputVcf, new FileOutputStream(vcfFile));
+		assertTrue(GavinUtils.canSeekChromosomes(vcfFile));
+
+		Map<String, Long> chromosomeToOffset = new HashMap<>();
+		LinkedHashMap<String, Long> chromosomeToCount = GavinUtils.countRecordsPerChromosome(vcfFile,
+				chromosomeToOffset);
+		assertEquals(chromosomeToOffset.keySet(), chromosomeToCount.keySet());
+
+		List<String> expectedRecords = readRecords(GavinUtils.getVcfReader(vcfFile));
+		int nrRecordsBefore = 0;
+		for (Map.Entry<String, Long> entry : chromosomeToCount.entrySet())
+		{
+			List<String> records = readRecords(GavinUtils.getVcfReader(vcfFile, chromosomeToOffset.get(entry.getKey())));
+			assertEquals(records, expectedRecords.subList(nrRecordsBefore, expectedRecords.size()));
+			assertTrue(records.get(0).startsWith(entry.getKey() + '\t'));
+			nrRecordsBefore += entry.getValue();
+		}
+	}
+
+	@Test
+	public void testGetVcfReaderTabix() throws IOException, URISyntaxException
+	{
+		File vcfFile = new File(
+				GavinUtilsTest.class.getResource("/PlatinumGenomesMantaSV/candidateSmallIndels.vcf.gz").toURI());
+		assertTrue(GavinUtils.canSeekChromosomes(vcfFile));
+
+		try (VcfReader vcfReader = GavinUtils.getVcfReader(vcfFile);
+				VcfReader seekingVcfReader = GavinUtils.getVcfReader(vcfFile, "2"))
+		{
+			assertEquals(seekingVcfReader.getVcfMeta().getColNames(), vcfReader.getVcfMeta().getColNames());
+		}
+		List<String> records = readRecords(GavinUtils.getVcfReader(vcfFile, "2"));
+		assertEquals(records.size(), 21);
+		assertEquals(records, readRecords(GavinUtils.getVcfReader(vcfFile)));
+	}
+
+	@Test
+	public void testCanSeekChromosomesCompressedWithoutIndex()
+	{
+		assertFalse(GavinUtils.canSeekChromosomes(new File(FileUtils.getTempDirectory(), "GavinUtilsTest.vcf.gz")));
+		assertFalse(GavinUtils.canSeekChromosomes(new File(FileUtils.getTempDirectory(), "GavinUtilsTest.vcf.zip")));
+	}
+
+	private static List<String> readRecords(VcfReader vcfReader) throws IOException
+	{
+		List<String> records = new ArrayList<>();
+		try (VcfReader reader = vcfReader)
+		{
+			for (VcfRecord vcfRecord : reader)
+			{
+				records.add(vcfRecord.toString());
+			}
+		}
+		return records;
+	}
+}
@@ -1,8 +1,10 @@
 package org.molgenis.data.annotation.makervcf;
 
 import org.apache.commons.io.FileUtils;
+import org.molgenis.data.annotation.makervcf.genestream.core.CompositeGeneStream;
 import org.molgenis.data.annotation.makervcf.genestream.core.ConvertToGeneStream;
 import org.molgenis.data.annotation.makervcf.genestream.core.GeneStream;
+import org.molgenis.data.annotation.makervcf.genestream.core.PerGenePlugin;
 import org.molgenis.data.annotation.makervcf.positionalstream.DiscoverRelevantVariants;
 import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
 import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores;
@@ -11,6 +13,8 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -74,6 +78,35 @@ public class GeneStreamTest extends Setup
 
 	}
 
+	@Test
+	public void testComposite() throws Exception
+	{
+		DiscoverRelevantVariants discover = new DiscoverRelevantVariants(inputVcfFile, gavinFile, repPathoFile, caddFile, null, HandleMissingCaddScores.Mode.ANALYSIS, false);
+		Iterator<GavinRecord> reorder = new ConvertToGeneStream(discover.findRelevantVariants()).go();
+
+		HashMap<String, Integer> observedVariantsPerGene = new HashMap<>();
+		List<String> observedGenes = new ArrayList<>();
+
+		// the second plugin sees a gene right after the first plugin
+		List<PerGenePlugin> plugins = Arrays.asList(
+				(gene, variantsPerGene) -> observedVariantsPerGene.put(gene, variantsPerGene.size()),
+				(gene, variantsPerGene) -> {
+					assertEquals(observedVariantsPerGene.get(gene), Integer.valueOf(variantsPerGene.size()));
+					observedGenes.add(gene);
+				});
+
+		Iterator<GavinRecord> it = new CompositeGeneStream(reorder, plugins).go();
+
+		StringBuffer positions = new StringBuffer();
+		while(it.hasNext())
+		{
+			positions.append(it.next().getPosition() + "_");
+		}
+
+		assertEquals(expectedVariantsPerGene, observedVariantsPerGene);
+		assertEquals(observedGenes.size(), expectedVariantsPerGene.size());
+		assertEquals(positions.toString(), ConvertToGeneStreamTest.expected1);
+	}
 
 	private void setExpectedVariantsPerGene()
 	{
@@ -133,4 +166,25 @@ public class GeneStreamTest extends Setup
 
 	}
 
+	@Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = ".*Failing gene .*")
+	public void testThreadsFailingGene() throws Exception
+	{
+		DiscoverRelevantVariants discover = new DiscoverRelevantVariants(inputVcfFile2, gavinFile, repPathoFile, caddFile, null, HandleMissingCaddScores.Mode.ANALYSIS, false);
+		Iterator<GavinRecord> reorder = new ConvertToGeneStream(discover.findRelevantVariants()).go();
+
+		PerGenePlugin failingPlugin = (gene, variantsPerGene) ->
+		{
+			throw new Exception("Failing gene " + gene);
+		};
+
+		try (CompositeGeneStream gsTest = new CompositeGeneStream(reorder, Arrays.asList(failingPlugin), 2))
+		{
+			Iterator<GavinRecord> it = gsTest.go();
+			while (it.hasNext())
+			{
+				it.next();
+			}
+		}
+	}
+
 }
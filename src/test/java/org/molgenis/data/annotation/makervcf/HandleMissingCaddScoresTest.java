@@ -0,0 +1,101 @@
+package org.molgenis.data.annotation.makervcf;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.FileUtils;
+import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
+import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores;
+import org.molgenis.vcf.ParallelBlockCompressedInputStream;
+import org.molgenis.vcf.VcfReader;
+import org.molgenis.vcf.VcfRecord;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.*;
+
+public class HandleMissingCaddScoresTest
+{
+	private static final String VCF = "##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n"
+			+ "1\t100\t.\tA\tG,T\t.\t.\tCADD_SCALED=.,12.5\n" + "1\t100\t.\tAC\tGC\t.\t.\t.\n"
+			+ "1\t200\t.\tACT\tAT\t.\t.\t.\n" + "1\t200\t.\tAC\tA\t.\t.\t.\n" + "2\t100\t.\tA\tG\t.\t.\t.\n";
+
+	private static final String EXPECTED_CADD =
+			"1\t100\t.\tA\tG\n" + "1\t200\t.\tAC\tA\n" + "2\t100\t.\tA\tG\n";
+
+	private static final String CADD =
+			"#Chrom\tPos\tRef\tAlt\tRawScore\tPHRED\n" + "1\t100\tA\tG\t0.1\t2.5\n" + "1\t200\tACT\tAT\t0.2\t3.5\n";
+
+	@Test
+	public void testAnalysis() throws Exception
+	{
+		File caddFile = new File(FileUtils.getTempDirectory(), "HandleMissingCaddScoresTestAnalysis.tsv");
+		FileUtils.writeStringToFile(caddFile, CADD, UTF_8);
+
+		// per alt: returned score and score written to the record
+		Double[][] expected = { { 2.5, 2.5 }, { 12.5, 12.5 }, // 1:100 A G,T
+				{ 2.5, null }, // 1:100 AC GC, found by its trimmed notation
+				{ 3.5, null }, // 1:200 ACT AT, needs trimming so the score is not written to the record
+				{ 3.5, 3.5 }, // 1:200 AC A, matches the trimmed notation of the CADD line
+				{ null, null } }; // 2:100 A G, not in the CADD output
+		int i = 0;
+		try (HandleMissingCaddScores hmcs = new HandleMissingCaddScores(HandleMissingCaddScores.Mode.ANALYSIS,
+				caddFile); VcfReader vcfReader = new VcfReader(new ByteArrayInputStream(VCF.getBytes(UTF_8))))
+		{
+			for (VcfRecord vcfRecord : vcfReader)
+			{
+				GavinRecord gavinRecord = new GavinRecord(vcfRecord);
+				for (int altIndex = 0; altIndex < gavinRecord.getAlts().length; altIndex++, i++)
+				{
+					assertEquals(hmcs.dealWithCaddScores(gavinRecord, altIndex), expected[i][0], "alt " + i);
+					assertEquals(gavinRecord.getCaddPhredScore(altIndex), expected[i][1], "alt " + i);
+				}
+			}
+		}
+		assertEquals(i, expected.length);
+	}
+
+	@Test
+	public void testCreateFileForCadd() throws Exception
+	{
+		File caddFile = new File(FileUtils.getTempDirectory(), "HandleMissingCaddScoresTest.tsv");
+		writeCaddFile(caddFile);
+		assertEquals(FileUtils.readFileToString(caddFile, UTF_8), EXPECTED_CADD);
+	}
+
+	@Test
+	public void testCreateFileForCaddBgzip() throws Exception
+	{
+		File caddFile = new File(FileUtils.getTempDirectory(), "HandleMissingCaddScoresTest.tsv.gz");
+		writeCaddFile(caddFile);
+
+		byte[] header = new byte[18];
+		try (InputStream inputStream = new FileInputStream(caddFile))
+		{
+			ByteStreams.readFully(inputStream, header);
+		}
+		assertTrue(ParallelBlockCompressedInputStream.isBlockCompressed(header));
+		try (InputStream inputStream = new GZIPInputStream(new FileInputStream(caddFile)))
+		{
+			assertEquals(new String(ByteStreams.toByteArray(inputStream), UTF_8), EXPECTED_CADD);
+		}
+	}
+
+	private static void writeCaddFile(File caddFile) throws Exception
+	{
+		try (HandleMissingCaddScores hmcs = new HandleMissingCaddScores(HandleMissingCaddScores.Mode.CREATEFILEFORCADD,
+				caddFile); VcfReader vcfReader = new VcfReader(new ByteArrayInputStream(VCF.getBytes(UTF_8))))
+		{
+			for (VcfRecord vcfRecord : vcfReader)
+			{
+				GavinRecord gavinRecord = new GavinRecord(vcfRecord);
+				for (int i = 0; i < gavinRecord.getAlts().length; i++)
+				{
+					Double caddScore = hmcs.dealWithCaddScores(gavinRecord, i);
+					assertEquals(caddScore, gavinRecord.getCaddPhredScore(i));
+				}
+			}
+		}
+	}
+}
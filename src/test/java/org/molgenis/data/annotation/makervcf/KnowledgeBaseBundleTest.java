@@ -0,0 +1,124 @@
+package org.molgenis.data.annotation.makervcf;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.calibratecadd.support.GavinUtils;
+import org.molgenis.cgd.CGDEntry;
+import org.molgenis.cgd.LoadCGD;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinEntry;
+import org.molgenis.data.annotation.entity.impl.gavin.GavinThresholdTable;
+import org.molgenis.data.annotation.makervcf.bundle.KnowledgeBaseBundle;
+import org.molgenis.data.annotation.makervcf.bundle.KnowledgeBaseBundleWriter;
+import org.molgenis.data.annotation.makervcf.structs.GavinCalibrations;
+import org.springframework.util.FileCopyUtils;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class KnowledgeBaseBundleTest
+{
+	private File gavinFile;
+	private File cgdFile;
+	private File fdrFile;
+	private KnowledgeBaseBundle bundle;
+
+	@BeforeClass
+	public void beforeClass() throws IOException
+	{
+		InputStream gavin = KnowledgeBaseBundleTest.class.getResourceAsStream("/bundle_r1.2/GAVIN_calibrations_r0.5.tsv");
+		gavinFile = new File(FileUtils.getTempDirectory(), "GAVIN_calibrations_r0.5.tsv");
+		FileCopyUtils.copy(gavin, new FileOutputStream(gavinFile));
+
+		InputStream cgd = KnowledgeBaseBundleTest.class.getResourceAsStream("/bundle_r1.2/CGD_26jun2018.txt.gz");
+		cgdFile = new File(FileUtils.getTempDirectory(), "CGD_26jun2018.txt.gz");
+		FileCopyUtils.copy(cgd, new FileOutputStream(cgdFile));
+
+		InputStream fdr = KnowledgeBaseBundleTest.class.getResourceAsStream("/bundle_r1.2/FDR_allGenes_r1.2.tsv");
+		fdrFile = new File(FileUtils.getTempDirectory(), "FDR_allGenes_r1.2.tsv");
+		FileCopyUtils.copy(fdr, new FileOutputStream(fdrFile));
+
+		File bundleFile = new File(FileUtils.getTempDirectory(), "KnowledgeBaseBundleTest.gkb");
+		KnowledgeBaseBundleWriter.compile(gavinFile, cgdFile, fdrFile, bundleFile);
+		bundle = KnowledgeBaseBundle.open(bundleFile);
+	}
+
+	@Test
+	public void testGavinCalibrations()
+	{
+		GavinCalibrations expected = GavinUtils.getGeneToEntry(gavinFile);
+		GavinCalibrations actual = bundle.getGavinCalibrations();
+
+		assertEquals(actual.getGenomewideCaddThreshold(), expected.getGenomewideCaddThreshold());
+		assertEquals(actual.getGenomewideMafThreshold(), expected.getGenomewideMafThreshold());
+		assertEquals(actual.getGavinEntries().size(), expected.getGavinEntries().size());
+		for (Map.Entry<String, GavinEntry> entry : expected.getGavinEntries().entrySet())
+		{
+			GavinEntry actualEntry = actual.getGavinEntries().get(entry.getKey());
+			assertNotNull(actualEntry, entry.getKey());
+			assertEquals(actualEntry.getCategory(), entry.getValue().getCategory());
+			assertEquals(actualEntry.getPathoMAFThreshold(), entry.getValue().getPathoMAFThreshold());
+			assertEquals(actualEntry.getMeanPathogenicCADDScore(), entry.getValue().getMeanPathogenicCADDScore());
+			assertEquals(actualEntry.getMeanPopulationCADDScore(), entry.getValue().getMeanPopulationCADDScore());
+			assertEquals(actualEntry.getSpec95thPerCADDThreshold(), entry.getValue().getSpec95thPerCADDThreshold());
+			assertEquals(actualEntry.getSens95thPerCADDThreshold(), entry.getValue().getSens95thPerCADDThreshold());
+		}
+		assertNull(actual.getGavinEntries().get("NOT_A_GENE"));
+	}
+
+	@Test
+	public void testGavinThresholdTable()
+	{
+		GavinCalibrations gavinCalibrations = GavinUtils.getGeneToEntry(gavinFile);
+		GavinThresholdTable expected = GavinThresholdTable.create(gavinCalibrations);
+		GavinThresholdTable actual = bundle.getGavinThresholdTable();
+
+		assertEquals(actual.getGenomewideCaddThreshold(), expected.getGenomewideCaddThreshold());
+		assertEquals(actual.getGenomewideMafThreshold(), expected.getGenomewideMafThreshold());
+		for (String gene : gavinCalibrations.getGavinEntries().keySet())
+		{
+			int expectedIndex = expected.getGeneIndex(gene);
+			int actualIndex = actual.getGeneIndex(gene);
+			assertTrue(actualIndex >= 0, gene);
+			assertEquals(actual.getCategory(actualIndex), expected.getCategory(expectedIndex));
+			assertEquals(actual.getPathoMAFThreshold(actualIndex), expected.getPathoMAFThreshold(expectedIndex));
+			assertEquals(actual.getMeanPathogenicCADDScore(actualIndex),
+					expected.getMeanPathogenicCADDScore(expectedIndex));
+			assertEquals(actual.getMeanPopulationCADDScore(actualIndex),
+					expected.getMeanPopulationCADDScore(expectedIndex));
+			assertEquals(actual.getSpec95thPerCADDThreshold(actualIndex),
+					expected.getSpec95thPerCADDThreshold(expectedIndex));
+			assertEquals(actual.getSens95thPerCADDThreshold(actualIndex),
+					expected.getSens95thPerCADDThreshold(expectedIndex));
+		}
+		assertEquals(actual.getGeneIndex("NOT_A_GENE"), -1);
+	}
+
+	@Test
+	public void testCgd() throws IOException
+	{
+		Map<String, CGDEntry> expected = LoadCGD.loadCGD(cgdFile);
+		Map<String, CGDEntry> actual = bundle.getCgd();
+
+		assertEquals(actual.size(), expected.size());
+		for (Map.Entry<String, CGDEntry> entry : expected.entrySet())
+		{
+			CGDEntry actualEntry = actual.get(entry.getKey());
+			assertNotNull(actualEntry, entry.getKey());
+			assertEquals(actualEntry.toString(), entry.getValue().toString());
+		}
+		assertEquals(actual.get("mlh1").getGene(), actual.get("MLH1").getGene());
+		assertNull(actual.get("NOT_A_GENE"));
+	}
+
+	@Test
+	public void testFdr()
+	{
+		assertEquals(bundle.getAffectedFractions().get("HTR4"), 0.0);
+		assertEquals(bundle.getCarrierFractions().get("HTR4"), 0.01597444089456869);
+		assertNull(bundle.getAffectedFractions().get("NOT_A_GENE"));
+		assertNull(bundle.getCarrierFractions().get("NOT_A_GENE"));
+	}
+}
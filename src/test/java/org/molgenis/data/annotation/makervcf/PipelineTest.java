@@ -0,0 +1,176 @@
+package org.molgenis.data.annotation.makervcf;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.data.annotation.makervcf.util.HandleMissingCaddScores;
+import org.molgenis.data.annotation.makervcf.util.VariantLookup;
+import org.springframework.util.FileCopyUtils;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+
+public class PipelineTest extends Setup
+{
+	protected File inputVcfFile;
+	protected File chromBadVcfFile;
+	protected File cgdFile;
+	protected File fdrFile;
+
+	@BeforeClass
+	public void beforeClass() throws FileNotFoundException, IOException
+	{
+		InputStream inputVcf = PipelineTest.class.getResourceAsStream("/DiscoverRelevantVariantsTestFile.vcf");
+		inputVcfFile = new File(FileUtils.getTempDirectory(), "DiscoverRelevantVariantsTestFile.vcf");
+		FileCopyUtils.copy(inputVcf, new FileOutputStream(inputVcfFile));
+
+		InputStream chromBadVcf = PipelineTest.class.getResourceAsStream("/ChromBadTestFile.vcf");
+		chromBadVcfFile = new File(FileUtils.getTempDirectory(), "ChromBadTestFile.vcf");
+		FileCopyUtils.copy(chromBadVcf, new FileOutputStream(chromBadVcfFile));
+
+		InputStream cgd = PipelineTest.class.getResourceAsStream("/bundle_r0.1/CGD_1jun2016.txt.gz");
+		cgdFile = new File(FileUtils.getTempDirectory(), "CGD_1jun2016.txt.gz");
+		FileCopyUtils.copy(cgd, new FileOutputStream(cgdFile));
+
+		InputStream fdr = PipelineTest.class.getResourceAsStream("/bundle_r0.1/FDR_allGenes.tsv");
+		fdrFile = new File(FileUtils.getTempDirectory(), "FDR_allGenes.tsv");
+		FileCopyUtils.copy(fdr, new FileOutputStream(fdrFile));
+	}
+
+	@Test
+	public void testShardedEqualsSequential() throws Exception
+	{
+		File sequentialOutputFile = run(inputVcfFile, 1, false);
+		File shardedOutputFile = run(inputVcfFile, 3, false);
+		assertEquals(Files.readAllLines(shardedOutputFile.toPath()), Files.readAllLines(sequentialOutputFile.toPath()));
+	}
+
+	@Test
+	public void testPipelinedEqualsSequential() throws Exception
+	{
+		File sequentialOutputFile = run(inputVcfFile, 1, false);
+		File pipelinedOutputFile = run(inputVcfFile, 1, true);
+		assertEquals(Files.readAllLines(pipelinedOutputFile.toPath()), Files.readAllLines(sequentialOutputFile.toPath()));
+	}
+
+	@Test
+	public void testVerdictCacheEqualsSequential() throws Exception
+	{
+		File sequentialOutputFile = run(inputVcfFile, 1, false);
+		// a small cache so that verdicts are also evicted
+		File cachedOutputFile = run(inputVcfFile, 1, false, 2, 1);
+		assertEquals(Files.readAllLines(cachedOutputFile.toPath()), Files.readAllLines(sequentialOutputFile.toPath()));
+	}
+
+	@Test
+	public void testClassificationThreadsEqualsSequential() throws Exception
+	{
+		File sequentialOutputFile = run(inputVcfFile, 1, false);
+		File classifiedOutputFile = run(inputVcfFile, 1, false, 2, 4);
+		assertEquals(Files.readAllLines(classifiedOutputFile.toPath()),
+				Files.readAllLines(sequentialOutputFile.toPath()));
+	}
+
+	@Test
+	public void testGeneThreadsEqualsSequential() throws Exception
+	{
+		File sequentialOutputFile = run(inputVcfFile, 1, false);
+		File geneThreadsOutputFile = run(inputVcfFile, 1, false, 0, 1, 3);
+		assertEquals(Files.readAllLines(geneThreadsOutputFile.toPath()),
+				Files.readAllLines(sequentialOutputFile.toPath()));
+	}
+
+	@Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Chromosome 1 was interrupted by other chromosomes. Please sort your VCF file.")
+	public void testClassificationThreadsInterruptedChromosome() throws Exception
+	{
+		run(chromBadVcfFile, 1, false, 0, 4);
+	}
+
+	@Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Chromosome 1 was interrupted by other chromosomes. Please sort your VCF file.")
+	public void testPipelinedInterruptedChromosome() throws Exception
+	{
+		run(chromBadVcfFile, 1, true);
+	}
+
+	@Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Chromosome 1 was interrupted by other chromosomes. Please sort your VCF file.")
+	public void testShardedInterruptedChromosome() throws Exception
+	{
+		run(chromBadVcfFile, 2, false);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Classifying on multiple threads requires lookup mode MEMORY")
+	public void testSettingsClassificationThreadsRequireMemoryLookup()
+	{
+		PipelineSettings.builder()
+						.setVersion("test")
+						.setCmdString("test")
+						.setMode(HandleMissingCaddScores.Mode.ANALYSIS)
+						.setInputVcfFile(inputVcfFile)
+						.setClinvarFile(repPathoFile)
+						.setCaddFile(caddFile)
+						.setOutputVcfFile(new File(FileUtils.getTempDirectory(), "PipelineTest.vcf"))
+						.setLookupMode(VariantLookup.Mode.TABIX)
+						.setClassificationThreads(2)
+						.build();
+	}
+
+	@Test
+	public void testCreateShards()
+	{
+		LinkedHashMap<String, Long> chromosomeToCount = new LinkedHashMap<>();
+		chromosomeToCount.put("1", 50L);
+		chromosomeToCount.put("2", 40L);
+		chromosomeToCount.put("3", 5L);
+		chromosomeToCount.put("GL000191.1", 1L);
+		chromosomeToCount.put("GL000192.1", 1L);
+		chromosomeToCount.put("MT", 3L);
+
+		assertEquals(Pipeline.createShards(chromosomeToCount, 2),
+				asList(asList("1"), asList("2", "3", "GL000191.1", "GL000192.1", "MT")));
+		assertEquals(Pipeline.createShards(chromosomeToCount, 4),
+				asList(asList("1"), asList("2"), asList("3", "GL000191.1", "GL000192.1", "MT")));
+	}
+
+	private File run(File vcfFile, int threads, boolean pipelined) throws Exception
+	{
+		return run(vcfFile, threads, pipelined, 0, 1);
+	}
+
+	private File run(File vcfFile, int threads, boolean pipelined, int verdictCacheSize, int classificationThreads)
+			throws Exception
+	{
+		return run(vcfFile, threads, pipelined, verdictCacheSize, classificationThreads, 1);
+	}
+
+	private File run(File vcfFile, int threads, boolean pipelined, int verdictCacheSize, int classificationThreads,
+			int geneThreads) throws Exception
+	{
+		File outputVcfFile = new File(FileUtils.getTempDirectory(),
+				"PipelineTest_" + threads + "_" + pipelined + "_" + verdictCacheSize + "_" + classificationThreads
+						+ "_" + geneThreads + ".vcf");
+		new Pipeline(PipelineSettings.builder()
+									 .setVersion("test")
+									 .setCmdString("test")
+									 .setKeepAllVariants(true)
+									 .setMode(HandleMissingCaddScores.Mode.ANALYSIS)
+									 .setInputVcfFile(vcfFile)
+									 .setGavinFile(gavinFile)
+									 .setClinvarFile(repPathoFile)
+									 .setCgdFile(cgdFile)
+									 .setCaddFile(caddFile)
+									 .setFdrFile(fdrFile)
+									 .setOutputVcfFile(outputVcfFile)
+									 .setIncludeSamples(true)
+									 .setThreads(threads)
+									 .setPipelined(pipelined)
+									 .setVerdictCacheSize(verdictCacheSize)
+									 .setClassificationThreads(classificationThreads)
+									 .setGeneThreads(geneThreads)
+									 .build()).start();
+		return outputVcfFile;
+	}
+}
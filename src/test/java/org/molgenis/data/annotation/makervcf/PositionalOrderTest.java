@@ -0,0 +1,132 @@
+package org.molgenis.data.annotation.makervcf;
+
+import org.molgenis.data.annotation.makervcf.genestream.core.PositionalOrder;
+import org.molgenis.data.annotation.makervcf.structs.GavinRecord;
+import org.molgenis.vcf.VcfRecord;
+import org.molgenis.vcf.meta.VcfMeta;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class PositionalOrderTest
+{
+	private static final VcfMeta VCF_META = new VcfMeta();
+
+	@Test
+	public void testPoll()
+	{
+		PositionalOrder order = new PositionalOrder();
+		List<GavinRecord> records = addRecords(order, 3);
+
+		order.put(records.get(1));
+		assertNull(order.poll());
+		order.put(records.get(0));
+		assertEquals(order.poll(), records.get(0));
+		assertEquals(order.poll(), records.get(1));
+		assertNull(order.poll());
+		order.put(records.get(2));
+		assertEquals(order.poll(), records.get(2));
+		assertNull(order.poll());
+	}
+
+	@Test
+	public void testSkip()
+	{
+		PositionalOrder order = new PositionalOrder();
+		List<GavinRecord> records = addRecords(order, 3);
+
+		order.put(records.get(2));
+		order.skip(records.get(1));
+		assertNull(order.poll());
+		order.skip(records.get(0));
+		assertEquals(order.poll(), records.get(2));
+		assertNull(order.poll());
+	}
+
+	@Test
+	public void testPollRemaining()
+	{
+		PositionalOrder order = new PositionalOrder();
+		List<GavinRecord> records = addRecords(order, 5);
+
+		// records 0, 2 and 4 never come back and were not skipped
+		order.put(records.get(3));
+		order.put(records.get(1));
+		assertNull(order.poll());
+		assertEquals(order.pollRemaining(), records.get(1));
+		assertEquals(order.pollRemaining(), records.get(3));
+		assertNull(order.pollRemaining());
+		assertNull(order.poll());
+	}
+
+	@Test
+	public void testGrow()
+	{
+		PositionalOrder order = new PositionalOrder();
+		List<GavinRecord> records = addRecords(order, 200);
+
+		// the oldest record holds back all records after it
+		for (int i = records.size() - 1; i > 0; --i)
+		{
+			order.put(records.get(i));
+		}
+		assertNull(order.poll());
+		order.put(records.get(0));
+		for (GavinRecord record : records)
+		{
+			assertEquals(order.poll(), record);
+		}
+		assertNull(order.poll());
+	}
+
+	@Test
+	public void testReleasePolledRecords() throws ReflectiveOperationException
+	{
+		PositionalOrder order = new PositionalOrder();
+		for (int i = 0; i < 1000; ++i)
+		{
+			List<GavinRecord> records = addRecords(order, 2);
+			order.put(records.get(1));
+			order.put(records.get(0));
+			assertEquals(order.poll(), records.get(0));
+			assertEquals(order.poll(), records.get(1));
+		}
+
+		// the ring buffer did not grow while at most two records were awaited and holds no polled records
+		Field slotsField = PositionalOrder.class.getDeclaredField("slots");
+		slotsField.setAccessible(true);
+		Object[] slots = (Object[]) slotsField.get(order);
+		assertEquals(slots.length, 64);
+		for (Object slot : slots)
+		{
+			assertNull(slot);
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Record 1 0 A C with ordinal 0 is not awaited")
+	public void testPutPolledRecord()
+	{
+		PositionalOrder order = new PositionalOrder();
+		GavinRecord record = addRecords(order, 1).get(0);
+		order.put(record);
+		assertEquals(order.poll(), record);
+		order.put(record);
+	}
+
+	private static List<GavinRecord> addRecords(PositionalOrder order, int nrRecords)
+	{
+		List<GavinRecord> records = new ArrayList<>();
+		for (int i = 0; i < nrRecords; ++i)
+		{
+			GavinRecord record = new GavinRecord(
+					new VcfRecord(VCF_META, new String[] { "1", String.valueOf(i), ".", "A", "C", ".", ".", "." }));
+			order.add(record);
+			records.add(record);
+		}
+		return records;
+	}
+}
@@ -0,0 +1,91 @@
+package org.molgenis.data.annotation.makervcf;
+
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+import org.molgenis.data.annotation.makervcf.util.PrescoredCaddScoreLookup;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class PrescoredCaddScoreLookupTest
+{
+	private File prescoredDirectory;
+	private PrescoredCaddScoreLookup prescoredCaddScoreLookup;
+
+	@BeforeClass
+	public void beforeClass() throws IOException, URISyntaxException
+	{
+		prescoredDirectory = new File(PrescoredCaddScoreLookupTest.class.getResource("/cadd_prescored").toURI());
+		prescoredCaddScoreLookup = PrescoredCaddScoreLookup.open(prescoredDirectory);
+	}
+
+	@AfterClass
+	public void afterClass() throws IOException
+	{
+		prescoredCaddScoreLookup.close();
+	}
+
+	@Test
+	public void testGetPrescoredFiles()
+	{
+		assertEquals(PrescoredCaddScoreLookup.getPrescoredFiles(prescoredDirectory),
+				asList(new File(prescoredDirectory, "InDels.tsv.gz"),
+						new File(prescoredDirectory, "whole_genome_SNVs.tsv.gz")));
+	}
+
+	@Test
+	public void testGetSnv() throws IOException
+	{
+		assertEquals(get("1", 100, "A", "C"), 20.0);
+		assertEquals(get("1", 100, "A", "G"), 20.1);
+		assertEquals(get("1", 100, "A", "T"), 20.2);
+		assertEquals(get("1", 399, "T", "G"), 39.2);
+		assertEquals(get("1", 40000, "G", "A"), 25.1);
+		assertEquals(get("2", 60, "T", "C"), 30.2);
+	}
+
+	@Test
+	public void testGetIndel() throws IOException
+	{
+		assertEquals(get("1", 100, "AT", "A"), 12.5);
+		assertEquals(get("1", 100, "A", "AC"), 12.6);
+		assertEquals(get("1", 20000, "GTT", "G"), 21.0);
+		assertEquals(get("2", 60, "T", "TAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA"), 8.0);
+	}
+
+	@Test
+	public void testGetUntrimmed() throws IOException
+	{
+		assertEquals(get("1", 250, "CAGT", "CT"), 14.0);
+	}
+
+	@Test
+	public void testGetMissing() throws IOException
+	{
+		assertNull(get("1", 100, "A", "A"));
+		assertNull(get("1", 99, "T", "A"));
+		assertNull(get("1", 30000, "G", "A"));
+		assertNull(get("2", 70, "T", "C"));
+		assertNull(get("X", 100, "A", "C"));
+	}
+
+	@Test
+	public void testGetOutOfOrder() throws IOException
+	{
+		assertEquals(get("2", 50, "T", "C"), 30.2);
+		assertEquals(get("1", 20000, "G", "A"), 25.1);
+		assertEquals(get("1", 101, "C", "A"), 21.0);
+	}
+
+	private Double get(String chromosome, int position, String ref, String alt) throws IOException
+	{
+		return prescoredCaddScoreLookup.get(VariantKey.createBackTrimmed(chromosome, position, ref, alt));
+	}
+}
@@ -0,0 +1,99 @@
+package org.molgenis.data.annotation.makervcf;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.data.annotation.makervcf.structs.VariantKey;
+import org.molgenis.data.annotation.makervcf.util.CaddScoreLookup;
+import org.molgenis.data.annotation.makervcf.util.InMemoryCaddScoreLookup;
+import org.molgenis.data.annotation.makervcf.util.StreamingCaddScoreLookup;
+import org.molgenis.data.annotation.makervcf.util.VariantLookup;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.*;
+
+public class StreamingCaddScoreLookupTest
+{
+	private static final String CADD = "#Chrom\tPos\tRef\tAlt\tRawScore\tPHRED\n" + "1\t100\tA\tG\t0.1\t2.5\n"
+			+ "1\t100\tA\tT\t0.2\t3.5\n" + "1\t100\tA\tG\t0.3\t4.5\n" + "1\t150\tACT\tAT\t0.4\t5.5\n"
+			+ "1\t5000\tC\tT\t0.5\t6.5\n" + "2\t10\tG\tA\t0.6\t7.5\n" + "2\t20\tG\tC\t0.7\t8.5\n";
+
+	private File caddFile;
+	private CaddScoreLookup inMemory;
+
+	@BeforeClass
+	public void beforeClass() throws Exception
+	{
+		caddFile = new File(FileUtils.getTempDirectory(), "StreamingCaddScoreLookupTest.tsv");
+		FileUtils.writeStringToFile(caddFile, CADD, UTF_8);
+		inMemory = new InMemoryCaddScoreLookup(caddFile);
+	}
+
+	@Test
+	public void testCreate() throws Exception
+	{
+		assertTrue(CaddScoreLookup.create(caddFile, VariantLookup.Mode.STREAMING) instanceof StreamingCaddScoreLookup);
+	}
+
+	@Test
+	public void testGetInOrder() throws Exception
+	{
+		CaddScoreLookup streaming = new StreamingCaddScoreLookup(caddFile);
+		assertGet(streaming, VariantKey.createBackTrimmed("1", 50, "A", "G"), null);
+		assertGet(streaming, VariantKey.createBackTrimmed("1", 100, "A", "G"), 4.5);
+		assertGet(streaming, VariantKey.createBackTrimmed("1", 100, "A", "T"), 3.5);
+		assertGet(streaming, VariantKey.createBackTrimmed("1", 100, "A", "C"), null);
+		assertGet(streaming, VariantKey.createBackTrimmed("1", 150, "ACTG", "ATG"), 5.5);
+		// look back to an earlier record position
+		assertGet(streaming, VariantKey.createBackTrimmed("1", 100, "A", "T"), 3.5);
+		assertGet(streaming, VariantKey.createBackTrimmed("1", 5000, "C", "T"), 6.5);
+		assertGet(streaming, VariantKey.createBackTrimmed("X", 10, "G", "A"), null);
+		assertGet(streaming, VariantKey.createBackTrimmed("2", 20, "G", "C"), 8.5);
+	}
+
+	@Test
+	public void testGetChromosomeOrderDiffers() throws Exception
+	{
+		CaddScoreLookup streaming = new StreamingCaddScoreLookup(caddFile);
+		assertGet(streaming, VariantKey.createBackTrimmed("2", 10, "G", "A"), 7.5);
+		assertGet(streaming, VariantKey.createBackTrimmed("1", 100, "A", "T"), 3.5);
+		assertGet(streaming, VariantKey.createBackTrimmed("1", 5000, "C", "T"), 6.5);
+		assertGet(streaming, VariantKey.createBackTrimmed("2", 20, "G", "C"), 8.5);
+	}
+
+	@Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "CADD webservice output file is not sorted by position, .*")
+	public void testGetUnsorted() throws Exception
+	{
+		File unsortedCaddFile = new File(FileUtils.getTempDirectory(), "StreamingCaddScoreLookupTestUnsorted.tsv");
+		FileUtils.writeStringToFile(unsortedCaddFile, "1\t200\tA\tG\t0.1\t2.5\n1\t100\tA\tG\t0.1\t2.5\n", UTF_8);
+		new StreamingCaddScoreLookup(unsortedCaddFile).get(VariantKey.createBackTrimmed("1", 300, "A", "G"));
+	}
+
+	@Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "CADD webservice output file is not sorted by chromosome, chromosome 1 was interrupted by other chromosomes, .*")
+	public void testGetInterruptedChromosome() throws Exception
+	{
+		File unsortedCaddFile = new File(FileUtils.getTempDirectory(),
+				"StreamingCaddScoreLookupTestInterrupted.tsv");
+		FileUtils.writeStringToFile(unsortedCaddFile,
+				"1\t100\tA\tG\t0.1\t2.5\n2\t100\tA\tG\t0.1\t2.5\n1\t200\tA\tG\t0.1\t2.5\n", UTF_8);
+		new StreamingCaddScoreLookup(unsortedCaddFile).get(VariantKey.createBackTrimmed("2", 300, "A", "G"));
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void testClose() throws Exception
+	{
+		StreamingCaddScoreLookup streaming = new StreamingCaddScoreLookup(caddFile);
+		assertGet(streaming, VariantKey.createBackTrimmed("1", 100, "A", "G"), 4.5);
+		streaming.close();
+		streaming.get(VariantKey.createBackTrimmed("2", 20, "G", "C"));
+	}
+
+	private void assertGet(CaddScoreLookup streaming, VariantKey variantKey, Double expected) throws IOException
+	{
+		assertEquals(inMemory.get(variantKey), expected, variantKey.toString());
+		assertEquals(streaming.get(variantKey), expected, variantKey.toString());
+	}
+}
@@ -0,0 +1,65 @@
+package org.molgenis.data.annotation.makervcf.structs;
+
+import org.molgenis.vcf.VcfReader;
+import org.molgenis.vcf.VcfRecord;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singleton;
+import static org.testng.Assert.assertEquals;
+
+public class GavinRecordTest
+{
+	private static final String VCF =
+			"##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\ts0\ts1\n"
+					+ "1\t1\t.\tA\tC,G\t.\t.\tANN=C|missense_variant|MODERATE|GENE1|ENSG1|transcript|NM_1,G|stop_gained|HIGH|GENE2|ENSG2|transcript|NM_2;CADD_SCALED=12.5,.\tGT\t0/1\t2/2\n"
+					+ "1\t2\t.\tA\tT\t.\t.\tANN=T|missense_variant|MODERATE|GENE3|ENSG3|transcript|NM_3;CADD_SCALED=20.0\tGT\t0/0\t0/1\n";
+
+	@Test
+	public void testLazyFieldsOfRecycledRecords() throws IOException
+	{
+		List<GavinRecord> gavinRecords = read();
+
+		GavinRecord gavinRecord = gavinRecords.get(0);
+		assertEquals(gavinRecord.getGenes(), new HashSet<>(Arrays.asList("GENE1", "GENE2")));
+		assertEquals(gavinRecord.getCaddPhredScores(), new Double[] { 12.5, null });
+		assertEquals(gavinRecord.getGenotypes().getGenotype(1), "2/2");
+
+		gavinRecord = gavinRecords.get(1);
+		assertEquals(gavinRecord.getGenes(), singleton("GENE3"));
+		assertEquals(gavinRecord.getCaddPhredScore(0), 20.0);
+		assertEquals(gavinRecord.getGenotypes().getGenotype(1), "0/1");
+	}
+
+	@Test
+	public void testSetBeforeFirstAccess() throws IOException
+	{
+		GavinRecord gavinRecord = read().get(0);
+
+		gavinRecord.setGenes("GENE2");
+		gavinRecord.setCaddPhredScore(1, 30.0);
+
+		assertEquals(gavinRecord.getGenes(), singleton("GENE2"));
+		assertEquals(gavinRecord.getCaddPhredScores(), new Double[] { 12.5, 30.0 });
+	}
+
+	private static List<GavinRecord> read() throws IOException
+	{
+		List<GavinRecord> gavinRecords = new ArrayList<>();
+		try (VcfReader vcfReader = new VcfReader(new ByteArrayInputStream(VCF.getBytes(UTF_8))))
+		{
+			for (VcfRecord vcfRecord : vcfReader)
+			{
+				gavinRecords.add(new GavinRecord(vcfRecord));
+			}
+		}
+		return gavinRecords;
+	}
+}
@@ -0,0 +1,78 @@
+package org.molgenis.data.annotation.makervcf.structs;
+
+import org.molgenis.data.annotation.core.entity.impl.snpeff.Impact;
+import org.molgenis.vcf.VcfRecord;
+import org.molgenis.vcf.meta.VcfMeta;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.testng.Assert.assertEquals;
+
+public class SnpEffAnnotationsTest
+{
+	private static final String ANN =
+			"T|missense_variant|MODERATE|GENE1|ENSG1|transcript|NM_1|protein_coding|1/2|c.1A>T||||||,"
+					+ "T|intron_variant|MODIFIER|GENE1|ENSG1|transcript|NM_2|protein_coding,"
+					+ "G|stop_gained|HIGH|GENE2|ENSG2|transcript|NM_3|protein_coding,"
+					+ "G|synonymous_variant|LOW|GENE1|ENSG1|transcript||protein_coding";
+
+	@Test
+	public void testGetGenes()
+	{
+		assertEquals(SnpEffAnnotations.parse(ANN).getGenes(), new HashSet<>(Arrays.asList("GENE1", "GENE2")));
+	}
+
+	@Test
+	public void testFirstAnnotationOfAlleleAndGene()
+	{
+		SnpEffAnnotations annotations = SnpEffAnnotations.parse(ANN);
+
+		int annotation = annotations.find("T", "GENE1");
+		assertEquals(annotation, 0);
+		assertEquals(annotations.getImpact(annotation), Impact.MODERATE);
+		assertEquals(annotations.getTranscript(annotation), "NM_1");
+
+		annotation = annotations.find("G", "GENE1");
+		assertEquals(annotation, 3);
+		assertEquals(annotations.getImpact(annotation), Impact.LOW);
+		assertEquals(annotations.getTranscript(annotation), "");
+
+		annotation = annotations.find("G", "GENE2");
+		assertEquals(annotations.getImpact(annotation), Impact.HIGH);
+		assertEquals(annotations.getTranscript(annotation), "NM_3");
+	}
+
+	@Test
+	public void testAnnotationsClearedOnReset()
+	{
+		AnnotatedVcfRecord record = new AnnotatedVcfRecord(new VcfRecord(new VcfMeta(),
+				new String[] { "1", "1", ".", "A", "T", ".", ".", "ANN=" + ANN }));
+		assertEquals(record.getGenesFromAnn(), new HashSet<>(Arrays.asList("GENE1", "GENE2")));
+
+		record.reset(new String[] { "1", "2", ".", "A", "G", ".", ".", "ANN=G|stop_gained|HIGH|GENE3|ENSG3" });
+		assertEquals(record.getGenesFromAnn(), Collections.singleton("GENE3"));
+	}
+
+	@Test
+	public void testAnnotationNotFound()
+	{
+		SnpEffAnnotations annotations = SnpEffAnnotations.parse(ANN);
+		assertEquals(annotations.find("C", "GENE2"), -1);
+		assertEquals(annotations.find("G", "GENE"), -1);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testUnknownImpact()
+	{
+		SnpEffAnnotations.parse("A|missense_variant|UNKNOWN|GENE1|ENSG1|transcript|NM_1").getImpact(0);
+	}
+
+	@Test(expectedExceptions = AnnotatedVcfParseException.class)
+	public void testMissingGeneColumn()
+	{
+		SnpEffAnnotations.parse("A|missense_variant").getGenes();
+	}
+}
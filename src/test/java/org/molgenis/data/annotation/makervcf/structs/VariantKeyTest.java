@@ -0,0 +1,61 @@
+package org.molgenis.data.annotation.makervcf.structs;
+
+import org.molgenis.data.vcf.utils.FixVcfAlleleNotation;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class VariantKeyTest
+{
+	@DataProvider(name = "refAlts")
+	public Object[][] refAlts()
+	{
+		return new Object[][] { { "GATA", "GATAGATA" }, { "TTCTT", "T" }, { "ATGTG", "ATG" }, { "ATGTG", "ATGTGTGTG" },
+				{ "GATAT", "GAT" }, { "A", "C" }, { "AC", "AC" }, { "CTN", "CAN" }, { "A", "<DEL>" },
+				{ "ACGTACGTACGTACGTACGTACGTA", "ACGTA" } };
+	}
+
+	@Test(dataProvider = "refAlts")
+	public void testCreateBackTrimmed(String ref, String alt)
+	{
+		VariantKey variantKey = VariantKey.createBackTrimmed("1", 123, ref, alt);
+		assertEquals(variantKey.getRef() + "_" + variantKey.getAlt(),
+				FixVcfAlleleNotation.backTrimRefAlt(ref, alt, "_"));
+		assertEquals(variantKey.toString(), "1_123_" + FixVcfAlleleNotation.backTrimRefAlt(ref, alt, "_"));
+		assertEquals(variantKey, VariantKey.createBackTrimmed("1", 123, ref, alt));
+		assertEquals(variantKey.hashCode(), VariantKey.createBackTrimmed("1", 123, ref, alt).hashCode());
+	}
+
+	@Test(dataProvider = "refAlts")
+	public void testCreate(String ref, String alt)
+	{
+		VariantKey variantKey = VariantKey.create("X", 1, ref, alt);
+		assertEquals(variantKey.getChromosome(), "X");
+		assertEquals(variantKey.getPosition(), 1);
+		assertEquals(variantKey.getRef(), ref);
+		assertEquals(variantKey.getAlt(), alt);
+	}
+
+	@Test
+	public void testNotEquals()
+	{
+		VariantKey variantKey = VariantKey.create("1", 100, "A", "C");
+		assertNotEquals(variantKey, VariantKey.create("2", 100, "A", "C"));
+		assertNotEquals(variantKey, VariantKey.create("1", 101, "A", "C"));
+		assertNotEquals(variantKey, VariantKey.create("1", 100, "AC", ""));
+		assertNotEquals(variantKey, VariantKey.create("1", 100, "A", "CA"));
+		assertNotEquals(VariantKey.create("1", 100, "AA", "C"), VariantKey.create("1", 100, "A", "AC"));
+		assertNotEquals(VariantKey.createBackTrimmed("1", 100, "ATG", "AG"), VariantKey.create("1", 100, "ATG", "AG"));
+		assertEquals(VariantKey.createBackTrimmed("1", 100, "ATG", "AG"), VariantKey.create("1", 100, "AT", "A"));
+	}
+
+	@Test
+	public void testMultipleAlts()
+	{
+		VariantKey variantKey = VariantKey.create("1", 100, "A", "C,G");
+		assertEquals(variantKey.toString(), "1_100_A_C,G");
+		assertEquals(variantKey, VariantKey.create("1", 100, "A", "C,G"));
+		assertNotEquals(variantKey, VariantKey.create("1", 100, "A", "C"));
+	}
+}
@@ -0,0 +1,79 @@
+package org.molgenis.vcf;
+
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class BlockCompressedLineReaderTest
+{
+	private static final String BGZF_RESOURCE = "/cadd_prescored/whole_genome_SNVs.tsv.gz";
+
+	@Test
+	public void testReadLineEqualsGzipInputStream() throws IOException, URISyntaxException
+	{
+		List<String> expected = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new GZIPInputStream(getClass().getResourceAsStream(BGZF_RESOURCE)), UTF_8)))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				expected.add(line);
+			}
+		}
+
+		List<String> observed = new ArrayList<>();
+		try (BlockCompressedLineReader reader = new BlockCompressedLineReader(getFile(), 2))
+		{
+			reader.seek(0);
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				observed.add(line);
+			}
+		}
+
+		assertEquals(observed, expected);
+	}
+
+	@Test
+	public void testSeek() throws IOException, URISyntaxException
+	{
+		try (BlockCompressedLineReader reader = new BlockCompressedLineReader(getFile(), 2))
+		{
+			reader.seek(0);
+			List<Long> filePointers = new ArrayList<>();
+			List<String> lines = new ArrayList<>();
+			String line;
+			do
+			{
+				filePointers.add(reader.getFilePointer());
+				line = reader.readLine();
+				lines.add(line);
+			}
+			while (line != null);
+
+			// read backwards so that every seek evicts cached blocks
+			for (int i = lines.size() - 1; i >= 0; --i)
+			{
+				reader.seek(filePointers.get(i));
+				assertEquals(reader.readLine(), lines.get(i));
+			}
+			reader.seek(filePointers.get(filePointers.size() - 1));
+			assertNull(reader.readLine());
+		}
+	}
+
+	private File getFile() throws URISyntaxException
+	{
+		return new File(getClass().getResource(BGZF_RESOURCE).toURI());
+	}
+}
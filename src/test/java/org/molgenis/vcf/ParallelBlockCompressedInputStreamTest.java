@@ -0,0 +1,95 @@
+package org.molgenis.vcf;
+
+import com.google.common.io.ByteStreams;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ParallelBlockCompressedInputStreamTest
+{
+	private static final String BGZF_RESOURCE = "/bundle_r1.2/clinvar.vkgl.patho.26june2018.vcf.gz";
+
+	@Test
+	public void testReadEqualsGzipInputStream() throws IOException
+	{
+		byte[] expected;
+		try (InputStream inputStream = new GZIPInputStream(getClass().getResourceAsStream(BGZF_RESOURCE)))
+		{
+			expected = ByteStreams.toByteArray(inputStream);
+		}
+
+		byte[] observed;
+		try (InputStream inputStream = new ParallelBlockCompressedInputStream(
+				getClass().getResourceAsStream(BGZF_RESOURCE), 3))
+		{
+			observed = ByteStreams.toByteArray(inputStream);
+		}
+
+		assertEquals(observed, expected);
+	}
+
+	@Test
+	public void testSharedPool() throws IOException
+	{
+		byte[] expected;
+		try (InputStream inputStream = new GZIPInputStream(getClass().getResourceAsStream(BGZF_RESOURCE)))
+		{
+			expected = ByteStreams.toByteArray(inputStream);
+		}
+
+		int nrProcessors = Runtime.getRuntime().availableProcessors();
+		List<InputStream> inputStreams = new ArrayList<>();
+		try
+		{
+			for (int i = 0; i < nrProcessors + 2; ++i)
+			{
+				inputStreams.add(new ParallelBlockCompressedInputStream(getClass().getResourceAsStream(BGZF_RESOURCE)));
+			}
+			// all streams have blocks in flight before any of them is done
+			for (InputStream inputStream : inputStreams)
+			{
+				assertEquals(inputStream.read(), expected[0] & 0xff);
+			}
+			// closing a stream does not affect the other streams
+			inputStreams.get(0).close();
+			for (InputStream inputStream : inputStreams.subList(1, inputStreams.size()))
+			{
+				assertEquals(ByteStreams.toByteArray(inputStream), Arrays.copyOfRange(expected, 1, expected.length));
+			}
+		}
+		finally
+		{
+			for (InputStream inputStream : inputStreams)
+			{
+				inputStream.close();
+			}
+		}
+
+		long nrInflaterThreads = Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().equals("shared-bgzf-inflater")).count();
+		assertTrue(nrInflaterThreads <= nrProcessors);
+	}
+
+	@Test
+	public void testIsBlockCompressed() throws IOException
+	{
+		byte[] header = new byte[18];
+		try (InputStream inputStream = getClass().getResourceAsStream(BGZF_RESOURCE))
+		{
+			ByteStreams.readFully(inputStream, header);
+		}
+		assertTrue(ParallelBlockCompressedInputStream.isBlockCompressed(header));
+
+		header[12] = 0;
+		assertFalse(ParallelBlockCompressedInputStream.isBlockCompressed(header));
+	}
+}
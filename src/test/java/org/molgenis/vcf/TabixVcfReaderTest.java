@@ -0,0 +1,72 @@
+package org.molgenis.vcf;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.testng.Assert.assertEquals;
+
+public class TabixVcfReaderTest
+{
+	private TabixVcfReader tabixVcfReader;
+
+	@BeforeClass
+	public void beforeClass() throws IOException, URISyntaxException
+	{
+		File vcfFile = new File(
+				TabixVcfReaderTest.class.getResource("/PlatinumGenomesMantaSV/diploidSV.vcf.gz").toURI());
+		tabixVcfReader = new TabixVcfReader(vcfFile);
+	}
+
+	@AfterClass
+	public void afterClass() throws IOException
+	{
+		tabixVcfReader.close();
+	}
+
+	@Test
+	public void testQuery() throws IOException
+	{
+		assertEquals(getPositions("2", 306000, 313600), asList(306457, 313507));
+	}
+
+	@Test
+	public void testQuerySinglePosition() throws IOException
+	{
+		assertEquals(getPositions("2", 495267, 495267), asList(495267));
+	}
+
+	@Test
+	public void testQueryAll() throws IOException
+	{
+		assertEquals(getPositions("2", 1, Integer.MAX_VALUE - 1), asList(207164, 306457, 313507, 426485, 495267));
+	}
+
+	@Test
+	public void testQueryUnknownChromosome() throws IOException
+	{
+		assertEquals(getPositions("1", 1, 1000000), emptyList());
+	}
+
+	@Test
+	public void testQueryEmptyRegion() throws IOException
+	{
+		assertEquals(getPositions("2", 1, 1000), emptyList());
+	}
+
+	private List<Integer> getPositions(String chromosome, int start, int end) throws IOException
+	{
+		return tabixVcfReader.query(chromosome, start, end)
+							 .stream()
+							 .map(VcfRecord::getPosition)
+							 .collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,116 @@
+package org.molgenis.vcf;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.*;
+
+public class VcfGenotypesTest
+{
+	private static final String HEADER =
+			"##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\ts0\ts1\ts2\ts3\ts4\ts5\n";
+
+	@Test
+	public void testDecode() throws IOException
+	{
+		VcfGenotypes genotypes = read(
+				HEADER + "1\t1\t.\tA\tC,G\t.\t.\t.\tAD:GT:DP\t1,2:0/1:12\t.:1|1:.\t.:./.:3\t.:.:5\t.:2:0\t.:0/12:2.7\n").get(0);
+
+		assertEquals(genotypes.getNrSamples(), 6);
+
+		assertEquals(genotypes.getGenotype(0), "0/1");
+		assertEquals(genotypes.getPloidy(0), 2);
+		assertEquals(genotypes.getAllele(0, 0), 0);
+		assertEquals(genotypes.getAllele(0, 1), 1);
+		assertFalse(genotypes.isPhased(0));
+		assertEquals(genotypes.getDepth(0), 12);
+		assertEquals(genotypes.countAllele(0, 1), 1);
+
+		assertTrue(genotypes.isPhased(1));
+		assertEquals(genotypes.countAllele(1, 1), 2);
+		assertEquals(genotypes.getDepth(1), VcfGenotypes.MISSING_DEPTH);
+
+		assertTrue(genotypes.isMissing(2));
+		assertEquals(genotypes.getAllele(2, 0), VcfGenotypes.MISSING_ALLELE);
+
+		assertFalse(genotypes.hasGenotype(3));
+		assertNull(genotypes.getGenotype(3));
+		assertEquals(genotypes.getPloidy(3), 0);
+		assertEquals(genotypes.getDepth(3), 5);
+
+		assertEquals(genotypes.getPloidy(4), 1);
+		assertEquals(genotypes.getAllele(4, 0), 2);
+		assertEquals(genotypes.getDepth(4), 0);
+
+		assertEquals(genotypes.getAllele(5, 1), 12);
+		assertEquals(genotypes.countAllele(5, 1), 0);
+		assertEquals(genotypes.getDepth(5), 2);
+	}
+
+	@Test
+	public void testLargeAlleleIndex() throws IOException
+	{
+		VcfGenotypes genotypes = read(
+				HEADER + "1\t1\t.\tA\tC\t.\t.\t.\tGT\t0/255\t256|1000\t0/99999999999\t.\t.\t.\n").get(0);
+
+		assertEquals(genotypes.getAllele(0, 1), 255);
+		assertEquals(genotypes.countAllele(0, 255), 1);
+		assertTrue(genotypes.isPhased(1));
+		assertEquals(genotypes.getAllele(1, 0), 256);
+		assertEquals(genotypes.getAllele(1, 1), 1000);
+		assertEquals(genotypes.getAllele(2, 1), Integer.MAX_VALUE);
+		assertFalse(genotypes.isMissing(2));
+	}
+
+	@Test
+	public void testReference() throws IOException
+	{
+		VcfGenotypes genotypes = read(HEADER + "1\t1\t.\tA\tC\t.\t.\t.\tGT\t0/0\t0|0\t0\t0/.\t./.\t.\n").get(0);
+
+		assertTrue(genotypes.isReference(0));
+		assertTrue(genotypes.isReference(1));
+		assertTrue(genotypes.isReference(2));
+		assertFalse(genotypes.isReference(3));
+		assertFalse(genotypes.isMissing(3));
+		assertFalse(genotypes.isReference(4));
+		assertFalse(genotypes.isReference(5));
+	}
+
+	@Test
+	public void testGenotypesResetOnRecycle() throws IOException
+	{
+		List<VcfGenotypes> genotypes = read(HEADER + "1\t1\t.\tA\tC\t.\t.\t.\tGT\t0/1\t1/1\t0/0\t0/0\t0/0\t0/0\n"
+				+ "1\t2\t.\tA\tC\t.\t.\t.\tGT\t0/0\t0/0\t0/1\t0/0\t0/0\t0/0\n");
+
+		assertEquals(genotypes.get(0).getGenotype(0), "0/1");
+		assertEquals(genotypes.get(0).getGenotype(2), "0/0");
+		assertEquals(genotypes.get(1).getGenotype(0), "0/0");
+		assertEquals(genotypes.get(1).getGenotype(2), "0/1");
+	}
+
+	@Test
+	public void testNoFormat() throws IOException
+	{
+		VcfGenotypes genotypes = read(
+				"##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n1\t1\t.\tA\tC\t.\t.\t.\n").get(0);
+		assertEquals(genotypes.getNrSamples(), 0);
+	}
+
+	private static List<VcfGenotypes> read(String vcf) throws IOException
+	{
+		List<VcfGenotypes> genotypes = new ArrayList<>();
+		try (VcfReader vcfReader = new VcfReader(new ByteArrayInputStream(vcf.getBytes(UTF_8))))
+		{
+			for (VcfRecord vcfRecord : vcfReader)
+			{
+				genotypes.add(vcfRecord.getGenotypes());
+			}
+		}
+		return genotypes;
+	}
+}
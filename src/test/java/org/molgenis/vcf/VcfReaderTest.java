@@ -0,0 +1,246 @@
+package org.molgenis.vcf;
+
+import org.molgenis.vcf.meta.VcfMeta;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+public class VcfReaderTest
+{
+	@Test
+	public void testInputStreamEqualsReader() throws IOException
+	{
+		List<String[]> expectedTokens = new ArrayList<>();
+		try (VcfReader vcfReader = new VcfReader(new InputStreamReader(
+				VcfReaderTest.class.getResourceAsStream("/DiscoverRelevantVariantsTestFile.vcf"), UTF_8)))
+		{
+			for (VcfRecord vcfRecord : vcfReader)
+			{
+				expectedTokens.add(vcfRecord.getTokens());
+			}
+		}
+
+		List<String[]> observedTokens = new ArrayList<>();
+		try (VcfReader vcfReader = new VcfReader(
+				VcfReaderTest.class.getResourceAsStream("/DiscoverRelevantVariantsTestFile.vcf")))
+		{
+			for (VcfRecord vcfRecord : vcfReader)
+			{
+				observedTokens.add(vcfRecord.createClone().getTokens());
+			}
+		}
+
+		assertEquals(observedTokens.size(), expectedTokens.size());
+		for (int i = 0; i < expectedTokens.size(); i++)
+		{
+			assertEquals(observedTokens.get(i), expectedTokens.get(i));
+		}
+	}
+
+	@Test
+	public void testInformationIndexResetOnRecycle() throws IOException
+	{
+		String vcf = "##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n"
+				+ "1\t1\t.\tA\tC\t.\t.\tAC=2;DB;;ANN=C|x=y|GENE1;AC=3\n" + "1\t2\t.\tA\tC\t.\t.\tANN=C|GENE2;K=\n";
+
+		List<String> anns = new ArrayList<>();
+		List<String> keys = new ArrayList<>();
+		try (VcfReader vcfReader = new VcfReader(new ByteArrayInputStream(vcf.getBytes(UTF_8))))
+		{
+			for (VcfRecord vcfRecord : vcfReader)
+			{
+				anns.add(vcfRecord.getInformation("ANN").getValRaw());
+				vcfRecord.getInformation().forEach(vcfInfo -> keys.add(vcfInfo.getKey() + "=" + vcfInfo.getValRaw()));
+				if (vcfRecord.getPosition() == 1)
+				{
+					assertEquals(vcfRecord.getInformation("AC").getValRaw(), "2");
+					assertEquals(vcfRecord.getInformation("DB").getValRaw(), null);
+					assertEquals(vcfRecord.getInformation("A"), null);
+					assertEquals(vcfRecord.createClone().getInformation("ANN").getValRaw(), "C|x=y|GENE1");
+				}
+				else
+				{
+					assertEquals(vcfRecord.getInformation("AC"), null);
+					assertEquals(vcfRecord.getInformation("K").getValRaw(), "");
+				}
+			}
+		}
+		assertEquals(anns, Arrays.asList("C|x=y|GENE1", "C|GENE2"));
+		assertEquals(keys, Arrays.asList("AC=2", "DB=null", "ANN=C|x=y|GENE1", "AC=3", "ANN=C|GENE2", "K="));
+	}
+
+	@Test
+	public void testInputStreamColumnsDecodedOnDemand() throws IOException
+	{
+		String vcf = "##fileformat=VCFv4.2\r\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tp01\tp02\r\n"
+				+ "1\t123\trs1;rs2\tA\tC,G\t.\tPASS\tAF=0.1\tGT:DP\t0/1:5\t\t1|1:7\n" + "X\t1234567890\t.\tT\tA\t.\t.\t.";
+
+		try (VcfReader vcfReader = new VcfReader(new ByteArrayInputStream(vcf.getBytes(UTF_8))))
+		{
+			assertEquals(vcfReader.getVcfMeta().getFileFormat(), "VCFv4.2");
+
+			List<VcfRecord> vcfRecords = new ArrayList<>();
+			vcfReader.forEach(vcfRecord -> vcfRecords.add(vcfRecord.createClone()));
+			assertEquals(vcfRecords.size(), 2);
+
+			VcfRecord first = vcfRecords.get(0);
+			assertEquals(first.getChromosome(), "1");
+			assertEquals(first.getPosition(), 123);
+			assertEquals(first.getIdentifiers().size(), 2);
+			assertEquals(first.getAlternateAlleles().size(), 2);
+			assertEquals(first.getFilterStatus(), "PASS");
+			assertEquals(first.getFormat(), new String[] { "GT", "DP" });
+			assertEquals(first.getNrSamples(), 2);
+			assertEquals(first.getSampleTokens(), new String[] { "0/1:5", "1|1:7" });
+
+			VcfRecord second = vcfRecords.get(1);
+			assertEquals(second.getChromosome(), "X");
+			assertEquals(second.getPosition(), 1234567890);
+			assertEquals(second.getNrSamples(), 0);
+			assertEquals(second.toString(), "X\t1234567890\t.\tT\tA\t.\t.\t.");
+		}
+	}
+
+	@Test
+	public void testWriteSampleColumnsWithoutDecoding() throws IOException
+	{
+		String vcf = "##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tp01\tp02\tp03\n"
+				+ "1\t123\t.\tA\tC\t.\tPASS\tAF=0.1\tGT:DP\t0/1:5\t\t1|1:7\t0/0:\u00fc\n";
+		String[] tokens = { "1", "123", ".", "A", "C", ".", "PASS", "AF=0.1;RLV_PRESENT=FALSE", "GT:DP" };
+		String expectedLine = "1\t123\t.\tA\tC\t.\tPASS\tAF=0.1;RLV_PRESENT=FALSE\tGT:DP\t0/1:5\t1|1:7\t0/0:\u00fc";
+
+		try (VcfReader vcfReader = new VcfReader(new ByteArrayInputStream(vcf.getBytes(UTF_8))))
+		{
+			List<VcfRecord> vcfRecords = new ArrayList<>();
+			vcfReader.forEach(vcfRecord -> vcfRecords.add(vcfRecord.createClone()));
+			VcfRecord inputRecord = vcfRecords.get(0);
+			VcfRecord undecodedInputRecord = new VcfRecord(inputRecord)
+			{
+				@Override
+				public String[] getSampleTokens()
+				{
+					throw new AssertionError("sample columns were decoded");
+				}
+			};
+
+			StringWriter writer = new StringWriter();
+			undecodedInputRecord.write(writer);
+			assertEquals(writer.toString(), "1\t123\t.\tA\tC\t.\tPASS\tAF=0.1\tGT:DP\t0/1:5\t1|1:7\t0/0:\u00fc");
+
+			VcfRecord outputRecord = new VcfRecord(vcfReader.getVcfMeta(), tokens, undecodedInputRecord);
+			assertEquals(outputRecord.getNrSamples(), 3);
+			writer = new StringWriter();
+			outputRecord.write(writer);
+			assertEquals(writer.toString(), expectedLine);
+
+			VcfRecord decodedOutputRecord = new VcfRecord(vcfReader.getVcfMeta(), tokens, inputRecord.createClone());
+			assertEquals(decodedOutputRecord.getSampleTokens(), new String[] { "0/1:5", "1|1:7", "0/0:\u00fc" });
+			assertEquals(decodedOutputRecord.toString(), expectedLine);
+			writer = new StringWriter();
+			decodedOutputRecord.write(writer);
+			assertEquals(writer.toString(), expectedLine);
+		}
+	}
+
+	@Test
+	public void testEqualsAcrossRepresentations() throws IOException
+	{
+		String vcf = "##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tp01\tp02\n"
+				+ "1\t123\t.\tA\tC\t.\tPASS\tAF=0.1\tGT\t0/1\t1|1\n"
+				+ "1\t123\t.\tA\tC\t.\tPASS\tAF=0.1\tGT\t0/1\t0/0\n";
+		String[] tokens = { "1", "123", ".", "A", "C", ".", "PASS", "AF=0.1", "GT" };
+
+		try (VcfReader vcfReader = new VcfReader(new ByteArrayInputStream(vcf.getBytes(UTF_8))))
+		{
+			List<VcfRecord> vcfRecords = new ArrayList<>();
+			vcfReader.forEach(vcfRecord -> vcfRecords.add(vcfRecord.createClone()));
+			VcfRecord lineRecord = vcfRecords.get(0);
+			VcfMeta vcfMeta = vcfReader.getVcfMeta();
+			VcfRecord tokenRecord = new VcfRecord(vcfMeta,
+					new String[] { "1", "123", ".", "A", "C", ".", "PASS", "AF=0.1", "GT", "0/1", "1|1" });
+			VcfRecord compositeRecord = new VcfRecord(vcfMeta, tokens, lineRecord.createClone());
+
+			for (VcfRecord vcfRecord : Arrays.asList(lineRecord, tokenRecord, compositeRecord))
+			{
+				assertEquals(vcfRecord.toString(), "1\t123\t.\tA\tC\t.\tPASS\tAF=0.1\tGT\t0/1\t1|1");
+				assertEquals(vcfRecord.hashCode(), lineRecord.hashCode());
+				assertEquals(vcfRecord, lineRecord);
+				assertEquals(vcfRecord, tokenRecord);
+				assertEquals(vcfRecord, compositeRecord);
+				assertNotEquals(vcfRecord, vcfRecords.get(1));
+			}
+
+			// the sample columns of the records are compared without decoding them
+			VcfRecord undecodedRecord = new VcfRecord(lineRecord)
+			{
+				@Override
+				public String[] getSampleTokens()
+				{
+					throw new AssertionError("sample columns were decoded");
+				}
+			};
+			VcfRecord undecodedCompositeRecord = new VcfRecord(vcfMeta, tokens, undecodedRecord);
+			assertEquals(undecodedRecord.toString(), lineRecord.toString());
+			assertEquals(undecodedCompositeRecord.hashCode(), lineRecord.hashCode());
+			assertEquals(undecodedCompositeRecord, compositeRecord);
+		}
+	}
+
+	@Test
+	public void testFileChannelEqualsReader() throws IOException, URISyntaxException
+	{
+		Path path = Paths.get(VcfReaderTest.class.getResource("/DiscoverRelevantVariantsTestFile.vcf").toURI());
+
+		List<String> expectedLines = new ArrayList<>();
+		try (VcfReader vcfReader = new VcfReader(new InputStreamReader(
+				VcfReaderTest.class.getResourceAsStream("/DiscoverRelevantVariantsTestFile.vcf"), UTF_8)))
+		{
+			vcfReader.forEach(vcfRecord -> expectedLines.add(vcfRecord.toString()));
+		}
+
+		try (VcfReader vcfReader = new VcfReader(FileChannel.open(path, StandardOpenOption.READ)))
+		{
+			List<String> observedLines = new ArrayList<>();
+			vcfReader.forEach(vcfRecord -> observedLines.add(vcfRecord.toString()));
+			assertEquals(observedLines, expectedLines);
+		}
+	}
+
+	@Test
+	public void testFileChannelLinesSpanningMappedChunks() throws IOException, URISyntaxException
+	{
+		Path path = Paths.get(VcfReaderTest.class.getResource("/DiscoverRelevantVariantsTestFile.vcf").toURI());
+
+		List<String> expectedLines = new ArrayList<>();
+		try (VcfRecordTokenizer tokenizer = new VcfRecordTokenizer(FileChannel.open(path, StandardOpenOption.READ)))
+		{
+			for (String line = tokenizer.readLine(); line != null; line = tokenizer.readLine())
+			{
+				expectedLines.add(line);
+			}
+		}
+
+		try (VcfRecordTokenizer tokenizer = new VcfRecordTokenizer(FileChannel.open(path, StandardOpenOption.READ),
+				7))
+		{
+			List<String> observedLines = new ArrayList<>();
+			for (String line = tokenizer.readLine(); line != null; line = tokenizer.readLine())
+			{
+				observedLines.add(line);
+			}
+			assertEquals(observedLines, expectedLines);
+		}
+	}
+}